@@ -0,0 +1,85 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import org.nuxeo.ecm.core.blob.BlobManager;
+import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Binary stored as chunks by a {@link ChunkingBinaryManager}.
+ * <p>
+ * The stream reads the chunks one after the other, the file is only assembled on first access, and again if it was
+ * evicted from the assembled files cache.
+ *
+ * @since 11.1
+ */
+public class ChunkedBinary extends Binary {
+
+    private static final long serialVersionUID = 1L;
+
+    // transient to be Serializable
+    protected transient ChunkingBinaryManager cbm;
+
+    public ChunkedBinary(String digest, String blobProviderId, ChunkingBinaryManager cbm) {
+        super(digest, blobProviderId);
+        this.cbm = cbm;
+    }
+
+    // because the class is Serializable, re-acquire the ChunkingBinaryManager
+    protected ChunkingBinaryManager getChunkingBinaryManager() {
+        if (cbm == null) {
+            if (blobProviderId == null) {
+                throw new UnsupportedOperationException("Cannot find binary manager, no blob provider id");
+            }
+            BlobManager bm = Framework.getService(BlobManager.class);
+            BlobProvider bp = bm.getBlobProvider(blobProviderId);
+            cbm = (ChunkingBinaryManager) bp.getBinaryManager();
+        }
+        return cbm;
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return getChunkingBinaryManager().getStream(digest);
+    }
+
+    @Override
+    public File getFile() {
+        // always go through the cache, to keep its recency order and because the file may have been evicted
+        try {
+            file = getChunkingBinaryManager().getAssembledFile(digest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+
+    @Override
+    protected File recomputeFile() {
+        // assembled on first access
+        return null;
+    }
+
+}
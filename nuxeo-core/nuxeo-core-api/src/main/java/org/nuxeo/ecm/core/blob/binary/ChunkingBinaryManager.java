@@ -0,0 +1,494 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.utils.SizeUtils;
+import org.nuxeo.runtime.trackers.files.FileEventTracker;
+
+/**
+ * A filesystem-based binary manager that splits binaries into content-defined chunks, and stores each chunk only once
+ * according to its SHA-256 digest.
+ * <p>
+ * Binaries sharing most of their content (successive versions of a large file) therefore share most of their chunks.
+ * <p>
+ * The format of the <em>binaries</em> directory is:
+ * <ul>
+ * <li><em>data/</em> hierarchy with the manifest of each binary, listing the digests of its chunks,</li>
+ * <li><em>chunks/</em> hierarchy with the actual chunks,</li>
+ * <li><em>tmp/</em> temporary storage during creation, with an <em>assembled/</em> subdirectory for assembled
+ * files,</li>
+ * <li><em>config.xml</em> a file containing the configuration used.</li>
+ * </ul>
+ * The chunk sizes are configured with the {@code chunkMinSize}, {@code chunkAverageSize} (a power of 2) and
+ * {@code chunkMaxSize} properties.
+ * <p>
+ * Assembled files are kept in a cache whose total size is bounded by the {@code assembledCacheSize} property, the
+ * least recently used ones being deleted first.
+ *
+ * @since 11.1
+ * @see ContentDefinedChunker
+ */
+public class ChunkingBinaryManager extends LocalBinaryManager {
+
+    private static final Log log = LogFactory.getLog(ChunkingBinaryManager.class);
+
+    public static final String CHUNKS = "chunks";
+
+    public static final String CHUNK_DIGEST = SHA256_DIGEST;
+
+    public static final String PROP_CHUNK_MIN_SIZE = "chunkMinSize";
+
+    public static final String PROP_CHUNK_AVERAGE_SIZE = "chunkAverageSize";
+
+    public static final String PROP_CHUNK_MAX_SIZE = "chunkMaxSize";
+
+    public static final String DEFAULT_CHUNK_MIN_SIZE = "16KB";
+
+    public static final String DEFAULT_CHUNK_AVERAGE_SIZE = "64KB";
+
+    public static final String DEFAULT_CHUNK_MAX_SIZE = "256KB";
+
+    public static final String ASSEMBLED = "assembled";
+
+    public static final String PROP_ASSEMBLED_CACHE_SIZE = "assembledCacheSize";
+
+    public static final String DEFAULT_ASSEMBLED_CACHE_SIZE = "1GB";
+
+    protected File chunksDir;
+
+    protected File assembledDir;
+
+    protected long assembledCacheSize;
+
+    /** Sizes of the assembled files, in access order. */
+    protected final LinkedHashMap<String, Long> assembledFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    protected long assembledFilesSize;
+
+    protected int chunkMinSize;
+
+    protected int chunkAverageSize;
+
+    protected int chunkMaxSize;
+
+    /** Start times of the binaries being stored, whose chunks are not referenced by a manifest yet. */
+    protected final Map<Object, Long> storeStartTimes = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize(String blobProviderId, Map<String, String> properties) throws IOException {
+        super.initialize(blobProviderId, properties);
+        chunksDir = new File(storageDir.getParentFile(), CHUNKS);
+        chunksDir.mkdirs();
+        FileEventTracker.registerProtectedPath(chunksDir.getAbsolutePath());
+        chunkMinSize = getSize(properties, PROP_CHUNK_MIN_SIZE, DEFAULT_CHUNK_MIN_SIZE);
+        chunkAverageSize = getSize(properties, PROP_CHUNK_AVERAGE_SIZE, DEFAULT_CHUNK_AVERAGE_SIZE);
+        chunkMaxSize = getSize(properties, PROP_CHUNK_MAX_SIZE, DEFAULT_CHUNK_MAX_SIZE);
+        ContentDefinedChunker.checkSizes(chunkMinSize, chunkAverageSize, chunkMaxSize);
+        assembledCacheSize = getLongSize(properties, PROP_ASSEMBLED_CACHE_SIZE, DEFAULT_ASSEMBLED_CACHE_SIZE);
+        assembledDir = new File(tmpDir, ASSEMBLED);
+        // files assembled by a previous run aren't tracked
+        FileUtils.deleteQuietly(assembledDir);
+        assembledDir.mkdirs();
+    }
+
+    protected static int getSize(Map<String, String> properties, String key, String defaultValue) {
+        return (int) getLongSize(properties, key, defaultValue);
+    }
+
+    protected static long getLongSize(Map<String, String> properties, String key, String defaultValue) {
+        String value = properties.get(key);
+        if (StringUtils.isBlank(value)) {
+            value = defaultValue;
+        }
+        return SizeUtils.parseSizeInBytes(value.trim());
+    }
+
+    @Override
+    public void close() {
+        synchronized (assembledFiles) {
+            assembledFiles.clear();
+            assembledFilesSize = 0;
+        }
+        super.close();
+    }
+
+    public File getChunksDir() {
+        return chunksDir;
+    }
+
+    @Override
+    protected void createGarbageCollector() {
+        garbageCollector = new ChunkingBinaryGarbageCollector(this);
+    }
+
+    @Override
+    protected Binary getBinary(InputStream in) throws IOException {
+        String digest = storeAndDigest(in);
+        return new ChunkedBinary(digest, blobProviderId, this);
+    }
+
+    @Override
+    public Binary getBinary(String digest) {
+        File file = getFileForDigest(digest, false);
+        if (file == null) {
+            // invalid digest
+            return null;
+        }
+        if (!file.exists()) {
+            log.warn("cannot fetch content at " + file.getPath() + " (file does not exist), check your configuration");
+            return null;
+        }
+        return new ChunkedBinary(digest, blobProviderId, this);
+    }
+
+    /**
+     * Gets a file representing the storage for a given chunk digest.
+     *
+     * @param digest the chunk digest
+     * @param createDir {@code true} if the directory containing the file itself must be created
+     * @return the file for this chunk
+     */
+    public File getFileForChunk(String digest, boolean createDir) {
+        File file = getFileForDigest(digest, false);
+        if (file == null) {
+            return null;
+        }
+        // same layout as the manifests, in another directory
+        String relative = storageDir.toPath().relativize(file.toPath()).toString();
+        File chunk = new File(chunksDir, relative);
+        if (createDir) {
+            chunk.getParentFile().mkdirs();
+        }
+        return chunk;
+    }
+
+    /**
+     * Stores the chunks of a stream, then its manifest.
+     * <p>
+     * The chunks are protected from the garbage collector while they are stored, and touched just before the manifest
+     * is moved into place so that a manifest kept as recent by the garbage collector has recent chunks too.
+     *
+     * @return the digest of the whole stream
+     */
+    @Override
+    protected String storeAndDigest(InputStream in) throws IOException {
+        Object store = new Object();
+        storeStartTimes.put(store, Long.valueOf(System.currentTimeMillis()));
+        try {
+            return storeChunksAndDigest(in);
+        } finally {
+            storeStartTimes.remove(store);
+        }
+    }
+
+    protected String storeChunksAndDigest(InputStream in) throws IOException {
+        MessageDigest digest = getMessageDigest(getDigestAlgorithm());
+        MessageDigest chunkDigest = getMessageDigest(CHUNK_DIGEST);
+        List<String> chunks = new ArrayList<>();
+        try {
+            ContentDefinedChunker chunker = new ContentDefinedChunker(in, chunkMinSize, chunkAverageSize,
+                    chunkMaxSize);
+            int n;
+            while ((n = chunker.next()) > 0) {
+                byte[] buf = chunker.getBuffer();
+                digest.update(buf, 0, n);
+                chunkDigest.update(buf, 0, n);
+                String chunk = toHexString(chunkDigest.digest());
+                storeChunk(chunk, buf, n);
+                chunks.add(chunk);
+            }
+        } finally {
+            in.close();
+        }
+        String hex = toHexString(digest.digest());
+        File tmp = File.createTempFile("create_", ".tmp", tmpDir);
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.US_ASCII)) {
+                for (String chunk : chunks) {
+                    writer.write(chunk);
+                    writer.write('\n');
+                }
+            }
+            // a garbage collector started during the store keeps the manifest, it must keep the chunks too
+            for (String chunk : chunks) {
+                touch(getFileForChunk(chunk, false));
+            }
+            atomicMove(tmp, getFileForDigest(hex, true));
+        } finally {
+            tmp.delete();
+        }
+        return hex;
+    }
+
+    /**
+     * Gets the start time of the oldest binary being stored, or {@link Long#MAX_VALUE} if there is none.
+     */
+    protected long getOldestStoreStartTime() {
+        return storeStartTimes.values().stream().mapToLong(Long::longValue).min().orElse(Long.MAX_VALUE);
+    }
+
+    protected void storeChunk(String digest, byte[] buf, int length) throws IOException {
+        File file = getFileForChunk(digest, true);
+        if (file.exists()) {
+            // already stored by another binary, update date for the GC
+            touch(file);
+            return;
+        }
+        File tmp = File.createTempFile("chunk_", ".tmp", tmpDir);
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(buf, 0, length);
+            }
+            atomicMove(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    protected static MessageDigest getMessageDigest(String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads the digests of the chunks of a binary.
+     */
+    public List<String> readManifest(String digest) throws IOException {
+        File file = getFileForDigest(digest, false);
+        if (file == null || !file.exists()) {
+            throw new IOException("Unknown binary: " + digest);
+        }
+        return readManifest(file);
+    }
+
+    protected List<String> readManifest(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.US_ASCII))) {
+            List<String> chunks = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    chunks.add(line);
+                }
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * Gets a stream reading the chunks of a binary, each chunk being opened only when reached.
+     */
+    public InputStream getStream(String digest) throws IOException {
+        Iterator<String> chunks = readManifest(digest).iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+
+            @Override
+            public boolean hasMoreElements() {
+                return chunks.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String chunk = chunks.next();
+                try {
+                    return new FileInputStream(getFileForChunk(chunk, false));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Missing chunk " + chunk + " for binary: " + digest, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets a file with the assembled content of a binary, in the assembled files cache.
+     * <p>
+     * Adding the file to the cache may delete the least recently used assembled files, so callers must not keep the
+     * returned file around for later use.
+     */
+    public File getAssembledFile(String digest) throws IOException {
+        File file = new File(assembledDir, digest);
+        synchronized (assembledFiles) {
+            if (assembledFiles.get(digest) != null && file.exists()) {
+                return file;
+            }
+        }
+        File tmp = File.createTempFile("assemble_", ".tmp", tmpDir);
+        try {
+            try (InputStream in = getStream(digest); OutputStream out = new FileOutputStream(tmp)) {
+                IOUtils.copy(in, out);
+            }
+            atomicMove(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+        addAssembledFile(digest, file.length());
+        return file;
+    }
+
+    /**
+     * Records an assembled file in the cache, and deletes the least recently used ones above the maximum cache size.
+     * The file just added is never deleted.
+     */
+    protected void addAssembledFile(String digest, long length) {
+        synchronized (assembledFiles) {
+            Long previous = assembledFiles.put(digest, Long.valueOf(length));
+            assembledFilesSize += length - (previous == null ? 0 : previous.longValue());
+            Iterator<Entry<String, Long>> it = assembledFiles.entrySet().iterator();
+            while (assembledFilesSize > assembledCacheSize && it.hasNext()) {
+                Entry<String, Long> es = it.next();
+                if (es.getKey().equals(digest)) {
+                    continue;
+                }
+                it.remove();
+                assembledFilesSize -= es.getValue().longValue();
+                FileUtils.deleteQuietly(new File(assembledDir, es.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Deletes the assembled files of the binaries whose manifest doesn't exist anymore.
+     */
+    protected void removeDeletedAssembledFiles() {
+        synchronized (assembledFiles) {
+            Iterator<Entry<String, Long>> it = assembledFiles.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry<String, Long> es = it.next();
+                String digest = es.getKey();
+                File manifest = getFileForDigest(digest, false);
+                if (manifest == null || !manifest.exists()) {
+                    it.remove();
+                    assembledFilesSize -= es.getValue().longValue();
+                    FileUtils.deleteQuietly(new File(assembledDir, digest));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the total size of the assembled files currently cached.
+     */
+    public long getAssembledFilesSize() {
+        synchronized (assembledFiles) {
+            return assembledFilesSize;
+        }
+    }
+
+    /**
+     * Garbage collector marking and sweeping both the manifests and the chunks.
+     * <p>
+     * A chunk is kept as long as one marked binary uses it. The status counts the binaries using their manifests, and
+     * the sizes using the chunks actually stored.
+     */
+    public static class ChunkingBinaryGarbageCollector extends DefaultBinaryGarbageCollector {
+
+        public ChunkingBinaryGarbageCollector(ChunkingBinaryManager binaryManager) {
+            super(binaryManager);
+        }
+
+        protected ChunkingBinaryManager getChunkingBinaryManager() {
+            return (ChunkingBinaryManager) binaryManager;
+        }
+
+        @Override
+        public void mark(String digest) {
+            ChunkingBinaryManager cbm = getChunkingBinaryManager();
+            File file = cbm.getFileForDigest(digest, false);
+            if (!file.exists()) {
+                log.error("Unknown file digest: " + digest);
+                return;
+            }
+            touch(file);
+            List<String> chunks;
+            try {
+                chunks = cbm.readManifest(file);
+            } catch (IOException e) {
+                log.error("Cannot read manifest for digest: " + digest, e);
+                return;
+            }
+            for (String chunk : chunks) {
+                File chunkFile = cbm.getFileForChunk(chunk, false);
+                if (chunkFile.exists()) {
+                    touch(chunkFile);
+                } else {
+                    log.error("Missing chunk: " + chunk + " for digest: " + digest);
+                }
+            }
+        }
+
+        @Override
+        public void stop(boolean delete) {
+            if (startTime == 0) {
+                throw new RuntimeException("Not started");
+            }
+            long minTime = startTime - TIME_RESOLUTION;
+            // manifests
+            deleteOld(binaryManager.getStorageDir(), minTime, 0, delete);
+            BinaryManagerStatus manifestsStatus = status;
+            // chunks, except those of the binaries being stored, whose manifest doesn't exist yet
+            ChunkingBinaryManager cbm = getChunkingBinaryManager();
+            long minChunkTime = Math.min(minTime, cbm.getOldestStoreStartTime() - TIME_RESOLUTION);
+            status = new BinaryManagerStatus();
+            deleteOld(cbm.getChunksDir(), minChunkTime, 0, delete);
+            BinaryManagerStatus chunksStatus = status;
+            status = manifestsStatus;
+            status.sizeBinaries = chunksStatus.sizeBinaries;
+            status.sizeBinariesGC = chunksStatus.sizeBinariesGC;
+            status.gcDuration = System.currentTimeMillis() - startTime;
+            startTime = 0;
+            if (delete) {
+                // don't serve assembled files whose chunks may be gone
+                getChunkingBinaryManager().removeDeletedAssembledFiles();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Splits a stream into content-defined chunks.
+ * <p>
+ * Chunk boundaries are found using a Gear rolling hash over the last 64 bytes, so that they only depend on the local
+ * content: inserting or removing bytes in a stream only changes the chunks around the modification, and the other
+ * chunks are identical to the ones of the original stream.
+ * <p>
+ * Chunks are at least {@code minSize} bytes (except for the last one), at most {@code maxSize} bytes, and
+ * {@code averageSize} bytes on average for random content.
+ *
+ * @since 11.1
+ */
+public class ContentDefinedChunker {
+
+    /** Random values for each byte. The seed is fixed as boundaries must never change for a given content. */
+    protected static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5EED_C4A1_4E5L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    protected final InputStream in;
+
+    protected final int minSize;
+
+    protected final int maxSize;
+
+    /** Mask on the high bits of the hash, a boundary is found when they are all 0. */
+    protected final long mask;
+
+    protected final byte[] buf;
+
+    /** Number of bytes available in the buffer. */
+    protected int filled;
+
+    /** Length of the last chunk returned, at the start of the buffer. */
+    protected int last;
+
+    protected boolean eof;
+
+    /**
+     * Constructs a chunker for the given stream.
+     *
+     * @param in the stream, which is not closed by this chunker
+     * @param minSize the minimum chunk size
+     * @param averageSize the average chunk size, must be a power of 2
+     * @param maxSize the maximum chunk size
+     */
+    public ContentDefinedChunker(InputStream in, int minSize, int averageSize, int maxSize) {
+        checkSizes(minSize, averageSize, maxSize);
+        this.in = in;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        mask = bits == 0 ? 0 : -1L << (64 - bits);
+        buf = new byte[maxSize];
+    }
+
+    /**
+     * Checks that the given chunk sizes are consistent.
+     *
+     * @throws IllegalArgumentException if the sizes are invalid
+     */
+    public static void checkSizes(int minSize, int averageSize, int maxSize) {
+        if (Integer.bitCount(averageSize) != 1) {
+            throw new IllegalArgumentException("Average chunk size must be a power of 2: " + averageSize);
+        }
+        if (minSize <= 0 || minSize > averageSize || averageSize > maxSize) {
+            throw new IllegalArgumentException(
+                    "Invalid chunk sizes: min=" + minSize + ", average=" + averageSize + ", max=" + maxSize);
+        }
+    }
+
+    /**
+     * Reads the next chunk, which is then available at the start of {@link #getBuffer}.
+     *
+     * @return the length of the chunk, or {@code 0} at the end of the stream
+     */
+    public int next() throws IOException {
+        if (last > 0) {
+            // discard previous chunk
+            filled -= last;
+            System.arraycopy(buf, last, buf, 0, filled);
+            last = 0;
+        }
+        while (!eof && filled < maxSize) {
+            int n = in.read(buf, filled, maxSize - filled);
+            if (n == -1) {
+                eof = true;
+            } else {
+                filled += n;
+            }
+        }
+        last = findBoundary();
+        return last;
+    }
+
+    /**
+     * Gets the buffer holding the last chunk returned by {@link #next}.
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    protected int findBoundary() {
+        if (filled <= minSize) {
+            return filled;
+        }
+        long hash = 0;
+        // bytes before the minimum size cannot be a boundary, but contribute to the hash
+        for (int i = Math.max(0, minSize - 64); i < minSize; i++) {
+            hash = (hash << 1) + GEAR[buf[i] & 0xFF];
+        }
+        for (int i = minSize; i < filled; i++) {
+            hash = (hash << 1) + GEAR[buf[i] & 0xFF];
+            if ((hash & mask) == 0) {
+                return i + 1;
+            }
+        }
+        // filled is at most maxSize
+        return filled;
+    }
+
+}
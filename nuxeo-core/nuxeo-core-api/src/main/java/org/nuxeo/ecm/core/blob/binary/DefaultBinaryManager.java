@@ -81,6 +81,7 @@ public class DefaultBinaryManager extends LocalBinaryManager {
         } else {
             blob.moveTo(digestFile);
         }
+        recordCreated(digest);
         return digest;
     }
 
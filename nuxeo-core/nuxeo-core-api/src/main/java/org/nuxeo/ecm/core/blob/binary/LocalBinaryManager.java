@@ -54,6 +54,10 @@ import org.nuxeo.runtime.trackers.files.FileEventTracker;
  * <li><em>tmp/</em> temporary storage during creation,</li>
  * <li><em>config.xml</em> a file containing the configuration used.</li>
  * </ul>
+ * <p>
+ * The garbage collector sweeps in parallel when the {@code gcParallelism} property is set, and incrementally when the
+ * {@code gcKeyValueStore} property names a key/value store to hold its mark set, see
+ * {@link ParallelBinaryGarbageCollector}.
  *
  * @author Florent Guillaume
  * @since 5.6
@@ -72,10 +76,22 @@ public class LocalBinaryManager extends AbstractBinaryManager {
 
     public static final String CONFIG_FILE = "config.xml";
 
+    /** @since 11.1 */
+    public static final String PROP_GC_PARALLELISM = "gcParallelism";
+
+    /** @since 11.1 */
+    public static final String PROP_GC_KEY_VALUE_STORE = "gcKeyValueStore";
+
     protected File storageDir;
 
     protected File tmpDir;
 
+    /** @since 11.1 */
+    protected int gcParallelism;
+
+    /** @since 11.1 */
+    protected String gcKeyValueStore;
+
     @Override
     public void initialize(String blobProviderId, Map<String, String> properties) throws IOException {
         super.initialize(blobProviderId, properties);
@@ -117,6 +133,11 @@ public class LocalBinaryManager extends AbstractBinaryManager {
         storageDir.mkdirs();
         tmpDir.mkdirs();
         descriptor = getDescriptor(new File(base, CONFIG_FILE));
+        String parallelism = properties.get(PROP_GC_PARALLELISM);
+        if (StringUtils.isNotBlank(parallelism)) {
+            gcParallelism = Integer.parseInt(parallelism.trim());
+        }
+        gcKeyValueStore = StringUtils.trimToNull(properties.get(PROP_GC_KEY_VALUE_STORE));
         createGarbageCollector();
 
         // be sure FileTracker won't steal our files !
@@ -205,6 +226,7 @@ public class LocalBinaryManager extends AbstractBinaryManager {
              */
             File file = getFileForDigest(digest, true);
             atomicMove(tmp, file);
+            recordCreated(digest);
             return digest;
         } finally {
             tmp.delete();
@@ -254,7 +276,23 @@ public class LocalBinaryManager extends AbstractBinaryManager {
     }
 
     protected void createGarbageCollector() {
-        garbageCollector = new DefaultBinaryGarbageCollector(this);
+        if (gcParallelism > 0 || gcKeyValueStore != null) {
+            int parallelism = gcParallelism > 0 ? gcParallelism : Runtime.getRuntime().availableProcessors();
+            garbageCollector = new ParallelBinaryGarbageCollector(this, parallelism, gcKeyValueStore);
+        } else {
+            garbageCollector = new DefaultBinaryGarbageCollector(this);
+        }
+    }
+
+    /**
+     * Records a newly stored binary for an incremental garbage collector.
+     *
+     * @since 11.1
+     */
+    protected void recordCreated(String digest) {
+        if (garbageCollector instanceof ParallelBinaryGarbageCollector) {
+            ((ParallelBinaryGarbageCollector) garbageCollector).created(digest);
+        }
     }
 
     public static class DefaultBinaryGarbageCollector implements BinaryGarbageCollector {
@@ -0,0 +1,345 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.blob.binary.LocalBinaryManager.DefaultBinaryGarbageCollector;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.kv.KeyValueStoreProvider;
+
+/**
+ * Garbage collector for a {@link LocalBinaryManager} sweeping in parallel and, when a key/value store is configured,
+ * incrementally.
+ * <p>
+ * The sweep is sharded by digest prefix (the top-level directories of the storage) and run on a fork-join pool.
+ * <p>
+ * In incremental mode, the mark set is kept in the key/value store instead of touching the files: each marked digest
+ * is associated to the generation of the last run that marked it. Newly stored binaries are recorded as well. After
+ * a first full sweep, a run only considers the binaries dereferenced since the previous run (marked by a previous
+ * generation but not by this one) and the binaries created since then, without walking the storage.
+ *
+ * @since 11.1
+ */
+public class ParallelBinaryGarbageCollector extends DefaultBinaryGarbageCollector {
+
+    private static final Log log = LogFactory.getLog(ParallelBinaryGarbageCollector.class);
+
+    protected static final String GENERATION = "generation";
+
+    protected static final String CHECKPOINT = "checkpoint";
+
+    protected static final String MARKED = "m:";
+
+    protected static final String CREATED = "c:";
+
+    /** Number of keys read from the key/value store at once. */
+    protected static final int BATCH_SIZE = 1000;
+
+    protected final int parallelism;
+
+    protected final String keyValueStoreName;
+
+    protected final String keyPrefix;
+
+    protected KeyValueStore kv;
+
+    /** Generation of the current run, in incremental mode. */
+    protected long generation;
+
+    public ParallelBinaryGarbageCollector(LocalBinaryManager binaryManager, int parallelism,
+            String keyValueStoreName) {
+        super(binaryManager);
+        this.parallelism = parallelism;
+        this.keyValueStoreName = keyValueStoreName;
+        keyPrefix = "binarygc:" + binaryManager.blobProviderId + ":";
+    }
+
+    protected boolean isIncremental() {
+        return keyValueStoreName != null;
+    }
+
+    protected KeyValueStore getKeyValueStore() {
+        if (kv == null) {
+            kv = Framework.getService(KeyValueService.class).getKeyValueStore(keyValueStoreName);
+        }
+        return kv;
+    }
+
+    /**
+     * Records a binary newly stored by the binary manager, so that the next incremental run considers it.
+     */
+    public void created(String digest) {
+        if (isIncremental()) {
+            getKeyValueStore().put(keyPrefix + CREATED + digest, "");
+        }
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        if (isIncremental()) {
+            generation = getKeyValueStore().addAndGet(keyPrefix + GENERATION, 1);
+        }
+    }
+
+    @Override
+    public void mark(String digest) {
+        if (!isIncremental()) {
+            super.mark(digest);
+            return;
+        }
+        File file = binaryManager.getFileForDigest(digest, false);
+        if (!file.exists()) {
+            log.error("Unknown file digest: " + digest);
+            return;
+        }
+        String key = keyPrefix + MARKED + digest;
+        Long previous = getKeyValueStore().getLong(key);
+        if (previous != null && previous.longValue() == generation) {
+            // already marked by this run
+            return;
+        }
+        kv.put(key, Long.valueOf(generation));
+        status.numBinaries++;
+        status.sizeBinaries += file.length();
+    }
+
+    @Override
+    public void stop(boolean delete) {
+        if (startTime == 0) {
+            throw new RuntimeException("Not started");
+        }
+        long minTime = startTime - TIME_RESOLUTION;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            if (!isIncremental()) {
+                sweepAll(pool, minTime, delete);
+            } else {
+                boolean full = getKeyValueStore().getLong(keyPrefix + CHECKPOINT) == null;
+                if (full) {
+                    // first run, the mark set doesn't know about existing binaries
+                    sweepAll(pool, minTime, delete);
+                }
+                if (!full || delete) {
+                    // after a full sweep, only cleans up the keys
+                    sweepDereferenced(pool, minTime, delete);
+                    sweepCreated(pool, minTime, delete);
+                }
+                if (full && delete) {
+                    kv.put(keyPrefix + CHECKPOINT, Long.valueOf(startTime));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        status.gcDuration = System.currentTimeMillis() - startTime;
+        startTime = 0;
+    }
+
+    /**
+     * Walks the whole storage, each top-level directory being a shard swept in parallel.
+     */
+    protected void sweepAll(ForkJoinPool pool, long minTime, boolean delete) {
+        File[] shards = binaryManager.getStorageDir().listFiles();
+        if (shards == null) {
+            return;
+        }
+        List<BinaryManagerStatus> statuses = run(pool, () -> Arrays.stream(shards).parallel().map(shard -> {
+            BinaryManagerStatus shardStatus = new BinaryManagerStatus();
+            sweep(shard, minTime, delete, shardStatus);
+            return shardStatus;
+        }).collect(Collectors.toList()));
+        for (BinaryManagerStatus shardStatus : statuses) {
+            status.numBinaries += shardStatus.numBinaries;
+            status.sizeBinaries += shardStatus.sizeBinaries;
+            status.numBinariesGC += shardStatus.numBinariesGC;
+            status.sizeBinariesGC += shardStatus.sizeBinariesGC;
+        }
+    }
+
+    protected void sweep(File file, long minTime, boolean delete, BinaryManagerStatus shardStatus) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            Map<String, Long> marks = getMarks(files);
+            for (File f : files) {
+                if (marks != null && f.isFile()) {
+                    Long mark = marks.get(keyPrefix + MARKED + f.getName());
+                    if (mark != null && mark.longValue() == generation) {
+                        // marked by this run, already counted
+                        continue;
+                    }
+                }
+                sweep(f, minTime, delete, shardStatus);
+            }
+            if (file.list().length == 0) {
+                // empty directory
+                file.delete();
+            }
+        } else if (file.isFile() && file.canWrite()) {
+            long lastModified = file.lastModified();
+            long length = file.length();
+            if (lastModified == 0) {
+                log.error("Cannot read last modified for file: " + file);
+            } else if (lastModified < minTime) {
+                shardStatus.sizeBinariesGC += length;
+                shardStatus.numBinariesGC++;
+                if (delete && !file.delete()) {
+                    log.warn("Cannot gc file: " + file);
+                }
+            } else {
+                shardStatus.sizeBinaries += length;
+                shardStatus.numBinaries++;
+            }
+        }
+    }
+
+    /**
+     * Gets the marks of the files of a directory, or {@code null} if not in incremental mode.
+     */
+    protected Map<String, Long> getMarks(File[] files) {
+        if (!isIncremental()) {
+            return null;
+        }
+        List<String> keys = Arrays.stream(files)
+                                  .filter(File::isFile)
+                                  .map(f -> keyPrefix + MARKED + f.getName())
+                                  .collect(Collectors.toList());
+        return kv.getLongs(keys);
+    }
+
+    /**
+     * Sweeps the binaries marked by a previous run but not by this one.
+     */
+    protected void sweepDereferenced(ForkJoinPool pool, long minTime, boolean delete) {
+        String prefix = keyPrefix + MARKED;
+        List<String> candidates = new ArrayList<>();
+        try (Stream<String> keys = ((KeyValueStoreProvider) kv).keyStream(prefix)) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            keys.forEach(key -> {
+                batch.add(key);
+                if (batch.size() == BATCH_SIZE) {
+                    addDereferenced(batch, candidates);
+                    batch.clear();
+                }
+            });
+            addDereferenced(batch, candidates);
+        }
+        // the mark of a binary still present after this run is kept, a newly created binary is protected by its date
+        sweepCandidates(pool, candidates, prefix, minTime, delete, true);
+    }
+
+    protected void addDereferenced(List<String> keys, List<String> candidates) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        kv.getLongs(keys).forEach((key, mark) -> {
+            if (mark.longValue() < generation) {
+                candidates.add(key.substring(keyPrefix.length() + MARKED.length()));
+            }
+        });
+    }
+
+    /**
+     * Sweeps the binaries created since the previous run, if not marked by this one.
+     */
+    protected void sweepCreated(ForkJoinPool pool, long minTime, boolean delete) {
+        String prefix = keyPrefix + CREATED;
+        List<String> candidates;
+        try (Stream<String> keys = ((KeyValueStoreProvider) kv).keyStream(prefix)) {
+            candidates = keys.map(key -> key.substring(prefix.length())).collect(Collectors.toList());
+        }
+        sweepCandidates(pool, candidates, prefix, minTime, delete, false);
+    }
+
+    /**
+     * Sweeps the candidate digests in parallel.
+     *
+     * @param keepKey whether to keep the key of a candidate still present after the sweep
+     */
+    protected void sweepCandidates(ForkJoinPool pool, List<String> candidates, String prefix, long minTime,
+            boolean delete, boolean keepKey) {
+        LongAdder numBinariesGC = new LongAdder();
+        LongAdder sizeBinariesGC = new LongAdder();
+        run(pool, () -> {
+            candidates.parallelStream().forEach(digest -> {
+                String key = prefix + digest;
+                File file = binaryManager.getFileForDigest(digest, false);
+                if (file == null || !file.exists()) {
+                    // already deleted
+                    if (delete) {
+                        kv.put(key, (String) null);
+                    }
+                    return;
+                }
+                Long mark = kv.getLong(keyPrefix + MARKED + digest);
+                if (mark != null && mark.longValue() == generation) {
+                    // referenced, created binaries are now tracked by the mark set
+                    if (delete && !keepKey) {
+                        kv.put(key, (String) null);
+                    }
+                    return;
+                }
+                if (file.lastModified() >= minTime) {
+                    // created or stored again during this run, will be considered by the next one
+                    return;
+                }
+                numBinariesGC.increment();
+                sizeBinariesGC.add(file.length());
+                if (delete) {
+                    if (file.delete()) {
+                        kv.put(key, (String) null);
+                    } else {
+                        log.warn("Cannot gc file: " + file);
+                    }
+                }
+            });
+            return null;
+        });
+        status.numBinariesGC += numBinariesGC.sum();
+        status.sizeBinariesGC += sizeBinariesGC.sum();
+    }
+
+    protected static <T> T run(ForkJoinPool pool, Callable<T> task) {
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        } catch (ExecutionException e) {
+            throw new NuxeoException(e.getCause());
+        }
+    }
+
+}
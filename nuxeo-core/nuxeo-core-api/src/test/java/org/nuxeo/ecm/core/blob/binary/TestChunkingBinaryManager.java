@@ -0,0 +1,273 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.ecm.core.blob.binary.TestDefaultBinaryManager.countFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestChunkingBinaryManager {
+
+    protected ChunkingBinaryManager binaryManager;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("path", "binaries-chunks");
+        properties.put(ChunkingBinaryManager.PROP_CHUNK_MIN_SIZE, "1KB");
+        properties.put(ChunkingBinaryManager.PROP_CHUNK_AVERAGE_SIZE, "4KB");
+        properties.put(ChunkingBinaryManager.PROP_CHUNK_MAX_SIZE, "16KB");
+        properties.put(ChunkingBinaryManager.PROP_ASSEMBLED_CACHE_SIZE, "1MB");
+        binaryManager = new ChunkingBinaryManager();
+        binaryManager.initialize("repo", properties);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File directory = binaryManager.getStorageDir().getParentFile();
+        binaryManager.close();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    protected static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(1234).nextBytes(bytes);
+        return bytes;
+    }
+
+    // inserts a few bytes in the middle
+    protected static byte[] edit(byte[] bytes) {
+        byte[] edited = new byte[bytes.length + 10];
+        int middle = bytes.length / 2;
+        System.arraycopy(bytes, 0, edited, 0, middle);
+        System.arraycopy(bytes, middle, edited, middle + 10, bytes.length - middle);
+        return edited;
+    }
+
+    protected Binary store(byte[] bytes) throws Exception {
+        return binaryManager.getBinary(new ByteArrayInputStream(bytes));
+    }
+
+    // stream running an action once half of it was read, after waiting for the GC time threshold
+    protected static InputStream pausingStream(byte[] bytes, Runnable action) {
+        return new ByteArrayInputStream(bytes) {
+
+            protected boolean paused;
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (!paused && pos >= bytes.length / 2) {
+                    paused = true;
+                    try {
+                        Thread.sleep(3 * 1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException(e);
+                    }
+                    action.run();
+                }
+                return super.read(b, off, len);
+            }
+        };
+    }
+
+    @Test
+    public void testChunkerIsDeterministic() throws Exception {
+        byte[] bytes = randomBytes(200_000);
+        List<String> chunks1 = binaryManager.readManifest(store(bytes).getDigest());
+        List<String> chunks2 = binaryManager.readManifest(store(edit(bytes)).getDigest());
+        Set<String> shared = new HashSet<>(chunks1);
+        shared.retainAll(chunks2);
+        assertTrue(chunks1.size() > 10);
+        // only the chunks around the edit differ
+        assertTrue(shared.toString(), shared.size() >= chunks1.size() - 2);
+    }
+
+    @Test
+    public void testStoreAndRead() throws Exception {
+        assertNull(binaryManager.getBinary("d25ea4f4642073b7f218024d397dbaef"));
+
+        byte[] bytes = randomBytes(100_000);
+        Binary binary = store(bytes);
+        assertTrue(binary instanceof ChunkedBinary);
+        String digest = binary.getDigest();
+
+        binary = binaryManager.getBinary(digest);
+        assertNotNull(binary);
+        try (InputStream in = binary.getStream()) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(in));
+        }
+        File file = binary.getFile();
+        assertArrayEquals(bytes, FileUtils.readFileToByteArray(file));
+
+        // empty binary
+        binary = store(new byte[0]);
+        try (InputStream in = binary.getStream()) {
+            assertEquals(0, IOUtils.toByteArray(in).length);
+        }
+    }
+
+    @Test
+    public void testAssembledFilesCacheEviction() throws Exception {
+        byte[] bytes1 = randomBytes(400_000);
+        byte[] bytes2 = edit(bytes1);
+        byte[] bytes3 = edit(bytes2);
+        Binary binary1 = store(bytes1);
+        Binary binary2 = store(bytes2);
+        Binary binary3 = store(bytes3);
+        File file1 = binary1.getFile();
+        File file2 = binary2.getFile();
+        assertEquals(bytes1.length + bytes2.length, binaryManager.getAssembledFilesSize());
+
+        // access the first file again so that the second one is the least recently used
+        assertEquals(file1, binary1.getFile());
+        File file3 = binary3.getFile();
+        assertTrue(file1.exists());
+        assertFalse(file2.exists());
+        assertTrue(file3.exists());
+        assertEquals(bytes1.length + bytes3.length, binaryManager.getAssembledFilesSize());
+
+        // an evicted file is assembled again
+        file2 = binary2.getFile();
+        assertArrayEquals(bytes2, FileUtils.readFileToByteArray(file2));
+        assertTrue(binaryManager.getAssembledFilesSize() <= 1024 * 1024);
+    }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        byte[] bytes = randomBytes(200_000);
+        store(bytes);
+        int chunks = countFiles(binaryManager.getChunksDir());
+        long size = FileUtils.sizeOfDirectory(binaryManager.getChunksDir());
+        assertEquals(bytes.length, size);
+
+        // same content, nothing new stored
+        store(bytes);
+        assertEquals(1, countFiles(binaryManager.getStorageDir()));
+        assertEquals(chunks, countFiles(binaryManager.getChunksDir()));
+
+        // edited content, only a few new chunks
+        store(edit(bytes));
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+        int newChunks = countFiles(binaryManager.getChunksDir()) - chunks;
+        assertTrue(String.valueOf(newChunks), newChunks > 0 && newChunks <= 2);
+    }
+
+    @Test
+    public void testGarbageCollector() throws Exception {
+        byte[] bytes = randomBytes(200_000);
+        byte[] edited = edit(bytes);
+        String digest = store(bytes).getDigest();
+        String editedDigest = store(edited).getDigest();
+        File assembled = binaryManager.getBinary(digest).getFile();
+        File editedAssembled = binaryManager.getBinary(editedDigest).getFile();
+        int chunks = binaryManager.readManifest(digest).size();
+        int allChunks = countFiles(binaryManager.getChunksDir());
+
+        // sleep before GC to pass its time threshold
+        Thread.sleep(3 * 1000);
+
+        // keep only the edited binary
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+        gc.start();
+        gc.mark(editedDigest);
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(1, status.numBinariesGC);
+        assertEquals(edited.length, status.sizeBinaries);
+        assertEquals(FileUtils.sizeOfDirectory(binaryManager.getChunksDir()), status.sizeBinaries);
+        assertTrue(status.sizeBinariesGC > 0 && status.sizeBinariesGC < bytes.length / 2);
+
+        // only the chunks specific to the original binary are gone
+        assertNull(binaryManager.getBinary(digest));
+        // as well as its assembled file
+        assertFalse(assembled.exists());
+        assertTrue(editedAssembled.exists());
+        assertEquals(edited.length, binaryManager.getAssembledFilesSize());
+        int remainingChunks = countFiles(binaryManager.getChunksDir());
+        assertTrue(remainingChunks < allChunks);
+        assertTrue(remainingChunks >= chunks - 2);
+        try (InputStream in = binaryManager.getBinary(editedDigest).getStream()) {
+            assertArrayEquals(edited, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void testGarbageCollectorStartedDuringStore() throws Exception {
+        byte[] bytes = randomBytes(200_000);
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+        // the GC starts while the first chunks are already stored, and stops after the store
+        Binary binary = binaryManager.getBinary(pausingStream(bytes, gc::start));
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(0, status.numBinariesGC);
+        assertEquals(0, status.sizeBinariesGC);
+
+        // all the chunks of the recent binary are kept
+        try (InputStream in = binaryManager.getBinary(binary.getDigest()).getStream()) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void testGarbageCollectorDuringStore() throws Exception {
+        byte[] bytes = randomBytes(200_000);
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+        // the GC runs entirely while the first chunks are stored but the manifest is not
+        Binary binary = binaryManager.getBinary(pausingStream(bytes, () -> {
+            gc.start();
+            gc.stop(true);
+        }));
+        assertEquals(0, gc.getStatus().numBinariesGC);
+        assertEquals(0, gc.getStatus().sizeBinariesGC);
+
+        try (InputStream in = binaryManager.getBinary(binary.getDigest()).getStream()) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(in));
+        }
+    }
+
+}
@@ -39,6 +39,9 @@ import org.junit.runner.RunWith;
 import org.nuxeo.common.Environment;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
@@ -146,6 +149,89 @@ public class TestDefaultBinaryManager {
         binaryManager.close();
     }
 
+    @Test
+    public void testParallelGarbageCollector() throws Exception {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo",
+                Collections.singletonMap(LocalBinaryManager.PROP_GC_PARALLELISM, "4"));
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+        assertTrue(gc instanceof ParallelBinaryGarbageCollector);
+
+        byte[] bytes = CONTENT.getBytes("UTF-8");
+        binaryManager.getBinary(Blobs.createBlob(CONTENT));
+        binaryManager.getBinary(Blobs.createBlob("abc"));
+        binaryManager.getBinary(Blobs.createBlob("defg"));
+        assertEquals(3, countFiles(binaryManager.getStorageDir()));
+
+        // sleep before GC to pass its time threshold
+        Thread.sleep(3 * 1000);
+
+        gc.start();
+        gc.mark(CONTENT_MD5);
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(bytes.length, status.sizeBinaries);
+        assertEquals(2, status.numBinariesGC);
+        assertEquals(7, status.sizeBinariesGC);
+        assertEquals(1, countFiles(binaryManager.getStorageDir()));
+
+        binaryManager.close();
+    }
+
+    @Test
+    @Deploy("org.nuxeo.runtime.kv")
+    public void testIncrementalGarbageCollector() throws Exception {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo",
+                Collections.singletonMap(LocalBinaryManager.PROP_GC_KEY_VALUE_STORE, "default"));
+        KeyValueStore kv = Framework.getService(KeyValueService.class).getKeyValueStore("default");
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+
+        byte[] bytes = CONTENT.getBytes("UTF-8");
+        binaryManager.getBinary(Blobs.createBlob(CONTENT));
+        binaryManager.getBinary(Blobs.createBlob("abc"));
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+
+        // sleep before GC to pass its time threshold
+        Thread.sleep(3 * 1000);
+
+        // first run does a full sweep
+        gc.start();
+        gc.mark(CONTENT_MD5);
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(bytes.length, status.sizeBinaries);
+        assertEquals(1, status.numBinariesGC);
+        assertEquals(3, status.sizeBinariesGC);
+        assertEquals(1, countFiles(binaryManager.getStorageDir()));
+        assertNotNull(kv.getLong("binarygc:repo:m:" + CONTENT_MD5));
+        assertNull(kv.getString("binarygc:repo:c:900150983cd24fb0d6963f7d28e17f72"));
+
+        // new binary, then the first one is dereferenced
+        binaryManager.getBinary(Blobs.createBlob("defg"));
+        String digest = "025e4da7edac35ede583f5e8d51aa7ec";
+        assertNotNull(kv.getString("binarygc:repo:c:" + digest));
+        Thread.sleep(3 * 1000);
+
+        // next run only considers the created and dereferenced binaries
+        gc.start();
+        gc.mark(digest);
+        gc.stop(true);
+        status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(4, status.sizeBinaries);
+        assertEquals(1, status.numBinariesGC);
+        assertEquals(bytes.length, status.sizeBinariesGC);
+        assertEquals(1, countFiles(binaryManager.getStorageDir()));
+        assertNotNull(binaryManager.getBinary(digest));
+        assertNull(kv.getLong("binarygc:repo:m:" + CONTENT_MD5));
+        assertNull(kv.getString("binarygc:repo:c:" + digest));
+
+        binaryManager.close();
+    }
+
     @Test
     public void testTemporaryCopies() throws IOException {
         DefaultBinaryManager binaryManager = new DefaultBinaryManager();
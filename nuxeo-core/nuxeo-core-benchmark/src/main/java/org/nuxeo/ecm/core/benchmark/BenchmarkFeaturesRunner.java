@@ -0,0 +1,76 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import java.util.List;
+
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.InitializationError;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+/**
+ * A {@link FeaturesRunner} that boots the features declared on a configuration class outside of JUnit, so that a JMH
+ * state can reuse the test infrastructure (runtime harness, repository and blob provider contributions) to get a
+ * working {@link org.nuxeo.ecm.core.api.CoreSession}.
+ * <p>
+ * The configuration class is only used for its annotations, it doesn't need any test method.
+ *
+ * @since 11.1
+ */
+public class BenchmarkFeaturesRunner extends FeaturesRunner {
+
+    protected boolean started;
+
+    public BenchmarkFeaturesRunner(Class<?> configClass) throws InitializationError {
+        super(configClass);
+    }
+
+    @Override
+    protected void collectInitializationErrors(List<Throwable> errors) {
+        // configuration class has no test method
+    }
+
+    /**
+     * Initializes and starts all the features, the runtime is ready when this method returns.
+     */
+    public void startFeatures() throws Exception {
+        injector = onInjector(new RunNotifier());
+        initialize();
+        start();
+        beforeRun();
+        injector = injector.createChildInjector(loader.onModule());
+        started = true;
+    }
+
+    /**
+     * Stops all the features, in reverse order.
+     */
+    public void stopFeatures() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        try {
+            afterRun();
+        } finally {
+            stop();
+        }
+    }
+
+}
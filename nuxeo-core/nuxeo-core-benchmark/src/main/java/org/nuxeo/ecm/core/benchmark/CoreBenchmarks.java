@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the core benchmarks with the GC profiler enabled, so that allocation rates ({@code gc.alloc.rate.norm}) are
+ * reported next to throughput, and writes the results as JSON so that they can be compared between releases.
+ * <p>
+ * Arguments: an optional regexp of the benchmarks to run, and an optional path of the JSON result file.
+ *
+ * @since 11.1
+ */
+public class CoreBenchmarks {
+
+    public static final String DEFAULT_INCLUDE = ".*Benchmark.*";
+
+    public static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+        String result = args.length > 1 ? args[1] : DEFAULT_RESULT;
+        Options options = new OptionsBuilder().include(include)
+                                              .addProfiler(GCProfiler.class)
+                                              .resultFormat(ResultFormatType.JSON)
+                                              .result(result)
+                                              .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import static org.nuxeo.ecm.core.test.StorageConfiguration.CORE_PROPERTY;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * JMH state holding a started runtime and an open {@link CoreSession} on the repository selected by the
+ * {@code backend} parameter: {@code mem} for the in-memory DBS repository, {@code vcs} for an embedded H2 VCS
+ * repository.
+ * <p>
+ * A transaction is opened for each measurement iteration and committed at its end.
+ *
+ * @since 11.1
+ */
+@State(Scope.Benchmark)
+public class CoreSessionState {
+
+    /**
+     * Configuration used to boot the runtime, only its annotations matter.
+     */
+    @Features(CoreFeature.class)
+    @RepositoryConfig(cleanup = Granularity.CLASS)
+    public static class Config {
+    }
+
+    @Param({ "mem", "vcs" })
+    public String backend;
+
+    /**
+     * Number of documents created in the benchmark folder before measuring.
+     */
+    @Param({ "1000" })
+    public int fixtureSize;
+
+    public CoreSession session;
+
+    public DocumentModel folder;
+
+    public List<DocumentRef> refs;
+
+    protected BenchmarkFeaturesRunner runner;
+
+    @Setup(Level.Trial)
+    public void setUpRuntime() throws Exception {
+        System.setProperty(CORE_PROPERTY, backend);
+        runner = new BenchmarkFeaturesRunner(Config.class);
+        runner.startFeatures();
+        session = runner.getFeature(CoreFeature.class).getCoreSession();
+        TransactionHelper.runInTransaction(this::createFixture);
+    }
+
+    protected void createFixture() {
+        folder = session.createDocumentModel("/", "bench", "Folder");
+        folder = session.createDocument(folder);
+        refs = new ArrayList<>(fixtureSize);
+        for (int i = 0; i < fixtureSize; i++) {
+            DocumentModel doc = session.createDocumentModel(folder.getPathAsString(), "doc" + i, "File");
+            doc.setPropertyValue("dc:title", "Document " + i);
+            doc.setPropertyValue("dc:description", i % 2 == 0 ? "even" : "odd");
+            refs.add(session.createDocument(doc).getRef());
+        }
+        session.save();
+    }
+
+    /**
+     * Returns the reference of one of the fixture documents.
+     */
+    public DocumentRef ref(int i) {
+        return refs.get(Math.floorMod(i, refs.size()));
+    }
+
+    @Setup(Level.Iteration)
+    public void startTransaction() {
+        TransactionHelper.startTransaction();
+    }
+
+    @TearDown(Level.Iteration)
+    public void commitTransaction() {
+        session.save();
+        TransactionHelper.commitOrRollbackTransaction();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownRuntime() {
+        session = null;
+        runner.stopFeatures();
+    }
+
+}
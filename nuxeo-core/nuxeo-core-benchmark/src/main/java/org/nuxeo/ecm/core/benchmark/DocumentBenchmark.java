@@ -0,0 +1,87 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link org.nuxeo.ecm.core.api.CoreSession} document operations: create, get, save and NXQL
+ * query.
+ *
+ * @since 11.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentBenchmark {
+
+    protected int counter;
+
+    @Benchmark
+    public DocumentModel createDocument(CoreSessionState state) {
+        DocumentModel doc = state.session.createDocumentModel(state.folder.getPathAsString(), "new" + counter++,
+                "File");
+        doc.setPropertyValue("dc:title", "New document");
+        doc = state.session.createDocument(doc);
+        state.session.save();
+        return doc;
+    }
+
+    @Benchmark
+    public DocumentModel getDocument(CoreSessionState state) {
+        return state.session.getDocument(state.ref(counter++));
+    }
+
+    @Benchmark
+    public DocumentModel saveDocument(CoreSessionState state) {
+        DocumentModel doc = state.session.getDocument(state.ref(counter));
+        doc.setPropertyValue("dc:description", "modified " + counter++);
+        doc = state.session.saveDocument(doc);
+        state.session.save();
+        return doc;
+    }
+
+    @Benchmark
+    public DocumentModelList queryChildren(CoreSessionState state) {
+        return state.session.query("SELECT * FROM File WHERE ecm:parentId = '" + state.folder.getId()
+                + "' AND dc:description = 'even' ORDER BY dc:title", 20);
+    }
+
+    @Benchmark
+    public DocumentModelList queryByTitle(CoreSessionState state) {
+        return state.session.query(
+                "SELECT * FROM File WHERE dc:title = 'Document " + Math.floorMod(counter++, state.fixtureSize) + "'");
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.kv.MemKeyValueStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link KeyValueStore} multi-key operations compared to the equivalent per-key loops, on the
+ * memory implementation. Each operation handles {@link #batchSize} keys.
+ * <p>
+ * The memory store only saves lock acquisitions, the network-backed stores (Redis, SQL, MongoDB) also save one round
+ * trip per key.
+ *
+ * @since 11.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyValueStoreBenchmark {
+
+    @Param({ "10", "100" })
+    public int batchSize;
+
+    protected KeyValueStore store;
+
+    protected List<String> keys;
+
+    protected Map<String, byte[]> values;
+
+    protected Map<String, Long> deltas;
+
+    @Setup
+    public void setUp() {
+        store = new MemKeyValueStore();
+        keys = new ArrayList<>(batchSize);
+        values = new HashMap<>();
+        deltas = new HashMap<>();
+        byte[] value = new byte[64];
+        for (int i = 0; i < batchSize; i++) {
+            String key = "key" + i;
+            keys.add(key);
+            values.put(key, value);
+            deltas.put("counter" + i, Long.valueOf(1));
+        }
+        store.put(values, 0);
+    }
+
+    @Benchmark
+    public void putPerKey() {
+        values.forEach((key, value) -> store.put(key, value, 0));
+    }
+
+    @Benchmark
+    public void putBatch() {
+        store.put(values, 0);
+    }
+
+    @Benchmark
+    public int getPerKey() {
+        int n = 0;
+        for (String key : keys) {
+            if (store.get(key) != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int getBatch() {
+        return store.get(keys).size();
+    }
+
+    @Benchmark
+    public long addAndGetPerKey() {
+        long sum = 0;
+        for (Map.Entry<String, Long> en : deltas.entrySet()) {
+            sum += store.addAndGet(en.getKey(), en.getValue().longValue());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int addAndGetBatch() {
+        return store.addAndGet(deltas).size();
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.log.LogAppender;
+import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.chronicle.ChronicleLogManager;
+import org.nuxeo.lib.stream.log.kafka.KafkaLogManager;
+import org.nuxeo.lib.stream.log.kafka.KafkaUtils;
+import org.nuxeo.lib.stream.log.mmap.MMapLogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the nuxeo-stream {@link LogManager} implementations: append throughput, and append followed by a read
+ * of the same record, which is the path of a computation that forwards records to a downstream stream.
+ * <p>
+ * The local implementations ({@code chronicle} and {@code mmap}) are benchmarked by default. Kafka needs a running
+ * broker ({@code kafka.bootstrap.servers} system property, default {@code localhost:9092}), add it with
+ * {@code -p backend=kafka} when running JMH directly.
+ *
+ * @since 11.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class LogBenchmark {
+
+    protected static final String LOG_NAME = "benchmark";
+
+    protected static final String GROUP = "benchmark";
+
+    @Param({ "chronicle", "mmap" })
+    public String backend;
+
+    /**
+     * Size in bytes of the record payload.
+     */
+    @Param({ "100", "1000" })
+    public int recordSize;
+
+    protected Path basePath;
+
+    protected LogManager manager;
+
+    protected LogAppender<Record> appender;
+
+    protected LogTailer<Record> tailer;
+
+    protected Record record;
+
+    @Setup
+    public void setUp() throws IOException {
+        manager = createManager();
+        manager.createIfNotExists(LOG_NAME, 1);
+        appender = manager.getAppender(LOG_NAME);
+        tailer = manager.createTailer(GROUP, LOG_NAME);
+        tailer.toEnd();
+        record = Record.of("key", new byte[recordSize]);
+    }
+
+    protected LogManager createManager() throws IOException {
+        switch (backend) {
+        case "chronicle":
+            basePath = Files.createTempDirectory("nuxeo-log-benchmark");
+            return new ChronicleLogManager(basePath);
+        case "mmap":
+            basePath = Files.createTempDirectory("nuxeo-log-benchmark");
+            return new MMapLogManager(basePath);
+        case "kafka":
+            Properties producerProps = new Properties();
+            producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, KafkaUtils.getBootstrapServers());
+            Properties consumerProps = new Properties();
+            consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, KafkaUtils.getBootstrapServers());
+            consumerProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
+            return new KafkaLogManager("nuxeo-benchmark-" + System.currentTimeMillis() + "-", producerProps,
+                    consumerProps);
+        default:
+            throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tailer.close();
+        manager.delete(LOG_NAME);
+        manager.close();
+        if (basePath != null) {
+            FileUtils.deleteDirectory(basePath.toFile());
+        }
+    }
+
+    @Benchmark
+    public LogOffset append() {
+        return appender.append(0, record);
+    }
+
+    @Benchmark
+    public LogRecord<Record> appendAndRead() throws InterruptedException {
+        appender.append(0, record);
+        return tailer.read(Duration.ofSeconds(1));
+    }
+
+}
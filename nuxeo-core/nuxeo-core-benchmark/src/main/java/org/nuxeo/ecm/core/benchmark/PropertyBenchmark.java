@@ -0,0 +1,88 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of property reads through {@link DocumentModelImpl}, on a document already fetched from the repository
+ * (loaded data models) and on a freshly fetched one (lazy data model loading).
+ *
+ * @since 11.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PropertyBenchmark {
+
+    protected DocumentModel doc;
+
+    protected int counter;
+
+    @Setup(Level.Iteration)
+    public void fetchDocument(CoreSessionState state) {
+        doc = state.session.getDocument(state.ref(0));
+        // load the schemas read by the benchmarks
+        doc.getPropertyValue("dc:title");
+        doc.getPropertyValue("file:content");
+    }
+
+    @Benchmark
+    public Serializable getScalarProperty() {
+        return doc.getPropertyValue("dc:title");
+    }
+
+    @Benchmark
+    public Serializable getComplexProperty() {
+        return doc.getPropertyValue("file:content");
+    }
+
+    @Benchmark
+    public void getPrefetchedProperties(Blackhole blackhole) {
+        blackhole.consume(doc.getPropertyValue("dc:title"));
+        blackhole.consume(doc.getPropertyValue("dc:description"));
+        blackhole.consume(doc.getPropertyValue("dc:modified"));
+        blackhole.consume(doc.getPropertyValue("dc:creator"));
+    }
+
+    @Benchmark
+    public Serializable getPropertyOfFreshDocument(CoreSessionState state) {
+        return state.session.getDocument(state.ref(counter++)).getPropertyValue("dc:description");
+    }
+
+}
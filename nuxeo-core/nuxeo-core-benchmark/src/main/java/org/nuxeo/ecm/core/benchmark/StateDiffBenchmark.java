@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.benchmark;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.ListDiff;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.StateHelper;
+import org.nuxeo.ecm.core.storage.mem.MemRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the DBS {@link State} diff computation and application, as done by the transaction state on save and
+ * by {@link MemRepository#applyDiff(State, StateDiff)}. Doesn't need a running repository.
+ *
+ * @since 11.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class StateDiffBenchmark {
+
+    /**
+     * Number of scalar properties in the document state.
+     */
+    @Param({ "20", "100" })
+    public int properties;
+
+    protected State base;
+
+    protected State modified;
+
+    protected StateDiff diff;
+
+    @Setup
+    public void setUp() {
+        base = newState(properties);
+        modified = StateHelper.deepCopy(base);
+        for (int i = 0; i < properties; i += 5) {
+            modified.put("prop" + i, "modified" + i);
+        }
+        modified.put("contributors", new String[] { "Administrator", "bob", "jdoe" });
+        State sub = new State();
+        sub.put("name", "added.txt");
+        sub.put("length", Long.valueOf(42));
+        @SuppressWarnings("unchecked")
+        ArrayList<Serializable> files = (ArrayList<Serializable>) modified.get("files");
+        files.add(sub);
+        diff = StateHelper.diff(base, modified);
+    }
+
+    protected static State newState(int size) {
+        State state = new State();
+        state.put("ecm:id", "00000000-0000-0000-0000-000000000000");
+        state.put("ecm:primaryType", "File");
+        state.put("modified", Calendar.getInstance());
+        state.put("major", Long.valueOf(1));
+        state.put("isVersion", Boolean.TRUE);
+        for (int i = 0; i < size; i++) {
+            state.put("prop" + i, "value" + i);
+        }
+        state.put("contributors", new String[] { "Administrator", "bob" });
+        ArrayList<Serializable> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            State file = new State();
+            file.put("name", "file" + i + ".txt");
+            file.put("length", Long.valueOf(i));
+            files.add(file);
+        }
+        state.put("files", files);
+        return state;
+    }
+
+    @Benchmark
+    public StateDiff computeDiff() {
+        return StateHelper.diff(base, modified);
+    }
+
+    @Benchmark
+    public State applyDiff() {
+        State state = StateHelper.deepCopy(base);
+        MemRepository.applyDiff(state, diff);
+        return state;
+    }
+
+    @Benchmark
+    public State deepCopy() {
+        return StateHelper.deepCopy(base);
+    }
+
+    @Benchmark
+    public Serializable applyListDiff() {
+        ListDiff listDiff = new ListDiff();
+        listDiff.isArray = true;
+        listDiff.rpush = new ArrayList<>(Arrays.asList("alice"));
+        return MemRepository.applyDiff(base.get("contributors"), listDiff);
+    }
+
+}
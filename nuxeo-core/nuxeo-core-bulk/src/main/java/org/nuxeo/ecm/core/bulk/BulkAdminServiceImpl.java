@@ -82,6 +82,9 @@ public class BulkAdminServiceImpl implements BulkAdminService {
 
     public static final String BULK_SCROLL_CONTINUE_ON_FAILURE_PROPERTY = "nuxeo.core.bulk.scroller.continueOnFailure";
 
+    // @since 11.1
+    public static final String BULK_SCROLL_PARTITIONS_PROPERTY = "nuxeo.core.bulk.scroller.scroll.partitions";
+
     public static final int DEFAULT_STATUS_CONCURRENCY = 1;
 
     public static final int DEFAULT_STATUS_MAX_RETRIES = 3;
@@ -96,6 +99,9 @@ public class BulkAdminServiceImpl implements BulkAdminService {
 
     public static final int DEFAULT_SCROLL_KEEP_ALIVE = 60;
 
+    // @since 11.1
+    public static final int DEFAULT_SCROLL_PARTITIONS = 1;
+
     public static final Duration STOP_DURATION = Duration.ofSeconds(1);
 
     protected final Map<String, BulkActionDescriptor> descriptors;
@@ -150,10 +156,20 @@ public class BulkAdminServiceImpl implements BulkAdminService {
         int scrollSize = confService.getInteger(BULK_SCROLL_SIZE_PROPERTY, DEFAULT_SCROLL_SIZE);
         int scrollKeepAlive = confService.getInteger(BULK_SCROLL_KEEP_ALIVE_PROPERTY, DEFAULT_SCROLL_KEEP_ALIVE);
         boolean scrollProduceImmediate = confService.isBooleanTrue(BULK_SCROLL_PRODUCE_IMMEDIATE_PROPERTY);
-        streamProcessor = streamManager.registerAndCreateProcessor("bulk", getTopology(scrollSize, scrollKeepAlive, scrollProduceImmediate), settings);
+        int scrollPartitions = confService.getInteger(BULK_SCROLL_PARTITIONS_PROPERTY, DEFAULT_SCROLL_PARTITIONS);
+        streamProcessor = streamManager.registerAndCreateProcessor("bulk",
+                getTopology(scrollSize, scrollKeepAlive, scrollProduceImmediate, scrollPartitions), settings);
     }
 
     protected Topology getTopology(int scrollBatchSize, int scrollKeepAlive, boolean scrollProduceImmediate) {
+        return getTopology(scrollBatchSize, scrollKeepAlive, scrollProduceImmediate, DEFAULT_SCROLL_PARTITIONS);
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected Topology getTopology(int scrollBatchSize, int scrollKeepAlive, boolean scrollProduceImmediate,
+            int scrollPartitions) {
         List<String> mapping = new ArrayList<>();
         mapping.add(INPUT_1 + ":" + COMMAND_STREAM);
         int i = 1;
@@ -165,7 +181,7 @@ public class BulkAdminServiceImpl implements BulkAdminService {
         return Topology.builder()
                        .addComputation( //
                                () -> new BulkScrollerComputation(SCROLLER_NAME, actions.size() + 1, scrollBatchSize,
-                                       scrollKeepAlive, scrollProduceImmediate), //
+                                       scrollKeepAlive, scrollProduceImmediate, scrollPartitions), //
                                mapping)
                        .addComputation(() -> new BulkStatusComputation(STATUS_NAME),
                                Arrays.asList(INPUT_1 + ":" + STATUS_STREAM, //
@@ -0,0 +1,100 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+
+/**
+ * Splits an NXQL query into disjoint sub-queries on ranges of document ids, the union of the sub-queries returns the
+ * same documents as the original query.
+ * <p>
+ * Ranges are computed on the canonical UUID representation of the document ids.
+ *
+ * @since 11.1
+ */
+public class BulkQueryPartitions {
+
+    protected static final long RANGE_SIZE = 0x1_0000_0000L;
+
+    protected static final Pattern WHERE_PATTERN = Pattern.compile("\\s+WHERE\\s+", Pattern.CASE_INSENSITIVE);
+
+    protected static final Pattern ORDER_BY_PATTERN = Pattern.compile("\\s+ORDER\\s+BY\\s+", Pattern.CASE_INSENSITIVE);
+
+    private BulkQueryPartitions() {
+        // utility class
+    }
+
+    /**
+     * Returns the sub-queries matching each partition of document ids.
+     *
+     * @throws QueryParseException if the query is invalid
+     */
+    public static List<String> byIdRange(String nxql, int partitions) {
+        if (partitions <= 1) {
+            return Collections.singletonList(nxql);
+        }
+        SQLQuery query = SQLQueryParser.parse(nxql);
+        String head = nxql;
+        String orderBy = "";
+        if (query.getOrderByClause() != null) {
+            int index = -1;
+            Matcher matcher = ORDER_BY_PATTERN.matcher(nxql);
+            while (matcher.find()) {
+                index = matcher.start();
+            }
+            head = nxql.substring(0, index);
+            orderBy = nxql.substring(index);
+        }
+        if (query.getWhereClause() != null) {
+            Matcher matcher = WHERE_PATTERN.matcher(head);
+            if (!matcher.find()) {
+                throw new QueryParseException("Cannot find WHERE clause of: " + nxql);
+            }
+            // keep the original predicate precedence
+            head = head.substring(0, matcher.end()) + "(" + head.substring(matcher.end()) + ") AND ";
+        } else {
+            head += " WHERE ";
+        }
+        List<String> queries = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            List<String> predicates = new ArrayList<>(2);
+            if (i > 0) {
+                predicates.add(String.format("ecm:uuid >= '%s'", getBound(i, partitions)));
+            }
+            if (i < partitions - 1) {
+                predicates.add(String.format("ecm:uuid < '%s'", getBound(i + 1, partitions)));
+            }
+            queries.add(head + String.join(" AND ", predicates) + orderBy);
+        }
+        return queries;
+    }
+
+    protected static String getBound(int partition, int partitions) {
+        return String.format("%08x-0000-0000-0000-000000000000", RANGE_SIZE * partition / partitions);
+    }
+
+}
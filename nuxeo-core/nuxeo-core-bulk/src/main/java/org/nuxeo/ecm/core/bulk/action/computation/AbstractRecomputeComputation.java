@@ -0,0 +1,313 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bulk.action.computation;
+
+import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.BULK_KV_STORE_NAME;
+import static org.nuxeo.lib.stream.computation.log.ComputationRunner.NUXEO_METRICS_REGISTRY_NAME;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.lib.stream.computation.ComputationContext;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * Base class for bulk actions recomputing content derived from the document blobs, like thumbnails or picture views.
+ * <p>
+ * Documents of a batch are loaded with a single query, then each document goes through a pipeline:
+ * <ul>
+ * <li>source: extracts what needs to be recomputed, in the computation thread</li>
+ * <li>download: fetches the blobs, in a download thread</li>
+ * <li>conversion: computes the derived content, in a conversion thread</li>
+ * <li>save: updates the document, in the computation thread</li>
+ * </ul>
+ * The download and conversion stages must not use the session nor the document. The number of documents in the
+ * pipeline is bounded, the save stage is done in the document order.
+ * <p>
+ * Once a batch is committed its documents are recorded as completed, so that a command interrupted and processed again
+ * skips them. Each stage exposes a timer metric.
+ *
+ * @param <S> the source to recompute
+ * @param <R> the result of the conversion
+ * @since 11.1
+ */
+public abstract class AbstractRecomputeComputation<S, R> extends AbstractBulkComputation {
+
+    private static final Logger log = LogManager.getLogger(AbstractRecomputeComputation.class);
+
+    public static final String DOWNLOAD_CONCURRENCY_OPTION = "downloadConcurrency";
+
+    public static final int DOWNLOAD_CONCURRENCY_DEFAULT = 4;
+
+    public static final String CONVERSION_CONCURRENCY_OPTION = "conversionConcurrency";
+
+    public static final int CONVERSION_CONCURRENCY_DEFAULT = 2;
+
+    public static final String MAX_IN_FLIGHT_OPTION = "maxInFlight";
+
+    public static final int MAX_IN_FLIGHT_DEFAULT = 8;
+
+    protected static final String COMPLETED_PREFIX = "recomputed:";
+
+    // long enough to resume an interrupted command
+    protected static final long COMPLETED_TTL_SECONDS = 7 * 24 * 3_600;
+
+    protected final int downloadConcurrency;
+
+    protected final int conversionConcurrency;
+
+    protected final int maxInFlight;
+
+    protected final List<String> completedIds = new ArrayList<>();
+
+    protected ExecutorService downloadExecutor;
+
+    protected ExecutorService conversionExecutor;
+
+    protected Timer sourceTimer;
+
+    protected Timer downloadTimer;
+
+    protected Timer conversionTimer;
+
+    protected Timer saveTimer;
+
+    public AbstractRecomputeComputation(String name, Map<String, String> options) {
+        this(name, getOptionAsInteger(options, DOWNLOAD_CONCURRENCY_OPTION, DOWNLOAD_CONCURRENCY_DEFAULT),
+                getOptionAsInteger(options, CONVERSION_CONCURRENCY_OPTION, CONVERSION_CONCURRENCY_DEFAULT),
+                getOptionAsInteger(options, MAX_IN_FLIGHT_OPTION, MAX_IN_FLIGHT_DEFAULT));
+    }
+
+    public AbstractRecomputeComputation(String name, int downloadConcurrency, int conversionConcurrency,
+            int maxInFlight) {
+        super(name);
+        this.downloadConcurrency = downloadConcurrency;
+        this.conversionConcurrency = conversionConcurrency;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    @Override
+    public void init(ComputationContext context) {
+        super.init(context);
+        downloadExecutor = newExecutor("download", downloadConcurrency);
+        conversionExecutor = newExecutor("conversion", conversionConcurrency);
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(NUXEO_METRICS_REGISTRY_NAME);
+        sourceTimer = registry.timer(MetricRegistry.name("nuxeo", "bulk", "recompute", metadata.name(), "source"));
+        downloadTimer = registry.timer(MetricRegistry.name("nuxeo", "bulk", "recompute", metadata.name(), "download"));
+        conversionTimer = registry.timer(
+                MetricRegistry.name("nuxeo", "bulk", "recompute", metadata.name(), "conversion"));
+        saveTimer = registry.timer(MetricRegistry.name("nuxeo", "bulk", "recompute", metadata.name(), "save"));
+    }
+
+    protected ExecutorService newExecutor(String stage, int concurrency) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable,
+                    String.format("%s-%s-%d", metadata.name(), stage, threadNumber.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+            downloadExecutor = null;
+        }
+        if (conversionExecutor != null) {
+            conversionExecutor.shutdownNow();
+            conversionExecutor = null;
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected void processBatchOfDocuments(List<String> batch) {
+        completedIds.clear();
+        super.processBatchOfDocuments(batch);
+        // the transaction is committed
+        setCompleted(completedIds);
+    }
+
+    @Override
+    protected void compute(CoreSession session, List<String> ids, Map<String, Serializable> properties) {
+        List<String> idsToRecompute = getIdsToRecompute(ids);
+        if (idsToRecompute.isEmpty()) {
+            return;
+        }
+        Deque<InFlight<R>> pipeline = new ArrayDeque<>(maxInFlight);
+        try {
+            for (DocumentModel doc : loadDocuments(session, idsToRecompute)) {
+                S source;
+                try (Timer.Context ignored = sourceTimer.time()) {
+                    source = getSource(session, doc);
+                }
+                if (source == null) {
+                    // nothing to recompute
+                    completedIds.add(doc.getId());
+                    continue;
+                }
+                pipeline.add(new InFlight<>(doc, submit(source)));
+                if (pipeline.size() >= maxInFlight) {
+                    saveNext(session, pipeline);
+                }
+            }
+            while (!pipeline.isEmpty()) {
+                saveNext(session, pipeline);
+            }
+        } finally {
+            pipeline.forEach(inFlight -> inFlight.future.cancel(true));
+        }
+    }
+
+    protected CompletableFuture<R> submit(S source) {
+        return CompletableFuture.supplyAsync(() -> timed(downloadTimer, () -> download(source)), downloadExecutor)
+                                .thenApplyAsync(downloaded -> timed(conversionTimer, () -> convert(downloaded)),
+                                        conversionExecutor);
+    }
+
+    protected void saveNext(CoreSession session, Deque<InFlight<R>> pipeline) {
+        InFlight<R> inFlight = pipeline.poll();
+        R result;
+        try {
+            result = inFlight.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new NuxeoException("Cannot recompute document: " + inFlight.doc.getId(), e.getCause());
+        }
+        try (Timer.Context ignored = saveTimer.time()) {
+            save(session, inFlight.doc, result);
+        }
+        completedIds.add(inFlight.doc.getId());
+    }
+
+    protected <T> T timed(Timer timer, Stage<T> stage) {
+        try (Timer.Context ignored = timer.time()) {
+            return stage.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the ids that are not already recomputed by the current command.
+     */
+    protected List<String> getIdsToRecompute(List<String> ids) {
+        String prefix = getCompletedKeyPrefix();
+        List<String> keys = ids.stream().map(id -> prefix + id).collect(Collectors.toList());
+        Map<String, String> completed = getKeyValueStore().getStrings(keys);
+        if (completed.isEmpty()) {
+            return ids;
+        }
+        log.debug("Command: {} skips {} already recomputed documents", () -> getCurrentCommand().getId(),
+                completed::size);
+        return ids.stream().filter(id -> !completed.containsKey(prefix + id)).collect(Collectors.toList());
+    }
+
+    protected void setCompleted(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String prefix = getCompletedKeyPrefix();
+        Map<String, String> values = new HashMap<>(ids.size());
+        ids.forEach(id -> values.put(prefix + id, "1"));
+        getKeyValueStore().putStrings(values, COMPLETED_TTL_SECONDS);
+    }
+
+    protected String getCompletedKeyPrefix() {
+        return COMPLETED_PREFIX + getCurrentCommand().getId() + ":";
+    }
+
+    protected KeyValueStore getKeyValueStore() {
+        return Framework.getService(KeyValueService.class).getKeyValueStore(BULK_KV_STORE_NAME);
+    }
+
+    /**
+     * Returns what needs to be recomputed for the document, or {@code null} if there is nothing to do. Runs in the
+     * computation thread.
+     */
+    protected abstract S getSource(CoreSession session, DocumentModel doc);
+
+    /**
+     * Fetches the source blobs. Runs in a download thread, the session and the document must not be used.
+     */
+    protected S download(S source) throws IOException {
+        return source;
+    }
+
+    /**
+     * Computes the derived content. Runs in a conversion thread, the session and the document must not be used.
+     */
+    protected abstract R convert(S source) throws IOException;
+
+    /**
+     * Updates the document with the conversion result. Runs in the computation thread.
+     */
+    protected abstract void save(CoreSession session, DocumentModel doc, R result);
+
+    public static int getOptionAsInteger(Map<String, String> options, String option, int defaultValue) {
+        String value = options.get(option);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    @FunctionalInterface
+    protected interface Stage<T> {
+        T run() throws IOException;
+    }
+
+    protected static class InFlight<R> {
+
+        protected final DocumentModel doc;
+
+        protected final CompletableFuture<R> future;
+
+        protected InFlight(DocumentModel doc, CompletableFuture<R> future) {
+            this.doc = doc;
+            this.future = future;
+        }
+    }
+
+}
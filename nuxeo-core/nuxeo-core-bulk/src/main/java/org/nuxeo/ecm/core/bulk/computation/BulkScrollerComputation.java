@@ -29,7 +29,17 @@ import static org.nuxeo.ecm.core.bulk.message.BulkStatus.State.SCROLLING_RUNNING
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
@@ -43,6 +53,7 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.ScrollResult;
 import org.nuxeo.ecm.core.bulk.BulkAdminService;
 import org.nuxeo.ecm.core.bulk.BulkCodecs;
+import org.nuxeo.ecm.core.bulk.BulkQueryPartitions;
 import org.nuxeo.ecm.core.bulk.BulkService;
 import org.nuxeo.ecm.core.bulk.message.BulkBucket;
 import org.nuxeo.ecm.core.bulk.message.BulkCommand;
@@ -68,6 +79,10 @@ import org.nuxeo.runtime.transaction.TransactionHelper;
  * <li>- "actionName": Writes {@link BulkBucket} into the action stream</li>
  * <li>- "status": Writes {@link BulkStatus} into the action stream</li>
  * </ul>
+ * <p>
+ * When configured with more than one scroll partition, the command query is split into disjoint sub-queries on
+ * document id ranges (see {@link BulkQueryPartitions}) which are scrolled concurrently, the buckets are produced as the
+ * document ids are received.
  *
  * @since 10.2
  */
@@ -77,6 +92,9 @@ public class BulkScrollerComputation extends AbstractComputation {
 
     public static final int MAX_SCROLL_SIZE = 4_000;
 
+    // @since 11.1
+    protected static final long PARTITION_POLL_TIMEOUT_MS = 1_000;
+
     protected final int scrollBatchSize;
 
     protected final int scrollKeepAliveSeconds;
@@ -85,6 +103,12 @@ public class BulkScrollerComputation extends AbstractComputation {
 
     private final boolean produceImmediate;
 
+    // @since 11.1
+    protected final int scrollPartitions;
+
+    // @since 11.1
+    protected ExecutorService partitionExecutor;
+
     /**
      * @param name the computation name
      * @param nbOutputStreams the number of registered bulk action streams
@@ -94,13 +118,50 @@ public class BulkScrollerComputation extends AbstractComputation {
      */
     public BulkScrollerComputation(String name, int nbOutputStreams, int scrollBatchSize, int scrollKeepAliveSeconds,
             boolean produceImmediate) {
+        this(name, nbOutputStreams, scrollBatchSize, scrollKeepAliveSeconds, produceImmediate, 1);
+    }
+
+    /**
+     * @param name the computation name
+     * @param nbOutputStreams the number of registered bulk action streams
+     * @param scrollBatchSize the batch size to scroll
+     * @param scrollKeepAliveSeconds the scroll lifetime
+     * @param produceImmediate whether or not the record should be produced immedialitely while scrolling
+     * @param scrollPartitions the number of partitions of a command query to scroll concurrently
+     * @since 11.1
+     */
+    public BulkScrollerComputation(String name, int nbOutputStreams, int scrollBatchSize, int scrollKeepAliveSeconds,
+            boolean produceImmediate, int scrollPartitions) {
         super(name, 1, nbOutputStreams);
         this.scrollBatchSize = scrollBatchSize;
         this.scrollKeepAliveSeconds = scrollKeepAliveSeconds;
         this.produceImmediate = produceImmediate;
+        this.scrollPartitions = scrollPartitions;
         documentIds = new ArrayList<>(scrollBatchSize);
     }
 
+    @Override
+    public void init(ComputationContext context) {
+        super.init(context);
+        if (scrollPartitions > 1) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            partitionExecutor = Executors.newFixedThreadPool(scrollPartitions, runnable -> {
+                Thread thread = new Thread(runnable, "bulk-scroller-partition-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (partitionExecutor != null) {
+            partitionExecutor.shutdownNow();
+            partitionExecutor = null;
+        }
+        super.destroy();
+    }
+
     @Override
     public void processRecord(ComputationContext context, String inputStreamName, Record record) {
         TransactionHelper.runInTransaction(() -> processRecord(context, record));
@@ -128,6 +189,16 @@ public class BulkScrollerComputation extends AbstractComputation {
             LoginContext loginContext = SYSTEM_USERNAME.equals(username) ? Framework.login()
                     : Framework.loginAsUser(username);
             try (CloseableCoreSession session = CoreInstance.openCoreSession(command.getRepository())) {
+                if (scrollPartitions > 1) {
+                    long documentCount = scrollPartitions(context, command, scrollSize, bucketSize);
+                    if (documentCount < 0) {
+                        log.debug("Skipping aborted command: {}", commandId);
+                    } else {
+                        updateStatusAfterScroll(context, commandId, documentCount);
+                    }
+                    context.askForCheckpoint();
+                    return;
+                }
                 // scroll documents
                 ScrollResult<String> scroll = session.scroll(command.getQuery(), scrollSize, scrollKeepAliveSeconds);
                 long documentCount = 0;
@@ -176,6 +247,119 @@ public class BulkScrollerComputation extends AbstractComputation {
         context.askForCheckpoint();
     }
 
+    /**
+     * Scrolls the partitions of the command query concurrently, buckets are produced from the computation thread as the
+     * document ids are received.
+     *
+     * @return the number of scrolled documents or -1 if the command has been aborted
+     * @since 11.1
+     */
+    protected long scrollPartitions(ComputationContext context, BulkCommand command, int scrollSize, int bucketSize) {
+        String commandId = command.getId();
+        List<String> queries = BulkQueryPartitions.byIdRange(command.getQuery(), scrollPartitions);
+        // an empty batch marks the end of a partition
+        BlockingQueue<List<String>> batches = new ArrayBlockingQueue<>(2 * queries.size());
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<?>> futures = new ArrayList<>(queries.size());
+        for (String query : queries) {
+            futures.add(partitionExecutor.submit(() -> scrollPartition(command, query, scrollSize, batches, stop)));
+        }
+        long documentCount = 0;
+        long bucketNumber = 1;
+        int runningPartitions = queries.size();
+        try {
+            while (runningPartitions > 0) {
+                List<String> docIds = batches.poll(PARTITION_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (docIds == null) {
+                    continue;
+                }
+                if (docIds.isEmpty()) {
+                    runningPartitions--;
+                    continue;
+                }
+                if (isAbortedCommand(commandId)) {
+                    documentIds.clear();
+                    return -1;
+                }
+                documentIds.addAll(docIds);
+                while (documentIds.size() >= bucketSize) {
+                    produceBucket(context, command.getAction(), commandId, bucketSize, bucketNumber++);
+                }
+                documentCount += docIds.size();
+                TransactionHelper.commitOrRollbackTransaction();
+                TransactionHelper.startTransaction();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException("Interrupted while scrolling command: " + commandId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new NuxeoException("Fail to scroll command: " + commandId, e.getCause());
+        } finally {
+            stop.set(true);
+        }
+        // send remaining document ids
+        if (!documentIds.isEmpty()) {
+            produceBucket(context, command.getAction(), commandId, bucketSize, bucketNumber);
+        }
+        log.debug("Command: {} scrolled {} documents using {} partitions", commandId, documentCount, queries.size());
+        return documentCount;
+    }
+
+    /**
+     * Scrolls a partition query, runs in a partition thread.
+     *
+     * @since 11.1
+     */
+    protected void scrollPartition(BulkCommand command, String query, int scrollSize,
+            BlockingQueue<List<String>> batches, AtomicBoolean stop) {
+        try {
+            String username = command.getUsername();
+            LoginContext loginContext = SYSTEM_USERNAME.equals(username) ? Framework.login()
+                    : Framework.loginAsUser(username);
+            TransactionHelper.startTransaction();
+            try (CloseableCoreSession session = CoreInstance.openCoreSession(command.getRepository())) {
+                ScrollResult<String> scroll = session.scroll(query, scrollSize, scrollKeepAliveSeconds);
+                while (scroll.hasResults() && !stop.get()) {
+                    offer(batches, new ArrayList<>(scroll.getResults()), stop);
+                    scroll = session.scroll(scroll.getScrollId());
+                    TransactionHelper.commitOrRollbackTransaction();
+                    TransactionHelper.startTransaction();
+                }
+            } finally {
+                TransactionHelper.commitOrRollbackTransaction();
+                if (loginContext != null) {
+                    loginContext.logout();
+                }
+            }
+        } catch (LoginException e) {
+            throw new NuxeoException("Cannot login as: " + command.getUsername(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException("Interrupted while scrolling: " + query, e);
+        } finally {
+            try {
+                offer(batches, Collections.emptyList(), stop);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    protected void offer(BlockingQueue<List<String>> batches, List<String> batch, AtomicBoolean stop)
+            throws InterruptedException {
+        while (!stop.get()) {
+            if (batches.offer(batch, PARTITION_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
     protected boolean isAbortedCommand(String commandId) {
         BulkService bulkService = Framework.getService(BulkService.class);
         BulkStatus status = bulkService.getStatus(commandId);
@@ -0,0 +1,73 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bulk;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.QueryParseException;
+
+/**
+ * @since 11.1
+ */
+public class TestBulkQueryPartitions {
+
+    protected static final String LOW = "40000000-0000-0000-0000-000000000000";
+
+    protected static final String MIDDLE = "80000000-0000-0000-0000-000000000000";
+
+    protected static final String HIGH = "c0000000-0000-0000-0000-000000000000";
+
+    @Test
+    public void testSinglePartition() {
+        String nxql = "SELECT * FROM Document WHERE ecm:isTrashed = 0";
+        assertEquals(Collections.singletonList(nxql), BulkQueryPartitions.byIdRange(nxql, 1));
+    }
+
+    @Test
+    public void testQueryWithoutWhereClause() {
+        List<String> queries = BulkQueryPartitions.byIdRange("SELECT * FROM Document", 4);
+        assertEquals(4, queries.size());
+        assertEquals("SELECT * FROM Document WHERE ecm:uuid < '" + LOW + "'", queries.get(0));
+        assertEquals("SELECT * FROM Document WHERE ecm:uuid >= '" + LOW + "' AND ecm:uuid < '" + MIDDLE + "'",
+                queries.get(1));
+        assertEquals("SELECT * FROM Document WHERE ecm:uuid >= '" + MIDDLE + "' AND ecm:uuid < '" + HIGH + "'",
+                queries.get(2));
+        assertEquals("SELECT * FROM Document WHERE ecm:uuid >= '" + HIGH + "'", queries.get(3));
+    }
+
+    @Test
+    public void testQueryWithWhereAndOrderByClauses() {
+        List<String> queries = BulkQueryPartitions.byIdRange(
+                "SELECT * FROM Document where dc:title = 'a' OR dc:title = 'b' order by dc:title", 2);
+        assertEquals("SELECT * FROM Document where (dc:title = 'a' OR dc:title = 'b') AND ecm:uuid < '" + MIDDLE
+                + "' order by dc:title", queries.get(0));
+        assertEquals("SELECT * FROM Document where (dc:title = 'a' OR dc:title = 'b') AND ecm:uuid >= '" + MIDDLE
+                + "' order by dc:title", queries.get(1));
+    }
+
+    @Test(expected = QueryParseException.class)
+    public void testInvalidQuery() {
+        BulkQueryPartitions.byIdRange("DROP DATABASE is not a valid NXQL command", 2);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bulk.action.computation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
+import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
+import org.nuxeo.ecm.core.bulk.CoreBulkFeature;
+import org.nuxeo.ecm.core.bulk.message.BulkCommand;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+/**
+ * Tests the pipeline of {@link AbstractRecomputeComputation}, without repository.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreBulkFeature.class)
+@Deploy("org.nuxeo.ecm.core.schema")
+public class TestRecomputeComputation {
+
+    /**
+     * Recomputes documents whose conversion is slower for the first ones, recording the save order.
+     */
+    protected static class RecomputeComputation extends AbstractRecomputeComputation<String, String> {
+
+        protected final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+
+        protected final AtomicInteger inFlight = new AtomicInteger();
+
+        protected final AtomicInteger maxObservedInFlight = new AtomicInteger();
+
+        protected RecomputeComputation(BulkCommand command, int maxInFlight) {
+            super("testRecompute", 4, 4, maxInFlight);
+            this.command = command;
+        }
+
+        @Override
+        public DocumentModelList loadDocuments(CoreSession session, List<String> documentIds) {
+            DocumentModelList docs = new DocumentModelListImpl(documentIds.size());
+            for (String id : documentIds) {
+                DocumentModelImpl doc = new DocumentModelImpl("File");
+                doc.setId(id);
+                docs.add(doc);
+            }
+            return docs;
+        }
+
+        @Override
+        protected String getSource(CoreSession session, DocumentModel doc) {
+            maxObservedInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return doc.getId();
+        }
+
+        @Override
+        protected String convert(String source) throws IOException {
+            try {
+                // the first documents are the slowest
+                Thread.sleep(Math.max(1, 50 - 2 * Integer.parseInt(source)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return source;
+        }
+
+        @Override
+        protected void save(CoreSession session, DocumentModel doc, String result) {
+            assertEquals(doc.getId(), result);
+            inFlight.decrementAndGet();
+            saved.add(result);
+        }
+
+        // same as processBatchOfDocuments, without repository
+        protected void processBatch(List<String> ids) {
+            completedIds.clear();
+            compute(null, ids, Collections.emptyMap());
+            setCompleted(completedIds);
+        }
+    }
+
+    protected static List<String> ids(int from, int to) {
+        return IntStream.range(from, to).mapToObj(String::valueOf).collect(Collectors.toList());
+    }
+
+    protected static BulkCommand newCommand() {
+        return new BulkCommand.Builder("testRecompute", "SELECT * FROM Document", "system").build();
+    }
+
+    @Test
+    public void testSaveInOrderWithMaxInFlight() {
+        RecomputeComputation computation = new RecomputeComputation(newCommand(), 3);
+        computation.init(null);
+        try {
+            computation.processBatch(ids(0, 20));
+        } finally {
+            computation.destroy();
+        }
+        assertEquals(ids(0, 20), computation.saved);
+        // at most maxInFlight documents between their source and their save
+        assertTrue(String.valueOf(computation.maxObservedInFlight.get()), computation.maxObservedInFlight.get() <= 3);
+        assertEquals(0, computation.inFlight.get());
+    }
+
+    @Test
+    public void testResumeSkipsCompletedDocuments() {
+        BulkCommand command = newCommand();
+        RecomputeComputation computation = new RecomputeComputation(command, 2);
+        computation.init(null);
+        try {
+            computation.processBatch(ids(0, 10));
+        } finally {
+            computation.destroy();
+        }
+        assertEquals(ids(0, 10), computation.saved);
+
+        // the command is interrupted then resumed, the first batch is processed again
+        RecomputeComputation resumed = new RecomputeComputation(command, 2);
+        resumed.init(null);
+        try {
+            resumed.processBatch(ids(0, 20));
+        } finally {
+            resumed.destroy();
+        }
+        assertEquals(ids(10, 20), resumed.saved);
+
+        // another command recomputes everything
+        RecomputeComputation other = new RecomputeComputation(newCommand(), 2);
+        other.init(null);
+        try {
+            other.processBatch(ids(0, 20));
+        } finally {
+            other.destroy();
+        }
+        assertEquals(ids(0, 20), other.saved);
+    }
+
+}
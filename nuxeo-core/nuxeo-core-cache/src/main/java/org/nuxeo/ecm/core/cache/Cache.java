@@ -21,6 +21,7 @@ package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * The nuxeo cache interface that define generic methods to use cache technologies
@@ -46,6 +47,29 @@ public interface Cache {
      */
     Serializable get(String key);
 
+    /**
+     * Get method to retrieve value from cache, computing and storing it with the loader if absent. Implementations may
+     * also use the loader to refresh entries before they expire, so it must be callable from any thread.
+     *
+     * @param key the string key
+     * @param loader the function computing the value of the key, may return null
+     * @return the {@link Serializable} value, return null if the key is null or if the loader returned null
+     * @since 11.1
+     */
+    default Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        if (key == null) {
+            return null;
+        }
+        Serializable value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
     /**
      * Returns the set of all keys stored in the cache.
      *
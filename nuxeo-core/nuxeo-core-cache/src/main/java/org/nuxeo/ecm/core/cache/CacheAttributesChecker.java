@@ -21,6 +21,7 @@ package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Class to implement mandatory check attributes before calling implementation of cache This enable to have the same
@@ -42,6 +43,14 @@ public class CacheAttributesChecker extends CacheWrapper {
         return super.get(key);
     }
 
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        if (key == null) {
+            return null;
+        }
+        return super.get(key, loader);
+    }
+
     @Override
     public Set<String> keySet() {
         return super.keySet();
@@ -55,6 +55,38 @@ public class CacheDescriptor implements Descriptor {
     /** @since 9.3 */
     public static final String OPTION_CONCURRENCY_LEVEL = "concurrencyLevel";
 
+    /**
+     * Maximum estimated size in bytes of the entries the cache may contain, replaces {@link #OPTION_MAX_SIZE}.
+     *
+     * @since 11.1
+     */
+    public static final String OPTION_MAX_WEIGHT = "maxWeight";
+
+    /**
+     * Class implementing {@code com.google.common.cache.Weigher<String, Serializable>} used to estimate the size in
+     * bytes of the entries when {@link #OPTION_MAX_WEIGHT} is set.
+     *
+     * @since 11.1
+     */
+    public static final String OPTION_WEIGHER = "weigher";
+
+    /**
+     * Admission policy of the cache, {@link #ADMISSION_TINYLFU} to only keep entries accessed frequently enough.
+     *
+     * @since 11.1
+     */
+    public static final String OPTION_ADMISSION = "admission";
+
+    /** @since 11.1 */
+    public static final String ADMISSION_TINYLFU = "tinylfu";
+
+    /**
+     * Ratio of the TTL after which an entry read with a loader is refreshed in the background.
+     *
+     * @since 11.1
+     */
+    public static final String OPTION_REFRESH_AHEAD_RATIO = "refreshAheadRatio";
+
     @XNode("@name")
     public String name;
 
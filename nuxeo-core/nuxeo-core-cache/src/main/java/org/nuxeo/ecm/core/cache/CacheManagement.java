@@ -19,6 +19,8 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Management-related APIs for a {@link Cache}.
@@ -70,4 +72,15 @@ public interface CacheManagement extends Cache {
      */
     void invalidateLocalAll();
 
+    /**
+     * Returns implementation specific statistics (admissions, evictions...), exposed as metrics. The set of statistics
+     * must not change once the cache is started.
+     *
+     * @return the statistics values by name
+     * @since 11.1
+     */
+    default Map<String, Long> getStatistics() {
+        return Collections.emptyMap();
+    }
+
 }
@@ -17,6 +17,10 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.nuxeo.runtime.metrics.MetricsService;
 
@@ -44,6 +48,9 @@ public class CacheMetrics extends CacheWrapper {
 
     protected Gauge<Long> size;
 
+    // @since 11.1
+    protected final List<String> statisticNames = new ArrayList<>();
+
     protected final String READ_HIT_NAME = nameOf("read-hit-counter");
 
     protected final String READ_HIT_RATIO_NAME = nameOf("read-hit-ratio");
@@ -68,6 +75,7 @@ public class CacheMetrics extends CacheWrapper {
 
     @Override
     public void start() {
+        super.start();
         registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
         read = registry.counter(READ_NAME);
         read_hit = registry.counter(READ_HIT_NAME);
@@ -89,6 +97,11 @@ public class CacheMetrics extends CacheWrapper {
                 return Long.valueOf(getSize());
             }
         });
+        for (String statistic : getStatistics().keySet()) {
+            String statisticName = nameOf(statistic);
+            registry.register(statisticName, (Gauge<Long>) () -> getStatistics().get(statistic));
+            statisticNames.add(statisticName);
+        }
     }
 
     @Override
@@ -100,6 +113,9 @@ public class CacheMetrics extends CacheWrapper {
         registry.remove(WRITE_NAME);
         registry.remove(INVALIDATE_ALL_NAME);
         registry.remove(SIZE_NAME);
+        statisticNames.forEach(registry::remove);
+        statisticNames.clear();
+        super.stop();
     }
 
     @Override
@@ -114,6 +130,26 @@ public class CacheMetrics extends CacheWrapper {
         return value;
     }
 
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        // the loader may also be called later from another thread to refresh the value
+        Thread caller = Thread.currentThread();
+        AtomicBoolean loaded = new AtomicBoolean();
+        Serializable value = super.get(key, k -> {
+            if (Thread.currentThread() == caller) {
+                loaded.set(true);
+            }
+            return loader.apply(k);
+        });
+        read.inc();
+        if (value != null && !loaded.get()) {
+            read_hit.inc();
+        } else {
+            read_miss.inc();
+        }
+        return value;
+    }
+
     @Override
     public void put(String key, Serializable value) {
         try {
@@ -17,7 +17,9 @@
 package org.nuxeo.ecm.core.cache;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * @since 9.1
@@ -40,6 +42,11 @@ public class CacheWrapper implements CacheManagement {
         return cache.get(key);
     }
 
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        return cache.get(key, loader);
+    }
+
     @Override
     public Set<String> keySet() {
         return cache.keySet();
@@ -95,6 +102,11 @@ public class CacheWrapper implements CacheManagement {
         return cache.getSize();
     }
 
+    @Override
+    public Map<String, Long> getStatistics() {
+        return cache.getStatistics();
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(" + cache + ")";
@@ -0,0 +1,111 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A probabilistic estimator of the access frequency of keys, based on a count-min sketch of 4-bit counters packed 16
+ * per long.
+ * <p>
+ * The counters are halved when the number of recorded accesses reaches a sample size, so that the estimated
+ * frequencies reflect the recent history. This is the frequency filter of the TinyLFU admission policy.
+ *
+ * @since 11.1
+ */
+public class FrequencySketch {
+
+    protected static final int DEPTH = 4;
+
+    protected static final int MAX_COUNT = 15;
+
+    protected static final long RESET_MASK = 0x7777777777777777L;
+
+    protected static final int[] SEEDS = { 0x97cb3127, 0xb1a55c3f, 0x4cf5ad43, 0x9e3779b9 };
+
+    protected final AtomicLongArray table;
+
+    protected final int mask;
+
+    protected final int sampleSize;
+
+    protected final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * @param capacity the expected maximum number of entries of the cache
+     */
+    public FrequencySketch(int capacity) {
+        int width = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 24)) - 1) << 1;
+        table = new AtomicLongArray(width);
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    protected int hashOf(Object key, int i) {
+        int hash = (key.hashCode() ^ SEEDS[i]) * 0x9e3779b1;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Records an access to the key.
+     */
+    public void increment(Object key) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int hash = hashOf(key, i);
+            int index = (hash >>> 4) & mask;
+            int offset = (hash & 15) << 2;
+            long value;
+            while (((value = table.get(index)) >>> offset & MAX_COUNT) < MAX_COUNT) {
+                if (table.compareAndSet(index, value, value + (1L << offset))) {
+                    added = true;
+                    break;
+                }
+            }
+        }
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent accesses to the key.
+     */
+    public int frequency(Object key) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int hash = hashOf(key, i);
+            long value = table.get((hash >>> 4) & mask);
+            frequency = Math.min(frequency, (int) (value >>> ((hash & 15) << 2) & MAX_COUNT));
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves all the counters, concurrent increments may be lost which is acceptable for an estimation.
+     */
+    protected void reset() {
+        additions.set(0);
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, (table.get(i) >>> 1) & RESET_MASK);
+        }
+    }
+
+}
@@ -19,22 +19,61 @@
  */
 package org.nuxeo.ecm.core.cache;
 
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.ADMISSION_TINYLFU;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_ADMISSION;
 import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_CONCURRENCY_LEVEL;
 import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_MAX_SIZE;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_MAX_WEIGHT;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_REFRESH_AHEAD_RATIO;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_WEIGHER;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Sets;
 
 /**
  * Default in memory implementation for cache management based on guava
+ * <p>
+ * Besides the {@code maxSize} entry count, the capacity can be expressed as the estimated size in bytes of the entries
+ * with the {@code maxWeight} option.
+ * <p>
+ * With the {@code admission} option set to {@code tinylfu}, new entries first go to a small window cache. When leaving
+ * the window, an entry is admitted in the main cache if there is room for it, or if it has been accessed more
+ * frequently than the least recently used entries it would evict (W-TinyLFU), so that scans don't flush the hot
+ * entries. Cache hits don't take the lock of the main cache: they are recorded in a buffer that is drained to update
+ * the recency order when it fills up or before an admission.
+ * <p>
+ * With the {@code refreshAheadRatio} option, entries read with a loader through {@link #get(String, Function)} are
+ * reloaded in the background once they are older than this ratio of the TTL.
  *
  * @since 6.0
  */
@@ -42,34 +81,417 @@ public class InMemoryCacheImpl extends AbstractCache {
 
     private static final Log log = LogFactory.getLog(InMemoryCacheImpl.class);
 
+    /** @since 11.1 */
+    public static final String ADMISSION_ACCEPTED_STAT = "admission-accepted-counter";
+
+    /** @since 11.1 */
+    public static final String ADMISSION_REJECTED_STAT = "admission-rejected-counter";
+
+    /** @since 11.1 */
+    public static final String EVICTION_STAT = "eviction-counter";
+
+    /** @since 11.1 */
+    public static final String REFRESH_STAT = "refresh-counter";
+
+    /** Share of the capacity used by the admission window. */
+    protected static final double WINDOW_RATIO = 0.01;
+
+    /** Average entry size used to size the frequency sketch of a weighted cache. */
+    protected static final int AVERAGE_WEIGHT = 1024;
+
+    /** Maximum number of buffered hits, further hits are not recorded in the recency order until a drain. */
+    protected static final int READ_BUFFER_MAX_SIZE = 1024;
+
+    /** Number of buffered hits from which a reader drains the buffer, if the main cache lock is free. */
+    protected static final int READ_BUFFER_DRAIN_THRESHOLD = 64;
+
     protected final Cache<String, Serializable> cache;
 
+    // @since 11.1
+    protected final Weigher<String, Serializable> weigher;
+
+    /**
+     * Weights of the entries of the main cache in least recently used first order, when using TinyLFU admission.
+     * Guarded by {@link #mainLock}.
+     *
+     * @since 11.1
+     */
+    protected final LinkedHashMap<String, Integer> mainEntries;
+
+    // @since 11.1
+    protected final ReentrantLock mainLock = new ReentrantLock();
+
+    /**
+     * Keys of the main cache hits not yet applied to the recency order of {@link #mainEntries}.
+     *
+     * @since 11.1
+     */
+    protected final Queue<String> readBuffer = new ConcurrentLinkedQueue<>();
+
+    // @since 11.1
+    protected final AtomicInteger readBufferSize = new AtomicInteger();
+
+    // @since 11.1
+    protected final long mainCapacity;
+
+    // @since 11.1
+    protected long mainWeight;
+
+    // @since 11.1
+    protected final Cache<String, Serializable> window;
+
+    // @since 11.1
+    protected final FrequencySketch sketch;
+
+    // @since 11.1
+    protected final long refreshAheadMillis;
+
+    // @since 11.1
+    protected final Map<String, Long> writeTimes;
+
+    // @since 11.1
+    protected final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // @since 11.1
+    protected final AtomicLong invalidationCount = new AtomicLong();
+
+    // @since 11.1
+    protected final LongAdder admissionAccepted = new LongAdder();
+
+    // @since 11.1
+    protected final LongAdder admissionRejected = new LongAdder();
+
+    // @since 11.1
+    protected final LongAdder evictions = new LongAdder();
+
+    // @since 11.1
+    protected final LongAdder refreshes = new LongAdder();
+
+    // @since 11.1
+    protected ExecutorService refreshExecutor;
+
     public InMemoryCacheImpl(CacheDescriptor desc) {
         super(desc);
-        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
-        builder = builder.expireAfterWrite(desc.getTTL(), TimeUnit.MINUTES);
         Map<String, String> options = desc.options;
+        long maxSize = options.containsKey(OPTION_MAX_SIZE) ? Long.parseLong(options.get(OPTION_MAX_SIZE)) : -1;
+        long maxWeight = options.containsKey(OPTION_MAX_WEIGHT) ? Long.parseLong(options.get(OPTION_MAX_WEIGHT)) : -1;
+        long capacity = maxWeight >= 0 ? maxWeight : maxSize;
+        weigher = maxWeight >= 0 ? newWeigher(options) : (key, value) -> 1;
+        boolean tinyLfu = ADMISSION_TINYLFU.equals(options.get(OPTION_ADMISSION));
+        if (tinyLfu && capacity <= 0) {
+            log.warn(String.format("Ignoring TinyLFU admission without maxSize nor maxWeight for the cache '%s'",
+                    name));
+            tinyLfu = false;
+        }
+        if (tinyLfu) {
+            long windowCapacity = Math.max(1, (long) (capacity * WINDOW_RATIO));
+            window = newCache(options, maxWeight >= 0, windowCapacity, this::onWindowRemoval);
+            // the capacity of the main cache is enforced by the admission
+            cache = newCache(options, false, -1, this::onRemoval);
+            mainEntries = new LinkedHashMap<>(16, 0.75f, true);
+            mainCapacity = Math.max(1, capacity - windowCapacity);
+            long expectedEntries = maxWeight >= 0 ? maxWeight / AVERAGE_WEIGHT : maxSize;
+            sketch = new FrequencySketch((int) Math.min(expectedEntries, Integer.MAX_VALUE));
+        } else {
+            window = null;
+            cache = newCache(options, maxWeight >= 0, capacity, this::onRemoval);
+            mainEntries = null;
+            mainCapacity = -1;
+            sketch = null;
+        }
+        if (options.containsKey(OPTION_REFRESH_AHEAD_RATIO)) {
+            double ratio = Double.parseDouble(options.get(OPTION_REFRESH_AHEAD_RATIO));
+            refreshAheadMillis = (long) (TimeUnit.MINUTES.toMillis(ttl) * ratio);
+            writeTimes = new ConcurrentHashMap<>();
+        } else {
+            refreshAheadMillis = 0;
+            writeTimes = null;
+        }
+    }
+
+    protected Cache<String, Serializable> newCache(Map<String, String> options, boolean weighted, long capacity,
+            RemovalListener<String, Serializable> listener) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        builder = builder.expireAfterWrite(ttl, TimeUnit.MINUTES);
         if (options.containsKey(OPTION_CONCURRENCY_LEVEL)) {
             builder = builder.concurrencyLevel(Integer.parseInt(options.get(OPTION_CONCURRENCY_LEVEL)));
         }
-        if (options.containsKey(OPTION_MAX_SIZE)) {
-            builder = builder.maximumSize(Integer.parseInt(options.get(OPTION_MAX_SIZE)));
+        CacheBuilder<String, Serializable> typedBuilder = builder.removalListener(listener);
+        if (weighted) {
+            typedBuilder = typedBuilder.maximumWeight(capacity).weigher(weigher);
+        } else if (capacity >= 0) {
+            typedBuilder = typedBuilder.maximumSize(capacity);
+        }
+        return typedBuilder.build();
+    }
+
+    /**
+     * Creates the weigher estimating the size in bytes of the entries, from the class given by the {@code weigher}
+     * option or {@link #weigh} by default.
+     *
+     * @since 11.1
+     */
+    @SuppressWarnings("unchecked")
+    protected Weigher<String, Serializable> newWeigher(Map<String, String> options) {
+        String className = options.get(OPTION_WEIGHER);
+        if (className == null) {
+            return InMemoryCacheImpl::weigh;
+        }
+        try {
+            Class<?> klass = Thread.currentThread().getContextClassLoader().loadClass(className);
+            return (Weigher<String, Serializable>) klass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new NuxeoException(String.format("Cannot create weigher '%s' for the cache '%s'", className, name),
+                    e);
+        }
+    }
+
+    /**
+     * Estimates the size in bytes of an entry, without inspecting values other than strings, byte arrays and
+     * primitive wrappers. Use the {@code weigher} option to weigh other values.
+     *
+     * @since 11.1
+     */
+    protected static int weigh(String key, Serializable value) {
+        long weight = 2L * key.length();
+        if (value instanceof String) {
+            weight += 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            weight += ((byte[]) value).length;
+        } else if (value instanceof Number || value instanceof Boolean) {
+            weight += 16;
+        } else {
+            weight += AVERAGE_WEIGHT;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    protected void onWindowRemoval(RemovalNotification<String, Serializable> notification) {
+        if (notification.getCause() == RemovalCause.SIZE) {
+            if (admit(notification.getKey(), notification.getValue())) {
+                admissionAccepted.increment();
+                return;
+            }
+            admissionRejected.increment();
+        }
+        removeWriteTime(notification);
+    }
+
+    /**
+     * Puts an entry leaving the window in the main cache if there is room for it, or if it is more frequently accessed
+     * than all the least recently used entries it has to evict.
+     *
+     * @since 11.1
+     */
+    protected boolean admit(String key, Serializable value) {
+        int weight = weigher.weigh(key, value);
+        if (weight > mainCapacity) {
+            return false;
+        }
+        mainLock.lock();
+        try {
+            // the least recently used entries must reflect the buffered hits
+            drainReadBuffer();
+            List<String> victims = new ArrayList<>();
+            long weightToFree = mainWeight + weight - mainCapacity;
+            if (weightToFree > 0) {
+                int frequency = sketch.frequency(key);
+                Iterator<Entry<String, Integer>> it = mainEntries.entrySet().iterator();
+                while (weightToFree > 0 && it.hasNext()) {
+                    Entry<String, Integer> victim = it.next();
+                    if (sketch.frequency(victim.getKey()) >= frequency) {
+                        return false;
+                    }
+                    victims.add(victim.getKey());
+                    weightToFree -= victim.getValue().intValue();
+                }
+            }
+            for (String victim : victims) {
+                mainWeight -= mainEntries.remove(victim).intValue();
+                cache.invalidate(victim);
+                evictions.increment();
+            }
+            putMain(key, value, weight);
+        } finally {
+            mainLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Puts an entry in the main cache and tracks its weight, the caller must hold the {@link #mainLock}.
+     *
+     * @since 11.1
+     */
+    protected void putMain(String key, Serializable value, int weight) {
+        Integer previous = mainEntries.put(key, Integer.valueOf(weight));
+        mainWeight += weight - (previous == null ? 0 : previous.intValue());
+        cache.put(key, value);
+    }
+
+    protected void onRemoval(RemovalNotification<String, Serializable> notification) {
+        if (notification.getCause() == RemovalCause.SIZE) {
+            evictions.increment();
+        }
+        if (mainEntries != null && notification.getCause() != RemovalCause.REPLACED) {
+            String key = notification.getKey();
+            mainLock.lock();
+            try {
+                // the entry may have been admitted again meanwhile
+                if (!cache.asMap().containsKey(key)) {
+                    Integer weight = mainEntries.remove(key);
+                    if (weight != null) {
+                        mainWeight -= weight.intValue();
+                    }
+                }
+            } finally {
+                mainLock.unlock();
+            }
+        }
+        removeWriteTime(notification);
+    }
+
+    protected void removeWriteTime(RemovalNotification<String, Serializable> notification) {
+        if (writeTimes != null && notification.getCause() != RemovalCause.REPLACED) {
+            writeTimes.remove(notification.getKey());
+        }
+    }
+
+    @Override
+    public void start() {
+        if (refreshAheadMillis > 0) {
+            refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "Nuxeo-Cache-Refresh-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
         }
-        cache = builder.build();
     }
 
     @Override
     public Serializable get(String key) {
         if (key == null) {
             return null;
-        } else {
+        }
+        if (sketch == null) {
             return cache.getIfPresent(key);
         }
+        // each access is counted once, hit or miss, so that a miss followed by a put isn't seen as frequent
+        sketch.increment(key);
+        Serializable value = cache.getIfPresent(key);
+        if (value != null) {
+            recordHit(key);
+            return value;
+        }
+        return window.getIfPresent(key);
+    }
+
+    /**
+     * Buffers a hit of the main cache, and drains the buffer if it is large enough and nobody holds the lock.
+     *
+     * @since 11.1
+     */
+    protected void recordHit(String key) {
+        int size = readBufferSize.get();
+        if (size < READ_BUFFER_MAX_SIZE) {
+            readBuffer.offer(key);
+            size = readBufferSize.incrementAndGet();
+        }
+        if (size >= READ_BUFFER_DRAIN_THRESHOLD && mainLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                mainLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies the buffered hits to the recency order, the caller must hold the {@link #mainLock}.
+     *
+     * @since 11.1
+     */
+    protected void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_MAX_SIZE; i++) {
+            String key = readBuffer.poll();
+            if (key == null) {
+                break;
+            }
+            readBufferSize.decrementAndGet();
+            // no-op if the entry left the main cache meanwhile
+            mainEntries.get(key);
+        }
+    }
+
+    @Override
+    public Serializable get(String key, Function<String, ? extends Serializable> loader) {
+        if (key == null) {
+            return null;
+        }
+        Serializable value = get(key);
+        if (value == null) {
+            return load(key, loader);
+        }
+        if (refreshAheadMillis > 0) {
+            Long writeTime = writeTimes.get(key);
+            if (writeTime != null && System.currentTimeMillis() - writeTime.longValue() > refreshAheadMillis
+                    && refreshing.add(key)) {
+                refreshAhead(key, loader);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Loads a value and stores it, unless an invalidation happened while loading it.
+     */
+    protected Serializable load(String key, Function<String, ? extends Serializable> loader) {
+        long invalidations = invalidationCount.get();
+        Serializable value = loader.apply(key);
+        if (value != null && invalidations == invalidationCount.get()) {
+            putLocal(key, value);
+        }
+        return value;
+    }
+
+    protected void refreshAhead(String key, Function<String, ? extends Serializable> loader) {
+        ExecutorService executor = refreshExecutor;
+        if (executor == null) {
+            // cache not started
+            refreshing.remove(key);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    load(key, loader);
+                    refreshes.increment();
+                } catch (RuntimeException e) {
+                    log.warn(String.format("Failed to refresh key '%s' of the cache '%s'", key, name), e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // cache stopped
+            refreshing.remove(key);
+        }
     }
 
     @Override
     public Set<String> keySet() {
-        return cache.asMap().keySet();
+        if (window == null) {
+            return cache.asMap().keySet();
+        }
+        return Sets.union(cache.asMap().keySet(), window.asMap().keySet());
     }
 
     @Override
@@ -80,7 +502,11 @@ public class InMemoryCacheImpl extends AbstractCache {
     @Override
     public void invalidateLocal(String key) {
         if (key != null) {
+            invalidationCount.incrementAndGet();
             cache.invalidate(key);
+            if (window != null) {
+                window.invalidate(key);
+            }
         } else {
             log.warn(String.format("Can't invalidate a null key for the cache '%s'!", name));
         }
@@ -93,7 +519,20 @@ public class InMemoryCacheImpl extends AbstractCache {
 
     @Override
     public void invalidateLocalAll() {
-        cache.invalidateAll();
+        invalidationCount.incrementAndGet();
+        if (window == null) {
+            cache.invalidateAll();
+        } else {
+            mainLock.lock();
+            try {
+                cache.invalidateAll();
+                mainEntries.clear();
+                mainWeight = 0;
+            } finally {
+                mainLock.unlock();
+            }
+            window.invalidateAll();
+        }
     }
 
     @Override
@@ -104,7 +543,23 @@ public class InMemoryCacheImpl extends AbstractCache {
     @Override
     public void putLocal(String key, Serializable value) {
         if (key != null && value != null) {
-            cache.put(key, value);
+            if (writeTimes != null) {
+                writeTimes.put(key, Long.valueOf(System.currentTimeMillis()));
+            }
+            if (window == null) {
+                cache.put(key, value);
+            } else {
+                mainLock.lock();
+                try {
+                    if (mainEntries.containsKey(key)) {
+                        putMain(key, value, weigher.weigh(key, value));
+                        return;
+                    }
+                } finally {
+                    mainLock.unlock();
+                }
+                window.put(key, value);
+            }
         } else {
             log.warn(String.format("Can't put a null key nor a null value in the cache '%s'!", name));
         }
@@ -112,12 +567,22 @@ public class InMemoryCacheImpl extends AbstractCache {
 
     @Override
     public boolean hasEntry(String key) {
-        return cache.asMap().containsKey(key);
+        return cache.asMap().containsKey(key) || (window != null && window.asMap().containsKey(key));
     }
 
     @Override
     public long getSize() {
-        return cache.size();
+        return cache.size() + (window == null ? 0 : window.size());
+    }
+
+    @Override
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put(ADMISSION_ACCEPTED_STAT, Long.valueOf(admissionAccepted.sum()));
+        statistics.put(ADMISSION_REJECTED_STAT, Long.valueOf(admissionRejected.sum()));
+        statistics.put(EVICTION_STAT, Long.valueOf(evictions.sum()));
+        statistics.put(REFRESH_STAT, Long.valueOf(refreshes.sum()));
+        return statistics;
     }
 
 }
@@ -0,0 +1,348 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.cache;
+
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_CONCURRENCY_LEVEL;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_MAX_SIZE;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Two-tier cache implementation: a bounded local in-memory cache (L1) in front of a {@link KeyValueStore} shared by
+ * all the nodes (L2), so that a node joining the cluster or restarting finds a warm cache.
+ * <p>
+ * The following options are available:
+ * <ul>
+ * <li><em>maxSize</em>: the maximum number of entries of the local cache
+ * <li><em>concurrencyLevel</em>: the concurrency level of the local cache
+ * <li><em>keyValueStore</em>: the name of the key/value store to use, defaults to {@value #DEFAULT_KEY_VALUE_STORE}
+ * </ul>
+ * Values written to the shared store are versioned: a write or an invalidation never overwrites a more recent one, and
+ * a local cache miss doesn't populate the local cache with a value read before a concurrent invalidation of the same
+ * key. Invalidations of the local caches of the other nodes are propagated by the cluster invalidator, see
+ * {@link CacheInvalidator}.
+ * <p>
+ * The {@link #keySet} and {@link #getSize} methods only take into account the local cache.
+ *
+ * @since 11.1
+ */
+public class KeyValueCacheImpl extends AbstractCache {
+
+    private static final Logger log = LogManager.getLogger(KeyValueCacheImpl.class);
+
+    public static final String OPTION_KEY_VALUE_STORE = "keyValueStore";
+
+    public static final String DEFAULT_KEY_VALUE_STORE = "cache";
+
+    protected static final String SEP = ":";
+
+    protected static final String GENERATION = "generation";
+
+    protected static final String VERSION_PREFIX = "v";
+
+    protected static final int VERSION_BYTES = Long.BYTES;
+
+    protected final String keyValueStoreName;
+
+    protected final com.google.common.cache.Cache<String, Serializable> local;
+
+    /** Local sequence of the invalidations, to detect a value read from the store before an invalidation. */
+    protected final AtomicLong invalidationSequence = new AtomicLong();
+
+    /** Sequence number of the last local invalidation of recently invalidated keys. */
+    protected final com.google.common.cache.Cache<String, Long> invalidations;
+
+    /** The generation of the shared entries, incremented when invalidating all the keys. */
+    protected volatile long generation;
+
+    protected KeyValueStore store;
+
+    protected MetricRegistry registry;
+
+    protected Counter localHit;
+
+    protected Counter localMiss;
+
+    protected Counter sharedHit;
+
+    protected Counter sharedMiss;
+
+    protected final String LOCAL_HIT_NAME = nameOf("l1-read-hit-counter");
+
+    protected final String LOCAL_MISS_NAME = nameOf("l1-read-miss-counter");
+
+    protected final String LOCAL_HIT_RATIO_NAME = nameOf("l1-read-hit-ratio");
+
+    protected final String SHARED_HIT_NAME = nameOf("l2-read-hit-counter");
+
+    protected final String SHARED_MISS_NAME = nameOf("l2-read-miss-counter");
+
+    protected final String SHARED_HIT_RATIO_NAME = nameOf("l2-read-hit-ratio");
+
+    public KeyValueCacheImpl(CacheDescriptor desc) {
+        super(desc);
+        Map<String, String> options = desc.options;
+        keyValueStoreName = defaultIfBlank(options.get(OPTION_KEY_VALUE_STORE), DEFAULT_KEY_VALUE_STORE);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        builder = builder.expireAfterWrite(ttl, TimeUnit.MINUTES);
+        if (options.containsKey(OPTION_CONCURRENCY_LEVEL)) {
+            builder = builder.concurrencyLevel(Integer.parseInt(options.get(OPTION_CONCURRENCY_LEVEL)));
+        }
+        if (options.containsKey(OPTION_MAX_SIZE)) {
+            builder = builder.maximumSize(Integer.parseInt(options.get(OPTION_MAX_SIZE)));
+        }
+        local = builder.build();
+        // an invalidation only matters for the reads that were in progress when it happened
+        invalidations = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.MINUTES).build();
+    }
+
+    protected String nameOf(String metric) {
+        return MetricRegistry.name("nuxeo", "cache", name, metric);
+    }
+
+    @Override
+    public void start() {
+        store = Framework.getService(KeyValueService.class).getKeyValueStore(keyValueStoreName);
+        generation = readGeneration();
+        registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        localHit = registry.counter(LOCAL_HIT_NAME);
+        localMiss = registry.counter(LOCAL_MISS_NAME);
+        sharedHit = registry.counter(SHARED_HIT_NAME);
+        sharedMiss = registry.counter(SHARED_MISS_NAME);
+        registry.register(LOCAL_HIT_RATIO_NAME, new RatioGauge() {
+
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(localHit.getCount(), localHit.getCount() + localMiss.getCount());
+            }
+        });
+        registry.register(SHARED_HIT_RATIO_NAME, new RatioGauge() {
+
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(sharedHit.getCount(), sharedHit.getCount() + sharedMiss.getCount());
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        registry.remove(LOCAL_HIT_NAME);
+        registry.remove(LOCAL_MISS_NAME);
+        registry.remove(LOCAL_HIT_RATIO_NAME);
+        registry.remove(SHARED_HIT_NAME);
+        registry.remove(SHARED_MISS_NAME);
+        registry.remove(SHARED_HIT_RATIO_NAME);
+        local.invalidateAll();
+        invalidations.invalidateAll();
+        store = null;
+    }
+
+    protected long getStoreTTL() {
+        return ttl * 60;
+    }
+
+    protected long readGeneration() {
+        Long gen = store.getLong(name + SEP + GENERATION);
+        return gen == null ? 0 : gen.longValue();
+    }
+
+    protected String entryKey(String key) {
+        return name + SEP + generation + SEP + key;
+    }
+
+    protected String versionKey(String key) {
+        return name + SEP + VERSION_PREFIX + SEP + key;
+    }
+
+    @Override
+    public Serializable get(String key) {
+        if (key == null) {
+            return null;
+        }
+        Serializable value = local.getIfPresent(key);
+        if (value != null) {
+            localHit.inc();
+            return value;
+        }
+        localMiss.inc();
+        long sequence = invalidationSequence.get();
+        value = decodeValue(store.get(entryKey(key)));
+        if (value == null) {
+            sharedMiss.inc();
+            return null;
+        }
+        sharedHit.inc();
+        if (!isInvalidatedSince(key, sequence)) {
+            local.put(key, value);
+            // re-check to not keep a value invalidated while we were populating the local cache
+            if (isInvalidatedSince(key, sequence)) {
+                local.invalidate(key);
+            }
+        }
+        return value;
+    }
+
+    protected boolean isInvalidatedSince(String key, long sequence) {
+        Long last = invalidations.getIfPresent(key);
+        return last != null && last.longValue() > sequence;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return local.asMap().keySet();
+    }
+
+    @Override
+    public void put(String key, Serializable value) {
+        if (key == null || value == null) {
+            log.warn("Can't put a null key nor a null value in the cache '{}'!", name);
+            return;
+        }
+        putShared(key, SerializationUtils.serialize(value));
+        putLocal(key, value);
+    }
+
+    @Override
+    public void putLocal(String key, Serializable value) {
+        if (key != null && value != null) {
+            local.put(key, value);
+        } else {
+            log.warn("Can't put a null key nor a null value in the cache '{}'!", name);
+        }
+    }
+
+    @Override
+    public void invalidate(String key) {
+        if (key == null) {
+            log.warn("Can't invalidate a null key for the cache '{}'!", name);
+            return;
+        }
+        // write a tombstone so that a concurrent older write is not applied
+        putShared(key, null);
+        invalidateLocal(key);
+    }
+
+    @Override
+    public void invalidateLocal(String key) {
+        if (key != null) {
+            invalidations.put(key, Long.valueOf(invalidationSequence.incrementAndGet()));
+            local.invalidate(key);
+        } else {
+            log.warn("Can't invalidate a null key for the cache '{}'!", name);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        // entries of the previous generation are not reachable anymore and expire with their TTL
+        store.addAndGet(name + SEP + GENERATION, 1);
+        invalidateLocalAll();
+    }
+
+    @Override
+    public void invalidateLocalAll() {
+        invalidationSequence.incrementAndGet();
+        local.invalidateAll();
+        generation = readGeneration();
+    }
+
+    @Override
+    public boolean hasEntry(String key) {
+        if (key == null) {
+            return false;
+        }
+        if (local.asMap().containsKey(key)) {
+            return true;
+        }
+        return decodeValue(store.get(entryKey(key))) != null;
+    }
+
+    @Override
+    public long getSize() {
+        return local.size();
+    }
+
+    /**
+     * Writes a serialized value, or a tombstone if {@code null}, unless a more recent version is already stored.
+     */
+    protected void putShared(String key, byte[] bytes) {
+        String versionKey = versionKey(key);
+        long version = store.addAndGet(versionKey, 1);
+        // the version must outlive the entries it protects
+        store.setTTL(versionKey, getStoreTTL() * 2);
+        byte[] encoded = encode(version, bytes);
+        String entryKey = entryKey(key);
+        byte[] current = store.get(entryKey);
+        while (current == null || decodeVersion(current) < version) {
+            if (store.compareAndSet(entryKey, current, encoded, getStoreTTL())) {
+                return;
+            }
+            current = store.get(entryKey);
+        }
+        log.debug("Skipping write of version: {} for key: {} in cache: {}, current version is more recent", version,
+                key, name);
+    }
+
+    protected static byte[] encode(long version, byte[] bytes) {
+        int length = bytes == null ? 0 : bytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(VERSION_BYTES + length);
+        buffer.putLong(version);
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+        return buffer.array();
+    }
+
+    protected static long decodeVersion(byte[] encoded) {
+        return ByteBuffer.wrap(encoded, 0, VERSION_BYTES).getLong();
+    }
+
+    /**
+     * Returns the value of an encoded entry, or {@code null} for a missing entry or a tombstone.
+     */
+    protected static Serializable decodeValue(byte[] encoded) {
+        if (encoded == null || encoded.length <= VERSION_BYTES) {
+            return null;
+        }
+        return SerializationUtils.deserialize(Arrays.copyOfRange(encoded, VERSION_BYTES, encoded.length));
+    }
+
+}
@@ -457,14 +457,16 @@ public class KeyValueBlobTransientStore implements TransientStoreProvider {
     protected void removeParameters(String key, KeyValueStore kvs) {
         String json = kvs.getString(key + DOT_PARAMINFO);
         List<String> parameters = jsonToList(json);
+        List<String> keys = new ArrayList<>();
         if (parameters != null) {
             for (String parameter : parameters) {
                 String k = key + DOT_PARAM_DOT + parameter;
-                kvs.put(k, (String) null);
-                kvs.put(k + FORMAT, (String) null);
+                keys.add(k);
+                keys.add(k + FORMAT);
             }
         }
-        kvs.put(key + DOT_PARAMINFO, (String) null);
+        keys.add(key + DOT_PARAMINFO);
+        kvs.delete(keys);
     }
 
     @Override
@@ -517,11 +519,13 @@ public class KeyValueBlobTransientStore implements TransientStoreProvider {
             // remove previous blobs
             removeBlobs(key, kvs);
             // write new blobs maps
+            Map<String, String> values = new HashMap<>();
             int i = 0;
             for (String blobMapJson : blobMapJsons) {
-                kvs.put(key + DOT_BLOB_DOT + i, blobMapJson, ttl);
+                values.put(key + DOT_BLOB_DOT + i, blobMapJson);
                 i++;
             }
+            kvs.putStrings(values, ttl);
             // write blob info
             kvs.put(key + DOT_BLOBINFO, blobInfoMapJson, ttl);
             addStorageSize(totalSize, kvs);
@@ -550,10 +554,12 @@ public class KeyValueBlobTransientStore implements TransientStoreProvider {
         long size = sizeStr == null ? 0 : Long.parseLong(sizeStr);
 
         // remove blobs
+        List<String> keys = new ArrayList<>(count + 1);
         for (int i = 0; i < count; i++) {
-            kvs.put(key + DOT_BLOB_DOT + i, (String) null);
+            keys.add(key + DOT_BLOB_DOT + i);
         }
-        kvs.put(key + DOT_BLOBINFO, (String) null);
+        keys.add(key + DOT_BLOBINFO);
+        kvs.delete(keys);
         // fix storage size
         addStorageSize(-size, kvs);
     }
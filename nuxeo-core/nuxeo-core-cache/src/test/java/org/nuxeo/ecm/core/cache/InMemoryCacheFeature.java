@@ -20,6 +20,8 @@
 
 package org.nuxeo.ecm.core.cache;
 
+import java.util.Arrays;
+
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
@@ -35,10 +37,24 @@ public class InMemoryCacheFeature implements RunnerFeature {
 
     public static final String MAXSIZE_TEST_CACHE_NAME = "maxsize-test-cache";
 
+    /** @since 11.1 */
+    public static final String TINYLFU_TEST_CACHE_NAME = "tinylfu-test-cache";
+
+    /** @since 11.1 */
+    public static final String WEIGHTED_TEST_CACHE_NAME = "weighted-test-cache";
+
+    /** @since 11.1 */
+    public static final String REFRESH_TEST_CACHE_NAME = "refresh-test-cache";
+
     @Override
     public void configure(FeaturesRunner runner, Binder binder) {
         binder.bind(Cache.class).annotatedWith(Names.named(MAXSIZE_TEST_CACHE_NAME)).toProvider(
                 () -> Framework.getService(CacheService.class).getCache(MAXSIZE_TEST_CACHE_NAME));
+        for (String name : Arrays.asList(TINYLFU_TEST_CACHE_NAME, WEIGHTED_TEST_CACHE_NAME,
+                REFRESH_TEST_CACHE_NAME)) {
+            binder.bind(Cache.class).annotatedWith(Names.named(name)).toProvider(
+                    () -> Framework.getService(CacheService.class).getCache(name));
+        }
     }
 
 }
@@ -0,0 +1,34 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.cache;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite.SuiteClasses;
+import org.nuxeo.runtime.test.runner.ContributableFeaturesRunner;
+import org.nuxeo.runtime.test.runner.Features;
+
+/**
+ * @since 11.1
+ */
+@RunWith(ContributableFeaturesRunner.class)
+@SuiteClasses(CacheComplianceFixture.class)
+@Features(KeyValueCacheFeature.class)
+public class TestCacheKeyValue {
+
+}
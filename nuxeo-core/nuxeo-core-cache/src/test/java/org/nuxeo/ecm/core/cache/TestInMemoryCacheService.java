@@ -20,19 +20,31 @@
 
 package org.nuxeo.ecm.core.cache;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 
+import com.codahale.metrics.SharedMetricRegistries;
+
 /**
  * @author Maxime Hilaire
  */
@@ -48,6 +60,18 @@ public class TestInMemoryCacheService {
     @Named(InMemoryCacheFeature.MAXSIZE_TEST_CACHE_NAME)
     Cache maxSizeCache;
 
+    @Inject
+    @Named(InMemoryCacheFeature.TINYLFU_TEST_CACHE_NAME)
+    Cache tinyLfuCache;
+
+    @Inject
+    @Named(InMemoryCacheFeature.WEIGHTED_TEST_CACHE_NAME)
+    Cache weightedCache;
+
+    @Inject
+    @Named(InMemoryCacheFeature.REFRESH_TEST_CACHE_NAME)
+    Cache refreshCache;
+
     @Test
     public void getGuavaCache() {
         InMemoryCacheImpl guavaCache = CacheFeature.unwrapImpl(InMemoryCacheImpl.class, defaultCache);
@@ -81,4 +105,105 @@ public class TestInMemoryCacheService {
         assertNull(defaultCache.get("key2"));
     }
 
+    @Test
+    public void tinyLfuAdmission() {
+        tinyLfuCache.put("hot", "val");
+        for (int i = 0; i < 10; i++) {
+            assertEquals("val", tinyLfuCache.get("hot"));
+        }
+        // a scan of keys never read doesn't flush the frequently accessed key once the cache is full
+        for (int i = 0; i < 300; i++) {
+            tinyLfuCache.put("scan" + i, "val" + i);
+        }
+        assertEquals("val", tinyLfuCache.get("hot"));
+        InMemoryCacheImpl impl = CacheFeature.unwrapImpl(InMemoryCacheImpl.class, tinyLfuCache);
+        assertTrue(impl.getStatistics().get(InMemoryCacheImpl.ADMISSION_ACCEPTED_STAT) >= 1);
+        assertTrue(impl.getStatistics().get(InMemoryCacheImpl.ADMISSION_REJECTED_STAT) >= 150);
+        assertTrue(((CacheManagement) tinyLfuCache).getSize() <= 100);
+        assertTrue(tinyLfuCache.keySet().contains("hot"));
+        assertTrue(SharedMetricRegistries.getOrCreate(MetricsService.class.getName()).getGauges().containsKey(
+                "nuxeo.cache.tinylfu-test-cache." + InMemoryCacheImpl.ADMISSION_REJECTED_STAT));
+    }
+
+    @Test
+    public void tinyLfuAdmissionWithLoader() {
+        tinyLfuCache.invalidateAll();
+        for (int i = 0; i < 100; i++) {
+            tinyLfuCache.get("hot" + i, key -> "val");
+            tinyLfuCache.get("hot" + i, key -> "val");
+        }
+        // keys loaded once on a miss are seen once, and are not more frequent than the entries they would evict
+        for (int i = 0; i < 300; i++) {
+            tinyLfuCache.get("scan" + i, key -> "val");
+        }
+        assertTrue(tinyLfuCache.keySet().stream().filter(key -> key.startsWith("hot")).count() >= 90);
+        // a key accessed again is more frequent than the least recently used entry and gets admitted
+        for (int i = 0; i < 5; i++) {
+            tinyLfuCache.get("again", key -> "val");
+        }
+        tinyLfuCache.put("other", "val");
+        assertTrue(tinyLfuCache.hasEntry("again"));
+    }
+
+    @Test
+    public void tinyLfuHitWithoutMainLock() throws Exception {
+        tinyLfuCache.invalidateAll();
+        for (int i = 0; i < 10; i++) {
+            tinyLfuCache.put("key" + i, "val" + i);
+        }
+        InMemoryCacheImpl impl = CacheFeature.unwrapImpl(InMemoryCacheImpl.class, tinyLfuCache);
+        String eldest;
+        impl.mainLock.lock();
+        try {
+            impl.drainReadBuffer();
+            List<String> keys = new ArrayList<>(impl.mainEntries.keySet());
+            assertTrue(keys.size() > 1);
+            eldest = keys.get(0);
+            // a hit doesn't wait for the lock of the main cache
+            String value = CompletableFuture.supplyAsync(() -> tinyLfuCache.get(eldest)).get(10, TimeUnit.SECONDS);
+            assertEquals("val" + eldest.substring(3), value);
+            assertEquals(eldest, impl.mainEntries.keySet().iterator().next());
+            // the buffered hit updates the recency order once drained
+            impl.drainReadBuffer();
+            assertEquals(0, impl.readBufferSize.get());
+            assertFalse(eldest.equals(impl.mainEntries.keySet().iterator().next()));
+            keys = new ArrayList<>(impl.mainEntries.keySet());
+            assertEquals(eldest, keys.get(keys.size() - 1));
+        } finally {
+            impl.mainLock.unlock();
+        }
+    }
+
+    @Test
+    public void maxWeightExceeded() {
+        // 1000 bytes: room for a single large entry
+        weightedCache.put("big1", new String(new char[400]));
+        weightedCache.put("big2", new String(new char[400]));
+        assertEquals(1, ((CacheManagement) weightedCache).getSize());
+        assertNotNull(weightedCache.get("big2"));
+        // while many small entries fit
+        for (int i = 0; i < 10; i++) {
+            weightedCache.put("small" + i, "v");
+        }
+        assertEquals(10, weightedCache.keySet().stream().filter(key -> key.startsWith("small")).count());
+        InMemoryCacheImpl impl = CacheFeature.unwrapImpl(InMemoryCacheImpl.class, weightedCache);
+        assertTrue(impl.getStatistics().get(InMemoryCacheImpl.EVICTION_STAT) >= 1);
+    }
+
+    @Test
+    public void refreshAhead() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("val1", refreshCache.get("key", key -> "val" + loads.incrementAndGet()));
+        Thread.sleep(20);
+        // entry returned, then reloaded in the background
+        assertEquals("val1", refreshCache.get("key", key -> "val" + loads.incrementAndGet()));
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!"val2".equals(refreshCache.get("key")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("val2", refreshCache.get("key"));
+        InMemoryCacheImpl impl = CacheFeature.unwrapImpl(InMemoryCacheImpl.class, refreshCache);
+        assertEquals(Long.valueOf(1), impl.getStatistics().get(InMemoryCacheImpl.REFRESH_STAT));
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(KeyValueCacheFeature.class)
+public class TestKeyValueCache {
+
+    @Inject
+    @Named(CacheFeature.DEFAULT_TEST_CACHE_NAME)
+    protected Cache cache;
+
+    @Test
+    public void testSharedTierSurvivesLocalInvalidation() {
+        KeyValueCacheImpl impl = CacheFeature.unwrapImpl(KeyValueCacheImpl.class, cache);
+        cache.put("key2", "val2");
+        // simulates a new node or a restart: the local tier is empty
+        impl.invalidateLocalAll();
+        assertFalse(impl.keySet().contains("key2"));
+        assertTrue(cache.hasEntry("key2"));
+        assertEquals("val2", cache.get("key2"));
+        // the local tier has been populated
+        assertTrue(impl.keySet().contains("key2"));
+    }
+
+    @Test
+    public void testInvalidationIsShared() {
+        KeyValueCacheImpl impl = CacheFeature.unwrapImpl(KeyValueCacheImpl.class, cache);
+        cache.put("key2", "val2");
+        cache.invalidate("key2");
+        impl.invalidateLocalAll();
+        assertNull(cache.get("key2"));
+        assertFalse(cache.hasEntry("key2"));
+
+        cache.put("key3", "val3");
+        cache.invalidateAll();
+        impl.invalidateLocalAll();
+        assertNull(cache.get("key3"));
+    }
+
+    @Test
+    public void testOlderVersionIsNotWritten() {
+        KeyValueCacheImpl impl = CacheFeature.unwrapImpl(KeyValueCacheImpl.class, cache);
+        // a more recent version written by another node
+        impl.store.put(impl.entryKey("key5"), KeyValueCacheImpl.encode(1000, SerializationUtils.serialize("val5")));
+        cache.put("key5", "stale");
+        impl.invalidateLocalAll();
+        assertEquals("val5", cache.get("key5"));
+    }
+
+    @Test
+    public void testLocalValueNotPopulatedAfterInvalidation() {
+        KeyValueCacheImpl impl = CacheFeature.unwrapImpl(KeyValueCacheImpl.class, cache);
+        cache.put("key2", "val2");
+        impl.invalidateLocalAll();
+        long sequence = impl.invalidationSequence.get();
+        // invalidation received while the value was being read from the shared tier
+        impl.invalidateLocal("key2");
+        assertTrue(impl.isInvalidatedSince("key2", sequence));
+        assertFalse(impl.isInvalidatedSince("key2", impl.invalidationSequence.get()));
+    }
+
+    @Test
+    public void testTierMetrics() {
+        KeyValueCacheImpl impl = CacheFeature.unwrapImpl(KeyValueCacheImpl.class, cache);
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        long localHit = registry.counter(impl.LOCAL_HIT_NAME).getCount();
+        long sharedHit = registry.counter(impl.SHARED_HIT_NAME).getCount();
+        long sharedMiss = registry.counter(impl.SHARED_MISS_NAME).getCount();
+        cache.put("key2", "val2");
+        cache.get("key2"); // local hit
+        impl.invalidateLocalAll();
+        cache.get("key2"); // shared hit
+        cache.get("key-not-exist"); // shared miss
+        assertEquals(localHit + 1, registry.counter(impl.LOCAL_HIT_NAME).getCount());
+        assertEquals(sharedHit + 1, registry.counter(impl.SHARED_HIT_NAME).getCount());
+        assertEquals(sharedMiss + 1, registry.counter(impl.SHARED_MISS_NAME).getCount());
+        assertTrue(registry.getGauges().containsKey(impl.LOCAL_HIT_RATIO_NAME));
+        assertTrue(registry.getGauges().containsKey(impl.SHARED_HIT_RATIO_NAME));
+    }
+
+}
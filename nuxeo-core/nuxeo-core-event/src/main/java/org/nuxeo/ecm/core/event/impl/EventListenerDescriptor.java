@@ -95,6 +95,22 @@ public class EventListenerDescriptor {
 
     protected Set<String> events;
 
+    /**
+     * The resources read by the listener, used to run independent post-commit listeners concurrently.
+     *
+     * @since 11.1
+     */
+    @XNodeList(value = "read", componentType = String.class, type = HashSet.class, nullByDefault = true)
+    protected Set<String> reads;
+
+    /**
+     * The resources written by the listener, used to run independent post-commit listeners concurrently.
+     *
+     * @since 11.1
+     */
+    @XNodeList(value = "write", componentType = String.class, type = HashSet.class, nullByDefault = true)
+    protected Set<String> writes;
+
     protected RuntimeContext rc;
 
     protected EventListener inLineListener;
@@ -130,6 +146,51 @@ public class EventListenerDescriptor {
         this.events = events.isEmpty() ? null : events;
     }
 
+    /**
+     * @since 11.1
+     */
+    public Set<String> getReads() {
+        return reads;
+    }
+
+    /**
+     * @since 11.1
+     */
+    public Set<String> getWrites() {
+        return writes;
+    }
+
+    /**
+     * Checks if the listener declares the resources it reads or writes.
+     *
+     * @since 11.1
+     */
+    public boolean hasDependencies() {
+        return (reads != null && !reads.isEmpty()) || (writes != null && !writes.isEmpty());
+    }
+
+    /**
+     * Checks if this listener must not run concurrently with the other one.
+     * <p>
+     * Listeners that don't declare their dependencies conflict with any other listener, otherwise two listeners
+     * conflict when one of them writes a resource read or written by the other.
+     *
+     * @since 11.1
+     */
+    public boolean conflictsWith(EventListenerDescriptor other) {
+        if (!hasDependencies() || !other.hasDependencies()) {
+            return true;
+        }
+        return intersects(writes, other.writes) || intersects(writes, other.reads) || intersects(reads, other.writes);
+    }
+
+    protected static boolean intersects(Set<String> a, Set<String> b) {
+        if (a == null || b == null) {
+            return false;
+        }
+        return a.stream().anyMatch(b::contains);
+    }
+
     public void setEnabled(boolean isEnabled) {
         this.isEnabled = isEnabled;
     }
@@ -233,6 +294,14 @@ public class EventListenerDescriptor {
             events = other.events;
         }
 
+        if (other.reads != null) {
+            reads = other.reads;
+        }
+
+        if (other.writes != null) {
+            writes = other.writes;
+        }
+
         if (other.transactionTimeOut != null) {
             transactionTimeOut = other.transactionTimeOut;
         }
@@ -19,11 +19,17 @@
  */
 package org.nuxeo.ecm.core.event.impl;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
@@ -39,13 +45,20 @@ import org.nuxeo.ecm.core.event.EventBundle;
 import org.nuxeo.ecm.core.event.EventStats;
 import org.nuxeo.ecm.core.event.ReconnectedEventBundle;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 /**
  * Executor that passes an event bundle to post-commit asynchronous listeners (in a separated thread in order to manage
  * transactions).
  * <p>
  * Allows a bulk mode where transaction management is not per-listener done once for the whole set of listeners.
+ * <p>
+ * When the {@link #PARALLELISM_PROP} property is greater than 1, listeners that declare non conflicting read/write
+ * dependencies are run concurrently on a bounded pool, the others keep their priority order.
  */
 public class PostCommitEventExecutor {
 
@@ -67,8 +80,24 @@ public class PostCommitEventExecutor {
 
     private static final int MAX_POOL_SIZE = 100;
 
+    /**
+     * The maximum number of post-commit listeners running concurrently for an event bundle, 1 to disable parallel
+     * dispatch.
+     *
+     * @since 11.1
+     */
+    public static final String PARALLELISM_PROP = "org.nuxeo.ecm.core.event.tx.PostCommitExecutor.parallelism";
+
+    /**
+     * @since 11.1
+     */
+    public static final int DEFAULT_PARALLELISM = 1;
+
     protected final ExecutorService executor;
 
+    // @since 11.1
+    protected ExecutorService listenerExecutor;
+
     /**
      * Creates non-daemon threads at normal priority.
      */
@@ -119,12 +148,40 @@ public class PostCommitEventExecutor {
         return defaultTimeoutMs;
     }
 
+    /**
+     * @since 11.1
+     */
+    protected int getParallelism() {
+        return Integer.parseInt(Framework.getProperty(PARALLELISM_PROP, String.valueOf(DEFAULT_PARALLELISM)));
+    }
+
+    /**
+     * Returns the bounded pool used to run listeners concurrently, created on first use.
+     *
+     * @since 11.1
+     */
+    protected synchronized ExecutorService getListenerExecutor(int parallelism) {
+        if (listenerExecutor == null) {
+            ThreadFactory threadFactory = new NamedThreadFactory("Nuxeo-Event-PostCommit-Listener-");
+            listenerExecutor = new ThreadPoolExecutor(parallelism, parallelism, KEEP_ALIVE_TIME_SECOND,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+            ((ThreadPoolExecutor) listenerExecutor).allowCoreThreadTimeOut(true);
+        }
+        return listenerExecutor;
+    }
+
     public void shutdown(long timeoutMillis) throws InterruptedException {
         executor.shutdown();
         executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
         if (!executor.isTerminated()) {
             executor.shutdownNow();
         }
+        synchronized (this) {
+            if (listenerExecutor != null) {
+                listenerExecutor.shutdownNow();
+                listenerExecutor = null;
+            }
+        }
     }
 
     public void run(List<EventListenerDescriptor> listeners, EventBundle event) {
@@ -157,8 +214,15 @@ public class PostCommitEventExecutor {
                     Long.valueOf(timeoutMillis), bulk ? " in bulk mode" : ""));
         }
 
-        Callable<Boolean> callable = !bulk ? new EventBundleRunner(listeners, bundle) : new EventBundleBulkRunner(
-                listeners, bundle);
+        Callable<Boolean> callable;
+        int parallelism = getParallelism();
+        if (bulk) {
+            callable = new EventBundleBulkRunner(listeners, bundle);
+        } else if (parallelism > 1) {
+            callable = new EventBundleParallelRunner(listeners, bundle, getListenerExecutor(parallelism));
+        } else {
+            callable = new EventBundleRunner(listeners, bundle);
+        }
         FutureTask<Boolean> futureTask = new FutureTask<>(callable);
         try {
             executor.execute(futureTask);
@@ -209,6 +273,8 @@ public class PostCommitEventExecutor {
      */
     protected static class EventBundleRunner implements Callable<Boolean> {
 
+        protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
         protected final List<EventListenerDescriptor> listeners;
 
         protected final EventBundle bundle;
@@ -235,60 +301,183 @@ public class PostCommitEventExecutor {
                 if (filtered.isEmpty()) {
                     continue;
                 }
-                if (log.isDebugEnabled()) {
-                    log.debug("Events postcommit execution start for listener: " + listener.getName());
-                }
                 SequenceTracer.start("run listener " + listener.getName());
-                long t1 = System.currentTimeMillis();
+                long elapsed = runListener(listener, filtered, stats);
+                SequenceTracer.stop("listener done " + elapsed + " ms");
+                // even if interrupted due to timeout, we continue the loop
+            }
+            long elapsed = System.currentTimeMillis() - t0;
+            if (log.isDebugEnabled()) {
+                log.debug("Events postcommit execution finished in " + elapsed + "ms");
+            }
+            SequenceTracer.stop("postcommit done" + elapsed + " ms");
+            return Boolean.TRUE; // no error to report
+        }
 
-                boolean ok = false;
-                ReconnectedEventBundle reconnected = null;
-                // transaction timeout is managed by the FutureTask
-                boolean tx = TransactionHelper.startTransaction();
-                try {
-                    reconnected = new ReconnectedEventBundleImpl(filtered, listeners.toString());
+        /**
+         * Runs a listener in its own transaction and returns its execution time in milliseconds.
+         *
+         * @since 11.1
+         */
+        protected long runListener(EventListenerDescriptor listener, EventBundle filtered, EventStats stats) {
+            if (log.isDebugEnabled()) {
+                log.debug("Events postcommit execution start for listener: " + listener.getName());
+            }
+            long t1 = System.currentTimeMillis();
+            long elapsed = 0;
+            boolean ok = false;
+            ReconnectedEventBundle reconnected = null;
+            // transaction timeout is managed by the FutureTask
+            boolean tx = TransactionHelper.startTransaction();
+            try {
+                reconnected = new ReconnectedEventBundleImpl(filtered, listeners.toString());
 
-                    listener.asPostCommitListener().handleEvent(reconnected);
+                listener.asPostCommitListener().handleEvent(reconnected);
 
-                    ok = true;
-                    // don't check for interrupted flag, the event completed normally, no reason to rollback
-                } catch (RuntimeException e) {
-                    log.error("Events postcommit execution encountered exception for listener: " + listener.getName(),
-                            e);
-                    // don't rethrow, but rollback (ok=false) and continue loop
+                ok = true;
+                // don't check for interrupted flag, the event completed normally, no reason to rollback
+            } catch (RuntimeException e) {
+                log.error("Events postcommit execution encountered exception for listener: " + listener.getName(), e);
+                // don't rethrow, but rollback (ok=false) and continue
+            } finally {
+                try {
+                    if (reconnected != null) {
+                        reconnected.disconnect();
+                    }
                 } finally {
-                    try {
-                        if (reconnected != null) {
-                            reconnected.disconnect();
-                        }
-                    } finally {
-                        if (tx) {
-                            if (!ok) {
-                                TransactionHelper.setTransactionRollbackOnly();
-                                log.error("Rolling back transaction");
-                            }
-                            TransactionHelper.commitOrRollbackTransaction();
-                        }
-                        long elapsed = System.currentTimeMillis() - t1;
-                        if (stats != null) {
-                            stats.logAsyncExec(listener, elapsed);
-                        }
-                        if (log.isDebugEnabled()) {
-                            log.debug("Events postcommit execution end for listener: " + listener.getName() + " in "
-                                    + elapsed + "ms");
+                    if (tx) {
+                        if (!ok) {
+                            TransactionHelper.setTransactionRollbackOnly();
+                            log.error("Rolling back transaction");
                         }
-                        SequenceTracer.stop("listener done " + elapsed + " ms");
+                        TransactionHelper.commitOrRollbackTransaction();
+                    }
+                    elapsed = System.currentTimeMillis() - t1;
+                    if (stats != null) {
+                        stats.logAsyncExec(listener, elapsed);
+                    }
+                    String timerName = MetricRegistry.name("nuxeo", "events", "listeners", listener.getName(),
+                            "postcommit");
+                    registry.timer(timerName).update(elapsed, TimeUnit.MILLISECONDS);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Events postcommit execution end for listener: " + listener.getName() + " in "
+                                + elapsed + "ms");
                     }
                 }
-                // even if interrupted due to timeout, we continue the loop
+            }
+            return elapsed;
+        }
+    }
+
+    /**
+     * Lets the listeners process the event bundle concurrently.
+     * <p>
+     * Each listener is run in its own transaction like in {@link EventBundleRunner}, a listener starts only once the
+     * previous listeners it {@link EventListenerDescriptor#conflictsWith conflicts with} are done, so listeners without
+     * declared dependencies keep running one after the other in priority order.
+     * <p>
+     * If the runner is interrupted, the listeners not started yet are cancelled and the running ones are interrupted.
+     *
+     * @since 11.1
+     */
+    protected static class EventBundleParallelRunner extends EventBundleRunner {
+
+        protected final Executor listenerExecutor;
+
+        // threads of the listeners currently running, to interrupt them
+        protected final Set<Thread> listenerThreads = ConcurrentHashMap.newKeySet();
+
+        protected volatile boolean interrupted;
+
+        public EventBundleParallelRunner(List<EventListenerDescriptor> listeners, EventBundle bundle,
+                Executor listenerExecutor) {
+            super(listeners, bundle);
+            this.listenerExecutor = listenerExecutor;
+        }
+
+        @Override
+        public Boolean call() {
+            if (log.isDebugEnabled()) {
+                log.debug("Events postcommit parallel execution starting in thread: "
+                        + Thread.currentThread().getName());
+            }
+            SequenceTracer.startFrom(callerThread, "ParallelPostcommit", "#ff410f");
+            long t0 = System.currentTimeMillis();
+            EventStats stats = Framework.getService(EventStats.class);
+
+            List<EventListenerDescriptor> scheduled = new ArrayList<>();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (EventListenerDescriptor listener : listeners) {
+                EventBundle filtered = listener.filterBundle(bundle);
+                if (filtered.isEmpty()) {
+                    continue;
+                }
+                List<CompletableFuture<Void>> previous = new ArrayList<>();
+                for (int i = 0; i < scheduled.size(); i++) {
+                    if (listener.conflictsWith(scheduled.get(i))) {
+                        previous.add(futures.get(i));
+                    }
+                }
+                // an error in a previous listener doesn't prevent this one to run
+                CompletableFuture<Void> future = CompletableFuture.allOf(previous.toArray(new CompletableFuture<?>[0]))
+                                                                  .handle((v, e) -> v)
+                                                                  .thenRunAsync(() -> runListenerInterruptibly(
+                                                                          listener, filtered, stats), listenerExecutor);
+                scheduled.add(listener);
+                futures.add(future);
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Events postcommit parallel execution interrupted, cancelling the remaining listeners");
+                cancelListeners(futures);
+            } catch (ExecutionException e) {
+                log.error("Events postcommit parallel execution encountered unexpected exception", e.getCause());
             }
             long elapsed = System.currentTimeMillis() - t0;
             if (log.isDebugEnabled()) {
-                log.debug("Events postcommit execution finished in " + elapsed + "ms");
+                log.debug("Events postcommit parallel execution of " + scheduled.size() + " listeners finished in "
+                        + elapsed + "ms");
             }
-            SequenceTracer.stop("postcommit done" + elapsed + " ms");
+            SequenceTracer.stop("postcommit done " + elapsed + " ms");
             return Boolean.TRUE; // no error to report
         }
+
+        /**
+         * Runs a listener from the listener pool, registering its thread so that it can be interrupted.
+         */
+        protected void runListenerInterruptibly(EventListenerDescriptor listener, EventBundle filtered,
+                EventStats stats) {
+            Thread thread = Thread.currentThread();
+            synchronized (listenerThreads) {
+                if (interrupted) {
+                    return;
+                }
+                listenerThreads.add(thread);
+            }
+            try {
+                runListener(listener, filtered, stats);
+            } finally {
+                synchronized (listenerThreads) {
+                    listenerThreads.remove(thread);
+                    // don't leak the interruption to the next task of the pool thread
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        /**
+         * Cancels the listeners not started yet and interrupts the running ones, like the thread of the sequential
+         * runner is interrupted.
+         */
+        protected void cancelListeners(List<CompletableFuture<Void>> futures) {
+            synchronized (listenerThreads) {
+                interrupted = true;
+                futures.forEach(future -> future.cancel(true));
+                listenerThreads.forEach(Thread::interrupt);
+            }
+        }
     }
 
     /**
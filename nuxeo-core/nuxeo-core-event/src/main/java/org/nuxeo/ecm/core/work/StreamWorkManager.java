@@ -59,6 +59,7 @@ import org.nuxeo.lib.stream.computation.StreamManager;
 import org.nuxeo.lib.stream.computation.StreamProcessor;
 import org.nuxeo.lib.stream.computation.Topology;
 import org.nuxeo.lib.stream.computation.internals.RecordFilterChainImpl;
+import org.nuxeo.lib.stream.computation.log.VirtualThreadFactory;
 import org.nuxeo.lib.stream.log.LogAppender;
 import org.nuxeo.lib.stream.log.LogLag;
 import org.nuxeo.lib.stream.log.LogManager;
@@ -346,8 +347,10 @@ public class StreamWorkManager extends WorkManagerImpl {
         List<WorkQueueDescriptor> descriptors = getDescriptors(QUEUES_EP);
         // create the single topology with one root per work pool
         Topology.Builder builder = Topology.builder();
-        descriptors.stream().filter(WorkQueueDescriptor::isProcessingEnabled).forEach(d -> builder.addComputation(
-                () -> new WorkComputation(d.getId()), Collections.singletonList("i1:" + d.getId())));
+        descriptors.stream()
+                   .filter(WorkQueueDescriptor::isProcessingEnabled)
+                   .forEach(d -> builder.addComputation(() -> new WorkComputation(d.getId(), d.getCoalescingWindow()),
+                           Collections.singletonList("i1:" + d.getId())));
         topology = builder.build();
         // create a topology for the disabled work pools in order to init their input streams
         Topology.Builder builderDisabled = Topology.builder();
@@ -360,8 +363,42 @@ public class StreamWorkManager extends WorkManagerImpl {
         ComputationPolicy policy = new ComputationPolicyBuilder().continueOnFailure(true).build();
         RecordFilterChain filter = getRecordFilter();
         settings = new Settings(DEFAULT_CONCURRENCY, getPartitions(DEFAULT_CONCURRENCY), getCodec(), policy, filter);
-        descriptors.forEach(item -> settings.setConcurrency(item.getId(), item.getMaxThreads()));
-        descriptors.forEach(item -> settings.setPartitions(item.getId(), getPartitions(item.getMaxThreads())));
+        descriptors.forEach(item -> settings.setConcurrency(item.getId(), getConcurrency(item)));
+        descriptors.forEach(item -> settings.setPartitions(item.getId(), getPartitions(item)));
+        ComputationPolicy virtualPolicy = new ComputationPolicyBuilder().continueOnFailure(true)
+                                                                        .virtualThreads(true)
+                                                                        .build();
+        descriptors.stream()
+                   .filter(this::useVirtualThreads)
+                   .forEach(item -> settings.setPolicy(item.getId(), virtualPolicy));
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected boolean useVirtualThreads(WorkQueueDescriptor descriptor) {
+        return descriptor.useVirtualThreads() && VirtualThreadFactory.isSupported();
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected int getConcurrency(WorkQueueDescriptor descriptor) {
+        if (useVirtualThreads(descriptor)) {
+            return descriptor.getMaxConcurrency();
+        }
+        return descriptor.getMaxThreads();
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected int getPartitions(WorkQueueDescriptor descriptor) {
+        if (useVirtualThreads(descriptor)) {
+            // virtual threads are cheap, no need to over provision, one partition per concurrent work
+            return descriptor.getMaxConcurrency();
+        }
+        return getPartitions(descriptor.getMaxThreads());
     }
 
     protected int getPartitions(int maxThreads) {
@@ -29,6 +29,11 @@ import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.buffer.CircularFifoBuffer;
@@ -39,16 +44,22 @@ import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.lib.stream.computation.AbstractComputation;
 import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.services.config.ConfigurationService;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
 
 /**
  * A Stream computation that consumes works.
+ * <p>
+ * When a coalescing window is defined, works are buffered during the window and duplicates are removed before
+ * execution: for a coalescing work only the last scheduled instance is kept, for an idempotent work only the first one.
+ * Other works are executed as is, in order. The offsets are committed once all the works of the window are executed.
  *
  * @since 9.3
  */
@@ -57,6 +68,12 @@ public class WorkComputation extends AbstractComputation {
 
     protected static final int IDS_SIZE = 50;
 
+    // @since 11.1
+    protected static final String TIMER_COALESCING = "coalescing";
+
+    // @since 11.1 the window is executed before its end if it contains too many works
+    protected static final int COALESCING_CAPACITY = 1000;
+
     protected final CircularFifoBuffer workIds = new CircularFifoBuffer(IDS_SIZE);
 
     protected final Timer workTimer;
@@ -65,11 +82,52 @@ public class WorkComputation extends AbstractComputation {
 
     protected Work work;
 
+    // @since 11.1
+    protected final long coalescingWindowMs;
+
+    // @since 11.1
+    protected final Counter coalescedCount;
+
+    // @since 11.1 works of the current window in scheduling order
+    protected final List<WindowEntry> window = new ArrayList<>();
+
+    // @since 11.1 coalescing and idempotent works of the current window by id
+    protected final Map<String, WindowEntry> windowById = new HashMap<>();
+
     public WorkComputation(String name) {
+        this(name, Duration.ZERO);
+    }
+
+    /**
+     * @param coalescingWindow the duration during which works are buffered to remove duplicates, zero to execute works
+     *            as soon as they are read
+     * @since 11.1
+     */
+    public WorkComputation(String name, Duration coalescingWindow) {
         super(name, 1, 0);
         MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
         workTimer = registry.timer(MetricRegistry.name("nuxeo", "works", name, "total"));
+        coalescedCount = registry.counter(MetricRegistry.name("nuxeo", "works", name, "coalesced"));
         stateTTL = Framework.getService(ConfigurationService.class).getLong(STATETTL_KEY, STATETTL_DEFAULT_VALUE);
+        coalescingWindowMs = coalescingWindow.toMillis();
+    }
+
+    @Override
+    public void init(ComputationContext context) {
+        window.clear();
+        windowById.clear();
+        if (coalescingWindowMs > 0) {
+            context.setTimer(TIMER_COALESCING, System.currentTimeMillis() + coalescingWindowMs);
+        }
+    }
+
+    @Override
+    public void processTimer(ComputationContext context, String key, long timestamp) {
+        if (!TIMER_COALESCING.equals(key)) {
+            return;
+        }
+        processWindow(context);
+        context.setTimer(TIMER_COALESCING, System.currentTimeMillis() + coalescingWindowMs);
     }
 
     @Override
@@ -81,9 +139,75 @@ public class WorkComputation extends AbstractComputation {
 
     @Override
     public void processRecord(ComputationContext context, String inputStreamName, Record record) {
-        work = deserialize(record.getData());
+        if (coalescingWindowMs <= 0) {
+            processWork(context, deserialize(record.getData()), record, context.getLastOffset());
+            return;
+        }
+        addToWindow(deserialize(record.getData()), record, context.getLastOffset());
+        if (window.size() >= COALESCING_CAPACITY) {
+            processWindow(context);
+        }
+    }
+
+    /**
+     * Adds the work to the current window, unless an instance of the same work is already there.
+     *
+     * @since 11.1
+     */
+    protected void addToWindow(Work newWork, Record record, LogOffset offset) {
+        String id = newWork.getId();
+        WindowEntry entry = windowById.get(id);
+        if (entry != null) {
+            if (newWork.isCoalescing()) {
+                // only the last instance matters, it is executed at the place of the first one
+                log.debug("Coalescing work id: {} in window", id);
+                entry.work = newWork;
+                entry.record = record;
+                entry.offset = offset;
+                coalescedCount.inc();
+                return;
+            } else if (newWork.isIdempotent()) {
+                log.debug("Dropping duplicate of idempotent work id: {} in window", id);
+                coalescedCount.inc();
+                return;
+            }
+        }
+        entry = new WindowEntry(newWork, record, offset);
+        window.add(entry);
+        if (newWork.isCoalescing() || newWork.isIdempotent()) {
+            windowById.putIfAbsent(id, entry);
+        }
+    }
+
+    /**
+     * Executes the works of the current window, the offsets are committed only if all works are completed.
+     *
+     * @since 11.1
+     */
+    protected void processWindow(ComputationContext context) {
+        if (window.isEmpty()) {
+            return;
+        }
         try {
-            if (work.isCoalescing() && WorkStateHelper.getLastOffset(work.getId()) > context.getLastOffset().offset()) {
+            for (WindowEntry entry : window) {
+                processWork(context, entry.work, entry.record, entry.offset);
+                if (entry.work.isWorkInstanceSuspended() || Thread.currentThread().isInterrupted()) {
+                    // the remaining works of the window will be read again
+                    context.cancelAskForCheckpoint();
+                    return;
+                }
+            }
+            context.askForCheckpoint();
+        } finally {
+            window.clear();
+            windowById.clear();
+        }
+    }
+
+    protected void processWork(ComputationContext context, Work work, Record record, LogOffset offset) {
+        this.work = work;
+        try {
+            if (work.isCoalescing() && WorkStateHelper.getLastOffset(work.getId()) > offset.offset()) {
                 log.debug("Skipping duplicate of coalescing work id: " + work.getId() + " " + work);
             } else if (work.isIdempotent() && workIds.contains(work.getId())) {
                 log.debug("Skipping duplicate of idempotent work id: " + work.getId());
@@ -122,7 +246,7 @@ public class WorkComputation extends AbstractComputation {
                 // Report an error on the work and continue
                 log.error(String.format(
                         "Skip Work in failure: id: %s, title: %s, offset: %s, record: %s, thread: %s", work.getId(),
-                        work.getTitle(), context.getLastOffset(), record, Thread.currentThread().getName()));
+                        work.getTitle(), offset, record, Thread.currentThread().getName()));
                 context.askForCheckpoint();
             }
             // Cleanup should take care of logging error except if exception comes from the cleanup
@@ -131,7 +255,7 @@ public class WorkComputation extends AbstractComputation {
             cleanupWorkInFailure(work, e);
         } finally {
             workTimer.update(work.getCompletionTime() - work.getStartTime(), TimeUnit.MILLISECONDS);
-            work = null;
+            this.work = null;
         }
     }
 
@@ -143,6 +267,25 @@ public class WorkComputation extends AbstractComputation {
         }
     }
 
+    /**
+     * A work read during a coalescing window.
+     *
+     * @since 11.1
+     */
+    protected static class WindowEntry {
+        protected Work work;
+
+        protected Record record;
+
+        protected LogOffset offset;
+
+        protected WindowEntry(Work work, Record record, LogOffset offset) {
+            this.work = work;
+            this.record = record;
+            this.offset = offset;
+        }
+    }
+
     @SuppressWarnings("squid:S2093")
     public static Work deserialize(byte[] data) {
         // TODO: switch to commons-lang3 SerializationUtils
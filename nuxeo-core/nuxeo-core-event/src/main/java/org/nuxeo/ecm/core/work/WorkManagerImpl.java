@@ -64,6 +64,7 @@ import org.nuxeo.ecm.core.work.api.WorkSchedulePath;
 import org.nuxeo.lib.stream.codec.AvroMessageCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.log.VirtualThreadFactory;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.metrics.NuxeoMetricSet;
@@ -221,8 +222,20 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             throw new IllegalStateException("work queue " + config.id + " already have an executor");
         }
         NuxeoBlockingQueue queue = queuing.init(config);
-        ThreadFactory threadFactory = new NamedThreadFactory(THREAD_PREFIX + config.id + "-");
+        NamedThreadFactory namedThreadFactory = new NamedThreadFactory(THREAD_PREFIX + config.id + "-");
+        ThreadFactory threadFactory = namedThreadFactory;
         int maxPoolSize = config.getMaxThreads();
+        if (config.useVirtualThreads()) {
+            if (VirtualThreadFactory.isSupported()) {
+                // virtual threads are cheap to park, one per concurrent work
+                threadFactory = new VirtualThreadFactory(THREAD_PREFIX + config.id,
+                        namedThreadFactory::handleUncaughtException);
+                maxPoolSize = config.getMaxConcurrency();
+            } else {
+                log.warn("Virtual threads are not supported by the JVM, work queue {} uses {} platform threads",
+                        config.id, maxPoolSize);
+            }
+        }
         WorkThreadPoolExecutor executor = new WorkThreadPoolExecutor(maxPoolSize, maxPoolSize, 0, TimeUnit.SECONDS,
                 queue, threadFactory);
         // prestart all core threads so that direct additions to the queue
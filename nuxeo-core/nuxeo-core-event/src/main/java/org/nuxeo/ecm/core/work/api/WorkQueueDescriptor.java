@@ -18,6 +18,7 @@
  */
 package org.nuxeo.ecm.core.work.api;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -43,6 +44,11 @@ public class WorkQueueDescriptor implements Descriptor {
 
     public static final int DEFAULT_CAPACITY = -1;
 
+    /**
+     * @since 11.1
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
     @XNode("@id")
     public String id;
 
@@ -81,6 +87,54 @@ public class WorkQueueDescriptor implements Descriptor {
         return maxThreads == null ? DEFAULT_MAX_THREADS : maxThreads.intValue();
     }
 
+    /**
+     * When {@code true} the works are run on virtual threads, if supported by the JVM, the number of concurrent works is
+     * then limited by {@link #getMaxConcurrency()} instead of {@link #getMaxThreads()}. This is suited for I/O bound
+     * works.
+     *
+     * @since 11.1
+     */
+    @XNode("virtualThreads")
+    public Boolean virtualThreads;
+
+    /**
+     * @since 11.1
+     */
+    public boolean useVirtualThreads() {
+        return Boolean.TRUE.equals(virtualThreads);
+    }
+
+    /**
+     * The maximum number of works running concurrently on virtual threads.
+     *
+     * @since 11.1
+     */
+    @XNode("maxConcurrency")
+    public Integer maxConcurrency;
+
+    /**
+     * @since 11.1
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency == null ? DEFAULT_MAX_CONCURRENCY : maxConcurrency.intValue();
+    }
+
+    /**
+     * When specified, works read from the queue are buffered during this window so that duplicates (same work id) of
+     * coalescing or idempotent works are executed only once. Only used by the StreamWorkManager.
+     *
+     * @since 11.1
+     */
+    @XNode("coalescingWindow")
+    public Duration coalescingWindow;
+
+    /**
+     * @since 11.1
+     */
+    public Duration getCoalescingWindow() {
+        return coalescingWindow == null ? Duration.ZERO : coalescingWindow;
+    }
+
     @XNodeList(value = "category", type = HashSet.class, componentType = String.class)
     public Set<String> categories = Collections.emptySet();
 
@@ -107,6 +161,9 @@ public class WorkQueueDescriptor implements Descriptor {
         merged.capacity = other.capacity != null ? other.capacity : capacity;
         merged.processing = other.processing != null ? other.processing : processing;
         merged.maxThreads = other.maxThreads != null ? other.maxThreads : maxThreads;
+        merged.virtualThreads = other.virtualThreads != null ? other.virtualThreads : virtualThreads;
+        merged.maxConcurrency = other.maxConcurrency != null ? other.maxConcurrency : maxConcurrency;
+        merged.coalescingWindow = other.coalescingWindow != null ? other.coalescingWindow : coalescingWindow;
         merged.categories = new HashSet<>(categories);
         merged.categories.addAll(other.categories);
         return merged;
@@ -125,8 +182,16 @@ public class WorkQueueDescriptor implements Descriptor {
         sb.append(isProcessingEnabled());
         sb.append(" maxThreads=");
         sb.append(getMaxThreads());
+        if (useVirtualThreads()) {
+            sb.append(" virtualThreads=true maxConcurrency=");
+            sb.append(getMaxConcurrency());
+        }
         sb.append(" capacity=");
         sb.append(getCapacity());
+        if (coalescingWindow != null) {
+            sb.append(" coalescingWindow=");
+            sb.append(coalescingWindow);
+        }
         sb.append(")");
         return sb.toString();
     }
@@ -0,0 +1,81 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.event.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.nuxeo.ecm.core.event.EventBundle;
+import org.nuxeo.ecm.core.event.PostCommitEventListener;
+
+/**
+ * Post-commit listener taking some time, keeping track of the number of listeners running concurrently.
+ *
+ * @since 11.1
+ */
+public class SlowPostCommitEventListener implements PostCommitEventListener {
+
+    protected static final long DURATION_MS = 200;
+
+    private static AtomicInteger handledCount = new AtomicInteger(0);
+
+    private static AtomicInteger runningCount = new AtomicInteger(0);
+
+    private static AtomicInteger maxRunningCount = new AtomicInteger(0);
+
+    private static AtomicInteger interruptedCount = new AtomicInteger(0);
+
+    @Override
+    public void handleEvent(EventBundle events) {
+        int running = runningCount.incrementAndGet();
+        maxRunningCount.accumulateAndGet(running, Math::max);
+        try {
+            Thread.sleep(DURATION_MS);
+        } catch (InterruptedException e) {
+            interruptedCount.incrementAndGet();
+            Thread.currentThread().interrupt();
+        } finally {
+            runningCount.decrementAndGet();
+            handledCount.incrementAndGet();
+        }
+    }
+
+    public static int handledCount() {
+        return handledCount.get();
+    }
+
+    public static int runningCount() {
+        return runningCount.get();
+    }
+
+    public static int maxRunningCount() {
+        return maxRunningCount.get();
+    }
+
+    public static int interruptedCount() {
+        return interruptedCount.get();
+    }
+
+    public static void reset() {
+        handledCount.set(0);
+        runningCount.set(0);
+        maxRunningCount.set(0);
+        interruptedCount.set(0);
+    }
+
+}
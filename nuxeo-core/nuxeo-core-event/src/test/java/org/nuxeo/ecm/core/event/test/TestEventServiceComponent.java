@@ -180,6 +180,73 @@ public class TestEventServiceComponent {
         assertEquals(2, DummyPostCommitEventListener.eventCount());
     }
 
+    @Test
+    public void testParallelPostCommit() throws Exception {
+        Framework.getProperties().setProperty(PostCommitEventExecutor.PARALLELISM_PROP, "4");
+        Framework.getProperties().setProperty(PostCommitEventExecutor.TIMEOUT_MS_PROP, "10000");
+        SlowPostCommitEventListener.reset();
+        try {
+            hotDeployer.deploy("org.nuxeo.ecm.core.event:test-parallel-postcommit-listeners.xml");
+
+            EventListenerDescriptor desc1 = getService().getEventListener("testParallelPostCommit1");
+            EventListenerDescriptor desc2 = getService().getEventListener("testParallelPostCommit2");
+            EventListenerDescriptor desc3 = getService().getEventListener("testParallelPostCommit3");
+            assertFalse(desc1.conflictsWith(desc2));
+            assertTrue(desc1.conflictsWith(desc3));
+            assertFalse(desc2.conflictsWith(desc3));
+
+            EventService service = getService();
+            Event event = new EventImpl("testparallelpostcommit", new EventContextImpl());
+            event.setIsCommitEvent(true);
+            service.fireEvent(event);
+            service.waitForAsyncCompletion();
+            assertEquals(3, SlowPostCommitEventListener.handledCount());
+            // the first two listeners are independent, the third one waits for the first
+            assertEquals(2, SlowPostCommitEventListener.maxRunningCount());
+        } finally {
+            Framework.getProperties().remove(PostCommitEventExecutor.PARALLELISM_PROP);
+            Framework.getProperties().setProperty(PostCommitEventExecutor.TIMEOUT_MS_PROP, "300");
+        }
+    }
+
+    @Test
+    public void testParallelPostCommitInterrupted() throws Exception {
+        Framework.getProperties().setProperty(PostCommitEventExecutor.PARALLELISM_PROP, "4");
+        Framework.getProperties().setProperty(PostCommitEventExecutor.TIMEOUT_MS_PROP, "10000");
+        SlowPostCommitEventListener.reset();
+        try {
+            hotDeployer.deploy("org.nuxeo.ecm.core.event:test-parallel-postcommit-listeners.xml");
+
+            EventService service = getService();
+            Thread thread = new Thread(() -> {
+                Event event = new EventImpl("testparallelpostcommit", new EventContextImpl());
+                event.setIsCommitEvent(true);
+                service.fireEvent(event);
+            });
+            thread.start();
+            // interrupt the caller while the first two listeners run
+            long deadline = System.currentTimeMillis() + 5000;
+            while (SlowPostCommitEventListener.runningCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(2, SlowPostCommitEventListener.runningCount());
+            thread.interrupt();
+            thread.join(5000);
+            deadline = System.currentTimeMillis() + 5000;
+            while (SlowPostCommitEventListener.handledCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            // leave time to the third listener to wrongly start
+            Thread.sleep(500);
+            // the running listeners were interrupted, the third one waiting for the first was cancelled
+            assertEquals(2, SlowPostCommitEventListener.interruptedCount());
+            assertEquals(2, SlowPostCommitEventListener.handledCount());
+        } finally {
+            Framework.getProperties().remove(PostCommitEventExecutor.PARALLELISM_PROP);
+            Framework.getProperties().setProperty(PostCommitEventExecutor.TIMEOUT_MS_PROP, "300");
+        }
+    }
+
     /**
      * Test that when the event service component is deactivated, the threads of the async event executor are shut down.
      */
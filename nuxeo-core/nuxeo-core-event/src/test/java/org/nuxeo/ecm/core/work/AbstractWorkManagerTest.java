@@ -412,6 +412,25 @@ public abstract class AbstractWorkManagerTest {
         assertTrue(service.isProcessingEnabled("SleepWork"));
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event.test:test-workmanager-virtual-threads.xml")
+    public void testWorkManagerVirtualThreads() throws Exception {
+        WorkQueueDescriptor qd = service.getWorkQueueDescriptor(QUEUE);
+        assertTrue(qd.useVirtualThreads());
+        assertEquals(8, qd.getMaxConcurrency());
+        // merged with the initial contribution
+        assertEquals(2, qd.getMaxThreads());
+
+        // works are processed with the same metrics, whether virtual threads are supported or not
+        tracker = new MetricsTracker();
+        int duration = getDurationMillis();
+        for (int i = 0; i < 8; i++) {
+            service.schedule(new SleepWork(duration));
+        }
+        assertTrue(service.awaitCompletion(duration * 10, TimeUnit.MILLISECONDS));
+        tracker.assertDiff(0, 0, 8, 0);
+    }
+
     @Test
     public void testWorkManagerConfigDisableAllAfterStart() throws Exception {
         try {
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
@@ -30,8 +31,13 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.ecm.core.work.api.WorkQueueMetrics;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.Deploy;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 /**
  * Adapt the tests with the limitation of the stream impl.
  *
@@ -201,6 +207,27 @@ public class StreamWorkManagerTest extends AbstractWorkManagerTest {
         log.debug("StreamWorkManagerTest.onlyFirstAndLastCoalescingWorksShouldBeExecuted() ending");
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event:test-stream-workmanager-coalescing-window.xml")
+    public void testCoalescingWindow() throws InterruptedException {
+        // a window well below the completion timeout, so that the works of the window are executed in time
+        Duration window = service.getWorkQueueDescriptor(QUEUE).getCoalescingWindow();
+        assertEquals(Duration.ofSeconds(1), window);
+        Counter coalesced = SharedMetricRegistries.getOrCreate(MetricsService.class.getName())
+                                                  .counter(MetricRegistry.name("nuxeo", "works", QUEUE, "coalesced"));
+        long initialCoalesced = coalesced.getCount();
+        // works of the same window are merged before execution, only the last coalescing work is executed
+        SleepWork longWork = createCoalescing(getDurationMillis() * 100);
+        SleepWork shortWork = createCoalescing(getDurationMillis());
+        service.schedule(longWork);
+        service.schedule(longWork);
+        service.schedule(shortWork);
+        // the long work is never executed, the coalesced count tells how many works were merged
+        assertTrue(service.awaitCompletion(window.toMillis() + getDurationMillis() * 10, TimeUnit.MILLISECONDS));
+        assertEquals(2, coalesced.getCount() - initialCoalesced);
+        tracker.assertDiff(0, 0, 3, 0);
+    }
+
     private SleepWork createCoalescing(long duration) {
         SleepWork work = new SleepWork(duration, "coalescing");
         work.setIdempotent(false);
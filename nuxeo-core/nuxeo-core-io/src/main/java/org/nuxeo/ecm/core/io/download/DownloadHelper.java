@@ -19,6 +19,9 @@
 package org.nuxeo.ecm.core.io.download;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -44,6 +47,13 @@ public class DownloadHelper {
     // jetty (with CamelCase "Eof")
     private static final String EOF_EXCEPTION = "EofException";
 
+    /**
+     * Maximum number of ranges in a multiple byte ranges request, after coalescing.
+     *
+     * @since 11.1
+     */
+    public static final int MAX_RANGES = 50;
+
     // utility class
     private DownloadHelper() {
     }
@@ -56,17 +66,62 @@ public class DownloadHelper {
      * @return the byte range, or {@code null} if it couldn't be parsed.
      */
     public static ByteRange parseRange(String range, long length) {
-        try {
-            // TODO does no support multiple ranges
-            if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+        // multiple ranges are parsed by parseRanges
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        return parseRangeSpec(range.substring(6), length);
+    }
+
+    /**
+     * Parses a byte range header that may contain several ranges.
+     * <p>
+     * The ranges are sorted, and the overlapping or adjacent ones are coalesced. Their ends are capped to the file
+     * length.
+     *
+     * @param range the byte range header
+     * @param length the file length
+     * @return the byte ranges, or {@code null} if they couldn't be parsed or are too numerous
+     * @since 11.1
+     */
+    public static List<ByteRange> parseRanges(String range, long length) {
+        if (!range.startsWith("bytes=")) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : range.substring(6).split(",")) {
+            ByteRange byteRange = parseRangeSpec(spec, length);
+            if (byteRange == null || byteRange.getStart() >= length) {
                 return null;
             }
-            int i = range.indexOf('-', 6);
+            ranges.add(new ByteRange(byteRange.getStart(), Math.min(byteRange.getEnd(), length - 1)));
+        }
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> coalesced = new ArrayList<>(ranges.size());
+        ByteRange previous = null;
+        for (ByteRange byteRange : ranges) {
+            if (previous != null && byteRange.getStart() <= previous.getEnd() + 1) {
+                previous = new ByteRange(previous.getStart(), Math.max(previous.getEnd(), byteRange.getEnd()));
+                coalesced.set(coalesced.size() - 1, previous);
+            } else {
+                previous = byteRange;
+                coalesced.add(byteRange);
+            }
+        }
+        if (coalesced.size() > MAX_RANGES) {
+            return null;
+        }
+        return coalesced;
+    }
+
+    private static ByteRange parseRangeSpec(String spec, long length) {
+        try {
+            int i = spec.indexOf('-');
             if (i < 0) {
                 return null;
             }
-            String start = range.substring(6, i).trim();
-            String end = range.substring(i + 1).trim();
+            String start = spec.substring(0, i).trim();
+            String end = spec.substring(i + 1).trim();
             long rangeStart = 0;
             long rangeEnd = length - 1;
             if (start.isEmpty()) {
@@ -19,6 +19,7 @@
  */
 package org.nuxeo.ecm.core.io.download;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,6 +28,12 @@ import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -66,6 +73,7 @@ import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolderAdapterService;
 import org.nuxeo.ecm.core.api.event.CoreEventConstants;
 import org.nuxeo.ecm.core.api.impl.blob.AsyncBlob;
+import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
 import org.nuxeo.ecm.core.api.local.ClientLoginModule;
 import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
 import org.nuxeo.ecm.core.blob.BlobManager;
@@ -81,10 +89,16 @@ import org.nuxeo.ecm.core.io.NginxConstants;
 import org.nuxeo.ecm.core.transientstore.api.TransientStore;
 import org.nuxeo.ecm.core.transientstore.api.TransientStoreService;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.DefaultComponent;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 /**
  * This service allows the download of blobs to a HTTP response.
  *
@@ -110,6 +124,24 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     private static final Pattern FILENAME_SANITIZATION_REGEX = Pattern.compile(";\\w+=.*");
 
+    /**
+     * Framework property to disable the use of the container's sendfile support for local binaries.
+     *
+     * @since 11.1
+     */
+    public static final String SENDFILE_ENABLED = "org.nuxeo.download.sendfile.enabled";
+
+    // tomcat sendfile request attributes, the file is sent by the connector once the servlet returns
+    protected static final String TOMCAT_SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    protected static final String TOMCAT_SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    protected static final String TOMCAT_SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    protected static final String TOMCAT_SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    protected static final String CRLF = "\r\n";
+
     protected enum Action {
         DOWNLOAD, DOWNLOAD_FROM_DOC, INFO, BLOBSTATUS
     }
@@ -118,6 +150,14 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     protected RedirectResolver redirectResolver;
 
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    /** @since 11.1 */
+    protected final Meter downloadedBytes = registry.meter(MetricRegistry.name("nuxeo", "download", "bytes"));
+
+    /** @since 11.1 */
+    protected final Counter activeDownloads = registry.counter(MetricRegistry.name("nuxeo", "download", "active"));
+
     @Override
     public void start(ComponentContext context) {
         super.start(context);
@@ -444,13 +484,27 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
         final Blob fblob = blob;
         downloadBlob(request, response, doc, xpath, blob, filename, reason, extendedInfos, inline,
-                byteRange -> transferBlobWithByteRange(fblob, byteRange, response));
+                byteRange -> transferBlobWithByteRange(fblob, byteRange, response), true);
     }
 
     @Override
     public void downloadBlob(HttpServletRequest request, HttpServletResponse response, DocumentModel doc, String xpath,
             Blob blob, String filename, String reason, Map<String, Serializable> extendedInfos, Boolean inline,
             Consumer<ByteRange> blobTransferer) throws IOException {
+        downloadBlob(request, response, doc, xpath, blob, filename, reason, extendedInfos, inline, blobTransferer,
+                false);
+    }
+
+    /**
+     * Downloads a blob.
+     *
+     * @param defaultTransfer {@code true} if the blob transferer is the default one, which allows the container to send
+     *            the file itself
+     * @since 11.1
+     */
+    protected void downloadBlob(HttpServletRequest request, HttpServletResponse response, DocumentModel doc,
+            String xpath, Blob blob, String filename, String reason, Map<String, Serializable> extendedInfos,
+            Boolean inline, Consumer<ByteRange> blobTransferer, boolean defaultTransfer) throws IOException {
         Objects.requireNonNull(blob);
         // check reason and rendition from request attributes
         String requestReason = (String) request.getAttribute(REQUEST_ATTR_DOWNLOAD_REASON);
@@ -485,6 +539,7 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
             return;
         }
 
+        boolean sendingFile = false;
         try {
             String digest = blob.getDigest();
             if (digest == null) {
@@ -526,58 +581,59 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
             }
             String contentDisposition = DownloadHelper.getRFC2231ContentDisposition(request, filename, inline);
             response.setHeader("Content-Disposition", contentDisposition);
-            response.setContentType(blob.getMimeType());
-            if (StringUtils.isNotBlank(blob.getEncoding())) {
-                try {
-                    response.setCharacterEncoding(blob.getEncoding());
-                } catch (IllegalArgumentException e) {
-                    // ignore invalid encoding
-                }
-            }
 
             long length = blob.getLength();
             response.setHeader("Accept-Ranges", "bytes");
             String range = request.getHeader("Range");
-            ByteRange byteRange;
+            List<ByteRange> byteRanges;
             if (StringUtils.isBlank(range)) {
-                byteRange = null;
+                byteRanges = null;
             } else {
-                byteRange = DownloadHelper.parseRange(range, length);
-                if (byteRange == null) {
+                byteRanges = DownloadHelper.parseRanges(range, length);
+                if (byteRanges == null) {
                     log.error("Invalid byte range received: {}", range);
-                } else {
-                    response.setHeader("Content-Range",
-                            "bytes " + byteRange.getStart() + "-" + byteRange.getEnd() + "/" + length);
-                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
                 }
             }
-            long contentLength = byteRange == null ? length : byteRange.getLength();
-            response.setContentLengthLong(contentLength);
+            // offloading to nginx comes first, it handles the byte ranges itself
+            String xAccelRedirect = getXAccelRedirect(blob, request);
+            if (xAccelRedirect == null && byteRanges != null && byteRanges.size() > 1 && !defaultTransfer) {
+                // a custom transferer sends a single range, send the whole blob instead
+                byteRanges = null;
+            }
 
             // log the download but not if it's a random byte range
-            if (byteRange == null || byteRange.getStart() == 0) {
+            if (byteRanges == null || byteRanges.get(0).getStart() == 0) {
                 logDownload(doc, xpath, filename, reason, extendedInfos);
             }
 
-            String xAccelLocation = request.getHeader(NginxConstants.X_ACCEL_LOCATION_HEADER);
-            if (Framework.isBooleanPropertyTrue(NginxConstants.X_ACCEL_ENABLED)
-                    && StringUtils.isNotEmpty(xAccelLocation)) {
-                BlobProvider blobProvider = Framework.getService(BlobManager.class).getBlobProvider(blob);
-                // can work only on a local and unencrypted binary manager
-                if (blobProvider != null && blobProvider.getBinaryManager() instanceof DefaultBinaryManager) {
-                    DefaultBinaryManager binaryManager = (DefaultBinaryManager) blobProvider.getBinaryManager();
-                    String relative = binaryManager.getStorageDir()
-                                                   .toURI()
-                                                   .relativize(blob.getFile().toURI())
-                                                   .getPath();
-                    if (xAccelLocation.endsWith("/")) {
-                        xAccelLocation = xAccelLocation + relative;
-                    } else {
-                        xAccelLocation = xAccelLocation + "/" + relative;
-                    }
-                    response.setHeader(NginxConstants.X_ACCEL_REDIRECT_HEADER, xAccelLocation);
-                    return;
-                }
+            if (xAccelRedirect != null) {
+                setContentType(blob, response);
+                response.setContentLengthLong(length);
+                response.setHeader(NginxConstants.X_ACCEL_REDIRECT_HEADER, xAccelRedirect);
+                return;
+            }
+
+            if (byteRanges != null && byteRanges.size() > 1) {
+                transferMultipleByteRanges(blob, byteRanges, length, response);
+                return;
+            }
+
+            ByteRange byteRange = byteRanges == null ? null : byteRanges.get(0);
+            setContentType(blob, response);
+            if (byteRange != null) {
+                response.setHeader("Content-Range",
+                        "bytes " + byteRange.getStart() + "-" + byteRange.getEnd() + "/" + length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            }
+            long contentLength = byteRange == null ? length : byteRange.getLength();
+            response.setContentLengthLong(contentLength);
+
+            // let the container send a local binary itself
+            if (defaultTransfer && sendFile(blob, byteRange, request)) {
+                // counted until the request returns, the container then sends the file without reporting its end
+                activeDownloads.inc();
+                sendingFile = true;
+                return;
             }
 
             // execute the final download
@@ -586,9 +642,144 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
             DownloadHelper.handleClientDisconnect(e.getCause());
         } catch (IOException ioe) {
             DownloadHelper.handleClientDisconnect(ioe);
+        } finally {
+            if (sendingFile) {
+                activeDownloads.dec();
+            }
         }
     }
 
+    /**
+     * Sets the content type and encoding of the response from the blob.
+     *
+     * @since 11.1
+     */
+    protected void setContentType(Blob blob, HttpServletResponse response) {
+        response.setContentType(blob.getMimeType());
+        if (StringUtils.isNotBlank(blob.getEncoding())) {
+            try {
+                response.setCharacterEncoding(blob.getEncoding());
+            } catch (IllegalArgumentException e) {
+                // ignore invalid encoding
+            }
+        }
+    }
+
+    /**
+     * Gets the location of a local binary for the nginx {@code X-Accel-Redirect} header, or {@code null} if nginx can't
+     * send the blob itself.
+     *
+     * @since 11.1
+     */
+    protected String getXAccelRedirect(Blob blob, HttpServletRequest request) {
+        String xAccelLocation = request.getHeader(NginxConstants.X_ACCEL_LOCATION_HEADER);
+        if (!Framework.isBooleanPropertyTrue(NginxConstants.X_ACCEL_ENABLED)
+                || StringUtils.isEmpty(xAccelLocation)) {
+            return null;
+        }
+        BlobProvider blobProvider = Framework.getService(BlobManager.class).getBlobProvider(blob);
+        // can work only on a local and unencrypted binary manager
+        if (blobProvider == null || !(blobProvider.getBinaryManager() instanceof DefaultBinaryManager)) {
+            return null;
+        }
+        DefaultBinaryManager binaryManager = (DefaultBinaryManager) blobProvider.getBinaryManager();
+        String relative = binaryManager.getStorageDir().toURI().relativize(blob.getFile().toURI()).getPath();
+        if (xAccelLocation.endsWith("/")) {
+            return xAccelLocation + relative;
+        } else {
+            return xAccelLocation + "/" + relative;
+        }
+    }
+
+    /**
+     * Sends several byte ranges of a blob as a {@code multipart/byteranges} response.
+     *
+     * @since 11.1
+     */
+    protected void transferMultipleByteRanges(Blob blob, List<ByteRange> byteRanges, long length,
+            HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        String mimeType = StringUtils.defaultIfBlank(blob.getMimeType(), "application/octet-stream");
+        List<byte[]> partHeaders = new ArrayList<>(byteRanges.size());
+        long contentLength = 0;
+        for (ByteRange byteRange : byteRanges) {
+            String partHeader = CRLF + "--" + boundary + CRLF //
+                    + "Content-Type: " + mimeType + CRLF //
+                    + "Content-Range: bytes " + byteRange.getStart() + "-" + byteRange.getEnd() + "/" + length + CRLF
+                    + CRLF;
+            byte[] bytes = partHeader.getBytes(StandardCharsets.ISO_8859_1);
+            partHeaders.add(bytes);
+            contentLength += bytes.length + byteRange.getLength();
+        }
+        byte[] end = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += end.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentLengthLong(contentLength);
+        @SuppressWarnings("resource")
+        OutputStream out = response.getOutputStream(); // not ours to close
+        BufferingServletOutputStream.stopBuffering(out);
+        for (int i = 0; i < byteRanges.size(); i++) {
+            out.write(partHeaders.get(i));
+            transferBlobWithByteRange(blob, byteRanges.get(i), () -> out);
+        }
+        out.write(end);
+        response.flushBuffer();
+    }
+
+    /**
+     * Asks the container to send the file of a local binary itself once the request completes, if it supports it.
+     *
+     * @return {@code true} if the container will send the file
+     * @since 11.1
+     */
+    protected boolean sendFile(Blob blob, ByteRange byteRange, HttpServletRequest request) throws IOException {
+        if (!Boolean.TRUE.equals(request.getAttribute(TOMCAT_SENDFILE_SUPPORT))
+                || Framework.isBooleanPropertyFalse(SENDFILE_ENABLED)) {
+            return false;
+        }
+        // temporary files may be deleted before the container sends them, only use the binary store
+        File file = getBinaryManagerFile(blob);
+        if (file == null) {
+            return false;
+        }
+        long start = byteRange == null ? 0 : byteRange.getStart();
+        long end = byteRange == null ? file.length() : byteRange.getEnd() + 1; // exclusive
+        request.setAttribute(TOMCAT_SENDFILE_FILENAME, file.getCanonicalPath());
+        request.setAttribute(TOMCAT_SENDFILE_START, Long.valueOf(start));
+        request.setAttribute(TOMCAT_SENDFILE_END, Long.valueOf(end));
+        downloadedBytes.mark(end - start);
+        return true;
+    }
+
+    /**
+     * Gets the file of a blob stored by a local and unencrypted binary manager, or {@code null}.
+     *
+     * @since 11.1
+     */
+    protected File getBinaryManagerFile(Blob blob) {
+        BlobProvider blobProvider = Framework.getService(BlobManager.class).getBlobProvider(blob);
+        if (blobProvider == null || !(blobProvider.getBinaryManager() instanceof DefaultBinaryManager)) {
+            return null;
+        }
+        File file = blob.getFile();
+        return file != null && file.isFile() ? file : null;
+    }
+
+    /**
+     * Gets the local file of a blob, if it can be read directly, or {@code null}.
+     *
+     * @since 11.1
+     */
+    protected File getLocalFile(Blob blob) {
+        if (blob instanceof FileBlob) {
+            File file = blob.getFile();
+            return file != null && file.isFile() ? file : null;
+        }
+        return getBinaryManagerFile(blob);
+    }
+
     protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletResponse response) {
         transferBlobWithByteRange(blob, byteRange, () -> {
             try {
@@ -606,18 +797,57 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     @Override
     public void transferBlobWithByteRange(Blob blob, ByteRange byteRange, Supplier<OutputStream> outputStreamSupplier) {
-        try (InputStream in = blob.getStream()) {
+        activeDownloads.inc();
+        try {
+            File file = getLocalFile(blob);
             @SuppressWarnings("resource")
             OutputStream out = outputStreamSupplier.get(); // not ours to close
             BufferingServletOutputStream.stopBuffering(out);
-            if (byteRange == null) {
-                IOUtils.copy(in, out);
+            long transferred;
+            if (file != null) {
+                // positioned reads, no need to skip through a stream for a range
+                transferred = transferFile(file, byteRange, out);
             } else {
-                IOUtils.copyLarge(in, out, byteRange.getStart(), byteRange.getLength());
+                try (InputStream in = blob.getStream()) {
+                    if (byteRange == null) {
+                        transferred = IOUtils.copyLarge(in, out);
+                    } else {
+                        transferred = IOUtils.copyLarge(in, out, byteRange.getStart(), byteRange.getLength());
+                    }
+                }
             }
             out.flush();
+            downloadedBytes.mark(transferred);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            activeDownloads.dec();
+        }
+    }
+
+    /**
+     * Transfers a file, or a byte range of it, using its {@link FileChannel}.
+     *
+     * @return the number of bytes transferred
+     * @since 11.1
+     */
+    protected static long transferFile(File file, ByteRange byteRange, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = byteRange == null ? 0 : byteRange.getStart();
+            long count = channel.size() - position;
+            if (byteRange != null) {
+                count = Math.min(count, byteRange.getLength());
+            }
+            WritableByteChannel target = Channels.newChannel(out);
+            long transferred = 0;
+            while (transferred < count) {
+                long n = channel.transferTo(position + transferred, count - transferred, target);
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+            return transferred;
         }
     }
 
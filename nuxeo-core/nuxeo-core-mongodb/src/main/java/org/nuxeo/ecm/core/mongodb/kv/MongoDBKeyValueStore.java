@@ -28,9 +28,11 @@ import static com.mongodb.client.model.Updates.unset;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -55,10 +57,15 @@ import com.mongodb.MongoCommandException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
@@ -351,6 +358,61 @@ public class MongoDBKeyValueStore extends AbstractKeyValueStoreProvider {
         }
     }
 
+    @Override
+    public void put(Map<String, byte[]> values, long ttl) {
+        Map<String, Object> objects = new HashMap<>(values.size());
+        values.forEach((key, value) -> objects.put(key, toStorage(value)));
+        putObjects(objects, ttl);
+    }
+
+    @Override
+    public void putStrings(Map<String, String> values, long ttl) {
+        putObjects(new HashMap<>(values), ttl);
+    }
+
+    @Override
+    public void putLongs(Map<String, Long> values, long ttl) {
+        putObjects(new HashMap<>(values), ttl);
+    }
+
+    /**
+     * Writes all the values in a single unordered bulk write.
+     *
+     * @since 11.1
+     */
+    protected void putObjects(Map<String, Object> values, long ttl) {
+        if (values.isEmpty()) {
+            return;
+        }
+        List<WriteModel<Document>> writes = new ArrayList<>(values.size());
+        ReplaceOptions options = new ReplaceOptions().upsert(true);
+        values.forEach((key, value) -> {
+            Bson filter = eq(ID_KEY, key);
+            if (value == null) {
+                writes.add(new DeleteOneModel<>(filter));
+            } else {
+                Document doc = new Document(VALUE_KEY, value);
+                addTTL(doc, ttl);
+                writes.add(new ReplaceOneModel<>(filter, doc, options));
+            }
+        });
+        if (log.isTraceEnabled()) {
+            log.trace("MongoDB: BULK PUT " + values.keySet() + (ttl == 0 ? "" : " (TTL " + ttl + ")"));
+        }
+        coll.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("MongoDB: DEL " + keys);
+        }
+        coll.deleteMany(in(ID_KEY, keys));
+    }
+
     protected void addTTL(Document doc, long ttl) {
         if (ttl != 0) {
             doc.append(TTL_KEY, getDateFromTTL(ttl));
@@ -383,6 +445,12 @@ public class MongoDBKeyValueStore extends AbstractKeyValueStoreProvider {
         return compareAndSet(key, (Object) expected, (Object) value, ttl);
     }
 
+    @Override
+    public boolean compareAndSet(String key, Long expected, Long value) {
+        // counters are stored as longs by addAndGet
+        return compareAndSet(key, (Object) expected, (Object) value, 0);
+    }
+
     protected boolean compareAndSet(String key, Object expected, Object value, long ttl) {
         Bson filter = eq(ID_KEY, key);
         if (expected == null && value == null) {
@@ -41,6 +41,8 @@ import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.kv.AbstractKeyValueStoreProvider;
 import org.nuxeo.runtime.kv.KeyValueStoreDescriptor;
 
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisDataException;
 
 /**
@@ -157,6 +159,44 @@ public class RedisKeyValueStore extends AbstractKeyValueStoreProvider {
         });
     }
 
+    @Override
+    public void put(Map<String, byte[]> values, long ttl) {
+        if (values.isEmpty()) {
+            return;
+        }
+        RedisExecutor redisExecutor = Framework.getService(RedisExecutor.class);
+        redisExecutor.execute(jedis -> {
+            // pipeline all the writes in a single round trip
+            Pipeline pipeline = jedis.pipelined();
+            values.forEach((key, value) -> {
+                byte[] keyb = getBytes(namespace + key);
+                if (value == null) {
+                    pipeline.del(keyb);
+                } else if (ttl == 0) {
+                    pipeline.set(keyb, value);
+                } else {
+                    pipeline.setex(keyb, (int) ttl, value);
+                }
+            });
+            pipeline.sync();
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        byte[][] byteKeys = new byte[keys.size()][];
+        int i = 0;
+        for (String key : keys) {
+            byteKeys[i++] = getBytes(namespace + key);
+        }
+        RedisExecutor redisExecutor = Framework.getService(RedisExecutor.class);
+        redisExecutor.execute(jedis -> jedis.del(byteKeys));
+    }
+
     @Override
     public byte[] get(String key) {
         RedisExecutor redisExecutor = Framework.getService(RedisExecutor.class);
@@ -279,4 +319,29 @@ public class RedisKeyValueStore extends AbstractKeyValueStoreProvider {
         return result.longValue();
     }
 
+    @Override
+    public Map<String, Long> addAndGet(Map<String, Long> deltas) throws NumberFormatException { // NOSONAR
+        if (deltas.isEmpty()) {
+            return new HashMap<>();
+        }
+        RedisExecutor redisExecutor = Framework.getService(RedisExecutor.class);
+        return redisExecutor.execute(jedis -> {
+            // each INCRBY is atomic, pipeline them in a single round trip
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, Response<Long>> responses = new HashMap<>(deltas.size());
+            deltas.forEach((key, delta) -> responses.put(key,
+                    pipeline.incrBy(getBytes(namespace + key), delta.longValue())));
+            pipeline.sync();
+            Map<String, Long> map = new HashMap<>(deltas.size());
+            for (Map.Entry<String, Response<Long>> en : responses.entrySet()) {
+                try {
+                    map.put(en.getKey(), en.getValue().get());
+                } catch (JedisDataException e) {
+                    throw new NumberFormatException();
+                }
+            }
+            return map;
+        });
+    }
+
 }
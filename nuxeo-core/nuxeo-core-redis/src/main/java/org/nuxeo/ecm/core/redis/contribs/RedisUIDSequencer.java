@@ -28,12 +28,17 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.redis.RedisAdmin;
 import org.nuxeo.ecm.core.redis.RedisExecutor;
 import org.nuxeo.ecm.core.uidgen.AbstractUIDSequencer;
+import org.nuxeo.ecm.core.uidgen.UIDBlockAllocator;
 import org.nuxeo.runtime.api.Framework;
 
+import redis.clients.jedis.Transaction;
 import redis.clients.jedis.exceptions.JedisException;
 
 /**
  * Redis-based UID generator.
+ * <p>
+ * If {@value UIDBlockAllocator#BLOCK_ENABLED_PROPERTY} is {@code true}, ids are reserved by blocks, see
+ * {@link UIDBlockAllocator}.
  *
  * @since 7.4
  */
@@ -41,16 +46,79 @@ public class RedisUIDSequencer extends AbstractUIDSequencer {
 
     protected static final Log log = LogFactory.getLog(RedisUIDSequencer.class);
 
+    /**
+     * Suffix of the key holding the generation of a sequence, incremented when it is reinitialized.
+     *
+     * @since 11.1
+     */
+    protected static final String GENERATION_SUFFIX = ":generation";
+
     protected String namespace;
 
+    // @since 11.1
+    protected UIDBlockAllocator blockAllocator;
+
     @Override
     public void init() {
         RedisAdmin redisAdmin = Framework.getService(RedisAdmin.class);
         namespace = redisAdmin.namespace("counters");
+        blockAllocator = UIDBlockAllocator.fromConfiguration(getName(), this::incrBy, this::compareAndSet,
+                this::getGeneration);
     }
 
     @Override
     public void dispose() {
+        if (blockAllocator != null) {
+            blockAllocator.releaseAll();
+        }
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected long incrBy(String key, int delta) {
+        RedisExecutor executor = Framework.getService(RedisExecutor.class);
+        try {
+            return executor.execute(jedis -> jedis.incrBy(namespace + key, delta));
+        } catch (JedisException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected long getGeneration(String key) {
+        RedisExecutor executor = Framework.getService(RedisExecutor.class);
+        try {
+            String generation = executor.execute(jedis -> jedis.get(namespace + key + GENERATION_SUFFIX));
+            return generation == null ? 0 : Long.parseLong(generation);
+        } catch (JedisException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected boolean compareAndSet(String key, long expected, long value) {
+        RedisExecutor executor = Framework.getService(RedisExecutor.class);
+        try {
+            // WATCH/MULTI/EXEC on the connection so that the value is only set if it didn't change
+            return executor.execute(jedis -> {
+                String k = namespace + key;
+                jedis.watch(k);
+                if (!String.valueOf(expected).equals(jedis.get(k))) {
+                    jedis.unwatch();
+                    return Boolean.FALSE;
+                }
+                Transaction transaction = jedis.multi();
+                transaction.set(k, String.valueOf(value));
+                return Boolean.valueOf(transaction.exec() != null);
+            }).booleanValue();
+        } catch (JedisException e) {
+            throw new NuxeoException(e);
+        }
     }
 
     @Override
@@ -58,13 +126,23 @@ public class RedisUIDSequencer extends AbstractUIDSequencer {
         RedisExecutor executor = Framework.getService(RedisExecutor.class);
         try {
             executor.execute(jedis -> jedis.set(namespace + key, String.valueOf(id)));
+            if (blockAllocator != null) {
+                // after the new value, so that the blocks reserved before it have an older generation on all the nodes
+                executor.execute(jedis -> jedis.incr(namespace + key + GENERATION_SUFFIX));
+            }
         } catch (JedisException e) {
             throw new NuxeoException(e);
         }
+        if (blockAllocator != null) {
+            blockAllocator.reset(key);
+        }
     }
 
     @Override
     public long getNextLong(String key) {
+        if (blockAllocator != null) {
+            return blockAllocator.getNextLong(key);
+        }
         RedisExecutor executor = Framework.getService(RedisExecutor.class);
         try {
             return executor.execute(jedis -> jedis.incr(namespace + key));
@@ -24,17 +24,24 @@ import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.utils.SizeUtils;
 import org.nuxeo.ecm.core.api.Lock;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
@@ -44,6 +51,7 @@ import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.model.LockManager;
 import org.nuxeo.ecm.core.model.Session;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
+import org.nuxeo.ecm.core.storage.CompactState;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
@@ -55,6 +63,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Ordering;
 
@@ -67,11 +76,18 @@ public class DBSCachingRepository implements DBSRepository {
 
     private static final Log log = LogFactory.getLog(DBSCachingRepository.class);
 
+    /** Part of the maximum size in bytes used by the children cache, the rest being used by the states cache. */
+    private static final long CHILD_CACHE_BYTES_DIVISOR = 10;
+
     private final DBSRepository repository;
 
     private final Cache<String, State> cache;
 
-    private final Cache<String, String> childCache;
+    /** Children by parent id. */
+    protected final Cache<String, Children> childCache;
+
+    /** Whether the caches are bounded by the estimated size of their entries, and children lists are cached. */
+    private final boolean sizeBounded;
 
     private DBSClusterInvalidator clusterInvalidator;
 
@@ -82,9 +98,21 @@ public class DBSCachingRepository implements DBSRepository {
     public DBSCachingRepository(DBSRepository repository, DBSRepositoryDescriptor descriptor) {
         this.repository = repository;
         // Init caches
-        cache = newCache(descriptor);
+        long maxBytes = StringUtils.isBlank(descriptor.cacheMaxBytes) ? 0
+                : SizeUtils.parseSizeInBytes(descriptor.cacheMaxBytes);
+        sizeBounded = maxBytes > 0;
+        cache = newCache(descriptor, maxBytes - maxBytes / CHILD_CACHE_BYTES_DIVISOR,
+                (String id, State state) -> weigh(estimateSize(id) + estimateSize(state)));
         registry.registerAll(GuavaCacheMetric.of(cache, "nuxeo", "repositories", repository.getName(), "cache"));
-        childCache = newCache(descriptor);
+        if (sizeBounded) {
+            childCache = newCache(descriptor, maxBytes / CHILD_CACHE_BYTES_DIVISOR,
+                    (String parentId, Children children) -> weigh(estimateSize(parentId) + children.estimateSize()));
+        } else {
+            // bounded by the total number of cached children, like the states
+            long maxChildren = descriptor.cacheMaxSize == null ? 0 : descriptor.cacheMaxSize.longValue();
+            childCache = newCache(descriptor, maxChildren,
+                    (String parentId, Children children) -> weigh(children.size()));
+        }
         registry.registerAll(
                 GuavaCacheMetric.of(childCache, "nuxeo", "repositories", repository.getName(), "childCache"));
         if (log.isInfoEnabled()) {
@@ -95,11 +123,25 @@ public class DBSCachingRepository implements DBSRepository {
     }
 
     protected <T> Cache<String, T> newCache(DBSRepositoryDescriptor descriptor) {
+        return newCache(descriptor, 0, null);
+    }
+
+    /**
+     * Creates a cache bounded by the total weight of its entries if {@code maxWeight} is positive, or by the number of
+     * entries otherwise.
+     *
+     * @since 11.1
+     */
+    protected <T> Cache<String, T> newCache(DBSRepositoryDescriptor descriptor, long maxWeight,
+            Weigher<String, T> weigher) {
         CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
         builder = builder.expireAfterWrite(descriptor.cacheTTL.longValue(), TimeUnit.MINUTES).recordStats();
         if (descriptor.cacheConcurrencyLevel != null) {
             builder = builder.concurrencyLevel(descriptor.cacheConcurrencyLevel.intValue());
         }
+        if (maxWeight > 0) {
+            return builder.maximumWeight(maxWeight).weigher(weigher).build();
+        }
         if (descriptor.cacheMaxSize != null) {
             builder = builder.maximumSize(descriptor.cacheMaxSize.longValue());
         }
@@ -204,42 +246,56 @@ public class DBSCachingRepository implements DBSRepository {
     public void createState(State state) {
         repository.createState(state);
         // don't cache new state, it is inefficient on mass import
+        invalidateParents(getParentIds(Collections.singleton(state)));
     }
 
     @Override
     public void createStates(List<State> states) {
         repository.createStates(states);
         // don't cache new states, it is inefficient on mass import
+        invalidateParents(getParentIds(states));
     }
 
     @Override
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         repository.updateState(id, diff, changeTokenUpdater);
+        Set<String> parentIds = Collections.emptySet();
+        if (diff.containsKey(KEY_PARENT_ID) || diff.containsKey(KEY_NAME)) {
+            // moved or renamed, invalidate the children of the old and new parents
+            parentIds = getParentIds(cache.getAllPresent(Collections.singleton(id)).values());
+            Object newParentId = diff.get(KEY_PARENT_ID);
+            if (newParentId instanceof String) {
+                parentIds.add((String) newParentId);
+            }
+        }
         invalidate(id);
+        invalidateParents(parentIds);
     }
 
     @Override
     public void deleteStates(Set<String> ids) {
         repository.deleteStates(ids);
+        Set<String> parentIds = getParentIds(cache.getAllPresent(ids).values());
         invalidateAll(ids);
+        invalidateParents(parentIds);
     }
 
     @Override
     public State readChildState(String parentId, String name, Set<String> ignored) {
         processReceivedInvalidations();
 
-        String childCacheKey = computeChildCacheKey(parentId, name);
-        String stateId = childCache.getIfPresent(childCacheKey);
+        Children children = childCache.getIfPresent(parentId);
+        String stateId = children == null ? null : children.names.get(name);
         if (stateId != null) {
             State state = cache.getIfPresent(stateId);
             if (state != null) {
-                // As we don't have invalidation for childCache we need to check if retrieved state is the right one
-                // and not a previous document which was moved or renamed
+                // Invalidations only know the old parent of documents which were in cache when moved or renamed,
+                // so we still need to check if retrieved state is the right one
                 if (parentId.equals(state.get(KEY_PARENT_ID)) && name.equals(state.get(KEY_NAME))) {
                     return state;
                 } else {
                     // We can invalidate the entry in cache as the document seemed to be moved or renamed
-                    childCache.invalidate(childCacheKey);
+                    children.names.remove(name);
                 }
             }
         }
@@ -248,25 +304,84 @@ public class DBSCachingRepository implements DBSRepository {
         return state;
     }
 
+    @Override
+    public List<State> queryKeyValue(String key, Object value, Set<String> ignored) {
+        if (!sizeBounded || !KEY_PARENT_ID.equals(key) || !(value instanceof String)) {
+            return repository.queryKeyValue(key, value, ignored);
+        }
+        processReceivedInvalidations();
+
+        String parentId = (String) value;
+        Children children = childCache.getIfPresent(parentId);
+        List<String> ids = children == null ? null : children.ids;
+        List<State> states;
+        if (ids == null) {
+            // fetch all the children whatever the ignored ones, so that the list can be cached
+            states = repository.queryKeyValue(KEY_PARENT_ID, parentId, Collections.emptySet());
+            states.forEach(this::putInCache);
+            children = childCache.asMap().computeIfAbsent(parentId, k -> new Children());
+            children.ids = states.stream().map(state -> state.get(KEY_ID).toString()).collect(Collectors.toList());
+            reweigh(parentId, children);
+        } else {
+            // prefetch the states missing from the cache in one batch
+            states = readStates(ids);
+        }
+        // documents moved elsewhere while not in cache are still in the list of their old parent
+        return states.stream()
+                     .filter(state -> parentId.equals(state.get(KEY_PARENT_ID)))
+                     .filter(state -> !ignored.contains(state.get(KEY_ID)))
+                     .collect(Collectors.toList());
+    }
+
     private void putInCache(State state) {
         if (state != null) {
             String stateId = state.get(KEY_ID).toString();
-            cache.put(stateId, state);
+            cache.put(stateId, repository.isCompactStates() ? CompactState.copyOf(state) : state);
             Object stateParentId = state.get(KEY_PARENT_ID);
             if (stateParentId != null) {
-                childCache.put(computeChildCacheKey(stateParentId.toString(), state.get(KEY_NAME).toString()), stateId);
+                String parentId = stateParentId.toString();
+                Children children = childCache.asMap().computeIfAbsent(parentId, k -> new Children());
+                children.names.put(state.get(KEY_NAME).toString(), stateId);
+                reweigh(parentId, children);
             }
         }
     }
 
-    private String computeChildCacheKey(String parentId, String name) {
-        return parentId + '_' + name;
+    /**
+     * Puts back modified children in their cache so that their new weight is taken into account, unless they have
+     * been invalidated meanwhile.
+     */
+    private void reweigh(String parentId, Children children) {
+        childCache.asMap().replace(parentId, children, children);
+    }
+
+    private Set<String> getParentIds(Collection<State> states) {
+        Set<String> parentIds = new HashSet<>();
+        for (State state : states) {
+            Object parentId = state.get(KEY_PARENT_ID);
+            if (parentId != null) {
+                parentIds.add(parentId.toString());
+            }
+        }
+        return parentIds;
     }
 
     private void invalidate(String id) {
         invalidateAll(Collections.singleton(id));
     }
 
+    private void invalidateParents(Collection<String> parentIds) {
+        if (parentIds.isEmpty()) {
+            return;
+        }
+        childCache.invalidateAll(parentIds);
+        if (clusterInvalidator != null) {
+            synchronized (invalidations) {
+                invalidations.addParentIds(parentIds);
+            }
+        }
+    }
+
     private void invalidateAll(Collection<String> ids) {
         cache.invalidateAll(ids);
         if (clusterInvalidator != null) {
@@ -293,8 +408,13 @@ public class DBSCachingRepository implements DBSRepository {
             if (invalidations.all) {
                 cache.invalidateAll();
                 childCache.invalidateAll();
-            } else if (invalidations.ids != null) {
-                cache.invalidateAll(invalidations.ids);
+            } else {
+                if (invalidations.ids != null) {
+                    cache.invalidateAll(invalidations.ids);
+                }
+                if (invalidations.parentIds != null) {
+                    childCache.invalidateAll(invalidations.parentIds);
+                }
             }
         }
     }
@@ -324,6 +444,11 @@ public class DBSCachingRepository implements DBSRepository {
         return repository.isChangeTokenEnabled();
     }
 
+    @Override
+    public boolean isCompactStates() {
+        return repository.isCompactStates();
+    }
+
     @Override
     public String getRootId() {
         return repository.getRootId();
@@ -339,11 +464,6 @@ public class DBSCachingRepository implements DBSRepository {
         return repository.hasChild(parentId, name, ignored);
     }
 
-    @Override
-    public List<State> queryKeyValue(String key, Object value, Set<String> ignored) {
-        return repository.queryKeyValue(key, value, ignored);
-    }
-
     @Override
     public List<State> queryKeyValue(String key1, Object value1, String key2, Object value2, Set<String> ignored) {
         return repository.queryKeyValue(key1, value1, key2, value2, ignored);
@@ -433,4 +553,77 @@ public class DBSCachingRepository implements DBSRepository {
         repository.markReferencedBinaries();
     }
 
+    private static int weigh(long size) {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimates the memory used by a value of a {@link State}, in bytes.
+     *
+     * @since 11.1
+     */
+    protected static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof State) {
+            long size = 48;
+            for (Entry<String, Serializable> en : ((State) value).entrySet()) {
+                // the keys are shared with the schema fields
+                size += 32 + estimateSize(en.getValue());
+            }
+            return size;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            long size = 40 + 8L * list.size();
+            for (Object v : list) {
+                size += estimateSize(v);
+            }
+            return size;
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = 16 + 8L * array.length;
+            for (Object v : array) {
+                size += estimateSize(v);
+            }
+            return size;
+        } else if (value instanceof Calendar) {
+            return 450;
+        } else {
+            return 16;
+        }
+    }
+
+    /**
+     * The cached children of a parent: child ids by name, and the list of all the child ids when known.
+     *
+     * @since 11.1
+     */
+    protected static class Children {
+
+        protected final Map<String, String> names = new ConcurrentHashMap<>();
+
+        protected volatile List<String> ids;
+
+        /** The number of cached children, at least 1 so that empty entries are bounded too. */
+        protected long size() {
+            List<String> list = ids;
+            return Math.max(1, Math.max(names.size(), list == null ? 0 : list.size()));
+        }
+
+        protected long estimateSize() {
+            long size = 64;
+            for (Entry<String, String> en : names.entrySet()) {
+                size += 32 + DBSCachingRepository.estimateSize(en.getKey())
+                        + DBSCachingRepository.estimateSize(en.getValue());
+            }
+            List<String> list = ids;
+            if (list != null) {
+                size += DBSCachingRepository.estimateSize(list);
+            }
+            return size;
+        }
+    }
+
 }
@@ -30,6 +30,7 @@ import java.io.Serializable;
 
 import org.nuxeo.ecm.core.api.model.Delta;
 import org.nuxeo.ecm.core.model.Document;
+import org.nuxeo.ecm.core.storage.CompactState;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.StateHelper;
 import org.nuxeo.ecm.core.storage.BaseDocument;
@@ -71,7 +72,16 @@ public class DBSDocumentState {
      * Constructs a document state from the copy of an existing base state.
      */
     public DBSDocumentState(State base) {
-        state = StateHelper.deepCopy(base);
+        this(base, false);
+    }
+
+    /**
+     * Constructs a document state from the copy of an existing base state, optionally using a compact representation.
+     *
+     * @since 11.1
+     */
+    public DBSDocumentState(State base, boolean compact) {
+        state = compact ? CompactState.copyOf(base) : StateHelper.deepCopy(base);
         originalState = null;
     }
 
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -53,6 +54,13 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
     /** null when empty */
     public Set<String> ids;
 
+    /**
+     * Ids of the parents whose children changed (created, deleted, moved or renamed), null when empty.
+     *
+     * @since 11.1
+     */
+    public Set<String> parentIds;
+
     public DBSInvalidations() {
     }
 
@@ -62,21 +70,24 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
 
     @Override
     public boolean isEmpty() {
-        return ids == null && !all;
+        return ids == null && parentIds == null && !all;
     }
 
     public void clear() {
         all = false;
         ids = null;
+        parentIds = null;
     }
 
     protected void setAll() {
         all = true;
         ids = null;
+        parentIds = null;
     }
 
     protected void checkMaxSize() {
-        if (ids != null && ids.size() > MAX_SIZE) {
+        int size = (ids == null ? 0 : ids.size()) + (parentIds == null ? 0 : parentIds.size());
+        if (size > MAX_SIZE) {
             setAll();
         }
     }
@@ -100,6 +111,12 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
             }
             ids.addAll(other.ids);
         }
+        if (other.parentIds != null) {
+            if (parentIds == null) {
+                parentIds = new HashSet<>();
+            }
+            parentIds.addAll(other.parentIds);
+        }
         checkMaxSize();
     }
 
@@ -126,20 +143,48 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
         checkMaxSize();
     }
 
+    /** @since 11.1 */
+    public void addParentIds(Collection<String> parentIdsToAdd) {
+        if (all) {
+            return;
+        }
+        if (parentIds == null) {
+            parentIds = new HashSet<>(parentIdsToAdd);
+        } else {
+            parentIds.addAll(parentIdsToAdd);
+        }
+        checkMaxSize();
+    }
+
     private static final String UTF_8 = "UTF-8";
 
     private static final int ALL_IDS = (byte) 'A';
 
     private static final int ID_SEP = (byte) ',';
 
+    /**
+     * Prefix of the parent ids, which are sent in the ids section so that nodes not knowing about them see them as
+     * unknown document ids, keeping the format readable during a rolling upgrade.
+     */
+    private static final char PARENT_ID_PREFIX = '/';
+
     @Override
     public void serialize(OutputStream out) throws IOException {
         if (all) {
             out.write(ALL_IDS);
-        } else if (ids != null) {
-            for (String id : ids) {
-                out.write(ID_SEP);
-                out.write(id.getBytes(UTF_8));
+        } else {
+            if (ids != null) {
+                for (String id : ids) {
+                    out.write(ID_SEP);
+                    out.write(id.getBytes(UTF_8));
+                }
+            }
+            if (parentIds != null) {
+                for (String id : parentIds) {
+                    out.write(ID_SEP);
+                    out.write(PARENT_ID_PREFIX);
+                    out.write(id.getBytes(UTF_8));
+                }
             }
         }
     }
@@ -161,7 +206,12 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
             for (;;) {
                 int b = in.read(); // we read from a ByteArrayInputStream so one at a time is ok
                 if (b == ID_SEP || b == -1) {
-                    invalidations.add(baout.toString(UTF_8));
+                    String id = baout.toString(UTF_8);
+                    if (!id.isEmpty() && id.charAt(0) == PARENT_ID_PREFIX) {
+                        invalidations.addParentIds(Collections.singleton(id.substring(1)));
+                    } else {
+                        invalidations.add(id);
+                    }
                     if (b == -1) {
                         break;
                     }
@@ -184,6 +234,10 @@ public class DBSInvalidations implements SerializableAccumulableInvalidations {
             sb.append("ids=");
             sb.append(ids);
         }
+        if (parentIds != null) {
+            sb.append("parentIds=");
+            sb.append(parentIds);
+        }
         sb.append(')');
         return sb.toString();
     }
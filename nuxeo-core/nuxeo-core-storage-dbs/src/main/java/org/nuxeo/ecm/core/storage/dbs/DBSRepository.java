@@ -74,6 +74,16 @@ public interface DBSRepository extends Repository, LockManager {
      */
     boolean isChangeTokenEnabled();
 
+    /**
+     * Checks if states kept in memory (caches, transaction states) use the compact representation.
+     *
+     * @return {@code true} if states are stored as {@link org.nuxeo.ecm.core.storage.CompactState}
+     * @since 11.1
+     */
+    default boolean isCompactStates() {
+        return false;
+    }
+
     /**
      * Gets the root id.
      *
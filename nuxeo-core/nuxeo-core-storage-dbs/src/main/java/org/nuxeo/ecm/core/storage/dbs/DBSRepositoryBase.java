@@ -66,6 +66,7 @@ import org.nuxeo.ecm.core.schema.types.Schema;
 import org.nuxeo.ecm.core.schema.types.Type;
 import org.nuxeo.ecm.core.storage.FulltextConfigurationFactory;
 import org.nuxeo.ecm.core.storage.FulltextDescriptor;
+import org.nuxeo.ecm.core.storage.StateKeys;
 import org.nuxeo.ecm.core.storage.lock.LockManagerService;
 import org.nuxeo.ecm.core.storage.sql.ra.ConnectionFactoryImpl;
 import org.nuxeo.runtime.api.Framework;
@@ -119,6 +120,9 @@ public abstract class DBSRepositoryBase implements DBSRepository {
 
     protected final boolean changeTokenEnabled;
 
+    /** @since 11.1 */
+    protected final boolean compactStates;
+
     /**
      * @since 7.4 : used to know if the LockManager was provided by this repository or externally
      */
@@ -147,6 +151,10 @@ public abstract class DBSRepositoryBase implements DBSRepository {
         }
         this.cm = cm;
         changeTokenEnabled = descriptor.isChangeTokenEnabled();
+        compactStates = descriptor.isCompactStatesEnabled();
+        if (compactStates) {
+            StateKeys.register(Framework.getService(SchemaManager.class));
+        }
         blobManager = Framework.getService(BlobManager.class);
         initBlobsPaths();
         initLockManager();
@@ -334,6 +342,11 @@ public abstract class DBSRepositoryBase implements DBSRepository {
         return changeTokenEnabled;
     }
 
+    @Override
+    public boolean isCompactStates() {
+        return compactStates;
+    }
+
     @Override
     public int getActiveSessionsCount() {
         return transactionContexts.size();
@@ -112,6 +112,15 @@ public class DBSRepositoryDescriptor implements Cloneable {
     @XNode("cache@maxSize")
     public Long cacheMaxSize;
 
+    /**
+     * Maximum size of the caches in bytes (for instance {@code 512MB}), as estimated from the cached states. When set,
+     * it replaces {@link #cacheMaxSize} and children lists are cached too.
+     *
+     * @since 11.1
+     */
+    @XNode("cache@maxBytes")
+    public String cacheMaxBytes;
+
     /** @since 8.10 */
     @XNode("cache@concurrencyLevel")
     public Integer cacheConcurrencyLevel;
@@ -134,6 +143,20 @@ public class DBSRepositoryDescriptor implements Cloneable {
         this.changeTokenEnabled = Boolean.valueOf(enabled);
     }
 
+    /** @since 11.1 */
+    @XNode("compactStates")
+    private Boolean compactStates;
+
+    /** @since 11.1 */
+    public boolean isCompactStatesEnabled() {
+        return defaultFalse(compactStates);
+    }
+
+    /** @since 11.1 */
+    public void setCompactStatesEnabled(boolean enabled) {
+        this.compactStates = Boolean.valueOf(enabled);
+    }
+
     @Override
     public DBSRepositoryDescriptor clone() {
         try {
@@ -168,6 +191,9 @@ public class DBSRepositoryDescriptor implements Cloneable {
         if (other.cacheMaxSize != null) {
             cacheMaxSize = other.cacheMaxSize;
         }
+        if (other.cacheMaxBytes != null) {
+            cacheMaxBytes = other.cacheMaxBytes;
+        }
         if (other.cacheConcurrencyLevel != null) {
             cacheConcurrencyLevel = other.cacheConcurrencyLevel;
         }
@@ -177,6 +203,9 @@ public class DBSRepositoryDescriptor implements Cloneable {
         if (other.changeTokenEnabled != null) {
             changeTokenEnabled = other.changeTokenEnabled;
         }
+        if (other.compactStates != null) {
+            compactStates = other.compactStates;
+        }
     }
 
     private static boolean defaultFalse(Boolean bool) {
@@ -168,7 +168,7 @@ public class DBSTransactionState {
         if (transientStates.containsKey(id)) {
             throw new IllegalStateException("Already transient: " + id);
         }
-        DBSDocumentState docState = new DBSDocumentState(state); // copy
+        DBSDocumentState docState = new DBSDocumentState(state, repository.isCompactStates()); // copy
         transientStates.put(id, docState);
         return docState;
     }
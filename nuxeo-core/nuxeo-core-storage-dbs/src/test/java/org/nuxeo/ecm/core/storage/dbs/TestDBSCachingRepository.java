@@ -19,10 +19,12 @@
 package org.nuxeo.ecm.core.storage.dbs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -177,6 +179,94 @@ public class TestDBSCachingRepository {
         assertEquals(dbState, cachedState);
     }
 
+    @Test
+    public void testReadChildStateAfterRename() {
+        String parentId = "PARENT-ID";
+        String name = "NAME";
+        String id = parentId + "_" + name;
+
+        // First add a child in cache
+        repository.readChildState(parentId, name, Collections.emptySet());
+        repository.readChildState(parentId, name, Collections.emptySet());
+        verify(subRepository, times(1)).readChildState(eq(parentId), eq(name), any());
+
+        // Second rename it
+        StateDiff diff = new StateDiff();
+        diff.put(KEY_NAME, "OTHER-NAME");
+        repository.updateState(id, diff, null);
+
+        // Check child is no longer in cache
+        repository.readChildState(parentId, name, Collections.emptySet());
+        verify(subRepository, times(2)).readChildState(eq(parentId), eq(name), any());
+    }
+
+    @Test
+    public void testQueryChildrenWithSizeBoundedCache() {
+        // replace the default repository by one bounded by size
+        repository.shutdown();
+        DBSRepositoryDescriptor descriptor = newDBSRepositoryDescriptor();
+        descriptor.cacheMaxBytes = "10MB";
+        repository = new DBSCachingRepository(subRepository, descriptor);
+
+        String parentId = "PARENT-ID";
+        String id1 = parentId + "_A";
+        String id2 = parentId + "_B";
+        when(subRepository.queryKeyValue(eq(KEY_PARENT_ID), eq(parentId), any())).then(
+                invocation -> new ArrayList<>(Arrays.asList(newChildState(parentId, "A"), newChildState(parentId, "B"))));
+        when(subRepository.readStates(eq(Collections.singletonList(id1)))).then(
+                invocation -> new ArrayList<>(Collections.singletonList(newChildState(parentId, "A"))));
+
+        // First listing - call sub repository
+        List<State> dbStates = repository.queryKeyValue(KEY_PARENT_ID, parentId, Collections.emptySet());
+        verify(subRepository, times(1)).queryKeyValue(eq(KEY_PARENT_ID), eq(parentId), any());
+        assertEquals(2, dbStates.size());
+
+        // Second listing - call cache, ignoring a child
+        List<State> cachedStates = repository.queryKeyValue(KEY_PARENT_ID, parentId, Collections.singleton(id1));
+        verify(subRepository, times(1)).queryKeyValue(eq(KEY_PARENT_ID), eq(parentId), any());
+        assertEquals(Collections.singletonList(dbStates.get(1)), cachedStates);
+
+        // Children are also available by name
+        State childState = repository.readChildState(parentId, "A", Collections.emptySet());
+        verify(subRepository, never()).readChildState(any(), any(), any());
+        assertEquals(dbStates.get(0), childState);
+
+        // Invalidate a child - listing prefetches it through readStates
+        repository.updateState(id1, mock(StateDiff.class), null);
+        cachedStates = repository.queryKeyValue(KEY_PARENT_ID, parentId, Collections.emptySet());
+        verify(subRepository, times(1)).queryKeyValue(eq(KEY_PARENT_ID), eq(parentId), any());
+        verify(subRepository, times(1)).readStates(eq(Collections.singletonList(id1)));
+        assertEquals(dbStates, cachedStates);
+        assertEquals(id2, cachedStates.get(1).get(KEY_ID));
+
+        // Create a child - listing calls sub repository again
+        repository.createState(newChildState(parentId, "C"));
+        repository.queryKeyValue(KEY_PARENT_ID, parentId, Collections.emptySet());
+        verify(subRepository, times(2)).queryKeyValue(eq(KEY_PARENT_ID), eq(parentId), any());
+    }
+
+    @Test
+    public void testChildCacheBoundedByChildren() {
+        String parentId = "PARENT-ID";
+        for (int i = 0; i < 5000; i++) {
+            repository.readChildState(parentId, String.valueOf(i), Collections.emptySet());
+        }
+        // cacheMaxSize bounds the number of cached children, not the number of parents
+        long cachedChildren = repository.childCache.asMap()
+                                                   .values()
+                                                   .stream()
+                                                   .mapToLong(children -> children.names.size())
+                                                   .sum();
+        assertTrue(String.valueOf(cachedChildren), cachedChildren <= 1000);
+    }
+
+    private State newChildState(String parentId, String name) {
+        State state = newState(parentId + "_" + name);
+        state.setSingle(KEY_PARENT_ID, parentId);
+        state.setSingle(KEY_NAME, name);
+        return state;
+    }
+
     private State newState(String id) {
         State state = new State();
         state.setSingle(KEY_ID, id);
@@ -58,6 +58,14 @@ public class TestDBSInvalidations {
         ser = new String(baout.toByteArray());
         assertTrue(ser, Arrays.asList(",foo,bar", ",bar,foo").contains(ser)); // non-deterministic order
 
+        invals = new DBSInvalidations();
+        invals.add("foo");
+        invals.addParentIds(Collections.singleton("bar"));
+        baout.reset();
+        invals.serialize(baout);
+        ser = new String(baout.toByteArray());
+        assertEquals(",foo,/bar", ser);
+
         invals = new DBSInvalidations();
         invals.setAll();
         baout.reset();
@@ -90,6 +98,18 @@ public class TestDBSInvalidations {
         bain = new ByteArrayInputStream(",foo,bar".getBytes());
         invals = DBSInvalidations.deserialize(bain);
         assertEquals(new HashSet<>(Arrays.asList("foo", "bar")), invals.ids);
+        assertNull(invals.parentIds);
+
+        bain = new ByteArrayInputStream(",/foo,bar,/baz".getBytes());
+        invals = DBSInvalidations.deserialize(bain);
+        assertEquals(Collections.singleton("bar"), invals.ids);
+        assertEquals(new HashSet<>(Arrays.asList("foo", "baz")), invals.parentIds);
+
+        // parent ids alone are still a list of ids for nodes not knowing about them
+        bain = new ByteArrayInputStream(",/foo".getBytes());
+        invals = DBSInvalidations.deserialize(bain);
+        assertNull(invals.ids);
+        assertEquals(Collections.singleton("foo"), invals.parentIds);
     }
 
 }
@@ -0,0 +1,173 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+import static org.nuxeo.ecm.core.storage.mongodb.MongoDBRepository.MONGODB_ID;
+import static org.nuxeo.ecm.core.storage.mongodb.MongoDBRepository.REPOSITORY_CONNECTION_PREFIX;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.json.JsonParseException;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.ChangeFeed;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.mongodb.MongoDBConnectionService;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+
+/**
+ * A {@link ChangeFeed} reading the change stream of the MongoDB collection of a repository.
+ * <p>
+ * Change streams require MongoDB to run as a replica set. The checkpoint is the resume token of the last change read,
+ * or the operation time at which the feed started. A {@code null} checkpoint starts the feed at the current operation
+ * time, as the oplog doesn't hold the history of the repository.
+ * <p>
+ * Deletions are only reported when the repository uses {@code nativeId}, otherwise the key of a deleted document is a
+ * MongoDB object id unrelated to the document id.
+ *
+ * @since 11.1
+ */
+public class MongoDBChangeFeed implements ChangeFeed {
+
+    protected static final String TIME_CHECKPOINT_PREFIX = "time:";
+
+    protected static final String OPERATION_TYPE = "operationType";
+
+    protected static final String DOCUMENT_KEY = "documentKey";
+
+    protected static final String FULL_DOCUMENT = "fullDocument";
+
+    protected static final List<String> OPERATION_TYPES = Arrays.asList("insert", "update", "replace", "delete");
+
+    /** Maximum time waited by the server for new changes when the stream is exhausted. */
+    protected static final long MAX_AWAIT_TIME_MS = 100;
+
+    @Override
+    public Changes read(String repositoryName, String checkpoint, int maxChanges) {
+        MongoDBConnectionService mongoService = Framework.getService(MongoDBConnectionService.class);
+        MongoDatabase database = mongoService.getDatabase(REPOSITORY_CONNECTION_PREFIX + repositoryName);
+        MongoCollection<Document> coll = database.getCollection(repositoryName);
+        try {
+            if (checkpoint == null) {
+                checkpoint = getCurrentTimeCheckpoint(database);
+            }
+            // keep only what is needed to get the document id, the full document can be big
+            List<Bson> pipeline = Arrays.asList(Aggregates.match(Filters.in(OPERATION_TYPE, OPERATION_TYPES)),
+                    Aggregates.project(Projections.include(OPERATION_TYPE, "ns", DOCUMENT_KEY,
+                            FULL_DOCUMENT + "." + KEY_ID)));
+            ChangeStreamIterable<Document> stream = coll.watch(pipeline)
+                                                        .fullDocument(FullDocument.UPDATE_LOOKUP)
+                                                        .maxAwaitTime(MAX_AWAIT_TIME_MS, MILLISECONDS);
+            if (checkpoint.startsWith(TIME_CHECKPOINT_PREFIX)) {
+                stream = stream.startAtOperationTime(parseTimeCheckpoint(checkpoint));
+            } else {
+                stream = stream.resumeAfter(parseTokenCheckpoint(checkpoint));
+            }
+            List<String> documentIds = new ArrayList<>();
+            try (MongoCursor<ChangeStreamDocument<Document>> cursor = stream.iterator()) {
+                while (documentIds.size() < maxChanges) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        break;
+                    }
+                    checkpoint = change.getResumeToken().toJson();
+                    String id = getDocumentId(change.getFullDocument(), change.getDocumentKey());
+                    if (id != null) {
+                        documentIds.add(id);
+                    }
+                }
+            }
+            return new Changes(documentIds, checkpoint);
+        } catch (MongoException e) {
+            throw new NuxeoException("Cannot read the change stream of repository: " + repositoryName, e);
+        }
+    }
+
+    /**
+     * Gets the id of a changed document, or {@code null} if it cannot be found.
+     */
+    protected static String getDocumentId(Document fullDocument, BsonDocument documentKey) {
+        if (fullDocument != null && fullDocument.get(KEY_ID) != null) {
+            return fullDocument.get(KEY_ID).toString();
+        }
+        // nativeId, or a deletion
+        BsonValue key = documentKey == null ? null : documentKey.get(MONGODB_ID);
+        if (key == null) {
+            return null;
+        } else if (key.isString()) {
+            return key.asString().getValue();
+        } else if (key.isInt64()) {
+            return String.valueOf(key.asInt64().getValue());
+        } else {
+            // object id of a document without nativeId
+            return null;
+        }
+    }
+
+    protected static String getCurrentTimeCheckpoint(MongoDatabase database) {
+        Object operationTime = database.runCommand(new Document("isMaster", 1)).get("operationTime");
+        if (!(operationTime instanceof BsonTimestamp)) {
+            throw new NuxeoException("MongoDB change streams require a replica set");
+        }
+        return toTimeCheckpoint((BsonTimestamp) operationTime);
+    }
+
+    protected static String toTimeCheckpoint(BsonTimestamp time) {
+        return TIME_CHECKPOINT_PREFIX + time.getTime() + ":" + time.getInc();
+    }
+
+    protected static BsonTimestamp parseTimeCheckpoint(String checkpoint) {
+        String[] parts = checkpoint.substring(TIME_CHECKPOINT_PREFIX.length()).split(":");
+        if (parts.length != 2) {
+            throw new NuxeoException("Invalid checkpoint: " + checkpoint);
+        }
+        try {
+            return new BsonTimestamp(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        } catch (NumberFormatException e) {
+            throw new NuxeoException("Invalid checkpoint: " + checkpoint, e);
+        }
+    }
+
+    protected static BsonDocument parseTokenCheckpoint(String checkpoint) {
+        try {
+            return BsonDocument.parse(checkpoint);
+        } catch (JsonParseException e) {
+            throw new NuxeoException("Invalid checkpoint: " + checkpoint, e);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+/**
+ * @since 11.1
+ */
+public class TestMongoDBChangeFeed {
+
+    @Test
+    public void testTimeCheckpoint() {
+        BsonTimestamp time = new BsonTimestamp(1580000000, 3);
+        String checkpoint = MongoDBChangeFeed.toTimeCheckpoint(time);
+        assertEquals("time:1580000000:3", checkpoint);
+        assertEquals(time, MongoDBChangeFeed.parseTimeCheckpoint(checkpoint));
+    }
+
+    @Test
+    public void testTokenCheckpoint() {
+        BsonDocument token = new BsonDocument("_data", new BsonString("825E2F"));
+        assertEquals(token, MongoDBChangeFeed.parseTokenCheckpoint(token.toJson()));
+    }
+
+    @Test
+    public void testInvalidCheckpoint() {
+        for (String checkpoint : new String[] { "time:123", "time:foo:1" }) {
+            try {
+                MongoDBChangeFeed.parseTimeCheckpoint(checkpoint);
+                fail("Should fail for " + checkpoint);
+            } catch (NuxeoException e) {
+                assertEquals("Invalid checkpoint: " + checkpoint, e.getMessage());
+            }
+        }
+        try {
+            MongoDBChangeFeed.parseTokenCheckpoint("{foo");
+            fail();
+        } catch (NuxeoException e) {
+            assertEquals("Invalid checkpoint: {foo", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDocumentId() {
+        BsonDocument objectIdKey = new BsonDocument("_id", new BsonObjectId());
+        // id stored in ecm:id
+        assertEquals("123", MongoDBChangeFeed.getDocumentId(new Document("ecm:id", "123"), objectIdKey));
+        // deletion without nativeId
+        assertNull(MongoDBChangeFeed.getDocumentId(null, objectIdKey));
+        // nativeId
+        assertEquals("123", MongoDBChangeFeed.getDocumentId(new Document(),
+                new BsonDocument("_id", new BsonString("123"))));
+        assertEquals("123", MongoDBChangeFeed.getDocumentId(null, new BsonDocument("_id", new BsonInt64(123))));
+        assertNull(MongoDBChangeFeed.getDocumentId(null, null));
+    }
+
+}
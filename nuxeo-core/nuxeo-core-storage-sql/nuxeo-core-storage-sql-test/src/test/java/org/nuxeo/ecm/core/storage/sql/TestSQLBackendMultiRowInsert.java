@@ -0,0 +1,83 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.query.QueryFilter;
+
+/**
+ * Tests the multi-row inserts of {@link org.nuxeo.ecm.core.storage.sql.jdbc.JDBCRowMapper}.
+ *
+ * @since 11.1
+ */
+public class TestSQLBackendMultiRowInsert extends SQLBackendTestCase {
+
+    /** More rows than the maximum rows per insert of all dialects, and more parameters than their limits. */
+    protected static final int NB_DOCS = 2500;
+
+    @Test
+    public void testInsertBeyondDialectLimits() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        for (int i = 0; i < NB_DOCS; i++) {
+            Node node = session.addChildNode(root, "doc" + i, null, "TestDoc", false);
+            // rows of the same table with different columns set
+            if (i % 3 == 0) {
+                node.setSimpleProperty("tst:title", "title" + i);
+            } else if (i % 3 == 1) {
+                node.setSimpleProperty("tst:count", Long.valueOf(i));
+            }
+        }
+        session.save();
+        session.close();
+
+        session = repository.getConnection();
+        Map<String, Map<String, Serializable>> rows = new HashMap<>();
+        try (IterableQueryResult it = session.queryAndFetch("SELECT ecm:name, tst:title, tst:count FROM TestDoc",
+                "NXQL", QueryFilter.EMPTY)) {
+            for (Map<String, Serializable> map : it) {
+                rows.put((String) map.get("ecm:name"), map);
+            }
+        }
+        assertEquals(NB_DOCS, rows.size());
+        for (int i = 0; i < NB_DOCS; i++) {
+            Map<String, Serializable> map = rows.get("doc" + i);
+            if (i % 3 == 0) {
+                assertEquals("title" + i, map.get("tst:title"));
+                assertNull(map.get("tst:count"));
+            } else if (i % 3 == 1) {
+                assertNull(map.get("tst:title"));
+                assertEquals(Long.valueOf(i), map.get("tst:count"));
+            } else {
+                assertNull(map.get("tst:title"));
+                assertNull(map.get("tst:count"));
+            }
+        }
+        session.close();
+    }
+
+}
@@ -0,0 +1,552 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.Xid;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.utils.SizeUtils;
+import org.nuxeo.ecm.core.storage.sql.ACLRow.ACLRowPositionComparator;
+import org.nuxeo.ecm.core.storage.sql.OffHeapRowCache.Lookup;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * A {@link RowMapper} that uses a cache shared by all the mappers of a repository, whose rows are stored off heap in a
+ * size-bounded {@link OffHeapRowCache}.
+ * <p>
+ * The cache only holds {@link Row}s that are known to be identical to what's in the underlying {@link RowMapper}:
+ * rows written by a transaction are removed from the cache and only put back once read again after commit.
+ * Invalidations from other mappers and from the cluster are processed like for the {@link UnifiedCachingRowMapper}.
+ * <p>
+ * The following caching mapper properties are available:
+ * <ul>
+ * <li>{@value #MAX_SIZE_PROP}: the maximum off-heap size (default {@value #DEFAULT_MAX_SIZE}),
+ * <li>{@value #BLOCK_SIZE_PROP}: the allocation block size (default {@value OffHeapRowCache#DEFAULT_BLOCK_SIZE}),
+ * <li>{@value #TABLE_MAX_SIZE_PROP_PREFIX}{@code <table>}: the maximum off-heap size for a given table,
+ * <li>{@value #CONCURRENCY_PROP}: the number of independently locked stripes of the cache (default computed from the
+ * size, up to {@value OffHeapRowCache#DEFAULT_CONCURRENCY}).
+ * </ul>
+ *
+ * @since 11.1
+ */
+public class OffHeapCachingRowMapper implements RowMapper {
+
+    private static final Log log = LogFactory.getLog(OffHeapCachingRowMapper.class);
+
+    public static final String MAX_SIZE_PROP = "offHeapCacheMaxSize";
+
+    public static final String DEFAULT_MAX_SIZE = "256MB";
+
+    public static final String BLOCK_SIZE_PROP = "offHeapCacheBlockSize";
+
+    public static final String TABLE_MAX_SIZE_PROP_PREFIX = "offHeapCacheMaxSize.";
+
+    public static final String CONCURRENCY_PROP = "offHeapCacheConcurrency";
+
+    /** Caches shared by all the mappers of a repository, by repository name. */
+    protected static final Map<String, OffHeapRowCache> CACHES = new ConcurrentHashMap<>();
+
+    protected static final RowCodec CODEC = new RowCodec();
+
+    protected OffHeapRowCache cache;
+
+    private Model model;
+
+    /**
+     * The {@link RowMapper} to which operations that cannot be processed from the cache are delegated.
+     */
+    private RowMapper rowMapper;
+
+    /**
+     * The local invalidations due to writes through this mapper that should be propagated to other sessions at
+     * post-commit time.
+     */
+    private final Invalidations localInvalidations;
+
+    /**
+     * The queue of invalidations received from other session or from the cluster invalidator, to process at
+     * pre-transaction time.
+     */
+    private final InvalidationsQueue invalidationsQueue;
+
+    /**
+     * The propagator of invalidations to other mappers.
+     */
+    private InvalidationsPropagator invalidationsPropagator;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected Counter cacheHitCount;
+
+    protected Counter cacheMissCount;
+
+    protected Timer cacheGetTimer;
+
+    // sor means system of record (database access)
+    protected Counter sorRows;
+
+    protected Timer sorGetTimer;
+
+    public OffHeapCachingRowMapper() {
+        localInvalidations = new Invalidations();
+        invalidationsQueue = new InvalidationsQueue("mapper-" + this);
+    }
+
+    public void initialize(String repositoryName, Model model, RowMapper rowMapper,
+            InvalidationsPropagator invalidationsPropagator, Map<String, String> properties) {
+        this.model = model;
+        this.rowMapper = rowMapper;
+        this.invalidationsPropagator = invalidationsPropagator;
+        invalidationsPropagator.addQueue(invalidationsQueue);
+        cache = CACHES.computeIfAbsent(repositoryName, k -> createCache(k, properties));
+        setMetrics(repositoryName);
+    }
+
+    protected static OffHeapRowCache createCache(String repositoryName, Map<String, String> properties) {
+        long maxSize = SizeUtils.parseSizeInBytes(properties.getOrDefault(MAX_SIZE_PROP, DEFAULT_MAX_SIZE));
+        String blockSizeProp = properties.get(BLOCK_SIZE_PROP);
+        int blockSize = blockSizeProp == null ? OffHeapRowCache.DEFAULT_BLOCK_SIZE
+                : (int) SizeUtils.parseSizeInBytes(blockSizeProp);
+        Map<String, Long> tableMaxSizes = new HashMap<>();
+        for (Entry<String, String> en : properties.entrySet()) {
+            if (en.getKey().startsWith(TABLE_MAX_SIZE_PROP_PREFIX)) {
+                String tableName = en.getKey().substring(TABLE_MAX_SIZE_PROP_PREFIX.length());
+                tableMaxSizes.put(tableName, Long.valueOf(SizeUtils.parseSizeInBytes(en.getValue())));
+            }
+        }
+        String concurrencyProp = properties.get(CONCURRENCY_PROP);
+        int concurrency = concurrencyProp == null ? 0 : Integer.parseInt(concurrencyProp.trim());
+        log.info("Creating off-heap row cache for repository: " + repositoryName + " with size: " + maxSize);
+        return new OffHeapRowCache(maxSize, blockSize, tableMaxSizes, concurrency);
+    }
+
+    /**
+     * Closes and forgets the cache shared by the mappers of a repository, releasing its off-heap memory. Called when the
+     * repository is shut down, so that a reloaded repository doesn't see stale rows.
+     */
+    public static void closeCache(String repositoryName) {
+        OffHeapRowCache cache = CACHES.remove(repositoryName);
+        if (cache == null) {
+            return;
+        }
+        log.info("Closing off-heap row cache for repository: " + repositoryName);
+        cache.close();
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        for (String gauge : Arrays.asList("evictions", "cache-size", "bytes")) {
+            registry.remove(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "offheap", gauge));
+        }
+    }
+
+    protected void setMetrics(String repositoryName) {
+        cacheHitCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches",
+                "offheap", "hits"));
+        cacheMissCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches",
+                "offheap", "misses"));
+        cacheGetTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches",
+                "offheap", "get"));
+        sorRows = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "offheap",
+                "sor", "rows"));
+        sorGetTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "offheap",
+                "sor", "get"));
+        OffHeapRowCache c = cache;
+        registerGauge(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "offheap", "evictions"),
+                c::getEvictionCount);
+        registerGauge(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "offheap", "cache-size"),
+                c::getEntryCount);
+        registerGauge(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "offheap", "bytes"),
+                c::getSize);
+    }
+
+    protected void registerGauge(String name, Gauge<Long> gauge) {
+        @SuppressWarnings("rawtypes")
+        Map<String, Gauge> gauges = registry.getGauges();
+        if (!gauges.containsKey(name)) {
+            try {
+                registry.register(name, gauge);
+            } catch (IllegalArgumentException e) {
+                // concurrent registration
+            }
+        }
+    }
+
+    public void close() {
+        invalidationsPropagator.removeQueue(invalidationsQueue);
+    }
+
+    @Override
+    public Serializable generateNewId() {
+        return rowMapper.generateNewId();
+    }
+
+    /*
+     * ----- Cache -----
+     */
+
+    protected void cachePut(Row row) {
+        // for ACL collections, make sure the order is correct
+        // (without the cache, the query to get a list of collection does an
+        // ORDER BY pos, so users of the cache must get the same behavior)
+        if (row.isCollection() && row.values.length > 0 && row.values[0] instanceof ACLRow) {
+            row = row.clone();
+            row.values = sortACLRows((ACLRow[]) row.values);
+        }
+        cache.put(row, CODEC.encode(row));
+    }
+
+    protected ACLRow[] sortACLRows(ACLRow[] acls) {
+        List<ACLRow> list = new ArrayList<>(Arrays.asList(acls));
+        Collections.sort(list, ACLRowPositionComparator.INSTANCE);
+        ACLRow[] res = new ACLRow[acls.length];
+        return list.toArray(res);
+    }
+
+    protected void cachePutAbsent(RowId rowId) {
+        cache.putAbsent(rowId);
+    }
+
+    protected void cachePutAbsentIfNull(RowId rowId, Row row) {
+        if (row != null) {
+            cachePut(row);
+        } else {
+            cachePutAbsent(rowId);
+        }
+    }
+
+    protected void cachePutAbsentIfRowId(RowId rowId) {
+        if (rowId instanceof Row) {
+            cachePut((Row) rowId);
+        } else {
+            cachePutAbsent(rowId);
+        }
+    }
+
+    /**
+     * Gets a row from the cache, {@link Lookup#MISS} or {@link Lookup#ABSENT} are returned as {@code null} and an
+     * absent {@link RowId} respectively.
+     */
+    @SuppressWarnings("resource") // Time.Context closed by stop()
+    protected RowId cacheGet(RowId rowId) {
+        final Timer.Context context = cacheGetTimer.time();
+        try {
+            Lookup lookup = cache.get(rowId);
+            if (lookup == Lookup.MISS) {
+                cacheMissCount.inc();
+                return null;
+            }
+            cacheHitCount.inc();
+            if (lookup == Lookup.ABSENT) {
+                return new RowId(rowId);
+            }
+            return CODEC.decode(rowId.tableName, lookup.bytes);
+        } finally {
+            context.stop();
+        }
+    }
+
+    protected void cacheRemove(RowId rowId) {
+        cache.remove(rowId);
+    }
+
+    /*
+     * ----- Invalidations / Cache Management -----
+     */
+
+    @Override
+    public Invalidations receiveInvalidations() {
+        // invalidations from the underlying mapper (cluster)
+        // already propagated to our invalidations queue
+        Invalidations remoteInvals = rowMapper.receiveInvalidations();
+
+        Invalidations ret = invalidationsQueue.getInvalidations();
+
+        if (remoteInvals != null && !ret.all) {
+            // only handle remote invalidations, the cache is shared
+            if (remoteInvals.modified != null) {
+                for (RowId rowId : remoteInvals.modified) {
+                    cacheRemove(rowId);
+                }
+            }
+            if (remoteInvals.deleted != null) {
+                for (RowId rowId : remoteInvals.deleted) {
+                    cachePutAbsent(rowId);
+                }
+            }
+        }
+
+        // invalidate our cache
+        if (ret.all) {
+            clearCache();
+        }
+
+        return ret.isEmpty() ? null : ret;
+    }
+
+    // propagate invalidations
+    @Override
+    public void sendInvalidations(Invalidations invalidations) {
+        // add local invalidations
+        if (!localInvalidations.isEmpty()) {
+            // rows may have been re-cached by other sessions with their pre-commit values
+            if (localInvalidations.modified != null) {
+                for (RowId rowId : localInvalidations.modified) {
+                    cacheRemove(rowId);
+                }
+            }
+            if (localInvalidations.deleted != null) {
+                for (RowId rowId : localInvalidations.deleted) {
+                    cachePutAbsent(rowId);
+                }
+            }
+            if (invalidations == null) {
+                invalidations = new Invalidations();
+            }
+            invalidations.add(localInvalidations);
+            localInvalidations.clear();
+        }
+
+        if (invalidations != null && !invalidations.isEmpty()) {
+            // send to underlying mapper
+            rowMapper.sendInvalidations(invalidations);
+
+            // queue to other mappers' caches
+            invalidationsPropagator.propagateInvalidations(invalidations, invalidationsQueue);
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        cache.clear();
+        localInvalidations.clear();
+        rowMapper.clearCache();
+    }
+
+    @Override
+    public void rollback(Xid xid) throws XAException {
+        try {
+            rowMapper.rollback(xid);
+        } finally {
+            // rows written by the transaction were removed from the cache, nothing else to undo
+            localInvalidations.clear();
+        }
+    }
+
+    /*
+     * ----- Batch -----
+     */
+
+    /*
+     * Use those from the cache if available, read from the mapper for the rest.
+     */
+    @Override
+    public List<? extends RowId> read(Collection<RowId> rowIds, boolean cacheOnly) {
+        List<RowId> res = new ArrayList<>(rowIds.size());
+        // find which are in cache, and which not
+        List<RowId> todo = new LinkedList<>();
+        for (RowId rowId : rowIds) {
+            RowId row = cacheGet(rowId);
+            if (row == null) {
+                if (cacheOnly) {
+                    res.add(new RowId(rowId));
+                } else {
+                    todo.add(rowId);
+                }
+            } else {
+                res.add(row);
+            }
+        }
+        if (!todo.isEmpty()) {
+            @SuppressWarnings("resource")
+            final Timer.Context context = sorGetTimer.time();
+            try {
+                // ask missing ones to underlying row mapper
+                List<? extends RowId> fetched = rowMapper.read(todo, cacheOnly);
+                // add them to the cache
+                for (RowId rowId : fetched) {
+                    cachePutAbsentIfRowId(rowId);
+                }
+                // merge results
+                res.addAll(fetched);
+                sorRows.inc(fetched.size());
+            } finally {
+                context.stop();
+            }
+        }
+        return res;
+    }
+
+    /*
+     * Remove from the cache then pass all the writes to the mapper. The cache is shared and not transactional, so
+     * uncommitted values must not be visible to other sessions.
+     */
+    @Override
+    public void write(RowBatch batch) {
+        // we avoid gathering invalidations for a write-only table: fulltext
+        for (Row row : batch.creates) {
+            cacheRemove(row);
+            if (!Model.FULLTEXT_TABLE_NAME.equals(row.tableName)) {
+                // we need to send modified invalidations for created
+                // fragments because other session's ABSENT fragments have
+                // to be invalidated
+                localInvalidations.addModified(new RowId(row));
+            }
+        }
+        for (RowUpdate rowu : batch.updates) {
+            cacheRemove(rowu.row);
+            if (!Model.FULLTEXT_TABLE_NAME.equals(rowu.row.tableName)) {
+                localInvalidations.addModified(new RowId(rowu.row));
+            }
+        }
+        for (RowId rowId : batch.deletes) {
+            if (rowId instanceof Row) {
+                throw new AssertionError();
+            }
+            cacheRemove(rowId);
+            if (!Model.FULLTEXT_TABLE_NAME.equals(rowId.tableName)) {
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+        for (RowId rowId : batch.deletesDependent) {
+            if (rowId instanceof Row) {
+                throw new AssertionError();
+            }
+            cacheRemove(rowId);
+            if (!Model.FULLTEXT_TABLE_NAME.equals(rowId.tableName)) {
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+
+        // propagate to underlying mapper
+        rowMapper.write(batch);
+    }
+
+    /*
+     * ----- Read -----
+     */
+
+    @Override
+    public Row readSimpleRow(RowId rowId) {
+        RowId row = cacheGet(rowId);
+        if (row == null) {
+            Row r = rowMapper.readSimpleRow(rowId);
+            cachePutAbsentIfNull(rowId, r);
+            return r;
+        }
+        return row instanceof Row ? (Row) row : null;
+    }
+
+    @Override
+    public Map<String, String> getBinaryFulltext(RowId rowId) {
+        return rowMapper.getBinaryFulltext(rowId);
+    }
+
+    @Override
+    public Serializable[] readCollectionRowArray(RowId rowId) {
+        RowId row = cacheGet(rowId);
+        if (row == null) {
+            Serializable[] array = rowMapper.readCollectionRowArray(rowId);
+            assert array != null;
+            Row r = new Row(rowId.tableName, rowId.id, array);
+            cachePut(r);
+            return r.values;
+        }
+        return row instanceof Row ? ((Row) row).values : null;
+    }
+
+    @Override
+    public List<Row> readSelectionRows(SelectionType selType, Serializable selId, Serializable filter,
+            Serializable criterion, boolean limitToOne) {
+        List<Row> rows = rowMapper.readSelectionRows(selType, selId, filter, criterion, limitToOne);
+        for (Row row : rows) {
+            cachePut(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public Set<Serializable> readSelectionsIds(SelectionType selType, List<Serializable> values) {
+        return rowMapper.readSelectionsIds(selType, values);
+    }
+
+    /*
+     * ----- Copy -----
+     */
+
+    @Override
+    public CopyResult copy(IdWithTypes source, Serializable destParentId, String destName, Row overwriteRow) {
+        CopyResult result = rowMapper.copy(source, destParentId, destName, overwriteRow);
+        Invalidations invalidations = result.invalidations;
+        if (invalidations.modified != null) {
+            for (RowId rowId : invalidations.modified) {
+                cacheRemove(rowId);
+                localInvalidations.addModified(new RowId(rowId));
+            }
+        }
+        if (invalidations.deleted != null) {
+            for (RowId rowId : invalidations.deleted) {
+                cacheRemove(rowId);
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<NodeInfo> getDescendantsInfo(Serializable rootId) {
+        return rowMapper.getDescendantsInfo(rootId);
+    }
+
+    @Override
+    public void remove(Serializable rootId, List<NodeInfo> nodeInfos) {
+        rowMapper.remove(rootId, nodeInfos);
+        for (NodeInfo info : nodeInfos) {
+            for (String fragmentName : model.getTypeFragments(new IdWithTypes(info.id, info.primaryType, null))) {
+                RowId rowId = new RowId(fragmentName, info.id);
+                cacheRemove(rowId);
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+    }
+
+    @Override
+    public long getCacheSize() {
+        return cache.getEntryCount();
+    }
+
+}
@@ -0,0 +1,522 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.ToLongFunction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A cache of {@link Row}s whose content is stored outside of the Java heap, bounded by a number of bytes.
+ * <p>
+ * Encoded rows are stored in fixed-size blocks carved out of direct {@link ByteBuffer} slabs, which are allocated
+ * lazily up to the configured maximum size. Only a small index (row id to block numbers) is kept on the heap.
+ * <p>
+ * Each table has its own LRU segment, optionally with its own maximum size. When the global maximum size is reached,
+ * the least recently used entries of the largest segment are evicted first, so that a table with many rarely used
+ * rows cannot evict all the rows of the other tables.
+ * <p>
+ * Absent rows (known not to exist in the database) are stored without content but are accounted as one block.
+ * <p>
+ * The cache is shared by all the sessions of a repository, so it is split into stripes selected by row id hash, each
+ * with its own lock, slabs and share of the maximum sizes. Small caches use a single stripe so that the eviction order
+ * is exact.
+ *
+ * @since 11.1
+ */
+public class OffHeapRowCache {
+
+    private static final Log log = LogFactory.getLog(OffHeapRowCache.class);
+
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    /** Minimum number of blocks of a stripe when the concurrency is computed from the size. */
+    protected static final long MIN_STRIPE_BLOCKS = 1024;
+
+    protected static final int MAX_SLAB_SIZE = 1 << 30;
+
+    protected static final int[] NO_BLOCKS = new int[0];
+
+    /** Cached entry: block numbers and content length, or absent row if blocks is empty. */
+    protected static class CacheEntry {
+
+        protected final int[] blocks;
+
+        protected final int length;
+
+        protected CacheEntry(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+
+        protected boolean isAbsent() {
+            return blocks.length == 0;
+        }
+
+        protected int units() {
+            return Math.max(1, blocks.length);
+        }
+    }
+
+    /** LRU segment for one table. */
+    protected static class Segment {
+
+        protected final String tableName;
+
+        protected final long maxUnits;
+
+        protected final LinkedHashMap<Serializable, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected long units;
+
+        protected long evictions;
+
+        protected Segment(String tableName, long maxUnits) {
+            this.tableName = tableName;
+            this.maxUnits = maxUnits;
+        }
+    }
+
+    /**
+     * Result of a cache lookup: {@link #MISS}, {@link #ABSENT}, or a row content.
+     */
+    public static final class Lookup {
+
+        public static final Lookup MISS = new Lookup(null);
+
+        public static final Lookup ABSENT = new Lookup(null);
+
+        public final byte[] bytes;
+
+        protected Lookup(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Independent part of the cache, all its methods are called under its own lock.
+     */
+    protected static class Stripe {
+
+        protected final int blockSize;
+
+        protected final int blocksPerSlab;
+
+        protected final long totalBlocks;
+
+        /** Maximum number of blocks per table. */
+        protected final Map<String, Long> tableMaxBlocks;
+
+        protected final ByteBuffer[] slabs;
+
+        protected final Map<String, Segment> segments = new HashMap<>();
+
+        /** Stack of free block numbers. */
+        protected int[] freeBlocks;
+
+        protected int freeCount;
+
+        /** Number of blocks taken from the slabs so far (free or not). */
+        protected long allocatedBlocks;
+
+        /** Number of accounted blocks (used blocks plus absent entries). */
+        protected long usedUnits;
+
+        protected long entryCount;
+
+        protected long hits;
+
+        protected long misses;
+
+        protected long evictions;
+
+        protected Stripe(long totalBlocks, int blockSize, Map<String, Long> tableMaxBlocks) {
+            this.blockSize = blockSize;
+            this.totalBlocks = totalBlocks;
+            this.tableMaxBlocks = tableMaxBlocks;
+            blocksPerSlab = MAX_SLAB_SIZE / blockSize;
+            slabs = new ByteBuffer[(int) ((totalBlocks + blocksPerSlab - 1) / blocksPerSlab)];
+            freeBlocks = new int[1024];
+        }
+
+        protected synchronized long getUsedUnits() {
+            return usedUnits;
+        }
+
+        protected synchronized long getAllocatedBlocks() {
+            return allocatedBlocks;
+        }
+
+        protected synchronized long getEntryCount() {
+            return entryCount;
+        }
+
+        protected synchronized long getHitCount() {
+            return hits;
+        }
+
+        protected synchronized long getMissCount() {
+            return misses;
+        }
+
+        protected synchronized long getEvictionCount() {
+            return evictions;
+        }
+
+        protected synchronized long getEvictionCount(String tableName) {
+            Segment segment = segments.get(tableName);
+            return segment == null ? 0 : segment.evictions;
+        }
+
+        protected synchronized Lookup get(RowId rowId) {
+            Segment segment = segments.get(rowId.tableName);
+            CacheEntry entry = segment == null ? null : segment.entries.get(rowId.id);
+            if (entry == null) {
+                misses++;
+                return Lookup.MISS;
+            }
+            hits++;
+            if (entry.isAbsent()) {
+                return Lookup.ABSENT;
+            }
+            return new Lookup(read(entry));
+        }
+
+        protected synchronized void put(RowId rowId, byte[] bytes) {
+            int n = (bytes.length + blockSize - 1) / blockSize;
+            if (n == 0) {
+                n = 1;
+            }
+            Segment segment = segment(rowId.tableName);
+            remove(segment, rowId.id);
+            if (n > totalBlocks || n > segment.maxUnits) {
+                // too big to be cached
+                return;
+            }
+            makeRoom(segment, n);
+            int[] blocks = allocate(n);
+            write(blocks, bytes);
+            add(segment, rowId.id, new CacheEntry(blocks, bytes.length));
+        }
+
+        protected synchronized void putAbsent(RowId rowId) {
+            Segment segment = segment(rowId.tableName);
+            remove(segment, rowId.id);
+            makeRoom(segment, 1);
+            add(segment, rowId.id, new CacheEntry(NO_BLOCKS, 0));
+        }
+
+        protected synchronized void remove(RowId rowId) {
+            Segment segment = segments.get(rowId.tableName);
+            if (segment != null) {
+                remove(segment, rowId.id);
+            }
+        }
+
+        protected synchronized void clear() {
+            for (Segment segment : segments.values()) {
+                for (CacheEntry entry : segment.entries.values()) {
+                    free(entry.blocks);
+                }
+                segment.entries.clear();
+                segment.units = 0;
+            }
+            usedUnits = 0;
+            entryCount = 0;
+        }
+
+        protected synchronized void close() {
+            clear();
+            segments.clear();
+            Arrays.fill(slabs, null);
+            freeCount = 0;
+            allocatedBlocks = 0;
+        }
+
+        protected Segment segment(String tableName) {
+            return segments.computeIfAbsent(tableName,
+                    k -> new Segment(k, tableMaxBlocks.getOrDefault(k, Long.valueOf(totalBlocks)).longValue()));
+        }
+
+        protected void add(Segment segment, Serializable id, CacheEntry entry) {
+            segment.entries.put(id, entry);
+            segment.units += entry.units();
+            usedUnits += entry.units();
+            entryCount++;
+        }
+
+        protected void remove(Segment segment, Serializable id) {
+            CacheEntry entry = segment.entries.remove(id);
+            if (entry != null) {
+                release(segment, entry);
+            }
+        }
+
+        protected void release(Segment segment, CacheEntry entry) {
+            free(entry.blocks);
+            segment.units -= entry.units();
+            usedUnits -= entry.units();
+            entryCount--;
+        }
+
+        /**
+         * Evicts entries until n units can be added to the segment.
+         */
+        protected void makeRoom(Segment segment, int n) {
+            while (segment.units + n > segment.maxUnits) {
+                evictEldest(segment);
+            }
+            while (usedUnits + n > totalBlocks) {
+                evictEldest(largestSegment());
+            }
+        }
+
+        protected Segment largestSegment() {
+            Segment largest = null;
+            for (Segment segment : segments.values()) {
+                if (largest == null || segment.units > largest.units) {
+                    largest = segment;
+                }
+            }
+            return largest;
+        }
+
+        protected void evictEldest(Segment segment) {
+            Iterator<Entry<Serializable, CacheEntry>> it = segment.entries.entrySet().iterator();
+            Entry<Serializable, CacheEntry> eldest = it.next();
+            it.remove();
+            release(segment, eldest.getValue());
+            segment.evictions++;
+            evictions++;
+        }
+
+        protected int[] allocate(int n) {
+            int[] blocks = new int[n];
+            for (int i = 0; i < n; i++) {
+                if (freeCount > 0) {
+                    blocks[i] = freeBlocks[--freeCount];
+                } else {
+                    blocks[i] = newBlock();
+                }
+            }
+            return blocks;
+        }
+
+        protected int newBlock() {
+            int block = (int) allocatedBlocks++;
+            int slab = block / blocksPerSlab;
+            if (slabs[slab] == null) {
+                long remaining = totalBlocks - (long) slab * blocksPerSlab;
+                int size = (int) Math.min(blocksPerSlab, remaining) * blockSize;
+                log.debug("Allocating off-heap slab of " + size + " bytes");
+                slabs[slab] = ByteBuffer.allocateDirect(size);
+            }
+            return block;
+        }
+
+        protected void free(int[] blocks) {
+            if (freeCount + blocks.length > freeBlocks.length) {
+                int[] newFreeBlocks = new int[Math.max(freeBlocks.length * 2, freeCount + blocks.length)];
+                System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeCount);
+                freeBlocks = newFreeBlocks;
+            }
+            for (int block : blocks) {
+                freeBlocks[freeCount++] = block;
+            }
+        }
+
+        protected void write(int[] blocks, byte[] bytes) {
+            int offset = 0;
+            for (int block : blocks) {
+                int len = Math.min(blockSize, bytes.length - offset);
+                ByteBuffer buf = slabs[block / blocksPerSlab];
+                buf.position((block % blocksPerSlab) * blockSize);
+                buf.put(bytes, offset, len);
+                offset += len;
+            }
+        }
+
+        protected byte[] read(CacheEntry entry) {
+            byte[] bytes = new byte[entry.length];
+            int offset = 0;
+            for (int block : entry.blocks) {
+                int len = Math.min(blockSize, entry.length - offset);
+                ByteBuffer buf = slabs[block / blocksPerSlab];
+                buf.position((block % blocksPerSlab) * blockSize);
+                buf.get(bytes, offset, len);
+                offset += len;
+            }
+            return bytes;
+        }
+    }
+
+    protected final int blockSize;
+
+    protected final long totalBlocks;
+
+    protected final Stripe[] stripes;
+
+    /**
+     * Creates a cache of the given maximum size, with a number of stripes depending on the size.
+     *
+     * @param maxSize the maximum number of bytes used off heap
+     * @param blockSize the allocation block size
+     * @param tableMaxSizes optional maximum size per table
+     */
+    public OffHeapRowCache(long maxSize, int blockSize, Map<String, Long> tableMaxSizes) {
+        this(maxSize, blockSize, tableMaxSizes, 0);
+    }
+
+    /**
+     * Creates a cache of the given maximum size.
+     *
+     * @param maxSize the maximum number of bytes used off heap
+     * @param blockSize the allocation block size
+     * @param tableMaxSizes optional maximum size per table
+     * @param concurrency the number of stripes, or 0 to compute it from the size, up to {@link #DEFAULT_CONCURRENCY}
+     */
+    public OffHeapRowCache(long maxSize, int blockSize, Map<String, Long> tableMaxSizes, int concurrency) {
+        if (blockSize <= 0 || maxSize < blockSize) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize + " with block size: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        totalBlocks = Math.min(maxSize / blockSize, (long) Integer.MAX_VALUE);
+        int n = concurrency > 0 ? concurrency
+                : (int) Math.max(1, Math.min(DEFAULT_CONCURRENCY, totalBlocks / MIN_STRIPE_BLOCKS));
+        n = (int) Math.min(n, totalBlocks);
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            long stripeBlocks = totalBlocks / n + (i < totalBlocks % n ? 1 : 0);
+            Map<String, Long> tableMaxBlocks = new HashMap<>();
+            for (Entry<String, Long> en : tableMaxSizes.entrySet()) {
+                long max = en.getValue().longValue() / blockSize;
+                tableMaxBlocks.put(en.getKey(), Long.valueOf(Math.max(1, max / n + (i < max % n ? 1 : 0))));
+            }
+            stripes[i] = new Stripe(stripeBlocks, blockSize, tableMaxBlocks);
+        }
+    }
+
+    protected Stripe stripe(RowId rowId) {
+        int h = rowId.hashCode();
+        h ^= h >>> 16;
+        return stripes[(h & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getConcurrency() {
+        return stripes.length;
+    }
+
+    public long getMaxSize() {
+        return totalBlocks * blockSize;
+    }
+
+    /** Bytes accounted by the cache, including absent entries. */
+    public long getSize() {
+        return sum(Stripe::getUsedUnits) * blockSize;
+    }
+
+    /** Bytes actually allocated off heap. */
+    public long getAllocatedSize() {
+        return sum(Stripe::getAllocatedBlocks) * blockSize;
+    }
+
+    public long getEntryCount() {
+        return sum(Stripe::getEntryCount);
+    }
+
+    public long getHitCount() {
+        return sum(Stripe::getHitCount);
+    }
+
+    public long getMissCount() {
+        return sum(Stripe::getMissCount);
+    }
+
+    public long getEvictionCount() {
+        return sum(Stripe::getEvictionCount);
+    }
+
+    public long getEvictionCount(String tableName) {
+        return sum(stripe -> stripe.getEvictionCount(tableName));
+    }
+
+    protected long sum(ToLongFunction<Stripe> f) {
+        long sum = 0;
+        for (Stripe stripe : stripes) {
+            sum += f.applyAsLong(stripe);
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the content of a row.
+     */
+    public Lookup get(RowId rowId) {
+        return stripe(rowId).get(rowId);
+    }
+
+    /**
+     * Puts the content of a row, replacing any previous one.
+     */
+    public void put(RowId rowId, byte[] bytes) {
+        stripe(rowId).put(rowId, bytes);
+    }
+
+    /**
+     * Marks a row as absent from the database.
+     */
+    public void putAbsent(RowId rowId) {
+        stripe(rowId).putAbsent(rowId);
+    }
+
+    public void remove(RowId rowId) {
+        stripe(rowId).remove(rowId);
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Clears the cache and releases its off-heap slabs. The slabs are allocated again if the cache is used afterwards.
+     */
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+}
@@ -384,6 +384,8 @@ public class RepositoryImpl implements Repository {
         closeAllSessions();
         model = null;
         backend.shutdown();
+        // the off-heap cache is shared by the mappers of the repository, and outlives them
+        OffHeapCachingRowMapper.closeCache(getName());
 
         registry.remove(MetricRegistry.name(RepositoryImpl.class, getName(), "cache-size"));
         registry.remove(MetricRegistry.name(PersistenceContext.class, getName(), "cache-size"));
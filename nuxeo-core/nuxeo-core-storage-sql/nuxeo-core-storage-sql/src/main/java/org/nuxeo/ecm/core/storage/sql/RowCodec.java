@@ -0,0 +1,341 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of {@link Row}s, used to store them outside of the Java heap.
+ * <p>
+ * The usual database types (strings, numbers, booleans, dates, ACLs and arrays of them) have a dedicated encoding,
+ * other values fall back to Java serialization. Row keys are stored as indexes in a dictionary shared by all the rows
+ * encoded by this codec.
+ *
+ * @since 11.1
+ */
+public class RowCodec {
+
+    protected static final byte NULL = 0;
+
+    protected static final byte STRING = 1;
+
+    protected static final byte LONG = 2;
+
+    protected static final byte TRUE = 3;
+
+    protected static final byte FALSE = 4;
+
+    protected static final byte DOUBLE = 5;
+
+    protected static final byte CALENDAR = 6;
+
+    protected static final byte INTEGER = 7;
+
+    protected static final byte ACL = 8;
+
+    protected static final byte ARRAY = 9;
+
+    protected static final byte OPAQUE = 10;
+
+    protected static final byte SERIALIZED = 20;
+
+    // array component types
+    protected static final byte COMPONENT_SERIALIZABLE = 0;
+
+    protected static final byte COMPONENT_STRING = 1;
+
+    protected static final byte COMPONENT_LONG = 2;
+
+    protected static final byte COMPONENT_BOOLEAN = 3;
+
+    protected static final byte COMPONENT_DOUBLE = 4;
+
+    protected static final byte COMPONENT_CALENDAR = 5;
+
+    protected static final byte COMPONENT_ACL = 6;
+
+    protected static final byte ROW_SIMPLE = 0;
+
+    protected static final byte ROW_COLLECTION = 1;
+
+    protected final Map<String, Integer> keyIndexes = new ConcurrentHashMap<>();
+
+    protected final List<String> keys = new ArrayList<>(); // used synchronized
+
+    /**
+     * Encodes a row into bytes.
+     */
+    public byte[] encode(Row row) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            writeValue(out, row.id);
+            if (row.isCollection()) {
+                out.writeByte(ROW_COLLECTION);
+                writeValue(out, row.values);
+            } else {
+                out.writeByte(ROW_SIMPLE);
+                out.writeInt(row.size);
+                for (int i = 0; i < row.size; i++) {
+                    out.writeInt(keyIndex(row.keys[i]));
+                    writeValue(out, row.values[i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decodes a row previously encoded by {@link #encode}.
+     */
+    public Row decode(String tableName, byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            Serializable id = readValue(in);
+            if (in.readByte() == ROW_COLLECTION) {
+                return new Row(tableName, id, (Serializable[]) readValue(in));
+            }
+            Row row = new Row(tableName, id);
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                row.putNew(key(in.readInt()), readValue(in));
+            }
+            return row;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected int keyIndex(String key) {
+        Integer index = keyIndexes.get(key);
+        if (index == null) {
+            synchronized (keys) {
+                index = keyIndexes.get(key);
+                if (index == null) {
+                    index = Integer.valueOf(keys.size());
+                    keys.add(key);
+                    keyIndexes.put(key, index);
+                }
+            }
+        }
+        return index.intValue();
+    }
+
+    protected String key(int index) {
+        synchronized (keys) {
+            return keys.get(index);
+        }
+    }
+
+    protected void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong(((Long) value).longValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt(((Integer) value).intValue());
+        } else if (value.getClass() == GregorianCalendar.class) {
+            out.writeByte(CALENDAR);
+            writeCalendar(out, (Calendar) value);
+        } else if (value instanceof ACLRow) {
+            out.writeByte(ACL);
+            writeACLRow(out, (ACLRow) value);
+        } else if (value == Row.OPAQUE) {
+            out.writeByte(OPAQUE);
+        } else if (value instanceof Object[] && componentType(value.getClass().getComponentType()) >= 0) {
+            Object[] array = (Object[]) value;
+            out.writeByte(ARRAY);
+            out.writeByte(componentType(value.getClass().getComponentType()));
+            out.writeInt(array.length);
+            for (Object v : array) {
+                writeValue(out, v);
+            }
+        } else {
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                oos.writeObject(value);
+            }
+            byte[] bytes = baos.toByteArray();
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected Serializable readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(in);
+        case LONG:
+            return Long.valueOf(in.readLong());
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case DOUBLE:
+            return Double.valueOf(in.readDouble());
+        case INTEGER:
+            return Integer.valueOf(in.readInt());
+        case CALENDAR:
+            return readCalendar(in);
+        case ACL:
+            return readACLRow(in);
+        case OPAQUE:
+            return Row.OPAQUE;
+        case ARRAY:
+            Serializable[] array = newArray(in.readByte(), in.readInt());
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readValue(in);
+            }
+            return array;
+        case SERIALIZED:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (Serializable) ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        default:
+            throw new IOException("Unknown value type: " + type);
+        }
+    }
+
+    protected static byte componentType(Class<?> klass) {
+        if (klass == String.class) {
+            return COMPONENT_STRING;
+        } else if (klass == Long.class) {
+            return COMPONENT_LONG;
+        } else if (klass == Boolean.class) {
+            return COMPONENT_BOOLEAN;
+        } else if (klass == Double.class) {
+            return COMPONENT_DOUBLE;
+        } else if (klass == Calendar.class) {
+            return COMPONENT_CALENDAR;
+        } else if (klass == ACLRow.class) {
+            return COMPONENT_ACL;
+        } else if (klass == Serializable.class) {
+            return COMPONENT_SERIALIZABLE;
+        }
+        return -1;
+    }
+
+    protected static Serializable[] newArray(byte componentType, int length) throws IOException {
+        switch (componentType) {
+        case COMPONENT_SERIALIZABLE:
+            return new Serializable[length];
+        case COMPONENT_STRING:
+            return new String[length];
+        case COMPONENT_LONG:
+            return new Long[length];
+        case COMPONENT_BOOLEAN:
+            return new Boolean[length];
+        case COMPONENT_DOUBLE:
+            return new Double[length];
+        case COMPONENT_CALENDAR:
+            return new Calendar[length];
+        case COMPONENT_ACL:
+            return new ACLRow[length];
+        default:
+            throw new IOException("Unknown array component type: " + componentType);
+        }
+    }
+
+    protected static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    protected void writeCalendar(DataOutputStream out, Calendar calendar) throws IOException {
+        out.writeLong(calendar.getTimeInMillis());
+        writeString(out, calendar.getTimeZone().getID());
+    }
+
+    protected Calendar readCalendar(DataInputStream in) throws IOException {
+        long millis = in.readLong();
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone(readString(in)));
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    protected void writeACLRow(DataOutputStream out, ACLRow acl) throws IOException {
+        out.writeInt(acl.pos);
+        writeValue(out, acl.name);
+        out.writeBoolean(acl.grant);
+        writeValue(out, acl.permission);
+        writeValue(out, acl.user);
+        writeValue(out, acl.group);
+        writeValue(out, acl.creator);
+        writeValue(out, acl.begin);
+        writeValue(out, acl.end);
+        writeValue(out, acl.status);
+    }
+
+    protected ACLRow readACLRow(DataInputStream in) throws IOException {
+        int pos = in.readInt();
+        String name = (String) readValue(in);
+        boolean grant = in.readBoolean();
+        String permission = (String) readValue(in);
+        String user = (String) readValue(in);
+        String group = (String) readValue(in);
+        String creator = (String) readValue(in);
+        Calendar begin = (Calendar) readValue(in);
+        Calendar end = (Calendar) readValue(in);
+        Long status = (Long) readValue(in);
+        return new ACLRow(pos, name, grant, permission, user, group, creator, begin, end, status);
+    }
+
+}
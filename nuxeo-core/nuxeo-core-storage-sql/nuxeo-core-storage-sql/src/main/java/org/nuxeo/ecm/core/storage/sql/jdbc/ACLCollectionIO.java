@@ -114,6 +114,7 @@ public class ACLCollectionIO implements CollectionIO {
         boolean batched = supportsBatchUpdates && rowus.size() > 1;
         String loggedSql = batched ? sql + " -- BATCHED" : sql;
         int batch = 0;
+        int executed = 0;
         for (Iterator<RowUpdate> rowIt = rowus.iterator(); rowIt.hasNext();) {
             RowUpdate rowu = rowIt.next();
             int start;
@@ -182,11 +183,12 @@ public class ACLCollectionIO implements CollectionIO {
                     batch++;
                     if (batch % JDBCRowMapper.UPDATE_BATCH_SIZE == 0 || !rowIt.hasNext()) {
                         ps.executeBatch();
-                        connection.countExecute();
+                        connection.countExecuteWrite(batch - executed);
+                        executed = batch;
                     }
                 } else {
                     ps.execute();
-                    connection.countExecute();
+                    connection.countExecuteWrite(1);
                 }
             }
         }
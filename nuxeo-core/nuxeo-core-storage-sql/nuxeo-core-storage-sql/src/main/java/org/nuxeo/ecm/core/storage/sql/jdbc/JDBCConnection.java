@@ -33,6 +33,11 @@ import org.nuxeo.ecm.core.storage.sql.Model;
 import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.datasource.ConnectionHelper;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 
 /**
  * Holds a connection to a JDBC database.
@@ -81,6 +86,13 @@ public class JDBCConnection {
 
     protected boolean setClientInfo;
 
+    /**
+     * Number of rows written by each statement (or batch of statements) sent to the database.
+     *
+     * @since 11.1
+     */
+    protected Histogram rowsPerRoundTrip;
+
     /**
      * Creates a new Mapper.
      *
@@ -92,6 +104,9 @@ public class JDBCConnection {
         this.sqlInfo = sqlInfo;
         dialect = sqlInfo.dialect;
         setClientInfo = Boolean.parseBoolean(Framework.getProperty(SET_CLIENT_INFO_PROP, SET_CLIENT_INFO_DEFAULT));
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        rowsPerRoundTrip = registry.histogram(
+                MetricRegistry.name("nuxeo", "repositories", getRepositoryName(), "jdbc", "rows-per-roundtrip"));
     }
 
     /**
@@ -119,6 +134,18 @@ public class JDBCConnection {
         }
     }
 
+    /**
+     * Counts the execution of a statement, or of a batch of statements, writing the given number of rows.
+     *
+     * @since 11.1
+     */
+    protected void countExecuteWrite(int rows) {
+        countExecute();
+        if (rowsPerRoundTrip != null) {
+            rowsPerRoundTrip.update(rows);
+        }
+    }
+
     /**
      * Gets the datasource to use for the given repository.
      *
@@ -514,6 +514,11 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         if (sql == null) {
             throw new NuxeoException("Unknown table: " + tableName);
         }
+        int maxRows = sqlInfo.getMaximumRowsForInsert(tableName);
+        if (maxRows > 1 && rows.size() > 1) {
+            insertSimpleRowsMulti(tableName, rows, maxRows);
+            return;
+        }
         boolean batched = supportsBatchUpdates && rows.size() > 1;
         String loggedSql = batched ? sql + " -- BATCHED" : sql;
         List<Column> columns = sqlInfo.getInsertColumns(tableName);
@@ -532,12 +537,12 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
                     ps.addBatch();
                     batch++;
                     if (batch % UPDATE_BATCH_SIZE == 0 || !rowIt.hasNext()) {
-                        ps.executeBatch();
-                        countExecute();
+                        int[] counts = ps.executeBatch();
+                        countExecuteWrite(counts.length);
                     }
                 } else {
                     ps.execute();
-                    countExecute();
+                    countExecuteWrite(1);
                 }
             }
         } catch (SQLException e) {
@@ -553,6 +558,57 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Inserts multiple rows, all for the same table, using multi-row {@code INSERT} statements of at most
+     * {@code maxRows} rows.
+     *
+     * @since 11.1
+     */
+    protected void insertSimpleRowsMulti(String tableName, List<Row> rows, int maxRows) {
+        int size = rows.size();
+        int remainder = size % maxRows;
+        if (size > remainder) {
+            executeMultiRowInserts(tableName, rows.subList(0, size - remainder), maxRows);
+        }
+        if (remainder > 0) {
+            executeMultiRowInserts(tableName, rows.subList(size - remainder, size), remainder);
+        }
+    }
+
+    /**
+     * Inserts rows using a statement inserting {@code n} rows at once, the number of rows must be a multiple of
+     * {@code n}.
+     *
+     * @since 11.1
+     */
+    protected void executeMultiRowInserts(String tableName, List<Row> rows, int n) {
+        String sql = sqlInfo.getInsertSql(tableName, n);
+        String loggedSql = sqlInfo.getInsertSql(tableName) + " -- MULTI-ROW";
+        List<Column> columns = sqlInfo.getInsertColumns(tableName);
+        int rowsInStatement = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (Row row : rows) {
+                if (logger.isLogEnabled()) {
+                    logger.logSQL(loggedSql, columns, row);
+                }
+                for (Column column : columns) {
+                    column.setToPreparedStatement(ps, i++, row.get(column.getKey()));
+                }
+                rowsInStatement++;
+                if (rowsInStatement == n) {
+                    ps.execute();
+                    countExecuteWrite(n);
+                    rowsInStatement = 0;
+                    i = 1;
+                }
+            }
+        } catch (SQLException e) {
+            checkConcurrentUpdate(e);
+            throw new NuxeoException("Could not insert: " + sql, e);
+        }
+    }
+
     /**
      * Updates multiple collection rows, all for the same table.
      */
@@ -625,21 +681,18 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
                         batch++;
                         if (batch % UPDATE_BATCH_SIZE == 0 || !rowIt.hasNext()) {
                             int[] counts = ps.executeBatch();
-                            countExecute();
+                            countExecuteWrite(counts.length);
                             if (changeTokenEnabled && hasConditions) {
-                                for (int j = 0; j < counts.length; j++) {
-                                    int count = counts[j];
-                                    if (count != Statement.SUCCESS_NO_INFO && count != 1) {
-                                        Serializable id = rowUpdates.get(j).row.id;
-                                        logger.log("  -> CONCURRENT UPDATE: " + id);
-                                        throw new ConcurrentUpdateException(id.toString());
-                                    }
+                                Serializable id = getConcurrentUpdateId(rowUpdates, batch, counts);
+                                if (id != null) {
+                                    logger.log("  -> CONCURRENT UPDATE: " + id);
+                                    throw new ConcurrentUpdateException(id.toString());
                                 }
                             }
                         }
                     } else {
                         int count = ps.executeUpdate();
-                        countExecute();
+                        countExecuteWrite(1);
                         if (changeTokenEnabled && hasConditions) {
                             if (count != Statement.SUCCESS_NO_INFO && count != 1) {
                                 Serializable id = rowu.row.id;
@@ -656,6 +709,26 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Finds the row of a batch of conditional updates that wasn't updated because of a concurrent update.
+     *
+     * @param rowUpdates the updated rows
+     * @param end the number of rows sent so far, the batch ends with the last of them
+     * @param counts the update counts of the batch
+     * @return the id of the row not updated, or {@code null} if all rows were updated
+     * @since 11.1
+     */
+    protected static Serializable getConcurrentUpdateId(List<RowUpdate> rowUpdates, int end, int[] counts) {
+        int offset = end - counts.length;
+        for (int j = 0; j < counts.length; j++) {
+            int count = counts[j];
+            if (count != Statement.SUCCESS_NO_INFO && count != 1) {
+                return rowUpdates.get(offset + j).row.id;
+            }
+        }
+        return null;
+    }
+
     protected void updateCollectionRows(String tableName, List<RowUpdate> rowus) {
         Set<Serializable> deleteIds = new HashSet<>();
         for (RowUpdate rowu : rowus) {
@@ -823,7 +896,7 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
                 dialect.setId(ps, i++, id);
             }
             int count = ps.executeUpdate();
-            countExecute();
+            countExecuteWrite(ids.size());
             logger.logCount(count);
         } catch (SQLException e) {
             checkConcurrentUpdate(e);
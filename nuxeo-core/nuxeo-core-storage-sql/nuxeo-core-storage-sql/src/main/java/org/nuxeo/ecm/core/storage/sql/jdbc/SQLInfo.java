@@ -90,6 +90,8 @@ public class SQLInfo {
 
     private final Map<String, List<Column>> insertColumnsMap;
 
+    private final Map<String, Insert> insertMap; // for multi-row inserts
+
     private final Map<String, String> deleteSqlMap; // statement
 
     private Map<SelectionType, SQLInfoSelection> selections;
@@ -160,6 +162,7 @@ public class SQLInfo {
 
         insertSqlMap = new HashMap<>();
         insertColumnsMap = new HashMap<>();
+        insertMap = new HashMap<>();
 
         deleteSqlMap = new HashMap<>();
 
@@ -269,6 +272,39 @@ public class SQLInfo {
         return insertSqlMap.get(tableName);
     }
 
+    /**
+     * Returns the SQL {@code INSERT} to add several rows at once, if the dialect supports it.
+     *
+     * @param tableName the table name
+     * @param rows the number of rows
+     * @return the SQL multi-row {@code INSERT} statement
+     * @since 11.1
+     * @see Dialect#getMaximumRowsForMultiRowInsert
+     */
+    public String getInsertSql(String tableName, int rows) {
+        if (rows == 1) {
+            return getInsertSql(tableName);
+        }
+        Insert insert = insertMap.get(tableName);
+        return insert == null ? null : insert.getStatement(rows);
+    }
+
+    /**
+     * Returns the maximum number of rows to insert at once in a table using {@link #getInsertSql(String, int)}, or
+     * {@code 1} if multi-row inserts are not possible.
+     *
+     * @param tableName the table name
+     * @since 11.1
+     */
+    public int getMaximumRowsForInsert(String tableName) {
+        List<Column> columns = insertColumnsMap.get(tableName);
+        if (columns == null || columns.isEmpty()) {
+            return 1;
+        }
+        int max = Math.min(dialect.getMaximumRowsForMultiRowInsert(), dialect.getMaximumParameters() / columns.size());
+        return Math.max(max, 1);
+    }
+
     /**
      * Returns the list of columns to use for an {@INSERT} statement {@link #getInsertSql}.
      *
@@ -1027,6 +1063,7 @@ public class SQLInfo {
             }
             insertSqlMap.put(tableName, insert.getStatement());
             insertColumnsMap.put(tableName, insertColumns);
+            insertMap.put(tableName, insert);
         }
 
         protected void postProcessDelete() {
@@ -1357,6 +1357,25 @@ public abstract class Dialect {
         return true;
     }
 
+    /**
+     * Maximum number of rows inserted by a single {@code INSERT INTO foo (a, b) VALUES (?, ?), (?, ?)} statement, or
+     * {@code 0} if multi-row inserts are not supported.
+     *
+     * @since 11.1
+     */
+    public int getMaximumRowsForMultiRowInsert() {
+        return 0;
+    }
+
+    /**
+     * Maximum number of parameters in a prepared statement, used to size multi-row inserts.
+     *
+     * @since 11.1
+     */
+    public int getMaximumParameters() {
+        return 2000;
+    }
+
     /**
      * Registers return parameters.
      * <p>
@@ -431,4 +431,9 @@ public class DialectH2 extends Dialect {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public int getMaximumRowsForMultiRowInsert() {
+        return 1000;
+    }
+
 }
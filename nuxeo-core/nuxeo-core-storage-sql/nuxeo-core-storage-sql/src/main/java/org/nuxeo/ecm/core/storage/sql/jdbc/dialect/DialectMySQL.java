@@ -534,4 +534,15 @@ public class DialectMySQL extends Dialect {
         return sql + " $$";
     }
 
+    @Override
+    public int getMaximumRowsForMultiRowInsert() {
+        return 1000;
+    }
+
+    @Override
+    public int getMaximumParameters() {
+        // the protocol limit is 65535, the statement size is also limited by max_allowed_packet
+        return 16000;
+    }
+
 }
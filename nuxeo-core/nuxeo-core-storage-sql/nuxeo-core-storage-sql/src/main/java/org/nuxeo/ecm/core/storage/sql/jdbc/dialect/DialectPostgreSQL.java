@@ -1474,4 +1474,15 @@ public class DialectPostgreSQL extends Dialect {
         return String.join(", ", newArgList);
     }
 
+    @Override
+    public int getMaximumRowsForMultiRowInsert() {
+        return 1000;
+    }
+
+    @Override
+    public int getMaximumParameters() {
+        // the protocol limit is 65535
+        return 32000;
+    }
+
 }
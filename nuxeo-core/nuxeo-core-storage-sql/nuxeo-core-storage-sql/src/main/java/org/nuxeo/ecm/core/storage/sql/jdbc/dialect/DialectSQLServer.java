@@ -900,4 +900,16 @@ public class DialectSQLServer extends Dialect {
         return sql + "\nGO";
     }
 
+    @Override
+    public int getMaximumRowsForMultiRowInsert() {
+        // a table value constructor is limited to 1000 rows
+        return 1000;
+    }
+
+    @Override
+    public int getMaximumParameters() {
+        // a statement is limited to 2100 parameters
+        return 2000;
+    }
+
 }
@@ -150,6 +150,9 @@ public class SQLKeyValueStore extends AbstractKeyValueStoreProvider {
 
     protected String deleteSQL;
 
+    // @since 11.1
+    protected String deleteMultiSQL;
+
     protected String deleteIfLongSQL;
 
     protected String deleteIfStringSQL;
@@ -248,6 +251,7 @@ public class SQLKeyValueStore extends AbstractKeyValueStoreProvider {
         getLongSQL = "SELECT " + longColName + " FROM " + tableName + " WHERE " + keyColName + " = ?";
         deleteAllSQL = "DELETE FROM " + tableName;
         deleteSQL = "DELETE FROM " + tableName + " WHERE " + keyColName + " = ?";
+        deleteMultiSQL = "DELETE FROM " + tableName + " WHERE " + keyColName + " IN (%s)";
         deleteIfLongSQL = deleteSQL + " AND " + longColName + " = ?";
         deleteIfStringSQL = deleteSQL + " AND " + dialect.getQuotedNameForExpression(stringCol) + " = ?";
         deleteIfBytesSQL = deleteSQL + " AND " + bytesColName + " = ?";
@@ -763,43 +767,152 @@ public class SQLKeyValueStore extends AbstractKeyValueStoreProvider {
 
     protected void put(String key, Object value, long ttl) {
         runWithConnection((Connection connection) -> {
-            if (value == null) {
-                // delete
-                try (PreparedStatement ps = connection.prepareStatement(deleteSQL)) {
-                    setToPreparedStatement(deleteSQL, ps, keyCol, key);
-                    ps.execute();
+            put(connection, key, value, ttl);
+        });
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected void put(Connection connection, String key, Object value, long ttl) throws SQLException {
+        if (value == null) {
+            // delete
+            try (PreparedStatement ps = connection.prepareStatement(deleteSQL)) {
+                setToPreparedStatement(deleteSQL, ps, keyCol, key);
+                ps.execute();
+            }
+        } else {
+            // upsert (update or insert)
+            Long longValue = value instanceof Long ? (Long) value : null;
+            String stringValue = value instanceof String ? (String) value : null;
+            byte[] bytesValue = value instanceof byte[] ? (byte[]) value : null;
+            Long ttlValue = ttlToStorage(ttl);
+            List<Column> psColumns = new ArrayList<>();
+            List<Serializable> psValues = new ArrayList<>();
+            String sql = dialect.getUpsertSql(Arrays.asList(keyCol, longCol, stringCol, bytesCol, ttlCol),
+                    Arrays.asList(key, longValue, stringValue, bytesValue, ttlValue), psColumns, psValues);
+            for (int retry = 0; retry < MAX_RETRY; retry++) {
+                try {
+                    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                        setToPreparedStatement(sql, ps, psColumns, psValues);
+                        ps.execute();
+                    }
+                    return;
+                } catch (SQLException e) {
+                    if (!dialect.isConcurrentUpdateException(e)) {
+                        throw e;
+                    }
+                    // Oracle MERGE can throw DUP_VAL_ON_INDEX (ORA-0001) or NO_DATA_FOUND (ORA-01403)
+                    // in that case retry a few times
+                }
+                sleepBeforeRetry();
+            }
+            throw new ConcurrentUpdateException("Failed to do atomic put for key: " + key);
+        }
+    }
+
+    @Override
+    public void put(Map<String, byte[]> values, long ttl) {
+        Map<String, Object> objects = new HashMap<>(values.size());
+        values.forEach((key, value) -> objects.put(key, toStorage(value)));
+        putObjects(objects, ttl);
+    }
+
+    @Override
+    public void putStrings(Map<String, String> values, long ttl) {
+        Map<String, Object> objects = new HashMap<>(values.size());
+        values.forEach((key, value) -> objects.put(key, toStorage(value)));
+        putObjects(objects, ttl);
+    }
+
+    @Override
+    public void putLongs(Map<String, Long> values, long ttl) {
+        putObjects(new HashMap<>(values), ttl);
+    }
+
+    /**
+     * Writes all the values using a single connection: deletes are done in one statement, and upserts are sent as
+     * JDBC batches. If a batch fails because of a concurrent update, its keys are retried one by one.
+     *
+     * @since 11.1
+     */
+    protected void putObjects(Map<String, Object> values, long ttl) {
+        if (values.isEmpty()) {
+            return;
+        }
+        runWithConnection((Connection connection) -> {
+            List<String> deletes = new ArrayList<>();
+            // upsert SQL -> keys and values to use for that SQL
+            Map<String, List<Column>> columnsBySql = new HashMap<>();
+            Map<String, Map<String, List<Serializable>>> valuesBySql = new HashMap<>();
+            Long ttlValue = ttlToStorage(ttl);
+            values.forEach((key, value) -> {
+                if (value == null) {
+                    deletes.add(key);
+                    return;
                 }
-            } else {
-                // upsert (update or insert)
                 Long longValue = value instanceof Long ? (Long) value : null;
                 String stringValue = value instanceof String ? (String) value : null;
                 byte[] bytesValue = value instanceof byte[] ? (byte[]) value : null;
-                Long ttlValue = ttlToStorage(ttl);
                 List<Column> psColumns = new ArrayList<>();
                 List<Serializable> psValues = new ArrayList<>();
                 String sql = dialect.getUpsertSql(Arrays.asList(keyCol, longCol, stringCol, bytesCol, ttlCol),
                         Arrays.asList(key, longValue, stringValue, bytesValue, ttlValue), psColumns, psValues);
-                for (int retry = 0; retry < MAX_RETRY; retry++) {
-                    try {
-                        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                            setToPreparedStatement(sql, ps, psColumns, psValues);
-                            ps.execute();
-                        }
-                        return;
-                    } catch (SQLException e) {
-                        if (!dialect.isConcurrentUpdateException(e)) {
-                            throw e;
-                        }
-                        // Oracle MERGE can throw DUP_VAL_ON_INDEX (ORA-0001) or NO_DATA_FOUND (ORA-01403)
-                        // in that case retry a few times
+                columnsBySql.put(sql, psColumns);
+                valuesBySql.computeIfAbsent(sql, k -> new HashMap<>()).put(key, psValues);
+            });
+            delete(connection, deletes);
+            for (Map.Entry<String, Map<String, List<Serializable>>> en : valuesBySql.entrySet()) {
+                String sql = en.getKey();
+                List<Column> psColumns = columnsBySql.get(sql);
+                Map<String, List<Serializable>> batch = en.getValue();
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (List<Serializable> psValues : batch.values()) {
+                        setToPreparedStatement(sql, ps, psColumns, psValues);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                } catch (SQLException e) {
+                    if (!dialect.isConcurrentUpdateException(e)) {
+                        throw e;
+                    }
+                    // upserts are idempotent, redo them one at a time with retries
+                    for (String key : batch.keySet()) {
+                        put(connection, key, values.get(key), ttl);
                     }
-                    sleepBeforeRetry();
                 }
-                throw new ConcurrentUpdateException("Failed to do atomic put for key: " + key);
             }
         });
     }
 
+    @Override
+    public void delete(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        runWithConnection((Connection connection) -> {
+            delete(connection, keys);
+        });
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected void delete(Connection connection, Collection<String> keys) throws SQLException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        String sql = String.format(deleteMultiSQL, nParams(keys.size()));
+        logger.logSQL(sql, keys);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (String key : keys) {
+                keyCol.setToPreparedStatement(ps, i++, key);
+            }
+            ps.execute();
+        }
+    }
+
     @Override
     public boolean setTTL(String key, long ttl) {
         return runWithConnection((Connection connection) -> {
@@ -822,6 +935,11 @@ public class SQLKeyValueStore extends AbstractKeyValueStoreProvider {
         return compareAndSet(key, toStorage(expected), toStorage(value), ttl);
     }
 
+    @Override
+    public boolean compareAndSet(String key, Long expected, Long value) {
+        return compareAndSet(key, (Object) expected, (Object) value, 0);
+    }
+
     protected boolean compareAndSet(String key, Object expected, Object value, long ttl) {
         return runWithConnection((Connection connection) -> {
             if (expected == null && value == null) {
@@ -911,121 +1029,144 @@ public class SQLKeyValueStore extends AbstractKeyValueStoreProvider {
     @Override
     public long addAndGet(String key, long delta) throws NumberFormatException { // NOSONAR
         return runWithConnection((Connection connection) -> {
-            for (int retry = 0; retry < MAX_RETRY; retry++) {
-                String updateReturningSql;
-                boolean useReturnResultSet = false;
-                if (dialect instanceof DialectPostgreSQL) {
-                    updateReturningSql = updateReturningPostgreSQLSql;
-                } else if (dialect instanceof DialectOracle) {
-                    updateReturningSql = updateReturningOracleSql;
-                    useReturnResultSet = true;
-                } else if (dialect instanceof DialectSQLServer) {
-                    updateReturningSql = updateReturningSQLServerSql;
-                } else {
-                    updateReturningSql = null;
-                }
-                if (updateReturningSql != null) {
-                    List<Column> psColumns = Arrays.asList(longCol, keyCol);
-                    List<Serializable> psValues = Arrays.asList(Long.valueOf(delta), key);
-                    try (PreparedStatement ps = connection.prepareStatement(updateReturningSql)) {
-                        setToPreparedStatement(updateReturningSql, ps, psColumns, psValues);
-                        if (useReturnResultSet) {
-                            dialect.registerReturnParameter(ps, 3, longCol.getJdbcType());
-                        }
-                        boolean hasResultSet;
+            return Long.valueOf(addAndGet(connection, key, delta));
+        }).longValue();
+    }
+
+    @Override
+    public Map<String, Long> addAndGet(Map<String, Long> deltas) throws NumberFormatException { // NOSONAR
+        if (deltas.isEmpty()) {
+            return new HashMap<>();
+        }
+        // each counter is updated atomically, but all of them reuse the same connection
+        return runWithConnection((Connection connection) -> {
+            Map<String, Long> map = new HashMap<>(deltas.size());
+            for (Map.Entry<String, Long> en : deltas.entrySet()) {
+                String key = en.getKey();
+                map.put(key, Long.valueOf(addAndGet(connection, key, en.getValue().longValue())));
+            }
+            return map;
+        });
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected long addAndGet(Connection connection, String key, long delta) throws SQLException {
+        for (int retry = 0; retry < MAX_RETRY; retry++) {
+            String updateReturningSql;
+            boolean useReturnResultSet = false;
+            if (dialect instanceof DialectPostgreSQL) {
+                updateReturningSql = updateReturningPostgreSQLSql;
+            } else if (dialect instanceof DialectOracle) {
+                updateReturningSql = updateReturningOracleSql;
+                useReturnResultSet = true;
+            } else if (dialect instanceof DialectSQLServer) {
+                updateReturningSql = updateReturningSQLServerSql;
+            } else {
+                updateReturningSql = null;
+            }
+            if (updateReturningSql != null) {
+                List<Column> psColumns = Arrays.asList(longCol, keyCol);
+                List<Serializable> psValues = Arrays.asList(Long.valueOf(delta), key);
+                try (PreparedStatement ps = connection.prepareStatement(updateReturningSql)) {
+                    setToPreparedStatement(updateReturningSql, ps, psColumns, psValues);
+                    if (useReturnResultSet) {
+                        dialect.registerReturnParameter(ps, 3, longCol.getJdbcType());
+                    }
+                    boolean hasResultSet;
+                    if (useReturnResultSet) {
+                        int count = ps.executeUpdate();
+                        hasResultSet = count > 0;
+                    } else {
+                        hasResultSet = true;
+                    }
+                    if (hasResultSet) {
+                        ResultSet rs;
                         if (useReturnResultSet) {
-                            int count = ps.executeUpdate();
-                            hasResultSet = count > 0;
+                            rs = dialect.getReturnResultSet(ps);
                         } else {
-                            hasResultSet = true;
+                            rs = ps.executeQuery();
                         }
-                        if (hasResultSet) {
-                            ResultSet rs;
-                            if (useReturnResultSet) {
-                                rs = dialect.getReturnResultSet(ps);
-                            } else {
-                                rs = ps.executeQuery();
-                            }
-                            try {
-                                if (rs.next()) {
-                                    Long longValue = (Long) longCol.getFromResultSet(rs, 1);
-                                    // We may get NULL here, because if the value is an empty string
-                                    // a normal database would not match any row, but Oracle treats
-                                    // "" as NULL and we end up trying to increment the long field
-                                    // which is also NULL.
-                                    if (longValue == null) {
-                                        throw new NumberFormatException("Value is not a Long for key: " + key);
-                                    }
-                                    return longValue;
+                        try {
+                            if (rs.next()) {
+                                Long longValue = (Long) longCol.getFromResultSet(rs, 1);
+                                // We may get NULL here, because if the value is an empty string
+                                // a normal database would not match any row, but Oracle treats
+                                // "" as NULL and we end up trying to increment the long field
+                                // which is also NULL.
+                                if (longValue == null) {
+                                    throw new NumberFormatException("Value is not a Long for key: " + key);
                                 }
-                            } finally {
-                                rs.close();
+                                return longValue;
                             }
+                        } finally {
+                            rs.close();
                         }
                     }
                 }
-                // the dialect doesn't support UPDATE RETURNING, or
-                // there was no row for this key, or
-                // the row didn't contain a long
-                // -> retry using a full transaction doing check + insert
-                // start transaction
-                connection.setAutoCommit(false);
-                try {
-                    // check value
-                    Long currentLong;
-                    try (PreparedStatement ps = connection.prepareStatement(getLongSQL)) {
-                        setToPreparedStatement(getLongSQL, ps, keyCol, key);
-                        try (ResultSet rs = ps.executeQuery()) {
-                            if (rs.next()) {
-                                currentLong = (Long) longCol.getFromResultSet(rs, 1);
-                                if (logger.isLogEnabled()) {
-                                    logger.logResultSet(rs, Arrays.asList(longCol));
-                                }
-                                if (currentLong == null) {
-                                    throw new NumberFormatException("Value is not a Long for key: " + key);
-                                }
-                            } else {
-                                currentLong = null;
+            }
+            // the dialect doesn't support UPDATE RETURNING, or
+            // there was no row for this key, or
+            // the row didn't contain a long
+            // -> retry using a full transaction doing check + insert
+            // start transaction
+            connection.setAutoCommit(false);
+            try {
+                // check value
+                Long currentLong;
+                try (PreparedStatement ps = connection.prepareStatement(getLongSQL)) {
+                    setToPreparedStatement(getLongSQL, ps, keyCol, key);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            currentLong = (Long) longCol.getFromResultSet(rs, 1);
+                            if (logger.isLogEnabled()) {
+                                logger.logResultSet(rs, Arrays.asList(longCol));
                             }
+                            if (currentLong == null) {
+                                throw new NumberFormatException("Value is not a Long for key: " + key);
+                            }
+                        } else {
+                            currentLong = null;
                         }
                     }
-                    if (currentLong == null) {
-                        // try insert
-                        try (PreparedStatement ps = connection.prepareStatement(insertLongSQL)) {
-                            setToPreparedStatement(insertLongSQL, ps, keyCol, key, longCol, Long.valueOf(delta));
-                            try {
-                                ps.executeUpdate();
-                                return delta;
-                            } catch (SQLException e) {
-                                if (!dialect.isConcurrentUpdateException(e)) {
-                                    throw e;
-                                }
-                                // if concurrent update, retry
+                }
+                if (currentLong == null) {
+                    // try insert
+                    try (PreparedStatement ps = connection.prepareStatement(insertLongSQL)) {
+                        setToPreparedStatement(insertLongSQL, ps, keyCol, key, longCol, Long.valueOf(delta));
+                        try {
+                            ps.executeUpdate();
+                            return delta;
+                        } catch (SQLException e) {
+                            if (!dialect.isConcurrentUpdateException(e)) {
+                                throw e;
                             }
+                            // if concurrent update, retry
                         }
-                    } else {
-                        // update existing value
-                        Long newLong = Long.valueOf(currentLong.longValue() + delta);
-                        try (PreparedStatement ps = connection.prepareStatement(updateLongSQL)) {
-                            setToPreparedStatement(updateLongSQL, ps, longCol, newLong, keyCol, key, longCol,
-                                    currentLong);
-                            int count = ps.executeUpdate();
-                            if (count == 1) {
-                                return newLong;
-                            }
-                            // else the value changed...
-                            // concurrent update, retry
+                    }
+                } else {
+                    // update existing value
+                    Long newLong = Long.valueOf(currentLong.longValue() + delta);
+                    try (PreparedStatement ps = connection.prepareStatement(updateLongSQL)) {
+                        setToPreparedStatement(updateLongSQL, ps, longCol, newLong, keyCol, key, longCol,
+                                currentLong);
+                        int count = ps.executeUpdate();
+                        if (count == 1) {
+                            return newLong;
                         }
+                        // else the value changed...
+                        // concurrent update, retry
                     }
-                } finally {
-                    connection.commit();
-                    connection.setAutoCommit(true);
                 }
-                // concurrent update on insert or update, retry a few times
-                sleepBeforeRetry();
+            } finally {
+                connection.commit();
+                connection.setAutoCommit(true);
             }
-            throw new ConcurrentUpdateException("Failed to do atomic addAndGet for key: " + key);
-        }).longValue();
+            // concurrent update on insert or update, retry a few times
+            sleepBeforeRetry();
+        }
+        throw new ConcurrentUpdateException("Failed to do atomic addAndGet for key: " + key);
     }
 
     protected void sleepBeforeRetry() {
@@ -0,0 +1,281 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.sql.OffHeapRowCache.Lookup;
+
+public class TestOffHeapRowCache {
+
+    protected static final RowCodec CODEC = new RowCodec();
+
+    protected static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testCodecSimpleRow() {
+        Calendar cal = new GregorianCalendar();
+        Row row = new Row("hierarchy", "id1");
+        row.putNew("name", "foo");
+        row.putNew("pos", Long.valueOf(3));
+        row.putNew("isversion", Boolean.TRUE);
+        row.putNew("parentid", null);
+        row.putNew("modified", cal);
+        row.putNew("subjects", new String[] { "a", "b" });
+        row.putNew("other", new StringBuilder("serialized"));
+
+        Row decoded = CODEC.decode("hierarchy", CODEC.encode(row));
+        assertEquals("hierarchy", decoded.tableName);
+        assertEquals("id1", decoded.id);
+        assertEquals(row.getKeys(), decoded.getKeys());
+        assertEquals("foo", decoded.get("name"));
+        assertEquals(Long.valueOf(3), decoded.get("pos"));
+        assertEquals(Boolean.TRUE, decoded.get("isversion"));
+        assertNull(decoded.get("parentid"));
+        assertEquals(cal.getTimeInMillis(), ((Calendar) decoded.get("modified")).getTimeInMillis());
+        assertArrayEquals(new String[] { "a", "b" }, (String[]) decoded.get("subjects"));
+        assertEquals("serialized", decoded.get("other").toString());
+    }
+
+    @Test
+    public void testCodecCollectionRow() {
+        ACLRow acl1 = new ACLRow(0, "local", true, "Read", "bob", null);
+        ACLRow acl2 = new ACLRow(1, "local", false, "Write", null, "members");
+        Row row = new Row("acls", "id1", new ACLRow[] { acl1, acl2 });
+
+        Row decoded = CODEC.decode("acls", CODEC.encode(row));
+        assertTrue(decoded.isCollection());
+        assertEquals(ACLRow[].class, decoded.values.getClass());
+        ACLRow[] acls = (ACLRow[]) decoded.values;
+        assertEquals(2, acls.length);
+        assertEquals("bob", acls[0].user);
+        assertEquals("members", acls[1].group);
+        assertEquals(1, acls[1].pos);
+    }
+
+    @Test
+    public void testPutGet() {
+        OffHeapRowCache cache = new OffHeapRowCache(64 * 1024, 64, Collections.emptyMap());
+        RowId rowId = new RowId("hierarchy", "id1");
+        assertSame(Lookup.MISS, cache.get(rowId));
+
+        byte[] bytes = bytes(150);
+        cache.put(rowId, bytes);
+        assertArrayEquals(bytes, cache.get(rowId).bytes);
+        assertEquals(3 * 64, cache.getSize());
+
+        cache.putAbsent(rowId);
+        assertSame(Lookup.ABSENT, cache.get(rowId));
+        assertEquals(64, cache.getSize());
+
+        cache.remove(rowId);
+        assertSame(Lookup.MISS, cache.get(rowId));
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictionLRU() {
+        // room for 10 blocks
+        OffHeapRowCache cache = new OffHeapRowCache(640, 64, Collections.emptyMap());
+        for (int i = 0; i < 10; i++) {
+            cache.put(new RowId("hierarchy", "id" + i), bytes(10));
+        }
+        assertEquals(10, cache.getEntryCount());
+        // touch id0 so that id1 is the eldest
+        cache.get(new RowId("hierarchy", "id0"));
+        // needs 2 blocks
+        cache.put(new RowId("hierarchy", "id10"), bytes(100));
+        assertEquals(9, cache.getEntryCount());
+        assertEquals(2, cache.getEvictionCount());
+        assertSame(Lookup.MISS, cache.get(new RowId("hierarchy", "id1")));
+        assertSame(Lookup.MISS, cache.get(new RowId("hierarchy", "id2")));
+        assertArrayEquals(bytes(10), cache.get(new RowId("hierarchy", "id0")).bytes);
+        assertArrayEquals(bytes(100), cache.get(new RowId("hierarchy", "id10")).bytes);
+        assertEquals(640, cache.getAllocatedSize());
+    }
+
+    @Test
+    public void testEvictionPerTable() {
+        Map<String, Long> tableMaxSizes = Collections.singletonMap("fulltext", Long.valueOf(128));
+        OffHeapRowCache cache = new OffHeapRowCache(640, 64, tableMaxSizes);
+        for (int i = 0; i < 6; i++) {
+            cache.put(new RowId("hierarchy", "id" + i), bytes(10));
+        }
+        for (int i = 0; i < 4; i++) {
+            cache.put(new RowId("fulltext", "id" + i), bytes(10));
+        }
+        // fulltext limited to 2 blocks
+        assertEquals(8, cache.getEntryCount());
+        assertEquals(2, cache.getEvictionCount("fulltext"));
+        assertEquals(0, cache.getEvictionCount("hierarchy"));
+
+        // when full, the largest table is evicted first
+        for (int i = 0; i < 4; i++) {
+            cache.put(new RowId("dublincore", "id" + i), bytes(10));
+        }
+        assertEquals(10, cache.getEntryCount());
+        assertEquals(2, cache.getEvictionCount("hierarchy"));
+        assertEquals(2, cache.getEvictionCount("fulltext"));
+        assertEquals(0, cache.getEvictionCount("dublincore"));
+        assertArrayEquals(bytes(10), cache.get(new RowId("fulltext", "id3")).bytes);
+        assertSame(Lookup.MISS, cache.get(new RowId("hierarchy", "id1")));
+    }
+
+    @Test
+    public void testTooBig() {
+        OffHeapRowCache cache = new OffHeapRowCache(640, 64, Collections.emptyMap());
+        RowId rowId = new RowId("hierarchy", "id1");
+        cache.put(rowId, bytes(1000));
+        assertSame(Lookup.MISS, cache.get(rowId));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testClearReusesBlocks() {
+        OffHeapRowCache cache = new OffHeapRowCache(640, 64, Collections.emptyMap());
+        for (int i = 0; i < 5; i++) {
+            cache.put(new RowId("hierarchy", "id" + i), bytes(100));
+        }
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSize());
+        for (int i = 0; i < 5; i++) {
+            Serializable id = "other" + i;
+            cache.put(new RowId("hierarchy", id), bytes(120));
+        }
+        assertEquals(640, cache.getAllocatedSize());
+        assertArrayEquals(bytes(120), cache.get(new RowId("hierarchy", "other4")).bytes);
+    }
+
+    @Test
+    public void testCloseReleasesSlabs() {
+        OffHeapRowCache cache = new OffHeapRowCache(640, 64, Collections.emptyMap());
+        RowId rowId = new RowId("hierarchy", "id1");
+        cache.put(rowId, bytes(100));
+        cache.close();
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getAllocatedSize());
+        assertNull(cache.stripes[0].slabs[0]);
+        assertSame(Lookup.MISS, cache.get(rowId));
+        // still usable
+        cache.put(rowId, bytes(100));
+        assertArrayEquals(bytes(100), cache.get(rowId).bytes);
+    }
+
+    @Test
+    public void testConcurrency() {
+        // small caches keep a single stripe for an exact LRU
+        assertEquals(1, new OffHeapRowCache(640, 64, Collections.emptyMap()).getConcurrency());
+        assertEquals(1, new OffHeapRowCache(64 * 1024, 64, Collections.emptyMap()).getConcurrency());
+        assertEquals(OffHeapRowCache.DEFAULT_CONCURRENCY,
+                new OffHeapRowCache(256L * 1024 * 1024, 256, Collections.emptyMap()).getConcurrency());
+        assertEquals(4, new OffHeapRowCache(640, 64, Collections.emptyMap(), 4).getConcurrency());
+    }
+
+    @Test
+    public void testStripes() {
+        Map<String, Long> tableMaxSizes = Collections.singletonMap("fulltext", Long.valueOf(64 * 64));
+        OffHeapRowCache cache = new OffHeapRowCache(64 * 1024, 64, tableMaxSizes, 4);
+        for (int i = 0; i < 100; i++) {
+            cache.put(new RowId("hierarchy", "id" + i), bytes(100));
+            cache.put(new RowId("fulltext", "id" + i), bytes(10));
+        }
+        assertEquals(64 * 1024, cache.getMaxSize());
+        // the table maximum size is shared by the stripes
+        assertEquals(100 + 64, cache.getEntryCount());
+        assertEquals(36, cache.getEvictionCount("fulltext"));
+        assertEquals(0, cache.getEvictionCount("hierarchy"));
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(bytes(100), cache.get(new RowId("hierarchy", "id" + i)).bytes);
+        }
+        assertEquals((2 * 100 + 64) * 64, cache.getSize());
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        OffHeapRowCache cache = new OffHeapRowCache(64 * 1024, 64, Collections.emptyMap(), 4);
+        int nbThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Callable<Void>> tasks = IntStream.range(0, nbThreads).mapToObj(t -> (Callable<Void>) () -> {
+                for (int i = 0; i < 1000; i++) {
+                    RowId rowId = new RowId("hierarchy", "id" + t + "-" + (i % 10));
+                    byte[] bytes = bytes(10 + t * 20);
+                    cache.put(rowId, bytes);
+                    Lookup lookup = cache.get(rowId);
+                    // another thread never writes this row, but it may be evicted
+                    if (lookup != Lookup.MISS) {
+                        assertArrayEquals(bytes, lookup.bytes);
+                    }
+                }
+                return null;
+            }).collect(Collectors.toList());
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+    }
+
+    @Test
+    public void testCloseSharedCache() {
+        OffHeapRowCache cache = new OffHeapRowCache(640, 64, Collections.emptyMap());
+        cache.put(new RowId("hierarchy", "id1"), bytes(100));
+        OffHeapCachingRowMapper.CACHES.put("testrepo", cache);
+        OffHeapCachingRowMapper.closeCache("testrepo");
+        assertFalse(OffHeapCachingRowMapper.CACHES.containsKey("testrepo"));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getAllocatedSize());
+        // unknown repository
+        OffHeapCachingRowMapper.closeCache("testrepo");
+    }
+
+}
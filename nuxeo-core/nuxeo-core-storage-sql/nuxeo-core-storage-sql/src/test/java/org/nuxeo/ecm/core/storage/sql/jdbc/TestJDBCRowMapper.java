@@ -0,0 +1,81 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.sql.Row;
+import org.nuxeo.ecm.core.storage.sql.RowMapper.RowUpdate;
+
+public class TestJDBCRowMapper {
+
+    protected static List<RowUpdate> rowUpdates(int n) {
+        List<RowUpdate> rowUpdates = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rowUpdates.add(new RowUpdate(new Row("hierarchy", "id" + i), Collections.singleton("title")));
+        }
+        return rowUpdates;
+    }
+
+    protected static int[] counts(int n, int notUpdated) {
+        int[] counts = new int[n];
+        for (int i = 0; i < n; i++) {
+            counts[i] = i == notUpdated ? 0 : 1;
+        }
+        return counts;
+    }
+
+    @Test
+    public void testConcurrentUpdateIdInFirstBatch() {
+        List<RowUpdate> rowUpdates = rowUpdates(250);
+        int batchSize = JDBCRowMapper.UPDATE_BATCH_SIZE;
+        assertNull(JDBCRowMapper.getConcurrentUpdateId(rowUpdates, batchSize, counts(batchSize, -1)));
+        assertEquals("id42", JDBCRowMapper.getConcurrentUpdateId(rowUpdates, batchSize, counts(batchSize, 42)));
+    }
+
+    @Test
+    public void testConcurrentUpdateIdInFollowingBatches() {
+        List<RowUpdate> rowUpdates = rowUpdates(250);
+        int batchSize = JDBCRowMapper.UPDATE_BATCH_SIZE;
+        // second full batch
+        assertEquals("id" + (batchSize + 42),
+                JDBCRowMapper.getConcurrentUpdateId(rowUpdates, 2 * batchSize, counts(batchSize, 42)));
+        // last partial batch
+        int last = 250 - 2 * batchSize;
+        assertEquals("id249", JDBCRowMapper.getConcurrentUpdateId(rowUpdates, 250, counts(last, last - 1)));
+        assertNull(JDBCRowMapper.getConcurrentUpdateId(rowUpdates, 250, counts(last, -1)));
+    }
+
+    @Test
+    public void testConcurrentUpdateIdWithoutCountInfo() {
+        List<RowUpdate> rowUpdates = rowUpdates(10);
+        int[] counts = new int[10];
+        Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+        assertNull(JDBCRowMapper.getConcurrentUpdateId(rowUpdates, 10, counts));
+    }
+
+}
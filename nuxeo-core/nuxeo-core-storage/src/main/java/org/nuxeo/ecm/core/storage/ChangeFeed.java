@@ -0,0 +1,77 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A log of the documents changed in a repository, used to index changes that are not notified by core events.
+ * <p>
+ * The position in the log is represented by an opaque checkpoint, persisted by the caller between two reads.
+ *
+ * @since 11.1
+ */
+public interface ChangeFeed {
+
+    /**
+     * Reads the changes following the checkpoint.
+     *
+     * @param repositoryName the repository
+     * @param checkpoint the checkpoint returned by a previous read, or {@code null} to start from the beginning of the
+     *            feed
+     * @param maxChanges the maximum number of changes to return
+     * @return the changes, never {@code null}
+     */
+    Changes read(String repositoryName, String checkpoint, int maxChanges);
+
+    /**
+     * Changes read from a {@link ChangeFeed}.
+     */
+    class Changes {
+
+        protected final List<String> documentIds;
+
+        protected final String checkpoint;
+
+        public Changes(List<String> documentIds, String checkpoint) {
+            this.documentIds = documentIds == null ? Collections.emptyList() : documentIds;
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * Returns the ids of the changed documents, in change order, a document may appear several times.
+         */
+        public List<String> getDocumentIds() {
+            return documentIds;
+        }
+
+        /**
+         * Returns the checkpoint to use to read the following changes.
+         */
+        public String getCheckpoint() {
+            return checkpoint;
+        }
+
+        public boolean isEmpty() {
+            return documentIds.isEmpty();
+        }
+    }
+
+}
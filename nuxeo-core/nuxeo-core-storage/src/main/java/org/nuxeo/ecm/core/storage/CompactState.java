@@ -0,0 +1,361 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TimeZone;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A compact {@link State}, meant for states kept in memory for a long time (caches, transaction states).
+ * <p>
+ * Keys are stored as numbers from the {@link StateKeys} dictionary, in a sorted array that is shared between copies
+ * of the same state until a key is added or removed. A shared array is never modified, so copies can be made
+ * concurrently from a state that is not modified anymore, like a cached state. {@link Long}, {@link Boolean}, {@link Double} and default time
+ * zone {@link GregorianCalendar} values are stored unboxed in a primitive array, other values are stored as is.
+ * <p>
+ * Unboxed values are boxed again on each read, so reading a primitive value twice may not return the same instance.
+ * <p>
+ * This class is not thread-safe, except for {@link #deepCopy} which only reads the copied state. It's serialized as a regular {@link State}, as the key numbers are only meaningful
+ * in the current JVM.
+ *
+ * @since 11.1
+ */
+public class CompactState extends State {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final byte OBJECT = 0;
+
+    protected static final byte LONG = 1;
+
+    protected static final byte BOOLEAN = 2;
+
+    protected static final byte DOUBLE = 3;
+
+    protected static final byte CALENDAR = 4;
+
+    protected static final TimeZone DEFAULT_TIME_ZONE = TimeZone.getDefault();
+
+    protected static final Calendar DEFAULT_CALENDAR = new GregorianCalendar(DEFAULT_TIME_ZONE);
+
+    protected static final int[] EMPTY_IDS = new int[0];
+
+    /** Sorted key numbers, may be shared with other states. */
+    protected int[] ids;
+
+    /**
+     * Whether {@link #ids} may be shared and must be copied before modification. Only set on a state before it's made
+     * visible to other states, never by the copies.
+     */
+    protected boolean sharedIds;
+
+    protected byte[] kinds;
+
+    protected long[] prims;
+
+    protected Serializable[] objects;
+
+    protected int size;
+
+    public CompactState() {
+        this(0);
+    }
+
+    public CompactState(int capacity) {
+        super(null);
+        ids = capacity == 0 ? EMPTY_IDS : new int[capacity];
+        kinds = new byte[capacity];
+        prims = new long[capacity];
+        objects = new Serializable[capacity];
+    }
+
+    /**
+     * Makes a deep compact copy of a {@link State}: sub-states are also compact.
+     */
+    public static CompactState copyOf(State state) {
+        if (state instanceof CompactState) {
+            return ((CompactState) state).deepCopy();
+        }
+        CompactState copy = new CompactState(state.size());
+        for (Entry<String, Serializable> en : state.entrySet()) {
+            copy.putEvenIfNull(en.getKey(), compactValue(en.getValue()));
+        }
+        // the key numbers of the copy can now be shared with its own copies
+        copy.sharedIds = true;
+        return copy;
+    }
+
+    protected static Serializable compactValue(Serializable value) {
+        if (value instanceof State && !(value instanceof StateDiff)) {
+            return copyOf((State) value);
+        } else if (value instanceof List) {
+            @SuppressWarnings("unchecked")
+            List<Serializable> list = (List<Serializable>) value;
+            List<Serializable> copy = new ArrayList<>(list.size());
+            for (Serializable v : list) {
+                copy.add(compactValue(v));
+            }
+            return (Serializable) copy;
+        } else {
+            return StateHelper.deepCopy(value);
+        }
+    }
+
+    /**
+     * Makes a deep copy of this state, sharing the key numbers until modified if this state doesn't own them. This
+     * state is not modified, so copies can be made concurrently.
+     */
+    public CompactState deepCopy() {
+        CompactState copy = new CompactState(0);
+        // an array owned by this state may be modified in place later, it can't be shared
+        copy.ids = sharedIds ? ids : Arrays.copyOf(ids, size);
+        copy.sharedIds = true;
+        copy.kinds = Arrays.copyOf(kinds, size);
+        copy.prims = Arrays.copyOf(prims, size);
+        copy.objects = new Serializable[size];
+        for (int i = 0; i < size; i++) {
+            if (objects[i] != null) {
+                copy.objects[i] = compactValue(objects[i]);
+            }
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    protected int indexOf(Object key) {
+        int id = StateKeys.indexIfPresent(key);
+        if (id < 0) {
+            return -1;
+        }
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        return i < 0 ? -1 : i;
+    }
+
+    protected Serializable valueAt(int i) {
+        switch (kinds[i]) {
+        case LONG:
+            return Long.valueOf(prims[i]);
+        case BOOLEAN:
+            return Boolean.valueOf(prims[i] != 0);
+        case DOUBLE:
+            return Double.valueOf(Double.longBitsToDouble(prims[i]));
+        case CALENDAR:
+            Calendar cal = new GregorianCalendar(DEFAULT_TIME_ZONE);
+            cal.setTimeInMillis(prims[i]);
+            return cal;
+        default:
+            return objects[i];
+        }
+    }
+
+    protected void setValueAt(int i, Serializable value) {
+        byte kind = OBJECT;
+        long prim = 0;
+        if (value != null) {
+            Class<?> klass = value.getClass();
+            if (klass == Long.class) {
+                kind = LONG;
+                prim = ((Long) value).longValue();
+            } else if (klass == Boolean.class) {
+                kind = BOOLEAN;
+                prim = ((Boolean) value).booleanValue() ? 1 : 0;
+            } else if (klass == Double.class) {
+                kind = DOUBLE;
+                prim = Double.doubleToRawLongBits(((Double) value).doubleValue());
+            } else if (klass == GregorianCalendar.class && isDefaultCalendar((Calendar) value)) {
+                kind = CALENDAR;
+                prim = ((Calendar) value).getTimeInMillis();
+            }
+        }
+        kinds[i] = kind;
+        prims[i] = prim;
+        objects[i] = kind == OBJECT ? value : null;
+    }
+
+    /**
+     * Checks if a calendar can be rebuilt identically from its time only.
+     */
+    protected static boolean isDefaultCalendar(Calendar cal) {
+        return cal.isLenient() && cal.getFirstDayOfWeek() == DEFAULT_CALENDAR.getFirstDayOfWeek()
+                && cal.getMinimalDaysInFirstWeek() == DEFAULT_CALENDAR.getMinimalDaysInFirstWeek()
+                && ((GregorianCalendar) cal).getGregorianChange()
+                                            .equals(((GregorianCalendar) DEFAULT_CALENDAR).getGregorianChange())
+                && DEFAULT_TIME_ZONE.equals(cal.getTimeZone());
+    }
+
+    @Override
+    public Serializable get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    @Override
+    public void put(String key, Serializable value) {
+        if (value == null) {
+            remove(key);
+        } else {
+            putEvenIfNull(key, value);
+        }
+    }
+
+    @Override
+    protected void putEvenIfNull(String key, Serializable value) {
+        int id = StateKeys.index(key);
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        if (i < 0) {
+            i = -i - 1;
+            insertAt(i, id);
+        }
+        setValueAt(i, value);
+    }
+
+    protected void insertAt(int i, int id) {
+        if (size == ids.length || sharedIds) {
+            int capacity = size == ids.length ? Math.max(4, size + (size >> 1)) : ids.length;
+            ids = Arrays.copyOf(ids, capacity);
+            sharedIds = false;
+        }
+        if (size == kinds.length) {
+            int capacity = ids.length;
+            kinds = Arrays.copyOf(kinds, capacity);
+            prims = Arrays.copyOf(prims, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        int moved = size - i;
+        if (moved > 0) {
+            System.arraycopy(ids, i, ids, i + 1, moved);
+            System.arraycopy(kinds, i, kinds, i + 1, moved);
+            System.arraycopy(prims, i, prims, i + 1, moved);
+            System.arraycopy(objects, i, objects, i + 1, moved);
+        }
+        ids[i] = id;
+        size++;
+    }
+
+    @Override
+    public Serializable remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        Serializable old = valueAt(i);
+        if (sharedIds) {
+            ids = Arrays.copyOf(ids, size);
+            sharedIds = false;
+        }
+        int moved = size - i - 1;
+        if (moved > 0) {
+            System.arraycopy(ids, i + 1, ids, i, moved);
+            System.arraycopy(kinds, i + 1, kinds, i, moved);
+            System.arraycopy(prims, i + 1, prims, i, moved);
+            System.arraycopy(objects, i + 1, objects, i, moved);
+        }
+        size--;
+        objects[size] = null;
+        return old;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String[] keyArray() {
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = StateKeys.key(ids[i]);
+        }
+        return keys;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return ImmutableSet.copyOf(keyArray());
+    }
+
+    @Override
+    public Set<Entry<String, Serializable>> entrySet() {
+        return new AbstractSet<Entry<String, Serializable>>() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<String, Serializable>> iterator() {
+                return new Iterator<Entry<String, Serializable>>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @Override
+                    public Entry<String, Serializable> next() {
+                        if (index >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = index++;
+                        return new SimpleImmutableEntry<>(StateKeys.key(ids[i]), valueAt(i));
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Serializes as a regular {@link State}.
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        State state = new State(size);
+        for (int i = 0; i < size; i++) {
+            state.putEvenIfNull(StateKeys.key(ids[i]), valueAt(i));
+        }
+        return state;
+    }
+
+}
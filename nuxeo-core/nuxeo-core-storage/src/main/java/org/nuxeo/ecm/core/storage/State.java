@@ -157,9 +157,9 @@ public class State implements StateAccessor, Serializable {
     protected List<Serializable> values;
 
     /**
-     * Private constructor with explicit map.
+     * Constructor with explicit map, also used by subclasses providing their own storage.
      */
-    private State(Map<String, Serializable> map) {
+    protected State(Map<String, Serializable> map) {
         this.map = map;
     }
 
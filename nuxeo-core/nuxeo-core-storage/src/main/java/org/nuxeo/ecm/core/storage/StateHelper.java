@@ -309,6 +309,9 @@ public class StateHelper {
      * @param threadSafe if {@code true}, then thread-safe datastructures are used
      */
     public static State deepCopy(State state, boolean threadSafe) {
+        if (state instanceof CompactState && !threadSafe) {
+            return ((CompactState) state).deepCopy();
+        }
         State copy = new State(state.size(), threadSafe);
         for (Entry<String, Serializable> en : state.entrySet()) {
             copy.put(en.getKey(), deepCopy(en.getValue(), threadSafe));
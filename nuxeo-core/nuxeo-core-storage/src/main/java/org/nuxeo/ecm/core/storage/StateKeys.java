@@ -0,0 +1,122 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.ecm.core.schema.SchemaManager;
+import org.nuxeo.ecm.core.schema.types.ComplexType;
+import org.nuxeo.ecm.core.schema.types.Field;
+import org.nuxeo.ecm.core.schema.types.ListType;
+import org.nuxeo.ecm.core.schema.types.Schema;
+import org.nuxeo.ecm.core.schema.types.Type;
+
+/**
+ * Dictionary of the keys used by {@link CompactState}s, mapping each key to a small integer.
+ * <p>
+ * The dictionary is global to the JVM, it's pre-populated from the schemas of the {@link SchemaManager} so that the
+ * keys of a document type get neighboring numbers, and other keys are added on first use. Numbers are never reused.
+ *
+ * @since 11.1
+ */
+public class StateKeys {
+
+    protected static final Map<String, Integer> INDEXES = new ConcurrentHashMap<>();
+
+    // written under lock, the array reference is replaced when it grows
+    protected static volatile String[] keys = new String[256];
+
+    protected static int count;
+
+    private StateKeys() {
+        // utility class
+    }
+
+    /**
+     * Gets the number of a key, registering it if needed.
+     */
+    public static int index(String key) {
+        Integer index = INDEXES.get(key);
+        if (index != null) {
+            return index.intValue();
+        }
+        return register(key);
+    }
+
+    /**
+     * Gets the number of a key, or {@code -1} if the key is unknown.
+     */
+    public static int indexIfPresent(Object key) {
+        Integer index = INDEXES.get(key);
+        return index == null ? -1 : index.intValue();
+    }
+
+    /**
+     * Gets the key for a number.
+     */
+    public static String key(int index) {
+        return keys[index];
+    }
+
+    protected static synchronized int register(String key) {
+        Integer index = INDEXES.get(key);
+        if (index != null) {
+            return index.intValue();
+        }
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        keys[count] = key.intern();
+        // publish after the key is visible in the array
+        INDEXES.put(keys[count], Integer.valueOf(count));
+        return count++;
+    }
+
+    /**
+     * Registers the keys of all the fields of all the schemas.
+     */
+    public static void register(SchemaManager schemaManager) {
+        Set<ComplexType> done = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Schema schema : schemaManager.getSchemas()) {
+            registerComplexType(schema, done);
+        }
+    }
+
+    protected static void registerComplexType(ComplexType complexType, Set<ComplexType> done) {
+        if (!done.add(complexType)) {
+            return;
+        }
+        for (Field field : complexType.getFields()) {
+            index(field.getName().getPrefixedName());
+            Type type = field.getType();
+            if (type.isListType()) {
+                type = ((ListType) type).getFieldType();
+            }
+            if (type.isComplexType()) {
+                registerComplexType((ComplexType) type, done);
+            }
+        }
+    }
+
+}
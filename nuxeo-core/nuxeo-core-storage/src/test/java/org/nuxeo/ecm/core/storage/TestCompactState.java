@@ -0,0 +1,202 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class TestCompactState {
+
+    @Test
+    public void testPutGetRemove() {
+        State s = new CompactState();
+        assertTrue(s.isEmpty());
+        s.put("foo", "bar");
+        s.put("num", Long.valueOf(123));
+        s.put("flag", Boolean.TRUE);
+        s.put("dbl", Double.valueOf(1.5));
+        s.put("none", null);
+        assertEquals(4, s.size());
+        assertEquals("bar", s.get("foo"));
+        assertEquals(Long.valueOf(123), s.get("num"));
+        assertEquals(Boolean.TRUE, s.get("flag"));
+        assertEquals(Double.valueOf(1.5), s.get("dbl"));
+        assertNull(s.get("none"));
+        assertNull(s.get("unknown-key-never-seen"));
+        assertFalse(s.containsKey("none"));
+        assertTrue(s.containsKey("num"));
+
+        // replace with a value of another kind
+        s.put("num", "text");
+        assertEquals("text", s.get("num"));
+        assertEquals(4, s.size());
+
+        assertEquals("bar", s.remove("foo"));
+        assertNull(s.remove("foo"));
+        assertEquals(3, s.size());
+        s.put("flag", null);
+        assertFalse(s.containsKey("flag"));
+        assertEquals(2, s.size());
+    }
+
+    @Test
+    public void testManyKeys() {
+        State s = new CompactState();
+        for (int i = 0; i < 100; i++) {
+            s.put("key" + i, Long.valueOf(i));
+        }
+        assertEquals(100, s.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Long.valueOf(i), s.get("key" + i));
+        }
+        int n = 0;
+        for (Entry<String, Serializable> en : s.entrySet()) {
+            assertEquals(en.getValue(), Long.valueOf(en.getKey().substring(3)));
+            n++;
+        }
+        assertEquals(100, n);
+        assertEquals(100, s.keySet().size());
+        assertEquals(100, s.keyArray().length);
+        for (int i = 0; i < 100; i += 2) {
+            s.remove("key" + i);
+        }
+        assertEquals(50, s.size());
+        assertNull(s.get("key0"));
+        assertEquals(Long.valueOf(99), s.get("key99"));
+    }
+
+    @Test
+    public void testCalendar() {
+        Calendar cal = new GregorianCalendar();
+        cal.setTimeInMillis(1234567890000L);
+        Calendar utc = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        utc.setTimeInMillis(1234567890000L);
+        if (TimeZone.getDefault().equals(utc.getTimeZone())) {
+            utc.setTimeZone(TimeZone.getTimeZone("GMT+05:00"));
+        }
+        State s = new CompactState();
+        s.put("cal", cal);
+        s.put("utc", utc);
+        assertEquals(cal, s.get("cal"));
+        // not in the default time zone, kept as is
+        assertEquals(utc, s.get("utc"));
+        assertEquals(utc.getTimeZone(), ((Calendar) s.get("utc")).getTimeZone());
+    }
+
+    @Test
+    public void testCopyOf() {
+        State sub = new State();
+        sub.put("title", "t");
+        sub.put("count", Long.valueOf(3));
+        List<Serializable> list = new ArrayList<>();
+        list.add(sub);
+        State state = new State();
+        state.put("ecm:id", "123");
+        state.put("sub", sub);
+        state.put("list", (Serializable) list);
+        state.put("array", new String[] { "a", "b" });
+
+        CompactState copy = CompactState.copyOf(state);
+        assertEquals(state, copy);
+        assertEquals(copy, state);
+        assertTrue(copy.get("sub") instanceof CompactState);
+        @SuppressWarnings("unchecked")
+        List<Serializable> copyList = (List<Serializable>) copy.get("list");
+        assertTrue(copyList.get(0) instanceof CompactState);
+        assertNotSame(state.get("array"), copy.get("array"));
+        assertArrayEquals((Object[]) state.get("array"), (Object[]) copy.get("array"));
+
+        // copies share keys but are independent
+        State copy2 = StateHelper.deepCopy(copy);
+        assertTrue(copy2 instanceof CompactState);
+        copy2.put("ecm:id", "456");
+        copy2.put("other", "x");
+        ((State) copy2.get("sub")).put("title", "u");
+        assertEquals("123", copy.get("ecm:id"));
+        assertFalse(copy.containsKey("other"));
+        assertEquals("t", ((State) copy.get("sub")).get("title"));
+        copy.remove("array");
+        assertTrue(copy2.containsKey("array"));
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList((Object[]) copy2.get("array")));
+    }
+
+    @Test
+    public void testDeepCopyDoesNotModifySource() {
+        CompactState s = new CompactState();
+        s.put("a", "1");
+        s.put("c", "3");
+        assertFalse(s.sharedIds);
+        CompactState copy = s.deepCopy();
+        // the source still owns its keys and can be modified in place without affecting the copy
+        assertFalse(s.sharedIds);
+        s.put("b", "2");
+        s.remove("a");
+        assertEquals(2, copy.size());
+        assertEquals("1", copy.get("a"));
+        assertNull(copy.get("b"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), copy.keySet());
+
+        // copies of a copy share its keys until modified
+        CompactState copy2 = copy.deepCopy();
+        assertSame(copy.ids, copy2.ids);
+        copy2.put("b", "2");
+        assertNull(copy.get("b"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), copy.keySet());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), copy2.keySet());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        State s = new CompactState();
+        s.put("foo", "bar");
+        s.put("num", Long.valueOf(1));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(s);
+        }
+        Object read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            read = in.readObject();
+        }
+        assertEquals(State.class, read.getClass());
+        assertEquals(s, read);
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CloseableCoreSession;
+import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.repository.RepositoryService;
+import org.nuxeo.ecm.core.storage.dbs.DBSRepository;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.HotDeployer;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Tests a DBS repository using compact states, with its cache enabled.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestSQLRepositoryCompactStates {
+
+    protected static final String[] SUBJECTS = { "foo", "bar" };
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected CoreSession session;
+
+    @Inject
+    protected HotDeployer deployer;
+
+    @Before
+    public void setUp() throws Exception {
+        // cannot be done through @Deploy, because the framework variables
+        // about repository configuration aren't ready yet
+        assumeTrue(coreFeature.getStorageConfiguration().isDBSMem()
+                || coreFeature.getStorageConfiguration().isDBSMongoDB());
+        if (coreFeature.getStorageConfiguration().isDBSMem()) {
+            deployer.deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/test-repo-mem-compact-states-contrib.xml");
+        } else {
+            deployer.deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/test-repo-mongodb-compact-states-contrib.xml");
+        }
+        DBSRepository repository = (DBSRepository) Framework.getService(RepositoryService.class)
+                                                            .getRepository(session.getRepositoryName());
+        assertTrue("Compact states should be enabled", repository.isCompactStates());
+    }
+
+    protected void nextTransaction() {
+        if (TransactionHelper.isTransactionActiveOrMarkedRollback()) {
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+    }
+
+    protected Calendar getCreated() {
+        Calendar created = new GregorianCalendar();
+        created.setTimeInMillis(1234567890000L);
+        return created;
+    }
+
+    protected DocumentModel createDocument() {
+        DocumentModel folder = session.createDocumentModel("/", "folder", "Folder");
+        folder = session.createDocument(folder);
+        DocumentModel doc = session.createDocumentModel("/folder", "doc", "File");
+        doc.setPropertyValue("dc:title", "title");
+        doc.setPropertyValue("dc:subjects", SUBJECTS);
+        doc.setPropertyValue("dc:created", getCreated());
+        doc = session.createDocument(doc);
+        nextTransaction();
+        return doc;
+    }
+
+    protected void checkDocument(CoreSession session, DocumentRef ref, String title) {
+        DocumentModel doc = session.getDocument(ref);
+        assertEquals(title, doc.getPropertyValue("dc:title"));
+        assertArrayEquals(SUBJECTS, (Object[]) doc.getPropertyValue("dc:subjects"));
+        assertEquals(getCreated().getTimeInMillis(),
+                ((Calendar) doc.getPropertyValue("dc:created")).getTimeInMillis());
+    }
+
+    @Test
+    public void testModifyCachedDocument() {
+        DocumentModel doc = createDocument();
+        DocumentRef ref = doc.getRef();
+        // read twice, the second time from the cache
+        checkDocument(session, ref, "title");
+        checkDocument(session, ref, "title");
+
+        // modify the document, adding and removing keys of its state
+        doc = session.getDocument(ref);
+        doc.setPropertyValue("dc:title", "new title");
+        doc.setPropertyValue("dc:description", "description");
+        doc.setPropertyValue("dc:created", null);
+        session.saveDocument(doc);
+        nextTransaction();
+        doc = session.getDocument(ref);
+        assertEquals("new title", doc.getPropertyValue("dc:title"));
+        assertNull(doc.getPropertyValue("dc:created"));
+
+        doc.setPropertyValue("dc:created", getCreated());
+        session.saveDocument(doc);
+        nextTransaction();
+        checkDocument(session, ref, "new title");
+        assertEquals("description", session.getDocument(ref).getPropertyValue("dc:description"));
+        try (CloseableCoreSession session2 = CoreInstance.openCoreSession(session.getRepositoryName())) {
+            checkDocument(session2, ref, "new title");
+        }
+        assertEquals(1, session.getChildren(session.getDocument(ref).getParentRef()).size());
+    }
+
+    @Test
+    public void testConcurrentCopiesOfCachedDocument() throws Exception {
+        DocumentModel doc = createDocument();
+        DocumentRef ref = doc.getRef();
+        String repositoryName = session.getRepositoryName();
+        checkDocument(session, ref, "title");
+
+        // many sessions copy the same cached state concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String title = "title" + i;
+                futures.add(executor.submit(() -> TransactionHelper.runInTransaction(() -> {
+                    try (CloseableCoreSession s = CoreInstance.openCoreSession(repositoryName)) {
+                        for (int j = 0; j < 100; j++) {
+                            checkDocument(s, ref, "title");
+                            DocumentModel copy = s.getDocument(ref);
+                            copy.setPropertyValue("dc:title", title);
+                            copy.setPropertyValue("dc:description", title);
+                            copy.setPropertyValue("dc:subjects", null);
+                        }
+                    }
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        checkDocument(session, ref, "title");
+        assertNull(session.getDocument(ref).getPropertyValue("dc:description"));
+    }
+
+}
@@ -86,6 +86,12 @@ public class TestSetPropertiesAction {
         testSetProperties(USERNAME);
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/bulk-partitioned-scroll-contrib.xml")
+    public void testSetPropertiesWithPartitionedScroll() throws Exception {
+        testSetProperties(USERNAME);
+    }
+
     protected void testSetProperties(String username) throws Exception {
 
         DocumentModel model = session.getDocument(new PathRef("/default-domain/workspaces/test"));
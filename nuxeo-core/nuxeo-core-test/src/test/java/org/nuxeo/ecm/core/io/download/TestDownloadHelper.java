@@ -21,6 +21,8 @@ package org.nuxeo.ecm.core.io.download;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.util.List;
+
 import org.junit.Test;
 import org.nuxeo.ecm.core.io.download.DownloadService.ByteRange;
 
@@ -89,4 +91,38 @@ public class TestDownloadHelper {
         assertNull(DownloadHelper.parseRange("bytes=foo-bar", 12345));
     }
 
+    @Test
+    public void testParseMultipleByteRanges() throws Exception {
+        List<ByteRange> byteRanges = DownloadHelper.parseRanges("bytes=500-599, 0-99,-100", 12345);
+        assertEquals(3, byteRanges.size());
+        assertEquals(0, byteRanges.get(0).getStart());
+        assertEquals(99, byteRanges.get(0).getEnd());
+        assertEquals(500, byteRanges.get(1).getStart());
+        assertEquals(599, byteRanges.get(1).getEnd());
+        assertEquals(12245, byteRanges.get(2).getStart());
+        assertEquals(12344, byteRanges.get(2).getEnd());
+    }
+
+    @Test
+    public void testParseMultipleByteRangesCoalesced() throws Exception {
+        // overlapping and adjacent ranges are merged, end is capped to the length
+        List<ByteRange> byteRanges = DownloadHelper.parseRanges("bytes=0-99,50-199,200-299,1000-99999", 12345);
+        assertEquals(2, byteRanges.size());
+        assertEquals(0, byteRanges.get(0).getStart());
+        assertEquals(299, byteRanges.get(0).getEnd());
+        assertEquals(1000, byteRanges.get(1).getStart());
+        assertEquals(12344, byteRanges.get(1).getEnd());
+    }
+
+    @Test
+    public void testParseUnsupportedMultipleByteRanges() throws Exception {
+        assertNull(DownloadHelper.parseRanges("bytes=0-99,foo-bar", 12345));
+        assertNull(DownloadHelper.parseRanges("bytes=0-99,20000-", 12345)); // unsatisfiable
+        StringBuilder sb = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= DownloadHelper.MAX_RANGES; i++) {
+            sb.append(',').append(2 * i).append('-').append(2 * i);
+        }
+        assertNull(DownloadHelper.parseRanges(sb.toString(), 12345)); // too many
+    }
+
 }
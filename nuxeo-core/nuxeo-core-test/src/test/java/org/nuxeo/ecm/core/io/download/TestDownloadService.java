@@ -31,6 +31,7 @@ import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -60,6 +61,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.CloseableCoreSession;
@@ -682,6 +684,88 @@ public class TestDownloadService {
         }
     }
 
+    @Test
+    public void testDownloadMultipleByteRanges() throws IOException {
+        Blob blob = Blobs.createBlob("Hello World", "text/plain");
+        blob.setFilename("myFile.txt");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getHeader("Range")).thenReturn("bytes=6-10,0-4");
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        ServletOutputStream sos = new DummyServletOutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+        };
+        when(resp.getOutputStream()).thenReturn(sos);
+
+        downloadService.downloadBlob(req, resp, null, null, blob, null, "test");
+
+        verify(resp).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        ArgumentCaptor<String> contentType = ArgumentCaptor.forClass(String.class);
+        verify(resp).setContentType(contentType.capture());
+        assertTrue(contentType.getValue(), contentType.getValue().startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.getValue().substring("multipart/byteranges; boundary=".length());
+        String expected = "\r\n--" + boundary + "\r\n" //
+                + "Content-Type: text/plain\r\n" //
+                + "Content-Range: bytes 0-4/11\r\n" //
+                + "\r\n" //
+                + "Hello" //
+                + "\r\n--" + boundary + "\r\n" //
+                + "Content-Type: text/plain\r\n" //
+                + "Content-Range: bytes 6-10/11\r\n" //
+                + "\r\n" //
+                + "World" //
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, out.toString("UTF-8"));
+        verify(resp).setContentLengthLong(expected.length());
+    }
+
+    @Test
+    public void testDownloadMultipleByteRangesWithCustomTransferer() throws IOException {
+        Blob blob = Blobs.createBlob("Hello World", "text/plain");
+        blob.setFilename("myFile.txt");
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getHeader("Range")).thenReturn("bytes=6-10,0-4");
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        List<ByteRange> transferred = new ArrayList<>();
+
+        downloadService.downloadBlob(req, resp, null, null, blob, null, "test", null, null, transferred::add);
+
+        // the custom transferer is called once, for the whole blob
+        assertEquals(1, transferred.size());
+        assertNull(transferred.get(0));
+        verify(resp).setContentType("text/plain");
+        verify(resp).setContentLengthLong(blob.getLength());
+    }
+
+    @Test
+    public void testDownloadFileBlobByteRange() throws IOException {
+        Blob blob = new FileBlob(new ByteArrayInputStream("Hello World".getBytes("UTF-8")));
+        blob.setFilename("myFile.txt");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getHeader("Range")).thenReturn("bytes=6-");
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        ServletOutputStream sos = new DummyServletOutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+        };
+        when(resp.getOutputStream()).thenReturn(sos);
+
+        downloadService.downloadBlob(req, resp, null, null, blob, null, "test");
+
+        assertEquals("World", out.toString("UTF-8"));
+        verify(resp).setHeader(eq("Content-Range"), eq("bytes 6-10/11"));
+        verify(resp).setContentLengthLong(5);
+    }
+
     @Test
     @Deploy("org.nuxeo.ecm.core.api.tests:OSGI-INF/test-default-blob-provider.xml")
     public void testDownloadWithNginxAccel() throws IOException {
@@ -732,4 +816,36 @@ public class TestDownloadService {
         }
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.api.tests:OSGI-INF/test-default-blob-provider.xml")
+    public void testDownloadMultipleByteRangesWithNginxAccel() throws IOException {
+        Framework.getProperties().put(NginxConstants.X_ACCEL_ENABLED, "true");
+        try {
+            DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+            binaryManager.initialize("repo", Collections.emptyMap());
+            Blob source = new FileBlob(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+            Binary binary = binaryManager.getBinary(source);
+            String digest = binary.getDigest();
+            long length = binary.getFile().length();
+            Blob blob = new BinaryBlob(binary, digest, "cafe.txt", "text/plain", "utf-8", digest, length);
+
+            HttpServletRequest req = mock(HttpServletRequest.class);
+            when(req.getHeader(NginxConstants.X_ACCEL_LOCATION_HEADER)).thenReturn("/protected_files");
+            when(req.getHeader("Range")).thenReturn("bytes=0-1,3-4");
+            HttpServletResponse resp = mock(HttpServletResponse.class);
+
+            downloadService.downloadBlob(req, resp, null, null, blob, null, "test");
+
+            // nginx sends the byte ranges itself
+            verify(resp).setHeader(eq(NginxConstants.X_ACCEL_REDIRECT_HEADER),
+                    eq("/protected_files/d2/5e/d25ea4f4642073b7f218024d397dbaef"));
+            verify(resp).setContentType(eq("text/plain"));
+            verify(resp).setContentLengthLong(eq(length));
+            verify(resp, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            verify(resp, never()).getOutputStream();
+        } finally {
+            Framework.getProperties().remove(NginxConstants.X_ACCEL_ENABLED);
+        }
+    }
+
 }
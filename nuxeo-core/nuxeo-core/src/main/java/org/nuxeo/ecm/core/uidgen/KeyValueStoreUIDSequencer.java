@@ -30,6 +30,9 @@ import java.util.List;
 /**
  * UID Sequencer based on a key/value store. The store is the same for all sequencers, but they are using different
  * keys, prefixed by the sequencer name.
+ * <p>
+ * If {@value UIDBlockAllocator#BLOCK_ENABLED_PROPERTY} is {@code true}, ids are reserved by blocks, see
+ * {@link UIDBlockAllocator}.
  *
  * @since 10.2
  */
@@ -44,16 +47,36 @@ public class KeyValueStoreUIDSequencer extends AbstractUIDSequencer {
 
     public static final String SEP = ".";
 
+    /**
+     * Suffix of the key holding the generation of a sequence, incremented when it is reinitialized.
+     *
+     * @since 11.1
+     */
+    public static final String GENERATION_SUFFIX = ":generation";
+
     protected String storeName;
 
+    // @since 11.1
+    protected UIDBlockAllocator blockAllocator;
+
     @Override
     public void init() {
         storeName = Framework.getService(ConfigurationService.class).getString(STORE_NAME_PROPERTY, DEFAULT_STORE_NAME);
+        blockAllocator = UIDBlockAllocator.fromConfiguration(getName(),
+                (key, size) -> getStore().addAndGet(getKey(key), size),
+                (key, expected, value) -> getStore().compareAndSet(getKey(key), Long.valueOf(expected),
+                        Long.valueOf(value)),
+                key -> {
+                    Long generation = getStore().getLong(getGenerationKey(key));
+                    return generation == null ? 0 : generation.longValue();
+                });
     }
 
     @Override
     public void dispose() {
-        // nothing to do
+        if (blockAllocator != null) {
+            blockAllocator.releaseAll();
+        }
     }
 
     protected KeyValueStore getStore() {
@@ -68,13 +91,28 @@ public class KeyValueStoreUIDSequencer extends AbstractUIDSequencer {
         return getName() + SEP + key;
     }
 
+    /**
+     * @since 11.1
+     */
+    protected String getGenerationKey(String key) {
+        return getKey(key) + GENERATION_SUFFIX;
+    }
+
     @Override
     public void initSequence(String key, long id) {
         getStore().put(getKey(key), Long.valueOf(id));
+        if (blockAllocator != null) {
+            // after the new value, so that the blocks reserved before it have an older generation on all the nodes
+            getStore().addAndGet(getGenerationKey(key), 1);
+            blockAllocator.reset(key);
+        }
     }
 
     @Override
     public long getNextLong(String key) {
+        if (blockAllocator != null) {
+            return blockAllocator.getNextLong(key);
+        }
         return getStore().addAndGet(getKey(key), 1);
     }
 
@@ -0,0 +1,315 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.uidgen;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.services.config.ConfigurationService;
+
+/**
+ * Serves the ids of a {@link UIDSequencer} from blocks reserved atomically in the backing store, so that most calls to
+ * {@link #getNextLong} are answered from a local counter without a round trip.
+ * <p>
+ * The block size adapts to the observed demand: it is doubled when a block is exhausted in less than
+ * {@link #FAST_BLOCK_MS}, and halved when it took more than {@link #SLOW_BLOCK_MS}, within the configured bounds.
+ * <p>
+ * With block allocation ids are still unique, but they are only increasing per server node, and the unused part of
+ * the blocks is lost when a node stops, unless nothing was reserved after it in which case it is given back.
+ * <p>
+ * When a sequence is reinitialized, its generation is incremented in the backing store. Each node checks the
+ * generation of its blocks at most every {@link #GENERATION_CHECK_MS}, and drops the blocks reserved before the
+ * reinitialization.
+ *
+ * @since 11.1
+ */
+public class UIDBlockAllocator {
+
+    private static final Log log = LogFactory.getLog(UIDBlockAllocator.class);
+
+    /**
+     * Configuration property enabling block allocation for the sequencers supporting it.
+     */
+    public static final String BLOCK_ENABLED_PROPERTY = "nuxeo.uidseq.block.enabled";
+
+    /**
+     * Configuration property for the minimum (and initial) block size.
+     */
+    public static final String BLOCK_MIN_SIZE_PROPERTY = "nuxeo.uidseq.block.minSize";
+
+    /**
+     * Configuration property for the maximum block size.
+     */
+    public static final String BLOCK_MAX_SIZE_PROPERTY = "nuxeo.uidseq.block.maxSize";
+
+    public static final int DEFAULT_BLOCK_MIN_SIZE = 1;
+
+    public static final int DEFAULT_BLOCK_MAX_SIZE = 1000;
+
+    protected static final long FAST_BLOCK_MS = 1_000;
+
+    protected static final long SLOW_BLOCK_MS = 10_000;
+
+    protected static final long GENERATION_CHECK_MS = 1_000;
+
+    /**
+     * Reserves a block of ids in the backing store.
+     */
+    @FunctionalInterface
+    public interface Reserve {
+
+        /**
+         * Atomically increments the sequence by {@code size}.
+         *
+         * @return the last id of the reserved block
+         */
+        long reserve(String key, int size);
+    }
+
+    /**
+     * Gives back the end of a block to the backing store.
+     */
+    @FunctionalInterface
+    public interface Release {
+
+        /**
+         * Sets the sequence to {@code value} if it is still {@code expected}.
+         *
+         * @return {@code true} if the sequence was set
+         */
+        boolean release(String key, long expected, long value);
+    }
+
+    /**
+     * Reads the generation of a sequence in the backing store.
+     */
+    @FunctionalInterface
+    public interface Generation {
+
+        /**
+         * Gets the generation of the sequence, incremented each time it is reinitialized.
+         *
+         * @return the generation, {@code 0} if the sequence was never reinitialized
+         */
+        long get(String key);
+    }
+
+    /**
+     * A reserved block, ids from {@link #next} to {@link #last} are available.
+     */
+    protected static class Block {
+
+        protected final AtomicLong next;
+
+        protected final long last;
+
+        protected final int size;
+
+        protected final long time;
+
+        protected final long generation;
+
+        protected volatile long checked;
+
+        protected Block(long last, int size, long generation) {
+            this.next = new AtomicLong(last - size + 1);
+            this.last = last;
+            this.size = size;
+            this.generation = generation;
+            time = System.currentTimeMillis();
+            checked = time;
+        }
+    }
+
+    protected final String name;
+
+    protected final Reserve reserve;
+
+    protected final Release release;
+
+    protected final Generation generation;
+
+    protected final int minSize;
+
+    protected final int maxSize;
+
+    protected final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    protected final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    protected long generationCheckMs = GENERATION_CHECK_MS;
+
+    public UIDBlockAllocator(String name, Reserve reserve, Release release, int minSize, int maxSize) {
+        this(name, reserve, release, null, minSize, maxSize);
+    }
+
+    /**
+     * @param generation the generation reader, or {@code null} if blocks don't need to be dropped when another node
+     *            reinitializes the sequence
+     */
+    public UIDBlockAllocator(String name, Reserve reserve, Release release, Generation generation, int minSize,
+            int maxSize) {
+        this.name = name;
+        this.reserve = reserve;
+        this.release = release;
+        this.generation = generation;
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+    }
+
+    /**
+     * Creates an allocator configured from the {@link ConfigurationService}, or returns {@code null} if block
+     * allocation is not enabled.
+     */
+    public static UIDBlockAllocator fromConfiguration(String name, Reserve reserve, Release release) {
+        return fromConfiguration(name, reserve, release, null);
+    }
+
+    /**
+     * Creates an allocator configured from the {@link ConfigurationService}, or returns {@code null} if block
+     * allocation is not enabled.
+     */
+    public static UIDBlockAllocator fromConfiguration(String name, Reserve reserve, Release release,
+            Generation generation) {
+        ConfigurationService configurationService = Framework.getService(ConfigurationService.class);
+        if (!configurationService.isBooleanTrue(BLOCK_ENABLED_PROPERTY)) {
+            return null;
+        }
+        int minSize = configurationService.getInteger(BLOCK_MIN_SIZE_PROPERTY, DEFAULT_BLOCK_MIN_SIZE);
+        int maxSize = configurationService.getInteger(BLOCK_MAX_SIZE_PROPERTY, DEFAULT_BLOCK_MAX_SIZE);
+        return new UIDBlockAllocator(name, reserve, release, generation, minSize, maxSize);
+    }
+
+    public long getNextLong(String key) {
+        Block block = blocks.get(key);
+        if (block != null && !isCurrent(key, block)) {
+            block = null;
+        }
+        if (block != null) {
+            long id = block.next.getAndIncrement();
+            if (id <= block.last) {
+                return id;
+            }
+        }
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            // another thread may have reserved a new block in the meantime
+            Block current = blocks.get(key);
+            if (current != null && current != block) {
+                long id = current.next.getAndIncrement();
+                if (id <= current.last) {
+                    return id;
+                }
+            }
+            Block newBlock = reserveBlock(key, current);
+            long id = newBlock.next.getAndIncrement();
+            blocks.put(key, newBlock);
+            return id;
+        }
+    }
+
+    /**
+     * Checks, at most every {@link #GENERATION_CHECK_MS}, that the sequence wasn't reinitialized since the block was
+     * reserved, otherwise drops the block.
+     */
+    protected boolean isCurrent(String key, Block block) {
+        if (generation == null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - block.checked < generationCheckMs) {
+            return true;
+        }
+        if (generation.get(key) == block.generation) {
+            block.checked = now;
+            return true;
+        }
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            if (blocks.remove(key, block)) {
+                log.debug("Sequencer " + name + " dropped block " + (block.last - block.size + 1) + "-" + block.last
+                        + " for key: " + key + ", the sequence was reinitialized");
+            }
+        }
+        return false;
+    }
+
+    protected Block reserveBlock(String key, Block previous) {
+        int size;
+        if (previous == null) {
+            size = minSize;
+        } else {
+            long elapsed = System.currentTimeMillis() - previous.time;
+            if (elapsed < FAST_BLOCK_MS) {
+                size = (int) Math.min((long) previous.size * 2, maxSize);
+            } else if (elapsed > SLOW_BLOCK_MS) {
+                size = Math.max(previous.size / 2, minSize);
+            } else {
+                size = previous.size;
+            }
+        }
+        // read before reserving, so that a block reserved before a reinitialization always has an older generation
+        long gen = generation == null ? 0 : generation.get(key);
+        long last = reserve.reserve(key, size);
+        if (log.isTraceEnabled()) {
+            log.trace("Sequencer " + name + " reserved block " + (last - size + 1) + "-" + last + " for key: " + key);
+        }
+        return new Block(last, size, gen);
+    }
+
+    /**
+     * Forgets the local block for the key, to be called when the sequence is reinitialized.
+     */
+    public void reset(String key) {
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            blocks.remove(key);
+        }
+    }
+
+    /**
+     * Gives back the unused part of the blocks if possible, otherwise logs the lost ranges.
+     */
+    public void releaseAll() {
+        for (String key : blocks.keySet()) {
+            synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+                Block block = blocks.remove(key);
+                if (block == null) {
+                    continue;
+                }
+                // stop serving ids from this block
+                long next = block.next.getAndSet(block.last + 1);
+                if (next > block.last) {
+                    continue;
+                }
+                if (generation != null && generation.get(key) != block.generation) {
+                    // the sequence was reinitialized, the block isn't part of it anymore
+                    continue;
+                }
+                if (release != null && release.release(key, block.last, next - 1)) {
+                    log.debug("Sequencer " + name + " released ids " + next + "-" + block.last + " for key: " + key);
+                } else {
+                    log.info("Sequencer " + name + " did not use ids " + next + "-" + block.last + " for key: " + key);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.uidgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+/**
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+@Deploy("org.nuxeo.runtime.kv")
+@Deploy("org.nuxeo.ecm.core:OSGI-INF/uidgenerator-service.xml")
+@Deploy("org.nuxeo.ecm.core:OSGI-INF/uidgenerator-keyvalue-config.xml")
+@Deploy("org.nuxeo.ecm.core.tests:OSGI-INF/test-keyvaluestore-uidseq.xml")
+@Deploy("org.nuxeo.ecm.core.tests:OSGI-INF/test-keyvaluestore-uidseq-block.xml")
+public class TestKeyValueStoreUIDSequencerBlock {
+
+    @Inject
+    protected UIDGeneratorService service;
+
+    @Inject
+    protected KeyValueService keyValueService;
+
+    protected KeyValueStore getStore() {
+        return keyValueService.getKeyValueStore(KeyValueStoreUIDSequencer.DEFAULT_STORE_NAME);
+    }
+
+    @Test
+    public void testSequencer() {
+        UIDSequencer seq = service.getSequencer();
+        String key = "foo";
+        seq.initSequence(key, 0L);
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(i, seq.getNextLong(key));
+        }
+        // blocks were reserved ahead in the store, but not more than the max block size
+        long stored = getStore().getLong("uidgen.foo").longValue();
+        assertTrue(String.valueOf(stored), stored >= 100 && stored < 100 + 64);
+
+        // reinitializing drops the local block
+        seq.initSequence(key, 1000L);
+        assertEquals(1001, seq.getNextLong(key));
+    }
+
+    @Test
+    public void testReleaseOnDispose() {
+        UIDSequencer seq = service.getSequencer();
+        String key = "bar";
+        seq.initSequence(key, 0L);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, seq.getNextLong(key));
+        }
+        seq.dispose();
+        // the unused part of the block was given back
+        assertEquals(Long.valueOf(10), getStore().getLong("uidgen.bar"));
+        assertEquals(11, seq.getNextLong(key));
+    }
+
+    @Test
+    public void testInitSequenceOnOtherNode() {
+        UIDSequencer seq = service.getSequencer();
+        // another node sharing the same store
+        KeyValueStoreUIDSequencer other = new KeyValueStoreUIDSequencer();
+        other.setName(seq.getName());
+        other.init();
+        other.blockAllocator.generationCheckMs = 0;
+        try {
+            String key = "node";
+            seq.initSequence(key, 0L);
+            for (int i = 1; i <= 10; i++) {
+                assertEquals(i, other.getNextLong(key));
+            }
+            // the other node still has unused ids in its block
+            assertTrue(getStore().getLong("uidgen.node").longValue() > 10);
+
+            // reinitializing on a node drops the blocks of the other nodes
+            seq.initSequence(key, 1000L);
+            assertEquals(1001, other.getNextLong(key));
+            assertEquals(1002, seq.getNextLong(key));
+        } finally {
+            other.dispose();
+        }
+    }
+
+    @Test
+    public void testBlockOfSequences() {
+        UIDSequencer seq = service.getSequencer();
+        String key = "block";
+        seq.initSequence(key, 0L);
+        List<Long> block = seq.getNextBlock(key, 100);
+        assertEquals(100, block.size());
+        assertTrue(block.get(99) < seq.getNextLong(key));
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+        UIDSequencer seq = service.getSequencer();
+        int n = 10000;
+        int poolSize = 5;
+
+        String key = "mt";
+        seq.initSequence(key, 0L);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        for (int i = 0; i < n; i++) {
+            executor.submit(() -> ids.add(Long.valueOf(seq.getNextLong(key))));
+        }
+        executor.shutdown();
+        assertTrue("timeout", executor.awaitTermination(20, TimeUnit.SECONDS));
+        // all ids are distinct
+        assertEquals(n, ids.size());
+    }
+
+}
@@ -23,6 +23,7 @@ import static org.nuxeo.elasticsearch.bulk.IndexAction.INDEX_UPDATE_ALIAS_PARAM;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,6 +32,7 @@ import org.nuxeo.ecm.automation.core.Constants;
 import org.nuxeo.ecm.automation.core.annotations.Context;
 import org.nuxeo.ecm.automation.core.annotations.Operation;
 import org.nuxeo.ecm.automation.core.annotations.OperationMethod;
+import org.nuxeo.ecm.automation.core.annotations.Param;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.CoreSession;
@@ -39,6 +41,7 @@ import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.bulk.BulkService;
 import org.nuxeo.ecm.core.bulk.message.BulkCommand;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 
 /**
  * Run Elasticsearch indexing operation using the Bulk Service
@@ -63,9 +66,22 @@ public class ElasticsearchBulkIndexOperation {
     @Context
     protected BulkService bulkService;
 
+    @Context
+    protected ElasticSearchIndexing esi;
+
+    /**
+     * @since 11.1
+     */
+    @Param(name = "partitions", required = false)
+    protected Integer partitions = 1;
+
     @OperationMethod
     public Blob run() throws IOException {
         checkAccess();
+        if (partitions > 1) {
+            List<String> commandIds = esi.reindexRepository(session.getRepositoryName(), partitions);
+            return Blobs.createJSONBlobFromValue(Collections.singletonMap("commandIds", commandIds));
+        }
         esa.dropAndInitRepositoryIndex(session.getRepositoryName(), false);
         String commandId = submitBulkCommand("SELECT ecm:uuid FROM Document", true);
         log.warn(String.format("Submitted index command: %s to index the entire %s repository.", commandId,
@@ -57,6 +57,7 @@ import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
 import org.nuxeo.elasticsearch.api.EsResult;
 import org.nuxeo.elasticsearch.api.EsScrollResult;
+import org.nuxeo.elasticsearch.bulk.PartitionedReindex;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.config.ESHintQueryBuilderDescriptor;
 import org.nuxeo.elasticsearch.config.ElasticSearchClientConfig;
@@ -508,11 +509,21 @@ public class ElasticSearchComponent extends DefaultComponent
         runReindexingWorker(repositoryName, "SELECT ecm:uuid FROM Document", true);
     }
 
+    @Override
+    public List<String> reindexRepository(String repositoryName, int partitions) {
+        return PartitionedReindex.submit(repositoryName, partitions);
+    }
+
     @Override
     public BytesReference source(DocumentModel doc) throws IOException {
         return esi.source(doc);
     }
 
+    @Override
+    public List<BytesReference> source(List<DocumentModel> docs) throws IOException {
+        return esi.source(docs);
+    }
+
     // ES Search ===============================================================
     @Override
     public DocumentModelList query(NxQueryBuilder queryBuilder) {
@@ -21,6 +21,7 @@
 package org.nuxeo.elasticsearch.api;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.elasticsearch.common.bytes.BytesReference;
@@ -75,6 +76,16 @@ public interface ElasticSearchIndexing {
      */
     void reindexRepository(String repositoryName);
 
+    /**
+     * Recreate an index and reindex the repository using the Bulk Service. Documents are split into partitions of
+     * disjoint id ranges which are scrolled and indexed in parallel, the search alias is switched to the new index once
+     * all partitions are completed.
+     *
+     * @return the bulk command ids, one per partition
+     * @since 11.1
+     */
+    List<String> reindexRepository(String repositoryName, int partitions);
+
     /**
      * Process the {@link IndexingCommand}.
      * <p>
@@ -102,4 +113,19 @@ public interface ElasticSearchIndexing {
      * @since 10.3
      */
     BytesReference source(DocumentModel doc) throws IOException;
+
+    /**
+     * Returns the JSON Elasticsearch source representations of a list of documents, in the same order.
+     * <p>
+     * Implementations should share the lookups and buffers between the documents.
+     *
+     * @since 11.1
+     */
+    default List<BytesReference> source(List<DocumentModel> docs) throws IOException {
+        List<BytesReference> sources = new ArrayList<>(docs.size());
+        for (DocumentModel doc : docs) {
+            sources.add(source(doc));
+        }
+        return sources;
+    }
 }
@@ -78,11 +78,26 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
 
     protected volatile boolean abort;
 
+    // @since 11.1
+    protected final boolean updateStatus;
+
     public BulkIndexComputation(int esBulkSize, int esBulkActions, int flushInterval) {
-        super(NAME, 1, 1);
+        this(NAME, esBulkSize, esBulkActions, flushInterval, true);
+    }
+
+    /**
+     * Creates a bulk index computation that doesn't update the status of a bulk command when {@code updateStatus} is
+     * false, in which case the computation has no output.
+     *
+     * @since 11.1
+     */
+    public BulkIndexComputation(String name, int esBulkSize, int esBulkActions, int flushInterval,
+            boolean updateStatus) {
+        super(name, 1, updateStatus ? 1 : 0);
         this.esBulkSize = esBulkSize;
         this.esBulkActions = esBulkActions;
         this.flushIntervalMs = flushInterval * 1000;
+        this.updateStatus = updateStatus;
     }
 
     @Override
@@ -128,9 +143,11 @@ public class BulkIndexComputation extends AbstractComputation implements BulkPro
             for (DocWriteRequest<?> request : bulkRequest.requests()) {
                 bulkProcessor.add(request);
             }
-            BulkStatus delta = BulkStatus.deltaOf(in.getCommandId());
-            delta.setProcessed(in.getCount());
-            AbstractBulkComputation.updateStatus(context, delta);
+            if (updateStatus) {
+                BulkStatus delta = BulkStatus.deltaOf(in.getCommandId());
+                delta.setProcessed(in.getCount());
+                AbstractBulkComputation.updateStatus(context, delta);
+            }
         }
         updates = true;
     }
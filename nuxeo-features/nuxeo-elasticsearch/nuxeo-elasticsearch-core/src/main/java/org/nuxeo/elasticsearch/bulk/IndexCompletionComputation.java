@@ -66,6 +66,7 @@ public class IndexCompletionComputation extends AbstractComputation {
             BulkCommand command = bulkService.getCommand(status.getId());
             refreshIndexIfNeeded(command);
             updateAliasIfNeeded(command);
+            updateAliasOnPartitionsCompletion(command);
         }
         context.askForCheckpoint();
     }
@@ -88,6 +89,20 @@ public class IndexCompletionComputation extends AbstractComputation {
         }
     }
 
+    /**
+     * @since 11.1
+     */
+    protected void updateAliasOnPartitionsCompletion(BulkCommand command) {
+        if (PartitionedReindex.isLastPartitionCompleted(command)) {
+            String groupId = command.getParam(PartitionedReindex.REINDEX_GROUP_PARAM);
+            log.warn(String.format("Reindexing group: %s completed, update alias of repository: %s", groupId,
+                    command.getRepository()));
+            ElasticSearchAdmin esa = Framework.getService(ElasticSearchAdmin.class);
+            esa.refreshRepositoryIndex(command.getRepository());
+            esa.syncSearchAndWriteAlias(esa.getIndexNameForRepository(command.getRepository()));
+        }
+    }
+
     protected void logIndexing(BulkStatus status) {
         long elapsed = status.getCompletedTime().toEpochMilli() - status.getSubmitTime().toEpochMilli();
         long wait = status.getScrollStartTime().toEpochMilli() - status.getSubmitTime().toEpochMilli();
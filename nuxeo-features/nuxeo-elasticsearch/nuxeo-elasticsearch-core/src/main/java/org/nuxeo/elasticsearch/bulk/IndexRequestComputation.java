@@ -27,6 +27,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,7 +38,6 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.VersionType;
 import org.nuxeo.ecm.core.api.CoreSession;
-import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.bulk.BulkCodecs;
@@ -50,6 +50,12 @@ import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.Record;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 /**
  * Build elasticsearch requests to index documents.
@@ -70,8 +76,27 @@ public class IndexRequestComputation extends AbstractBulkComputation {
 
     protected String bucketKey;
 
+    // @since 11.1
+    protected final Timer sourceTimer;
+
+    // @since 11.1
+    protected final Meter sourceDocs;
+
+    // @since 11.1
+    protected final Meter sourceBytes;
+
+    // @since 11.1
+    protected long bucketSourceNanos;
+
+    // @since 11.1
+    protected long bucketSourceBytes;
+
     public IndexRequestComputation() {
         super(ACTION_NAME, 1);
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        sourceTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "source"));
+        sourceDocs = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "source", "documents"));
+        sourceBytes = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "source", "bytes"));
     }
 
     @Override
@@ -79,6 +104,8 @@ public class IndexRequestComputation extends AbstractBulkComputation {
         this.bucketKey = bucketKey;
         bulkRequests.clear();
         bulkRequest = new BulkRequest();
+        bucketSourceNanos = 0;
+        bucketSourceBytes = 0;
     }
 
     @Override
@@ -87,14 +114,24 @@ public class IndexRequestComputation extends AbstractBulkComputation {
         String indexName = getIndexName(session, properties);
         DocumentModelList docs = loadDocuments(session, documentIds);
         ElasticSearchIndexing esi = Framework.getService(ElasticSearchIndexing.class);
-        for (DocumentModel doc : docs) {
-            try {
-                append(new IndexRequest(indexName, DOC_TYPE, doc.getId()).source(esi.source(doc), XContentType.JSON)
-                                                                         .versionType(VersionType.EXTERNAL)
-                                                                         .version(now));
-            } catch (IOException e) {
-                throw new NuxeoException("Cannot build source for document: " + doc.getId(), e);
-            }
+        List<BytesReference> sources;
+        long start = System.nanoTime();
+        try {
+            // serialize the whole batch at once to share lookups and buffers
+            sources = esi.source(docs);
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot build source for documents: " + documentIds, e);
+        }
+        long elapsed = System.nanoTime() - start;
+        sourceTimer.update(elapsed, TimeUnit.NANOSECONDS);
+        sourceDocs.mark(docs.size());
+        bucketSourceNanos += elapsed;
+        for (int i = 0; i < docs.size(); i++) {
+            BytesReference source = sources.get(i);
+            bucketSourceBytes += source.length();
+            append(new IndexRequest(indexName, DOC_TYPE, docs.get(i).getId()).source(source, XContentType.JSON)
+                                                                             .versionType(VersionType.EXTERNAL)
+                                                                             .version(now));
         }
     }
 
@@ -134,6 +171,12 @@ public class IndexRequestComputation extends AbstractBulkComputation {
             context.produceRecord(OUTPUT_1,
                     Record.of(bucketKey + "-missing", BulkCodecs.getDataBucketCodec().encode(dataBucket)));
         }
+        sourceBytes.mark(bucketSourceBytes);
+        if (log.isDebugEnabled() && bucketSourceNanos > 0) {
+            log.debug(String.format("Command: %s bucket: %s serialized %d documents (%d bytes) in %dms: %.0f docs/s",
+                    commandId, bucketKey, count, bucketSourceBytes, TimeUnit.NANOSECONDS.toMillis(bucketSourceNanos),
+                    count * 1_000_000_000.0 / bucketSourceNanos));
+        }
         bulkRequest = null;
         bulkRequests.clear();
     }
@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.bulk;
+
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.SYSTEM_USERNAME;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.ACTION_NAME;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.INDEX_UPDATE_ALIAS_PARAM;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.bulk.BulkQueryPartitions;
+import org.nuxeo.ecm.core.bulk.BulkService;
+import org.nuxeo.ecm.core.bulk.message.BulkCommand;
+import org.nuxeo.ecm.core.bulk.message.BulkStatus;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+
+/**
+ * Reindexes a repository into a new index using multiple index bulk commands, each one working on a disjoint range of
+ * document ids so that the partitions are scrolled and indexed in parallel.
+ * <p>
+ * Each partition has its own {@link BulkStatus}, the search alias is switched to the new index once all the partitions
+ * are completed. Partitions are computed by {@link BulkQueryPartitions#byIdRange}.
+ *
+ * @since 11.1
+ */
+public class PartitionedReindex {
+    private static final Log log = LogFactory.getLog(PartitionedReindex.class);
+
+    public static final String REINDEX_GROUP_PARAM = "reindexGroup";
+
+    public static final String KV_STORE_NAME = "elasticsearch";
+
+    protected static final String GROUP_KEY_PREFIX = "reindex.group.";
+
+    protected static final String ALIAS_KEY_SUFFIX = ".alias";
+
+    protected static final long GROUP_TTL_SECONDS = 7 * 24 * 3600;
+
+    protected static final String BASE_QUERY = "SELECT * FROM Document";
+
+    private PartitionedReindex() {
+        // utility class
+    }
+
+    /**
+     * Recreates the repository index and submits one index bulk command per partition.
+     *
+     * @return the bulk command ids, one per partition
+     */
+    public static List<String> submit(String repositoryName, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + partitions);
+        }
+        String groupId = UUID.randomUUID().toString();
+        List<BulkCommand> commands = new ArrayList<>(partitions);
+        for (String query : BulkQueryPartitions.byIdRange(BASE_QUERY, partitions)) {
+            commands.add(new BulkCommand.Builder(ACTION_NAME, query, SYSTEM_USERNAME)
+                    .repository(repositoryName)
+                    .param(INDEX_UPDATE_ALIAS_PARAM, false)
+                    .param(REINDEX_GROUP_PARAM, groupId)
+                    .build());
+        }
+        List<String> commandIds = commands.stream().map(BulkCommand::getId).collect(Collectors.toList());
+        // the group must be known before any partition completes
+        getKeyValueStore().put(GROUP_KEY_PREFIX + groupId, String.join(",", commandIds), GROUP_TTL_SECONDS);
+
+        Framework.getService(ElasticSearchAdmin.class).dropAndInitRepositoryIndex(repositoryName, false);
+        BulkService bulkService = Framework.getService(BulkService.class);
+        commands.forEach(bulkService::submit);
+        log.warn(String.format("Submitted reindexing of repository: %s in %d partitions, group: %s, commands: %s",
+                repositoryName, partitions, groupId, commandIds));
+        return commandIds;
+    }
+
+    /**
+     * Returns {@code true} only once, when all the partitions of the group of the given command are completed.
+     */
+    public static boolean isLastPartitionCompleted(BulkCommand command) {
+        String groupId = command.getParam(REINDEX_GROUP_PARAM);
+        if (groupId == null) {
+            return false;
+        }
+        KeyValueStore kv = getKeyValueStore();
+        String commandIds = kv.getString(GROUP_KEY_PREFIX + groupId);
+        if (commandIds == null) {
+            log.error("Unknown reindexing group: " + groupId + " for command: " + command.getId());
+            return false;
+        }
+        BulkService bulkService = Framework.getService(BulkService.class);
+        for (String commandId : Arrays.asList(commandIds.split(","))) {
+            BulkStatus status = bulkService.getStatus(commandId);
+            if (!BulkStatus.State.COMPLETED.equals(status.getState())) {
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Reindexing group: %s, partition: %s is %s, processed: %d/%d", groupId,
+                            commandId, status.getState(), status.getProcessed(), status.getTotal()));
+                }
+                return false;
+            }
+        }
+        // done records can be processed more than once
+        return kv.compareAndSet(GROUP_KEY_PREFIX + groupId + ALIAS_KEY_SUFFIX, null, command.getId(),
+                GROUP_TTL_SECONDS);
+    }
+
+    protected static KeyValueStore getKeyValueStore() {
+        return Framework.getService(KeyValueService.class).getKeyValueStore(KV_STORE_NAME);
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.changes;
+
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.nuxeo.ecm.core.api.CloseableCoreSession;
+import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.bulk.BulkCodecs;
+import org.nuxeo.ecm.core.bulk.message.DataBucket;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.storage.ChangeFeed;
+import org.nuxeo.ecm.core.storage.ChangeFeed.Changes;
+import org.nuxeo.elasticsearch.Timestamp;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
+import org.nuxeo.lib.stream.computation.AbstractComputation;
+import org.nuxeo.lib.stream.computation.ComputationContext;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A source computation that polls a {@link ChangeFeed} for each indexed repository and builds the elasticsearch
+ * requests for the changed documents.
+ * <p>
+ * The changes read are coalesced so that a document is indexed once per poll. Existing documents are indexed,
+ * documents that don't exist anymore are deleted from the index.
+ * <p>
+ * The position in the feed is persisted in a {@link KeyValueStore}. It is saved on the next poll, once the requests
+ * produced by the previous one have been appended to the output stream, so that no change is lost on restart: changes
+ * may be indexed twice which is harmless thanks to external versioning.
+ * <p>
+ * Outputs:
+ * <ul>
+ * <li>o1: Writes {@link DataBucket} containing elasticsearch bulk requests</li>
+ * </ul>
+ *
+ * @since 11.1
+ */
+public class ChangeFeedComputation extends AbstractComputation {
+
+    private static final Log log = LogFactory.getLog(ChangeFeedComputation.class);
+
+    public static final String NAME = "changeFeed";
+
+    public static final String KV_STORE_NAME = "elasticsearch";
+
+    protected static final String CHECKPOINT_KEY_PREFIX = "changeFeed.checkpoint.";
+
+    protected static final String TIMER_NAME = "poll";
+
+    protected static final String SELECT_DOCUMENTS_IN = "SELECT * FROM Document, Relation WHERE ecm:uuid IN (%s)";
+
+    // we want to avoid record bigger than 1MB because they requires specific configuration and impact performance
+    protected static final long MAX_RECORD_SIZE = 900_000;
+
+    protected final ChangeFeed changeFeed;
+
+    protected final int maxChanges;
+
+    protected final int batchSize;
+
+    protected final long pollIntervalMs;
+
+    // checkpoints to persist once the records of the previous poll are appended
+    protected final Map<String, String> pendingCheckpoints = new HashMap<>();
+
+    public ChangeFeedComputation(ChangeFeed changeFeed, int maxChanges, int batchSize, int pollIntervalSeconds) {
+        super(NAME, 0, 1);
+        this.changeFeed = changeFeed;
+        this.maxChanges = maxChanges;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalSeconds * 1000L;
+    }
+
+    @Override
+    public void init(ComputationContext context) {
+        super.init(context);
+        context.setTimer(TIMER_NAME, System.currentTimeMillis() + pollIntervalMs);
+    }
+
+    @Override
+    public void processRecord(ComputationContext context, String inputStreamName, Record record) {
+        // source computation, no input
+    }
+
+    @Override
+    public void processTimer(ComputationContext context, String key, long timestamp) {
+        savePendingCheckpoints();
+        ElasticSearchAdmin esa = Framework.getService(ElasticSearchAdmin.class);
+        boolean produced = false;
+        for (String repositoryName : esa.getRepositoryNames()) {
+            produced |= processChanges(context, esa, repositoryName);
+        }
+        if (produced) {
+            context.askForCheckpoint();
+        }
+        context.setTimer(TIMER_NAME, System.currentTimeMillis() + pollIntervalMs);
+    }
+
+    protected boolean processChanges(ComputationContext context, ElasticSearchAdmin esa, String repositoryName) {
+        String checkpointKey = CHECKPOINT_KEY_PREFIX + repositoryName;
+        String checkpoint = getKeyValueStore().getString(checkpointKey);
+        Changes changes = changeFeed.read(repositoryName, checkpoint, maxChanges);
+        if (!Objects.equals(checkpoint, changes.getCheckpoint())) {
+            pendingCheckpoints.put(checkpointKey, changes.getCheckpoint());
+        }
+        if (changes.isEmpty()) {
+            return false;
+        }
+        // coalesce multiple changes on the same document
+        List<String> documentIds = new ArrayList<>(new LinkedHashSet<>(changes.getDocumentIds()));
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Repository: %s, %d changes on %d documents, checkpoint: %s", repositoryName,
+                    changes.getDocumentIds().size(), documentIds.size(), changes.getCheckpoint()));
+        }
+        String indexName = esa.getWriteIndexName(esa.getIndexNameForRepository(repositoryName));
+        String bucketId = NAME + "-" + repositoryName;
+        List<BulkRequest> bulkRequests = new ArrayList<>();
+        for (List<String> batch : Lists.partition(documentIds, batchSize)) {
+            TransactionHelper.runInTransaction(() -> buildRequests(repositoryName, indexName, batch, bulkRequests));
+        }
+        int i = 0;
+        for (BulkRequest bulkRequest : bulkRequests) {
+            if (bulkRequest.numberOfActions() > 0) {
+                DataBucket dataBucket = new DataBucket(bucketId, bulkRequest.numberOfActions(), toBytes(bulkRequest));
+                context.produceRecord(OUTPUT_1,
+                        Record.of(bucketId + "-" + i++, BulkCodecs.getDataBucketCodec().encode(dataBucket)));
+            }
+        }
+        return true;
+    }
+
+    protected void buildRequests(String repositoryName, String indexName, List<String> documentIds,
+            List<BulkRequest> bulkRequests) {
+        long now = Timestamp.currentTimeMicros();
+        List<DocWriteRequest<?>> requests = new ArrayList<>(documentIds.size());
+        try (CloseableCoreSession session = CoreInstance.openCoreSessionSystem(repositoryName)) {
+            String ids = documentIds.stream().map(NXQL::escapeString).collect(Collectors.joining(", "));
+            DocumentModelList docs = session.query(String.format(SELECT_DOCUMENTS_IN, ids));
+            List<BytesReference> sources = Framework.getService(ElasticSearchIndexing.class).source(docs);
+            Set<String> existing = new HashSet<>(docs.size());
+            for (int i = 0; i < docs.size(); i++) {
+                DocumentModel doc = docs.get(i);
+                existing.add(doc.getId());
+                requests.add(new IndexRequest(indexName, DOC_TYPE, doc.getId()).source(sources.get(i),
+                        XContentType.JSON).versionType(VersionType.EXTERNAL).version(now));
+            }
+            for (String documentId : documentIds) {
+                if (!existing.contains(documentId)) {
+                    requests.add(new DeleteRequest(indexName, DOC_TYPE, documentId).versionType(VersionType.EXTERNAL)
+                                                                                   .version(now));
+                }
+            }
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot build sources for documents: " + documentIds, e);
+        }
+        BulkRequest bulkRequest = bulkRequests.isEmpty() ? null : bulkRequests.get(bulkRequests.size() - 1);
+        for (DocWriteRequest<?> request : requests) {
+            long size = request instanceof IndexRequest ? ((IndexRequest) request).source().length() : 0;
+            boolean full = bulkRequest != null && bulkRequest.numberOfActions() > 0
+                    && bulkRequest.estimatedSizeInBytes() + size > MAX_RECORD_SIZE;
+            if (bulkRequest == null || full) {
+                // create multiple elastic bulk requests when we exceed the record size
+                bulkRequest = new BulkRequest();
+                bulkRequests.add(bulkRequest);
+            }
+            bulkRequest.add(request);
+        }
+    }
+
+    protected void savePendingCheckpoints() {
+        if (pendingCheckpoints.isEmpty()) {
+            return;
+        }
+        KeyValueStore kvStore = getKeyValueStore();
+        pendingCheckpoints.forEach(kvStore::put);
+        pendingCheckpoints.clear();
+    }
+
+    protected KeyValueStore getKeyValueStore() {
+        return Framework.getService(KeyValueService.class).getKeyValueStore(KV_STORE_NAME);
+    }
+
+    protected byte[] toBytes(BulkRequest request) {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            request.writeTo(out);
+            return BytesReference.toBytes(out.bytes());
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot write elasticsearch bulk request " + request, e);
+        }
+    }
+
+}
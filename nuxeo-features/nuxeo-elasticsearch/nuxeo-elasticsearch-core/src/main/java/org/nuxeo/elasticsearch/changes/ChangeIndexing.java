@@ -0,0 +1,97 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.changes;
+
+import static org.nuxeo.elasticsearch.bulk.IndexAction.BULK_FLUSH_INTERVAL_DEFAULT;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.BULK_FLUSH_INTERVAL_OPTION;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.ES_BULK_ACTION_DEFAULT;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.ES_BULK_ACTION_OPTION;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.ES_BULK_SIZE_DEFAULT;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.ES_BULK_SIZE_OPTION;
+import static org.nuxeo.elasticsearch.bulk.IndexAction.getOptionAsInteger;
+import static org.nuxeo.lib.stream.computation.AbstractComputation.INPUT_1;
+import static org.nuxeo.lib.stream.computation.AbstractComputation.OUTPUT_1;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.ChangeFeed;
+import org.nuxeo.elasticsearch.bulk.BulkIndexComputation;
+import org.nuxeo.lib.stream.computation.Topology;
+import org.nuxeo.runtime.stream.StreamProcessorTopology;
+
+/**
+ * A stream processor indexing the documents changed in the repositories, as reported by a {@link ChangeFeed}, instead
+ * of relying on core events.
+ * <p>
+ * The requests built by the {@link ChangeFeedComputation} are submitted by a {@link BulkIndexComputation}.
+ *
+ * @since 11.1
+ */
+public class ChangeIndexing implements StreamProcessorTopology {
+
+    public static final String BULK_INDEX_NAME = "changeBulkIndex";
+
+    public static final String CHANGE_FEED_CLASS_OPTION = "changeFeedClass";
+
+    public static final String MAX_CHANGES_OPTION = "maxChanges";
+
+    public static final int MAX_CHANGES_DEFAULT = 10_000;
+
+    public static final String BATCH_SIZE_OPTION = "batchSize";
+
+    public static final int BATCH_SIZE_DEFAULT = 100;
+
+    public static final String POLL_INTERVAL_OPTION = "pollIntervalSeconds";
+
+    public static final int POLL_INTERVAL_DEFAULT = 5;
+
+    @Override
+    public Topology getTopology(Map<String, String> options) {
+        ChangeFeed changeFeed = newChangeFeed(options.get(CHANGE_FEED_CLASS_OPTION));
+        int maxChanges = getOptionAsInteger(options, MAX_CHANGES_OPTION, MAX_CHANGES_DEFAULT);
+        int batchSize = getOptionAsInteger(options, BATCH_SIZE_OPTION, BATCH_SIZE_DEFAULT);
+        int pollInterval = getOptionAsInteger(options, POLL_INTERVAL_OPTION, POLL_INTERVAL_DEFAULT);
+        int esBulkSize = getOptionAsInteger(options, ES_BULK_SIZE_OPTION, ES_BULK_SIZE_DEFAULT);
+        int esBulkActions = getOptionAsInteger(options, ES_BULK_ACTION_OPTION, ES_BULK_ACTION_DEFAULT);
+        int esBulkFlushInterval = getOptionAsInteger(options, BULK_FLUSH_INTERVAL_OPTION, BULK_FLUSH_INTERVAL_DEFAULT);
+        return Topology.builder()
+                       .addComputation(
+                               () -> new ChangeFeedComputation(changeFeed, maxChanges, batchSize, pollInterval),
+                               Collections.singletonList(OUTPUT_1 + ":" + BULK_INDEX_NAME))
+                       .addComputation(() -> new BulkIndexComputation(BULK_INDEX_NAME, esBulkSize, esBulkActions,
+                               esBulkFlushInterval, false),
+                               Collections.singletonList(INPUT_1 + ":" + BULK_INDEX_NAME))
+                       .build();
+    }
+
+    protected ChangeFeed newChangeFeed(String className) {
+        if (StringUtils.isBlank(className)) {
+            throw new NuxeoException("Missing option: " + CHANGE_FEED_CLASS_OPTION);
+        }
+        try {
+            return (ChangeFeed) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new NuxeoException("Cannot instantiate change feed: " + className, e);
+        }
+    }
+
+}
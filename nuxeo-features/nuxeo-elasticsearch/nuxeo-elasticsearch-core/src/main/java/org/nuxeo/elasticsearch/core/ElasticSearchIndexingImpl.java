@@ -26,8 +26,11 @@ import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_SIZE
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.PATH_FIELD;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -42,6 +45,7 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
@@ -63,6 +67,7 @@ import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
 import org.nuxeo.elasticsearch.io.JsonESDocumentWriter;
+import org.nuxeo.elasticsearch.io.JsonESDocumentWriter.BatchContext;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 
@@ -132,6 +137,11 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         throw new UnsupportedOperationException("Not implemented");
     }
 
+    @Override
+    public List<String> reindexRepository(String repositoryName, int partitions) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
     @Override
     public void indexNonRecursive(List<IndexingCommand> cmds) {
         int nbCommands = cmds.size();
@@ -162,10 +172,8 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     }
 
     void processBulkIndexCommands(List<IndexingCommand> cmds) {
-        BulkRequest bulkRequest = new BulkRequest();
         Set<String> docIds = new HashSet<>(cmds.size());
-        int bulkSize = 0;
-        final int maxBulkSize = getMaxBulkSize();
+        Map<IndexingCommand, DocumentModel> docs = new LinkedHashMap<>(cmds.size());
         for (IndexingCommand cmd : cmds) {
             if (cmd.getType() == Type.DELETE || cmd.getType() == Type.UPDATE_DIRECT_CHILDREN) {
                 continue;
@@ -175,25 +183,42 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
                 continue;
             }
             try {
-                IndexRequest idxRequest = buildEsIndexingRequest(cmd);
-                if (idxRequest != null) {
-                    bulkSize += idxRequest.source().length();
-                    bulkRequest.add(idxRequest);
+                DocumentModel doc = cmd.getTargetDocument();
+                if (doc != null) {
+                    docs.put(cmd, doc);
                 }
-            } catch (BlobNotFoundException be) {
-                log.info("Ignore indexing command in bulk, blob does not exists anymore: " + cmd);
             } catch (ConcurrentUpdateException e) {
                 throw e; // bubble up, usually until AbstractWork catches it and maybe retries
             } catch (DocumentNotFoundException e) {
                 log.info("Ignore indexing command in bulk, doc does not exists anymore: " + cmd);
-            } catch (IllegalArgumentException e) {
-                log.error("Ignore indexing command in bulk, fail to create request: " + cmd, e);
             }
-            if (bulkSize > maxBulkSize) {
-                log.warn("Max bulk size reached " + bulkSize + ", sending bulk command");
-                sendBulkCommand(bulkRequest, bulkSize);
-                bulkRequest = new BulkRequest();
-                bulkSize = 0;
+        }
+        BulkRequest bulkRequest = new BulkRequest();
+        int bulkSize = 0;
+        final int maxBulkSize = getMaxBulkSize();
+        // share the tags, security and schema lookups between the documents of the bulk
+        try (BatchContext ignored = jsonESDocumentWriter.prefetch(docs.values())) {
+            for (Map.Entry<IndexingCommand, DocumentModel> entry : docs.entrySet()) {
+                IndexingCommand cmd = entry.getKey();
+                try {
+                    IndexRequest idxRequest = buildEsIndexingRequest(cmd, entry.getValue());
+                    bulkSize += idxRequest.source().length();
+                    bulkRequest.add(idxRequest);
+                } catch (BlobNotFoundException be) {
+                    log.info("Ignore indexing command in bulk, blob does not exists anymore: " + cmd);
+                } catch (ConcurrentUpdateException e) {
+                    throw e; // bubble up, usually until AbstractWork catches it and maybe retries
+                } catch (DocumentNotFoundException e) {
+                    log.info("Ignore indexing command in bulk, doc does not exists anymore: " + cmd);
+                } catch (IllegalArgumentException e) {
+                    log.error("Ignore indexing command in bulk, fail to create request: " + cmd, e);
+                }
+                if (bulkSize > maxBulkSize) {
+                    log.warn("Max bulk size reached " + bulkSize + ", sending bulk command");
+                    sendBulkCommand(bulkRequest, bulkSize);
+                    bulkRequest = new BulkRequest();
+                    bulkSize = 0;
+                }
             }
         }
         sendBulkCommand(bulkRequest, bulkSize);
@@ -410,6 +435,15 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         if (doc == null) {
             return null;
         }
+        return buildEsIndexingRequest(cmd, doc);
+    }
+
+    /**
+     * Return indexing request for the command target document.
+     *
+     * @since 11.1
+     */
+    IndexRequest buildEsIndexingRequest(IndexingCommand cmd, DocumentModel doc) {
         try {
             IndexRequest request = new IndexRequest(getWriteIndexForRepository(cmd.getRepositoryName()), DOC_TYPE,
                     cmd.getTargetDocumentId()).source(source(doc), XContentType.JSON);
@@ -434,4 +468,27 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             return out.bytes();
         }
     }
+
+    /**
+     * Writes all the documents with a single generator and buffer, copying each source out of the buffer before
+     * reusing it.
+     *
+     * @since 11.1
+     */
+    @Override
+    public List<BytesReference> source(List<DocumentModel> docs) throws IOException {
+        List<BytesReference> sources = new ArrayList<>(docs.size());
+        BytesStreamOutput out = new BytesStreamOutput();
+        try (BatchContext ignored = jsonESDocumentWriter.prefetch(docs);
+                JsonGenerator jsonGen = JSON_FACTORY.createGenerator(out)) {
+            // sources are written one after the other in the same generator
+            jsonGen.setRootValueSeparator(null);
+            for (DocumentModel doc : docs) {
+                jsonESDocumentWriter.writeESDocument(jsonGen, doc, null, null);
+                sources.add(new BytesArray(BytesReference.toBytes(out.bytes())));
+                out.reset();
+            }
+        }
+        return sources;
+    }
 }
@@ -24,19 +24,25 @@ import static org.nuxeo.ecm.core.api.security.SecurityConstants.EVERYONE;
 import static org.nuxeo.ecm.core.api.security.SecurityConstants.UNSUPPORTED_ACL;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.servlet.ServletRequest;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.automation.core.util.JSONPropertyWriter;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.model.Property;
 import org.nuxeo.ecm.core.api.security.ACE;
 import org.nuxeo.ecm.core.api.security.ACL;
@@ -53,11 +59,115 @@ import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * JSon writer that outputs a format ready to eat by elasticsearch.
+ * <p>
+ * Since 11.1, when several documents are written in a row, {@link #prefetch(Collection)} can be used to share the tag,
+ * security and schema lookups between them.
  *
  * @since 5.9.3
  */
 public class JsonESDocumentWriter {
 
+    private static final Log log = LogFactory.getLog(JsonESDocumentWriter.class);
+
+    /**
+     * The batch of the current thread, if any.
+     *
+     * @since 11.1
+     */
+    protected static final ThreadLocal<BatchContext> CURRENT_BATCH = new ThreadLocal<>();
+
+    /**
+     * Data prefetched for a batch of documents, available to the writer until closed.
+     *
+     * @since 11.1
+     */
+    public static class BatchContext implements AutoCloseable {
+
+        protected final BatchContext previous;
+
+        protected final Set<String> browsePermissions;
+
+        /** Tags by document id, {@code null} if they could not be prefetched. */
+        protected final Map<String, Set<String>> tags;
+
+        /** Property writers by schema name. */
+        protected final Map<String, JSONPropertyWriter> propertyWriters = new HashMap<>();
+
+        protected BatchContext(Set<String> browsePermissions, Map<String, Set<String>> tags,
+                Collection<DocumentModel> docs) {
+            previous = CURRENT_BATCH.get();
+            this.browsePermissions = browsePermissions;
+            this.tags = tags;
+            for (DocumentModel doc : docs) {
+                for (String schema : doc.getSchemas()) {
+                    propertyWriters.computeIfAbsent(schema, JsonESDocumentWriter::createPropertyWriter);
+                }
+            }
+            CURRENT_BATCH.set(this);
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT_BATCH.remove();
+            } else {
+                CURRENT_BATCH.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Prefetches the data needed to write the given documents. The prefetched data is used by the writer in the current
+     * thread until the returned context is closed:
+     *
+     * <pre>
+     * try (BatchContext batch = writer.prefetch(docs)) {
+     *     for (DocumentModel doc : docs) {
+     *         writer.writeESDocument(jg, doc, null, null);
+     *     }
+     * }
+     * </pre>
+     *
+     * @since 11.1
+     */
+    public BatchContext prefetch(Collection<DocumentModel> docs) {
+        return new BatchContext(getBrowsePermissions(), prefetchTags(docs), docs);
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected Map<String, Set<String>> prefetchTags(Collection<DocumentModel> docs) {
+        TagService tagService = Framework.getService(TagService.class);
+        if (tagService == null) {
+            return null;
+        }
+        Map<String, Set<String>> tags = new HashMap<>();
+        try {
+            // documents may come from different repositories
+            Map<String, List<DocumentModel>> docsByRepository = docs.stream()
+                                                                    .collect(Collectors.groupingBy(
+                                                                            DocumentModel::getRepositoryName));
+            for (List<DocumentModel> repositoryDocs : docsByRepository.values()) {
+                CoreSession session = repositoryDocs.get(0).getCoreSession();
+                List<String> docIds = repositoryDocs.stream().map(DocumentModel::getId).collect(Collectors.toList());
+                tags.putAll(tagService.getTags(session, docIds));
+            }
+        } catch (NuxeoException e) {
+            log.debug("Cannot prefetch tags, fallback to per document lookup", e);
+            return null;
+        }
+        return tags;
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected Set<String> getBrowsePermissions() {
+        SecurityService securityService = Framework.getService(SecurityService.class);
+        return new HashSet<>(Arrays.asList(securityService.getPermissionsToCheck(BROWSE)));
+    }
+
     /**
      * @since 7.2
      */
@@ -102,10 +212,19 @@ public class JsonESDocumentWriter {
             jg.writeString(facet);
         }
         jg.writeEndArray();
-        TagService tagService = Framework.getService(TagService.class);
-        if (tagService != null && tagService.supportsTag(session, docId)) {
+        BatchContext batch = CURRENT_BATCH.get();
+        Collection<String> tags = null;
+        if (batch != null && batch.tags != null) {
+            tags = batch.tags.get(docId);
+        } else {
+            TagService tagService = Framework.getService(TagService.class);
+            if (tagService != null && tagService.supportsTag(session, docId)) {
+                tags = tagService.getTags(session, docId);
+            }
+        }
+        if (tags != null) {
             jg.writeArrayFieldStart("ecm:tag");
-            for (String tag : tagService.getTags(session, docId)) {
+            for (String tag : tags) {
                 jg.writeString(tag);
             }
             jg.writeEndArray();
@@ -116,8 +235,7 @@ public class JsonESDocumentWriter {
             jg.writeNumberField("ecm:pos", pos.longValue());
         }
         // Add a positive ACL only
-        SecurityService securityService = Framework.getService(SecurityService.class);
-        List<String> browsePermissions = new ArrayList<>(Arrays.asList(securityService.getPermissionsToCheck(BROWSE)));
+        Collection<String> browsePermissions = batch != null ? batch.browsePermissions : getBrowsePermissions();
         ACP acp = doc.getACP();
         if (acp == null) {
             acp = new ACPImpl();
@@ -190,18 +308,15 @@ public class JsonESDocumentWriter {
             return;
         }
 
-        SchemaManager schemaManager = Framework.getService(SchemaManager.class);
-        String prefix = schemaManager.getSchema(schema).getNamespace().prefix;
-        if (prefix == null || prefix.length() == 0) {
-            prefix = schema;
-        }
-        JSONPropertyWriter writer = JSONPropertyWriter.create().writeNull(false).writeEmpty(false).prefix(prefix);
-
+        JSONPropertyWriter writer;
         if (request != null) {
+            writer = createPropertyWriter(schema);
             DownloadService downloadService = Framework.getService(DownloadService.class);
             String blobUrlPrefix = VirtualHostHelper.getBaseURL(request)
                     + downloadService.getDownloadUrl(doc, null, null) + "/";
             writer.filesBaseUrl(blobUrlPrefix);
+        } else {
+            writer = getPropertyWriter(schema);
         }
 
         for (Property p : properties) {
@@ -209,4 +324,29 @@ public class JsonESDocumentWriter {
         }
     }
 
+    /**
+     * Returns the property writer of a schema, shared by the documents of the current batch if any.
+     *
+     * @since 11.1
+     */
+    protected static JSONPropertyWriter getPropertyWriter(String schema) {
+        BatchContext batch = CURRENT_BATCH.get();
+        if (batch == null) {
+            return createPropertyWriter(schema);
+        }
+        return batch.propertyWriters.computeIfAbsent(schema, JsonESDocumentWriter::createPropertyWriter);
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected static JSONPropertyWriter createPropertyWriter(String schema) {
+        SchemaManager schemaManager = Framework.getService(SchemaManager.class);
+        String prefix = schemaManager.getSchema(schema).getNamespace().prefix;
+        if (prefix == null || prefix.length() == 0) {
+            prefix = schema;
+        }
+        return JSONPropertyWriter.create().writeNull(false).writeEmpty(false).prefix(prefix);
+    }
+
 }
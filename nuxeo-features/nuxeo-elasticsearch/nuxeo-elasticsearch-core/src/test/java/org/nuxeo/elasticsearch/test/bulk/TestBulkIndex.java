@@ -25,6 +25,7 @@ import static org.nuxeo.elasticsearch.bulk.IndexAction.INDEX_UPDATE_ALIAS_PARAM;
 import static org.nuxeo.elasticsearch.bulk.IndexAction.REFRESH_INDEX_PARAM;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -43,7 +44,9 @@ import org.nuxeo.ecm.core.test.annotations.Granularity;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
+import org.nuxeo.elasticsearch.query.NxQueryBuilder;
 import org.nuxeo.elasticsearch.test.RepositoryElasticSearchFeature;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Deploy;
@@ -66,6 +69,9 @@ public class TestBulkIndex {
     @Inject
     protected ElasticSearchAdmin esa;
 
+    @Inject
+    protected ElasticSearchIndexing esi;
+
     @Inject
     protected BulkService bulkService;
 
@@ -102,4 +108,28 @@ public class TestBulkIndex {
         BulkStatus status = bulkService.getStatus(commandId);
         assertEquals(BulkStatus.State.COMPLETED, status.getState());
     }
+
+    @Test
+    public void testPartitionedReindex() throws InterruptedException {
+        List<String> commandIds = esi.reindexRepository(session.getRepositoryName(), 3);
+        assertEquals(3, commandIds.size());
+        long total = 0;
+        for (String commandId : commandIds) {
+            assertTrue("command timeout", bulkService.await(commandId, Duration.ofSeconds(60)));
+            BulkStatus status = bulkService.getStatus(commandId);
+            assertEquals(BulkStatus.State.COMPLETED, status.getState());
+            total += status.getTotal();
+        }
+        assertEquals(session.query("SELECT * FROM Document").totalSize(), total);
+
+        // the alias is switched asynchronously once the last partition is completed
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(20);
+        long count;
+        do {
+            Thread.sleep(200);
+            esa.refresh();
+            count = ess.query(new NxQueryBuilder(session).nxql("SELECT * FROM File").limit(0)).totalSize();
+        } while (count != 20 && System.currentTimeMillis() < deadline);
+        assertEquals(20, count);
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.test.changes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.ChangeFeed;
+
+/**
+ * A {@link ChangeFeed} keeping the changes in memory, in place of a repository change log.
+ * <p>
+ * Changes are appended explicitly using {@link #append(String, String...)}, the checkpoint is the position in the log.
+ * This is meant for tests and single node setups only.
+ *
+ * @since 11.1
+ */
+public class InMemoryChangeFeed implements ChangeFeed {
+
+    protected static final Map<String, List<String>> LOGS = new ConcurrentHashMap<>();
+
+    /**
+     * Appends changed documents to the log of a repository.
+     */
+    public static void append(String repositoryName, String... documentIds) {
+        List<String> log = LOGS.computeIfAbsent(repositoryName, k -> new ArrayList<>());
+        synchronized (log) {
+            log.addAll(Arrays.asList(documentIds));
+        }
+    }
+
+    /**
+     * Clears all the logs.
+     */
+    public static void clear() {
+        LOGS.clear();
+    }
+
+    @Override
+    public Changes read(String repositoryName, String checkpoint, int maxChanges) {
+        int position;
+        try {
+            position = checkpoint == null ? 0 : Integer.parseInt(checkpoint);
+        } catch (NumberFormatException e) {
+            throw new NuxeoException("Invalid checkpoint: " + checkpoint, e);
+        }
+        List<String> log = LOGS.get(repositoryName);
+        if (log == null) {
+            return new Changes(null, checkpoint);
+        }
+        synchronized (log) {
+            int end = Math.min(log.size(), position + maxChanges);
+            if (position >= end) {
+                return new Changes(null, checkpoint);
+            }
+            return new Changes(new ArrayList<>(log.subList(position, end)), String.valueOf(end));
+        }
+    }
+
+}
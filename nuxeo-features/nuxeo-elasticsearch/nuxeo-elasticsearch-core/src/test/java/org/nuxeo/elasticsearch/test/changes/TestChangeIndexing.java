@@ -0,0 +1,131 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.test.changes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.bulk.CoreBulkFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchService;
+import org.nuxeo.elasticsearch.changes.ChangeFeedComputation;
+import org.nuxeo.elasticsearch.query.NxQueryBuilder;
+import org.nuxeo.elasticsearch.test.RepositoryElasticSearchFeature;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ RepositoryElasticSearchFeature.class, CoreBulkFeature.class })
+@Deploy("org.nuxeo.elasticsearch.core:disable-listener-contrib.xml")
+@Deploy("org.nuxeo.elasticsearch.core:elasticsearch-test-contrib.xml")
+@Deploy("org.nuxeo.elasticsearch.core:elasticsearch-test-change-indexing-contrib.xml")
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestChangeIndexing {
+
+    @Inject
+    protected CoreSession session;
+
+    @Inject
+    protected ElasticSearchService ess;
+
+    @Inject
+    protected ElasticSearchAdmin esa;
+
+    @Inject
+    protected KeyValueService kvService;
+
+    @Before
+    public void init() {
+        InMemoryChangeFeed.clear();
+    }
+
+    @After
+    public void cleanup() {
+        InMemoryChangeFeed.clear();
+    }
+
+    @Test
+    public void testIndexChanges() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            DocumentModel doc = session.createDocumentModel("/", "file" + i, "File");
+            doc.setPropertyValue("dc:title", "File" + i);
+            ids.add(session.createDocument(doc).getId());
+        }
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        esa.refresh();
+        // no event driven indexing
+        assertEquals(0, countIndexedFiles());
+
+        // changes are coalesced
+        InMemoryChangeFeed.append(session.getRepositoryName(), ids.toArray(new String[0]));
+        InMemoryChangeFeed.append(session.getRepositoryName(), ids.get(0), ids.get(1));
+        waitForIndexedFiles(5);
+
+        // deleted documents are removed from the index
+        session.removeDocument(new IdRef(ids.get(4)));
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        InMemoryChangeFeed.append(session.getRepositoryName(), ids.get(4));
+        waitForIndexedFiles(4);
+
+        // checkpoint of the last read is saved on the next poll
+        String checkpoint = kvService.getKeyValueStore(ChangeFeedComputation.KV_STORE_NAME)
+                                     .getString("changeFeed.checkpoint." + session.getRepositoryName());
+        assertTrue(checkpoint, "7".equals(checkpoint) || "8".equals(checkpoint));
+    }
+
+    protected long countIndexedFiles() {
+        return ess.query(new NxQueryBuilder(session).nxql("SELECT * FROM File").limit(0)).totalSize();
+    }
+
+    protected void waitForIndexedFiles(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        long count;
+        do {
+            Thread.sleep(500);
+            esa.refresh();
+            count = countIndexedFiles();
+        } while (count != expected && System.currentTimeMillis() < deadline);
+        assertEquals(expected, count);
+    }
+
+}
@@ -20,12 +20,15 @@ package org.nuxeo.elasticsearch.test.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import org.elasticsearch.common.bytes.BytesReference;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +38,7 @@ import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
 import org.nuxeo.elasticsearch.io.DocumentModelReaders;
 import org.nuxeo.elasticsearch.io.JsonESDocumentWriter;
@@ -161,4 +165,22 @@ public class TestDocumentModelReader {
 
         Assert.assertEquals(vcsJson, esJson);
     }
+
+    @Test
+    public void IGetTheSameSourceInBatch() throws Exception {
+        List<DocumentModel> docs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            DocumentModel doc = session.createDocumentModel("/", "file" + i, "File");
+            doc.setPropertyValue("dc:title", "File " + i);
+            docs.add(session.createDocument(doc));
+        }
+        session.save();
+
+        ElasticSearchIndexing esi = Framework.getService(ElasticSearchIndexing.class);
+        List<BytesReference> sources = esi.source(docs);
+        Assert.assertEquals(3, sources.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(esi.source(docs.get(i)).utf8ToString(), sources.get(i).utf8ToString());
+        }
+    }
 }
@@ -204,6 +204,9 @@ public interface ImagingService {
     /**
      * Compute all the registered {@link PictureConversion} For each picture template the
      * {@link ImagingService#computeViewFor(Blob, PictureConversion, ImageInfo, boolean)} method is call
+     * <p>
+     * The document is available to the conversion chains as the {@code pictureDocument} context variable. Since 11.1 it
+     * can be a detached document, in which case it is used as is and no session is needed.
      *
      * @since 7.1
      */
@@ -345,8 +345,14 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
         boolean txWasActive = false;
         try (OperationContext context = new OperationContext()) {
             if (doc != null) {
-                DocumentModel pictureDocument = doc.getCoreSession().getDocument(doc.getRef());
-                pictureDocument.detach(true);
+                DocumentModel pictureDocument;
+                if (doc.getSessionId() == null) {
+                    // already detached, for instance when computed outside of the session thread
+                    pictureDocument = doc;
+                } else {
+                    pictureDocument = doc.getCoreSession().getDocument(doc.getRef());
+                    pictureDocument.detach(true);
+                }
                 context.put("pictureDocument", pictureDocument);
             }
             context.setInput(blob);
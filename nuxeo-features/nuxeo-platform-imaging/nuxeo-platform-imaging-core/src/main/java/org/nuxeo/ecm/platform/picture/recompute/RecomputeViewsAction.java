@@ -22,34 +22,43 @@ import static org.nuxeo.ecm.core.api.CoreSession.ALLOW_VERSION_WRITE;
 import static org.nuxeo.ecm.core.api.versioning.VersioningService.DISABLE_AUTO_CHECKOUT;
 import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.STATUS_STREAM;
 import static org.nuxeo.ecm.core.bulk.action.SetPropertiesAction.PARAM_DISABLE_AUDIT;
+import static org.nuxeo.ecm.platform.picture.api.ImagingDocumentConstants.PICTURE_INFO_PROPERTY;
+import static org.nuxeo.ecm.platform.picture.api.adapters.AbstractPictureAdapter.VIEWS_PROPERTY;
 import static org.nuxeo.ecm.platform.picture.listener.PictureViewsGenerationListener.DISABLE_PICTURE_VIEWS_GENERATION_LISTENER;
 import static org.nuxeo.lib.stream.computation.AbstractComputation.INPUT_1;
 import static org.nuxeo.lib.stream.computation.AbstractComputation.OUTPUT_1;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
-import org.nuxeo.ecm.core.api.DocumentNotFoundException;
-import org.nuxeo.ecm.core.api.IdRef;
-import org.nuxeo.ecm.core.api.model.Property;
-import org.nuxeo.ecm.core.bulk.action.computation.AbstractBulkComputation;
+import org.nuxeo.ecm.core.bulk.action.computation.AbstractRecomputeComputation;
 import org.nuxeo.ecm.core.bulk.message.BulkCommand;
 import org.nuxeo.ecm.core.event.Event;
 import org.nuxeo.ecm.core.event.EventService;
 import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
-import org.nuxeo.ecm.platform.picture.api.adapters.PictureResourceAdapter;
+import org.nuxeo.ecm.platform.picture.api.ImageInfo;
+import org.nuxeo.ecm.platform.picture.api.ImagingService;
+import org.nuxeo.ecm.platform.picture.api.PictureView;
 import org.nuxeo.lib.stream.computation.Topology;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.stream.StreamProcessorTopology;
 
 /**
  * BAF Computation that fills picture views for the blob property described by the given xpath.
+ * <p>
+ * A detached copy of the document is made on the computation thread, the blob is downloaded to a local file in the
+ * download stage, the image info and views are computed in the conversion stage using the detached document, which is
+ * available to the conversion chains as {@code pictureDocument}.
  *
  * @since 11.1
  */
@@ -62,19 +71,23 @@ public class RecomputeViewsAction implements StreamProcessorTopology {
     @Override
     public Topology getTopology(Map<String, String> options) {
         return Topology.builder()
-                .addComputation(RecomputeViewsComputation::new, //
+                .addComputation(() -> new RecomputeViewsComputation(options), //
                         Arrays.asList(INPUT_1 + ":" + ACTION_NAME, OUTPUT_1 + ":" + STATUS_STREAM))
                 .build();
     }
 
-    public static class RecomputeViewsComputation extends AbstractBulkComputation {
+    public static class RecomputeViewsComputation extends AbstractRecomputeComputation<PictureSource, PictureSource> {
 
         public static final String PICTURE_VIEWS_GENERATION_DONE_EVENT = "pictureViewsGenerationDone";
 
         protected String xpath;
 
         public RecomputeViewsComputation() {
-            super(ACTION_NAME);
+            this(new HashMap<>());
+        }
+
+        public RecomputeViewsComputation(Map<String, String> options) {
+            super(ACTION_NAME, options);
         }
 
         @Override
@@ -84,46 +97,103 @@ public class RecomputeViewsAction implements StreamProcessorTopology {
         }
 
         @Override
-        protected void compute(CoreSession session, List<String> ids, Map<String, Serializable> properties) {
-
-            for (String docId : ids) {
+        protected PictureSource getSource(CoreSession session, DocumentModel doc) {
+            Blob blob = (Blob) doc.getPropertyValue(xpath);
+            if (blob == null) {
+                // do nothing
+                return null;
+            }
+            // the conversion stage runs without session
+            DocumentModel detached = session.getDocument(doc.getRef());
+            detached.detach(true);
+            return new PictureSource(detached, blob);
+        }
 
-                if (!session.exists(new IdRef(docId))) {
-                    continue;
-                }
+        @Override
+        protected PictureSource download(PictureSource source) throws IOException {
+            Blob blob = source.blob;
+            File file = blob.getFile();
+            if (file == null) {
+                file = Framework.createTempFile("nuxeoImage", ".jpg");
+                Framework.trackFile(file, source);
+                blob.transferTo(file);
+                // use a persistent blob with our file
+                String digest = blob.getDigest();
+                blob = Blobs.createBlob(file, blob.getMimeType(), blob.getEncoding(), blob.getFilename());
+                blob.setDigest(digest);
+            }
+            source.file = file;
+            source.blob = blob;
+            return source;
+        }
 
-                DocumentModel workingDocument = session.getDocument(new IdRef(docId));
-                Property fileProp = workingDocument.getProperty(xpath);
-                Blob blob = (Blob) fileProp.getValue();
-                if (blob == null) {
-                    // do nothing
-                    continue;
-                }
+        @Override
+        protected PictureSource convert(PictureSource source) throws IOException {
+            ImagingService imagingService = Framework.getService(ImagingService.class);
+            Blob blob = source.blob;
+            String type = blob.getMimeType();
+            if (type == null || type.equals("application/octet-stream")) {
+                type = imagingService.getImageMimeType(source.file);
+                blob.setMimeType(type);
+            }
+            if (type == null || type.equals("application/octet-stream")) {
+                return source;
+            }
+            source.imageInfo = imagingService.getImageInfo(blob);
+            if (source.imageInfo != null) {
+                source.views = imagingService.computeViewsFor(source.doc, blob, source.imageInfo, true);
+            }
+            return source;
+        }
 
-                String title = workingDocument.getTitle();
-                try {
-                    PictureResourceAdapter picture = workingDocument.getAdapter(PictureResourceAdapter.class);
-                    picture.fillPictureViews(blob, blob.getFilename(), title, null);
-                } catch (DocumentNotFoundException e) {
-                    // a parent of the document may have been deleted.
-                    continue;
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+        @Override
+        protected void save(CoreSession session, DocumentModel workingDocument, PictureSource source) {
+            if (source.imageInfo != null) {
+                workingDocument.setPropertyValue(PICTURE_INFO_PROPERTY, (Serializable) source.imageInfo.toMap());
+            }
+            if (source.views != null) {
+                List<Map<String, Serializable>> views = new ArrayList<>(source.views.size());
+                for (PictureView pictureView : source.views) {
+                    views.add(pictureView.asMap());
                 }
+                workingDocument.setPropertyValue(VIEWS_PROPERTY, (Serializable) views);
+            }
 
-                if (workingDocument.isVersion()) {
-                    workingDocument.putContextData(ALLOW_VERSION_WRITE, Boolean.TRUE);
-                }
-                workingDocument.putContextData("disableNotificationService", Boolean.TRUE);
-                workingDocument.putContextData(PARAM_DISABLE_AUDIT, Boolean.TRUE);
-                workingDocument.putContextData(DISABLE_AUTO_CHECKOUT, Boolean.TRUE);
-                workingDocument.putContextData(DISABLE_PICTURE_VIEWS_GENERATION_LISTENER, Boolean.TRUE);
-                session.saveDocument(workingDocument);
-
-                DocumentEventContext ctx = new DocumentEventContext(session, session.getPrincipal(), workingDocument);
-                Event event = ctx.newEvent(PICTURE_VIEWS_GENERATION_DONE_EVENT);
-                Framework.getService(EventService.class).fireEvent(event);
+            if (workingDocument.isVersion()) {
+                workingDocument.putContextData(ALLOW_VERSION_WRITE, Boolean.TRUE);
             }
+            workingDocument.putContextData("disableNotificationService", Boolean.TRUE);
+            workingDocument.putContextData(PARAM_DISABLE_AUDIT, Boolean.TRUE);
+            workingDocument.putContextData(DISABLE_AUTO_CHECKOUT, Boolean.TRUE);
+            workingDocument.putContextData(DISABLE_PICTURE_VIEWS_GENERATION_LISTENER, Boolean.TRUE);
+            session.saveDocument(workingDocument);
+
+            DocumentEventContext ctx = new DocumentEventContext(session, session.getPrincipal(), workingDocument);
+            Event event = ctx.newEvent(PICTURE_VIEWS_GENERATION_DONE_EVENT);
+            Framework.getService(EventService.class).fireEvent(event);
+        }
+    }
+
+    /**
+     * Picture views computation state of a document.
+     *
+     * @since 11.1
+     */
+    public static class PictureSource {
+
+        protected final DocumentModel doc;
+
+        protected Blob blob;
+
+        protected File file;
+
+        protected ImageInfo imageInfo;
+
+        protected List<PictureView> views;
+
+        public PictureSource(DocumentModel doc, Blob blob) {
+            this.doc = doc;
+            this.blob = blob;
         }
     }
 }
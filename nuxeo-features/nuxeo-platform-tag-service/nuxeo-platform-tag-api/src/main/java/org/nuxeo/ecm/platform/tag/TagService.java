@@ -19,7 +19,10 @@
  */
 package org.nuxeo.ecm.platform.tag;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.nuxeo.ecm.core.api.CoreSession;
@@ -107,6 +110,26 @@ public interface TagService {
      */
     Set<String> getTags(CoreSession session, String docId);
 
+    /**
+     * Gets the tags applied to several documents at once.
+     * <p>
+     * Documents not supporting tags (see {@link #supportsTag(CoreSession, String)}) are absent from the result.
+     *
+     * @param session the session
+     * @param docIds the document ids
+     * @return the tags by document id
+     * @since 11.1
+     */
+    default Map<String, Set<String>> getTags(CoreSession session, Collection<String> docIds) {
+        Map<String, Set<String>> tags = new HashMap<>();
+        for (String docId : docIds) {
+            if (supportsTag(session, docId)) {
+                tags.put(docId, getTags(session, docId));
+            }
+        }
+        return tags;
+    }
+
     /**
      * Gets the tags applied to a document by a given user, or by all users.
      *
@@ -19,8 +19,11 @@
 package org.nuxeo.ecm.platform.tag;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.nuxeo.ecm.core.api.CoreSession;
@@ -91,6 +94,20 @@ public class BridgeTagService extends AbstractTagService {
         return tags;
     }
 
+    /**
+     * @since 11.1
+     */
+    @Override
+    public Map<String, Set<String>> getTags(CoreSession session, Collection<String> docIds) {
+        Map<String, Set<String>> tags = new HashMap<>(first.getTags(session, docIds));
+        second.getTags(session, docIds).forEach((docId, labels) -> tags.merge(docId, labels, (t1, t2) -> {
+            Set<String> merged = new HashSet<>(t1);
+            merged.addAll(t2);
+            return merged;
+        }));
+        return tags;
+    }
+
     @Override
     public void doCopyTags(CoreSession session, String srcDocId, String dstDocId, boolean removeExistingTags) {
         first.doCopyTags(session, srcDocId, dstDocId, removeExistingTags);
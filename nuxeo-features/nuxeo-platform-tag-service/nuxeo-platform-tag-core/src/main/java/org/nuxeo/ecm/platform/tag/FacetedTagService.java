@@ -28,6 +28,7 @@ import static org.nuxeo.ecm.platform.tag.TagConstants.TAG_LIST;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -37,8 +38,10 @@ import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.api.CoreInstance;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentNotFoundException;
 import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.NuxeoException;
@@ -165,6 +168,32 @@ public class FacetedTagService extends AbstractTagService {
         return tags.stream().map(t -> (String) t.get(LABEL_PROPERTY)).collect(Collectors.toSet());
     }
 
+    /**
+     * Fetches all the documents in one call and reads the tags from their facet.
+     *
+     * @since 11.1
+     */
+    @Override
+    public Map<String, Set<String>> getTags(CoreSession session, Collection<String> docIds) {
+        DocumentRef[] docRefs = docIds.stream().map(IdRef::new).toArray(DocumentRef[]::new);
+        try {
+            return CoreInstance.doPrivileged(session, (CoreSession s) -> {
+                Map<String, Set<String>> tags = new HashMap<>();
+                for (DocumentModel docModel : s.getDocuments(docRefs)) {
+                    if (docModel.hasFacet(TAG_FACET)) {
+                        tags.put(docModel.getId(), getTags(docModel).stream()
+                                                                   .map(t -> (String) t.get(LABEL_PROPERTY))
+                                                                   .collect(Collectors.toSet()));
+                    }
+                }
+                return tags;
+            });
+        } catch (DocumentNotFoundException e) {
+            // some documents are gone, check them one by one
+            return super.getTags(session, docIds);
+        }
+    }
+
     @Override
     public void doCopyTags(CoreSession session, String srcDocId, String dstDocId, boolean removeExistingTags) {
         DocumentModel srcDocModel = session.getDocument(new IdRef(srcDocId));
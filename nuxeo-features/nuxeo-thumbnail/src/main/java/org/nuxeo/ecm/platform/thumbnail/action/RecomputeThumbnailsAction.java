@@ -21,6 +21,7 @@ package org.nuxeo.ecm.platform.thumbnail.action;
 
 import static org.nuxeo.ecm.core.api.CoreSession.ALLOW_VERSION_WRITE;
 import static org.nuxeo.ecm.core.bulk.BulkServiceImpl.STATUS_STREAM;
+import static org.nuxeo.ecm.platform.thumbnail.ThumbnailConstants.ANY_TO_THUMBNAIL_CONVERTER_NAME;
 import static org.nuxeo.lib.stream.computation.AbstractComputation.INPUT_1;
 import static org.nuxeo.lib.stream.computation.AbstractComputation.OUTPUT_1;
 
@@ -28,30 +29,39 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
-import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.VersioningOption;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
+import org.nuxeo.ecm.core.api.blobholder.SimpleBlobHolder;
 import org.nuxeo.ecm.core.api.thumbnail.ThumbnailAdapter;
+import org.nuxeo.ecm.core.api.thumbnail.ThumbnailService;
+import org.nuxeo.ecm.core.api.thumbnail.ThumbnailServiceImpl;
 import org.nuxeo.ecm.core.api.versioning.VersioningService;
 import org.nuxeo.ecm.core.blob.BlobManager;
-import org.nuxeo.ecm.core.bulk.action.computation.AbstractBulkComputation;
+import org.nuxeo.ecm.core.bulk.action.computation.AbstractRecomputeComputation;
+import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.platform.dublincore.listener.DublinCoreListener;
 import org.nuxeo.ecm.platform.ec.notification.NotificationConstants;
 import org.nuxeo.ecm.platform.thumbnail.ThumbnailConstants;
+import org.nuxeo.ecm.platform.thumbnail.factories.ThumbnailDocumentFactory;
 import org.nuxeo.lib.stream.computation.Topology;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.stream.StreamProcessorTopology;
 
 /**
  * Bulk Action processor that generates thumbnails from documents.
+ * <p>
+ * Managed blob thumbnails are fetched in the download stage, thumbnails of documents handled by the default
+ * {@link ThumbnailDocumentFactory} are converted in the conversion stage, other factories are called on save.
  *
  * @since 11.1
  */
@@ -64,29 +74,69 @@ public class RecomputeThumbnailsAction implements StreamProcessorTopology {
     @Override
     public Topology getTopology(Map<String, String> options) {
         return Topology.builder()
-                       .addComputation(RecomputeThumbnailsComputation::new, //
+                       .addComputation(() -> new RecomputeThumbnailsComputation(options), //
                                Arrays.asList(INPUT_1 + ":" + ACTION_NAME, OUTPUT_1 + ":" + STATUS_STREAM))
                        .build();
     }
 
-    public static class RecomputeThumbnailsComputation extends AbstractBulkComputation {
+    public static class RecomputeThumbnailsComputation
+            extends AbstractRecomputeComputation<ThumbnailSource, ThumbnailSource> {
+
+        private static final Log log = LogFactory.getLog(RecomputeThumbnailsComputation.class);
 
         public RecomputeThumbnailsComputation() {
-            super(ACTION_NAME);
+            this(new HashMap<>());
+        }
+
+        public RecomputeThumbnailsComputation(Map<String, String> options) {
+            super(ACTION_NAME, options);
+        }
+
+        @Override
+        protected ThumbnailSource getSource(CoreSession session, DocumentModel doc) {
+            BlobHolder bh = doc.getAdapter(BlobHolder.class);
+            Blob blob = bh == null ? null : bh.getBlob();
+            return new ThumbnailSource(blob, blob != null && isDefaultFactory(session, doc));
+        }
+
+        protected boolean isDefaultFactory(CoreSession session, DocumentModel doc) {
+            ThumbnailService thumbnailService = Framework.getService(ThumbnailService.class);
+            return thumbnailService instanceof ThumbnailServiceImpl && ((ThumbnailServiceImpl) thumbnailService)
+                    .getThumbnailFactory(doc, session) instanceof ThumbnailDocumentFactory;
         }
 
         @Override
-        protected void compute(CoreSession session, List<String> ids, Map<String, Serializable> properties) {
-            DocumentModelList docs = loadDocuments(session, ids);
+        protected ThumbnailSource download(ThumbnailSource source) {
+            source.thumbnail = getManagedThumbnail(source.blob);
+            return source;
+        }
 
-            for (DocumentModel doc : docs) {
-                processDoc(session, doc);
+        @Override
+        protected ThumbnailSource convert(ThumbnailSource source) {
+            if (source.thumbnail == null && source.convertible) {
+                // same conversion as the default thumbnail factory
+                try {
+                    Map<String, Serializable> params = new HashMap<>();
+                    params.put(ThumbnailConstants.THUMBNAIL_SIZE_PARAMETER_NAME,
+                            ThumbnailConstants.THUMBNAIL_DEFAULT_SIZE);
+                    BlobHolder bh = Framework.getService(ConversionService.class)
+                                             .convert(ANY_TO_THUMBNAIL_CONVERTER_NAME,
+                                                     new SimpleBlobHolder(source.blob), params);
+                    if (bh != null) {
+                        source.thumbnail = bh.getBlob();
+                    }
+                } catch (NuxeoException e) {
+                    log.warn("Cannot compute document thumbnail", e);
+                }
+                source.converted = true;
             }
+            return source;
         }
 
-        protected void processDoc(CoreSession session, DocumentModel doc) {
-            Blob thumbnailBlob = getManagedThumbnail(doc);
-            if (thumbnailBlob == null) {
+        @Override
+        protected void save(CoreSession session, DocumentModel doc, ThumbnailSource source) {
+            Blob thumbnailBlob = source.thumbnail;
+            if (thumbnailBlob == null && !source.converted) {
                 ThumbnailAdapter thumbnailAdapter = doc.getAdapter(ThumbnailAdapter.class);
                 if (thumbnailAdapter == null) {
                     return;
@@ -118,12 +168,7 @@ public class RecomputeThumbnailsAction implements StreamProcessorTopology {
             }
         }
 
-        protected Blob getManagedThumbnail(DocumentModel doc) {
-            BlobHolder bh = doc.getAdapter(BlobHolder.class);
-            if (bh == null) {
-                return null;
-            }
-            Blob blob = bh.getBlob();
+        protected Blob getManagedThumbnail(Blob blob) {
             if (blob == null) {
                 return null;
             }
@@ -138,4 +183,25 @@ public class RecomputeThumbnailsAction implements StreamProcessorTopology {
             }
         }
     }
+
+    /**
+     * Thumbnail computation state of a document.
+     *
+     * @since 11.1
+     */
+    public static class ThumbnailSource {
+
+        protected final Blob blob;
+
+        protected final boolean convertible;
+
+        protected Blob thumbnail;
+
+        protected boolean converted;
+
+        public ThumbnailSource(Blob blob, boolean convertible) {
+            this.blob = blob;
+            this.convertible = convertible;
+        }
+    }
 }
@@ -18,6 +18,7 @@
  */
 package org.nuxeo.ecm.platform.thumbnail.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -38,6 +39,7 @@ import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.thumbnail.ThumbnailFactory;
 import org.nuxeo.ecm.core.api.thumbnail.ThumbnailService;
 import org.nuxeo.ecm.platform.thumbnail.operation.RecomputeThumbnails;
 import org.nuxeo.runtime.test.runner.Deploy;
@@ -117,4 +119,48 @@ public class TestRecomputeThumbnails {
         assertNotNull(thumbnail);
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.platform.thumbnail:test-thumbnail-recompute-factory-contrib.xml")
+    public void testRecomputeThumbnailsWithOtherFactory() throws Exception {
+        DocumentModel doc = session.createDocumentModel("/", "testDoc", "File");
+        Blob blob = Blobs.createBlob(FileUtils.getResourceFileFromContext("test-data/big_nuxeo_logo.jpg"), "image/jpeg",
+                StandardCharsets.UTF_8.name(), "big_nuxeo_logo.jpg");
+        doc.setPropertyValue("file:content", (Serializable) blob);
+        doc = session.createDocument(doc);
+        txFeature.nextTransaction();
+
+        // empty thumbnail
+        doc = session.getDocument(doc.getRef());
+        doc.setPropertyValue("thumbnail:thumbnail", null);
+        session.saveDocument(doc);
+        txFeature.nextTransaction();
+        assertNull(session.getDocument(doc.getRef()).getPropertyValue("thumbnail:thumbnail"));
+
+        Map<String, String> parameters = Collections.singletonMap("query", "SELECT * FROM File");
+        try (OperationContext ctx = new OperationContext(session)) {
+            automationService.run(ctx, RecomputeThumbnails.ID, parameters);
+        }
+        txFeature.nextTransaction();
+
+        // the blob is convertible, but the thumbnail comes from the factory of the document
+        Blob thumbnail = (Blob) session.getDocument(doc.getRef()).getPropertyValue("thumbnail:thumbnail");
+        assertNotNull(thumbnail);
+        assertEquals(FileThumbnailFactory.THUMBNAIL, thumbnail.getString());
+    }
+
+    public static class FileThumbnailFactory implements ThumbnailFactory {
+
+        protected static final String THUMBNAIL = "file thumbnail";
+
+        @Override
+        public Blob getThumbnail(DocumentModel doc, CoreSession session) {
+            return (Blob) doc.getPropertyValue("thumbnail:thumbnail");
+        }
+
+        @Override
+        public Blob computeThumbnail(DocumentModel doc, CoreSession session) {
+            return Blobs.createBlob(THUMBNAIL);
+        }
+    }
+
 }
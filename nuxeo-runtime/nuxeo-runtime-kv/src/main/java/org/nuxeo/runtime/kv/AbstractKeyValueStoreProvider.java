@@ -114,6 +114,40 @@ public abstract class AbstractKeyValueStoreProvider implements KeyValueStoreProv
         put(key, longToBytes(value), ttl);
     }
 
+    /*
+     * This default implementation is uninteresting. It is expected that underlying storage implementations
+     * will leverage bulk writes to deliver significant optimizations over this simple loop.
+     */
+    @Override
+    public void put(Map<String, byte[]> values, long ttl) {
+        values.forEach((key, value) -> put(key, value, ttl));
+    }
+
+    @Override
+    public void putStrings(Map<String, String> values, long ttl) {
+        Map<String, byte[]> map = new HashMap<>(values.size());
+        values.forEach((key, value) -> map.put(key, stringToBytes(value)));
+        put(map, ttl);
+    }
+
+    @Override
+    public void putLongs(Map<String, Long> values, long ttl) {
+        Map<String, byte[]> map = new HashMap<>(values.size());
+        values.forEach((key, value) -> map.put(key, longToBytes(value)));
+        put(map, ttl);
+    }
+
+    /*
+     * This default implementation is uninteresting. It is expected that underlying storage implementations
+     * will leverage bulk deletes to deliver significant optimizations over this simple loop.
+     */
+    @Override
+    public void delete(Collection<String> keys) {
+        for (String key : keys) {
+            put(key, (byte[]) null);
+        }
+    }
+
     @Override
     public String getString(String key) {
         byte[] bytes = get(key);
@@ -193,6 +227,12 @@ public abstract class AbstractKeyValueStoreProvider implements KeyValueStoreProv
         return compareAndSet(key, stringToBytes(expected), stringToBytes(value), ttl);
     }
 
+    @Override
+    public boolean compareAndSet(String key, Long expected, Long value) {
+        // longs are stored as their string representation
+        return compareAndSet(key, longToBytes(expected), longToBytes(value), 0);
+    }
+
     @Override
     public long addAndGet(String key, long delta) throws NumberFormatException { // NOSONAR
         for (;;) {
@@ -206,4 +246,15 @@ public abstract class AbstractKeyValueStoreProvider implements KeyValueStoreProv
         }
     }
 
+    /*
+     * This default implementation is uninteresting. It is expected that underlying storage implementations
+     * will leverage bulk updates to deliver significant optimizations over this simple loop.
+     */
+    @Override
+    public Map<String, Long> addAndGet(Map<String, Long> deltas) throws NumberFormatException { // NOSONAR
+        Map<String, Long> map = new HashMap<>(deltas.size());
+        deltas.forEach((key, delta) -> map.put(key, Long.valueOf(addAndGet(key, delta.longValue()))));
+        return map;
+    }
+
 }
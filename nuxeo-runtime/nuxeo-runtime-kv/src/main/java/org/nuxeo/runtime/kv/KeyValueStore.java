@@ -88,6 +88,48 @@ public interface KeyValueStore {
      */
     void put(String key, Long value, long ttl);
 
+    /**
+     * Sets the values associated to the keys, and a TTL.
+     * <p>
+     * Implementations send the whole batch to the underlying storage in as few round trips as possible. Each key is
+     * updated atomically, but the batch as a whole is not.
+     *
+     * @param values the key/value map; a {@code null} value deletes the key
+     * @param ttl the TTL, in seconds (0 for infinite)
+     * @since 11.1
+     */
+    void put(Map<String, byte[]> values, long ttl);
+
+    /**
+     * Sets the values associated to the keys, and a TTL.
+     *
+     * @param values the key/value map; a {@code null} value deletes the key
+     * @param ttl the TTL, in seconds (0 for infinite)
+     * @see #put(Map, long)
+     * @since 11.1
+     */
+    void putStrings(Map<String, String> values, long ttl);
+
+    /**
+     * Sets the values associated to the keys, and a TTL.
+     *
+     * @param values the key/value map; a {@code null} value deletes the key
+     * @param ttl the TTL, in seconds (0 for infinite)
+     * @see #put(Map, long)
+     * @since 11.1
+     */
+    void putLongs(Map<String, Long> values, long ttl);
+
+    /**
+     * Removes the values associated to the keys.
+     * <p>
+     * Keys that have no value are ignored.
+     *
+     * @param keys the keys
+     * @since 11.1
+     */
+    void delete(Collection<String> keys);
+
     /**
      * Sets the TTL for an existing key.
      *
@@ -210,6 +252,21 @@ public interface KeyValueStore {
      */
     boolean compareAndSet(String key, String expected, String value, long ttl);
 
+    /**
+     * Atomically sets the value associated to the key to the given value if the current value is the expected value,
+     * both interpreted as longs.
+     * <p>
+     * Unlike {@link #compareAndSet(String, String, String)}, the comparison matches the counters maintained by
+     * {@link #addAndGet}, whatever their representation in the underlying storage.
+     *
+     * @param key the key
+     * @param expected the expected value, which may be {@code null}
+     * @param value the updated value, which may be {@code null}
+     * @return {@code true} if the value was updated, or {@code false} if not (the expected value was not found)
+     * @since 11.1
+     */
+    boolean compareAndSet(String key, Long expected, Long value);
+
     /**
      * Atomically adds the delta to the value associated to the key, interpreted as a long represented as a string.
      * <p>
@@ -223,4 +280,18 @@ public interface KeyValueStore {
      */
     long addAndGet(String key, long delta);
 
+    /**
+     * Atomically adds the deltas to the values associated to the keys, interpreted as longs represented as strings.
+     * <p>
+     * Each counter is updated atomically, and implementations send the whole batch to the underlying storage in as few
+     * round trips as possible.
+     *
+     * @param deltas the key/delta map
+     * @return the key/new value map
+     * @throws NumberFormatException if one of the existing values cannot be interpreted as a {@code long}
+     * @see #addAndGet(String, long)
+     * @since 11.1
+     */
+    Map<String, Long> addAndGet(Map<String, Long> deltas) throws NumberFormatException; // NOSONAR
+
 }
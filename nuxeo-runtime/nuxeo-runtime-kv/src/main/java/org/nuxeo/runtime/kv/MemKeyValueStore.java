@@ -21,7 +21,10 @@ package org.nuxeo.runtime.kv;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -94,6 +97,27 @@ public class MemKeyValueStore extends AbstractKeyValueStoreProvider {
         }
     }
 
+    @Override
+    public void put(Map<String, byte[]> values, long ttl) {
+        // hold the lock once for the whole batch
+        writeLock.lock();
+        try {
+            values.forEach((key, value) -> put(key, value, ttl));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        writeLock.lock();
+        try {
+            keys.forEach(map::remove);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     @Override
     public byte[] get(String key) {
         Objects.requireNonNull(key);
@@ -145,4 +169,22 @@ public class MemKeyValueStore extends AbstractKeyValueStoreProvider {
         }
     }
 
+    @Override
+    public Map<String, Long> addAndGet(Map<String, Long> deltas) throws NumberFormatException { // NOSONAR
+        Map<String, Long> result = new HashMap<>(deltas.size());
+        writeLock.lock();
+        try {
+            for (Map.Entry<String, Long> en : deltas.entrySet()) {
+                String key = Objects.requireNonNull(en.getKey());
+                Long base = bytesToLong(map.get(key));
+                long value = (base == null ? 0 : base.longValue()) + en.getValue().longValue();
+                map.put(key, longToBytes(value));
+                result.put(key, Long.valueOf(value));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return result;
+    }
+
 }
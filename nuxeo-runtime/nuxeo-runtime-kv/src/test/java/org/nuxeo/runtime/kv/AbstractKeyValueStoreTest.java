@@ -503,6 +503,69 @@ public abstract class AbstractKeyValueStoreTest {
         assertNull(store.get(key));
     }
 
+    @Test
+    public void testPutMany() {
+        Map<String, String> strings = new HashMap<>();
+        strings.put("foo1", BAR);
+        strings.put("foo2", GEE);
+        store.putStrings(strings, 0);
+        assertEquals(strings, store.getStrings(Arrays.asList("foo1", "foo2", "foo3")));
+
+        Map<String, byte[]> bytes = new HashMap<>();
+        bytes.put("foo1", MOO_B);
+        bytes.put("foo2", null); // deletes
+        bytes.put("foo3", GEE_B);
+        store.put(bytes, 0);
+        Map<String, byte[]> storeBMap = store.get(Arrays.asList("foo1", "foo2", "foo3"));
+        assertEquals(2, storeBMap.size());
+        assertArrayEquals(MOO_B, storeBMap.get("foo1"));
+        assertArrayEquals(GEE_B, storeBMap.get("foo3"));
+
+        Map<String, Long> longs = new HashMap<>();
+        longs.put("foo1", Long.valueOf(1));
+        longs.put("foo4", Long.valueOf(4));
+        store.putLongs(longs, 0);
+        assertEquals(longs, store.getLongs(Arrays.asList("foo1", "foo4")));
+
+        // empty batches are allowed
+        store.put(Collections.emptyMap(), 0);
+        store.delete(Collections.emptyList());
+
+        store.delete(Arrays.asList("foo1", "foo3", "foo4", "foo5"));
+        assertEquals(Collections.emptySet(), storeKeys());
+    }
+
+    @Test
+    public void testPutManyTTL() throws Exception {
+        assumeFalse("Ignored because of slow TTL expiration", hasSlowTTLExpiration());
+        int shortTTL = 3; // 3s
+
+        Map<String, String> strings = new HashMap<>();
+        strings.put("foo1", BAR);
+        strings.put("foo2", GEE);
+        store.putStrings(strings, shortTTL);
+        assertEquals(strings, store.getStrings(strings.keySet()));
+        Thread.sleep((shortTTL + 2) * 1000); // sleep a bit more in case expiration is late
+        sleepForTTLExpiration();
+        assertTrue(store.getStrings(strings.keySet()).isEmpty());
+    }
+
+    @Test
+    public void testAddAndGetMany() throws Exception {
+        store.put("foo2", Long.valueOf(10));
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put("foo1", Long.valueOf(1));
+        deltas.put("foo2", Long.valueOf(5));
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("foo1", Long.valueOf(1));
+        expected.put("foo2", Long.valueOf(15));
+        assertEquals(expected, store.addAndGet(deltas));
+        expected.put("foo1", Long.valueOf(2));
+        expected.put("foo2", Long.valueOf(20));
+        assertEquals(expected, store.addAndGet(deltas));
+        assertEquals(Long.valueOf(20), store.getLong("foo2"));
+    }
+
     @Test
     public void testAddAndGet() throws Exception {
         String key = "foo";
@@ -539,6 +602,31 @@ public abstract class AbstractKeyValueStoreTest {
         }
     }
 
+    @Test
+    public void testCompareAndSetLong() throws Exception {
+        String key = "foo";
+
+        // on a counter
+        assertEquals(10, store.addAndGet(key, 10));
+        assertFalse(store.compareAndSet(key, Long.valueOf(9), Long.valueOf(5)));
+        assertEquals(Long.valueOf(10), store.getLong(key));
+        assertTrue(store.compareAndSet(key, Long.valueOf(10), Long.valueOf(5)));
+        assertEquals(Long.valueOf(5), store.getLong(key));
+        // still a counter
+        assertEquals(6, store.addAndGet(key, 1));
+
+        // on a long
+        store.put(key, Long.valueOf(123));
+        assertTrue(store.compareAndSet(key, Long.valueOf(123), Long.valueOf(456)));
+        assertEquals(Long.valueOf(456), store.getLong(key));
+
+        // absent value
+        assertTrue(store.compareAndSet(key, Long.valueOf(456), null));
+        assertNull(store.get(key));
+        assertTrue(store.compareAndSet(key, null, Long.valueOf(1)));
+        assertEquals(Long.valueOf(1), store.getLong(key));
+    }
+
     @Test
     public void testKeyStream() throws Exception {
         // keyStream() already tested by all other test methods indirectly
@@ -130,6 +130,10 @@ public class StreamProcessorDescriptor implements Descriptor {
 
         public static final Duration DEFAULT_BATCH_THRESHOLD = Duration.ofSeconds(1);
 
+        public static final Integer DEFAULT_READ_BATCH_CAPACITY = 1;
+
+        public static final Duration DEFAULT_READ_BATCH_LATENCY = Duration.ofMillis(200);
+
         @XNode("@name")
         public String name;
 
@@ -165,6 +169,21 @@ public class StreamProcessorDescriptor implements Descriptor {
         @XNode("@batchThreshold")
         public Duration batchThreshold = DEFAULT_BATCH_THRESHOLD;
 
+        // @since 11.1 read records by adaptive batch delivered to Computation#processRecords
+        @XNode("@readBatchCapacity")
+        public Integer readBatchCapacity = DEFAULT_READ_BATCH_CAPACITY;
+
+        @XNode("@readBatchLatency")
+        public Duration readBatchLatency = DEFAULT_READ_BATCH_LATENCY;
+
+        // @since 11.1 pause reading when a consumer of the output streams lags more than this, 0 to disable
+        @XNode("@maxDownstreamLag")
+        public Long maxDownstreamLag = 0L;
+
+        // @since 11.1 run the computation threads as virtual threads when supported by the JVM
+        @XNode("@virtualThreads")
+        public Boolean virtualThreads = Boolean.FALSE;
+
     }
 
     public static final Integer DEFAULT_CONCURRENCY = 4;
@@ -231,6 +250,10 @@ public class StreamProcessorDescriptor implements Descriptor {
         return new ComputationPolicyBuilder().retryPolicy(retryPolicy)
                                              .batchPolicy(policyDescriptor.batchCapacity,
                                                      policyDescriptor.batchThreshold)
+                                             .readBatchPolicy(policyDescriptor.readBatchCapacity,
+                                                     policyDescriptor.readBatchLatency)
+                                             .backPressure(policyDescriptor.maxDownstreamLag)
+                                             .virtualThreads(policyDescriptor.virtualThreads)
                                              .continueOnFailure(policyDescriptor.continueOnFailure)
                                              .skipFirstFailures(getSkipFirstFailures(policyDescriptor))
                                              .build();
@@ -19,6 +19,8 @@
  */
 package org.nuxeo.lib.stream.computation;
 
+import java.util.List;
+
 /**
  * Computation receives records from input streams one at a time, it can produce record on its output streams. A timer
  * processing can be used for windowing computation.
@@ -53,6 +55,21 @@ public interface Computation {
      */
     void processRecord(ComputationContext context, String inputStreamName, Record record);
 
+    /**
+     * Process a batch of incoming records coming from the same input stream, this is only used when the computation
+     * policy defines a read batch capacity. The default implementation processes the records one by one.
+     * <p>
+     * If this method raises an exception the retry policy is applied to the whole batch.
+     *
+     * @param context The computation context object provided by the system.
+     * @param inputStreamName Name of the input stream that provides the records.
+     * @param records The records in the stream order.
+     * @since 11.1
+     */
+    default void processRecords(ComputationContext context, String inputStreamName, List<Record> records) {
+        records.forEach(record -> processRecord(context, inputStreamName, record));
+    }
+
     /**
      * Process a timer callback previously set via {@link ComputationContext#setTimer(String, long)}.
      *
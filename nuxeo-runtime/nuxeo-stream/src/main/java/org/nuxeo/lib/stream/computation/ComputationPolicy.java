@@ -46,12 +46,24 @@ public class ComputationPolicy {
 
     protected final int skipFirstFailures;
 
+    protected final int readBatchCapacity;
+
+    protected final Duration readBatchLatency;
+
+    protected final long maxDownstreamLag;
+
+    protected final boolean virtualThreads;
+
     public ComputationPolicy(ComputationPolicyBuilder builder) {
         batchCapacity = builder.batchCapacity;
         batchThreshold = builder.batchThreshold;
         skipFailure = builder.skipFailure;
         retryPolicy = builder.retryPolicy;
         skipFirstFailures = builder.skipFirstFailures;
+        readBatchCapacity = builder.readBatchCapacity;
+        readBatchLatency = builder.readBatchLatency;
+        maxDownstreamLag = builder.maxDownstreamLag;
+        virtualThreads = builder.virtualThreads;
     }
 
     public RetryPolicy getRetryPolicy() {
@@ -74,6 +86,41 @@ public class ComputationPolicy {
         return skipFirstFailures;
     }
 
+    /**
+     * @since 11.1
+     */
+    public int getReadBatchCapacity() {
+        return readBatchCapacity;
+    }
+
+    /**
+     * @since 11.1
+     */
+    public Duration getReadBatchLatency() {
+        return readBatchLatency;
+    }
+
+    /**
+     * @since 11.1
+     */
+    public boolean readByBatch() {
+        return readBatchCapacity > 1;
+    }
+
+    /**
+     * @since 11.1
+     */
+    public long getMaxDownstreamLag() {
+        return maxDownstreamLag;
+    }
+
+    /**
+     * @since 11.1
+     */
+    public boolean useVirtualThreads() {
+        return virtualThreads;
+    }
+
     /**
      * @deprecated since 10.3 use {@link #continueOnFailure()} instead
      */
@@ -86,6 +133,8 @@ public class ComputationPolicy {
     public String toString() {
         return "ComputationPolicy{" + "maxRetries=" + retryPolicy.getMaxRetries() + ", delay=" + retryPolicy.getDelay()
                 + ", delayMax=" + retryPolicy.getMaxDelay() + ", continueOnFailure=" + skipFailure + ", batchCapacity="
-                + batchCapacity + ", batchThreshold=" + batchThreshold + '}';
+                + batchCapacity + ", batchThreshold=" + batchThreshold + ", readBatchCapacity=" + readBatchCapacity
+                + ", readBatchLatency=" + readBatchLatency + ", maxDownstreamLag=" + maxDownstreamLag + ", virtualThreads="
+                + virtualThreads + '}';
     }
 }
@@ -33,6 +33,10 @@ public class ComputationPolicyBuilder {
 
     protected static final int DEFAULT_BATCH_THRESHOLD_SECOND = 1;
 
+    protected static final int DEFAULT_READ_BATCH_CAPACITY = 1;
+
+    protected static final int DEFAULT_READ_BATCH_LATENCY_MS = 200;
+
     protected RetryPolicy retryPolicy = ComputationPolicy.NO_RETRY;
 
     protected boolean skipFailure = false;
@@ -43,6 +47,14 @@ public class ComputationPolicyBuilder {
 
     protected Duration batchThreshold = Duration.ofSeconds(DEFAULT_BATCH_THRESHOLD_SECOND);
 
+    protected int readBatchCapacity = DEFAULT_READ_BATCH_CAPACITY;
+
+    protected Duration readBatchLatency = Duration.ofMillis(DEFAULT_READ_BATCH_LATENCY_MS);
+
+    protected long maxDownstreamLag;
+
+    protected boolean virtualThreads;
+
     public ComputationPolicyBuilder() {
         // Empty constructor
     }
@@ -61,6 +73,48 @@ public class ComputationPolicyBuilder {
         return this;
     }
 
+    /**
+     * Defines how the computation runner reads records from the input streams.
+     * <p>
+     * When the capacity is greater than 1, the records already available are read by batch and delivered to
+     * {@link Computation#processRecords}. The batch size adapts to the observed processing time so that processing a
+     * batch takes around the target latency, it never exceeds the capacity.
+     * <p>
+     * This is not needed for computation that extends AbstractBatchComputation, they already group records using the
+     * {@link #batchPolicy}.
+     *
+     * @param capacity the maximum number of records read in one batch
+     * @param targetLatency the expected duration of a batch processing
+     * @since 11.1
+     */
+    public ComputationPolicyBuilder readBatchPolicy(int capacity, Duration targetLatency) {
+        readBatchCapacity = capacity;
+        readBatchLatency = targetLatency;
+        return this;
+    }
+
+    /**
+     * Pauses the reading of input streams while a consumer of one of the computation output streams has a lag greater
+     * than the given value. Applies to both record and batch reads.
+     *
+     * @param maxLag the maximum lag of the downstream consumers, 0 to disable back pressure, this is the default
+     * @since 11.1
+     */
+    public ComputationPolicyBuilder backPressure(long maxLag) {
+        maxDownstreamLag = maxLag;
+        return this;
+    }
+
+    /**
+     * Runs the computation threads as virtual threads when the JVM supports them.
+     *
+     * @since 11.1
+     */
+    public ComputationPolicyBuilder virtualThreads(boolean value) {
+        virtualThreads = value;
+        return this;
+    }
+
     /**
      * Defines what to do in case of failure during the batch processing.
      */
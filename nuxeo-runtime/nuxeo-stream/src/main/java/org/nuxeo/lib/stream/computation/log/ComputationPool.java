@@ -83,7 +83,7 @@ public class ComputationPool {
     @SuppressWarnings("FutureReturnValueIgnored")
     public void start() {
         log.info(metadata.name() + ": Starting pool");
-        threadPool = newFixedThreadPool(threads, new NamedThreadFactory(metadata.name() + "Pool"));
+        threadPool = newFixedThreadPool(threads, getThreadFactory());
         defaultAssignments.forEach(assignments -> {
             ComputationRunner runner = new ComputationRunner(supplier, metadata, assignments, streamManager, policy);
             threadPool.submit(runner);
@@ -94,6 +94,17 @@ public class ComputationPool {
         log.debug(metadata.name() + ": Pool started, threads: " + threads);
     }
 
+    protected ThreadFactory getThreadFactory() {
+        if (policy.useVirtualThreads()) {
+            if (VirtualThreadFactory.isSupported()) {
+                return new VirtualThreadFactory(metadata.name() + "Pool",
+                        (t, e) -> log.error("Uncaught exception: " + e.getMessage(), e));
+            }
+            log.warn(metadata.name() + ": Virtual threads are not supported by the JVM, using platform threads");
+        }
+        return new NamedThreadFactory(metadata.name() + "Pool");
+    }
+
     public boolean isTerminated() {
         return threadPool.isTerminated();
     }
@@ -19,6 +19,7 @@
 package org.nuxeo.lib.stream.computation.log;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -32,12 +33,15 @@ import java.util.stream.Collectors;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.lib.stream.computation.Computation;
+import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
 import org.nuxeo.lib.stream.computation.ComputationPolicy;
 import org.nuxeo.lib.stream.computation.Record;
 import org.nuxeo.lib.stream.computation.Watermark;
 import org.nuxeo.lib.stream.computation.internals.ComputationContextImpl;
 import org.nuxeo.lib.stream.computation.internals.WatermarkMonotonicInterval;
+import org.nuxeo.lib.stream.log.LogLag;
+import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogRecord;
 import org.nuxeo.lib.stream.log.LogTailer;
@@ -45,6 +49,7 @@ import org.nuxeo.lib.stream.log.RebalanceException;
 import org.nuxeo.lib.stream.log.RebalanceListener;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
@@ -64,6 +69,9 @@ public class ComputationRunner implements Runnable, RebalanceListener {
 
     protected static final long INACTIVITY_BREAK_MS = 100;
 
+    // @since 11.1
+    protected static final long BACK_PRESSURE_CHECK_INTERVAL_MS = 1000;
+
     private static final Log log = LogFactory.getLog(ComputationRunner.class);
 
     protected final LogStreamManager streamManager;
@@ -130,6 +138,27 @@ public class ComputationRunner implements Runnable, RebalanceListener {
     // @since 11.1
     protected boolean recordActivity;
 
+    // @since 11.1
+    protected Histogram readBatchSizeHistogram;
+
+    // @since 11.1
+    protected Timer processRecordsTimer;
+
+    // @since 11.1
+    protected Counter backPressureCount;
+
+    // @since 11.1 the current size of read batch, adapted to the processing time
+    protected int readBatchSize = 1;
+
+    // @since 11.1
+    protected long lastBackPressureCheck;
+
+    // @since 11.1
+    protected boolean backPressure;
+
+    // @since 11.1 true when the computation overrides Computation#processRecords
+    protected boolean batchProcessing;
+
     @SuppressWarnings("unchecked")
     public ComputationRunner(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
             List<LogPartition> defaultAssignment, LogStreamManager streamManager, ComputationPolicy policy) {
@@ -176,6 +205,7 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         threadName = Thread.currentThread().getName();
         boolean interrupted = false;
         computation = supplier.get();
+        batchProcessing = overridesProcessRecords(computation);
         log.debug(metadata.name() + ": Init");
         registerMetrics();
         try {
@@ -224,6 +254,16 @@ public class ComputationRunner implements Runnable, RebalanceListener {
                 MetricRegistry.name("nuxeo", "stream", "computation", metadata.name(), "processRecord"));
         processTimerTimer = registry.timer(
                 MetricRegistry.name("nuxeo", "stream", "computation", metadata.name(), "processTimer"));
+        if (policy.readByBatch()) {
+            readBatchSizeHistogram = registry.histogram(
+                    MetricRegistry.name("nuxeo", "stream", "computation", metadata.name(), "readBatchSize"));
+            processRecordsTimer = registry.timer(
+                    MetricRegistry.name("nuxeo", "stream", "computation", metadata.name(), "processRecords"));
+        }
+        if (policy.getMaxDownstreamLag() > 0) {
+            backPressureCount = registry.counter(
+                    MetricRegistry.name("nuxeo", "stream", "computation", metadata.name(), "backPressure"));
+        }
     }
 
     protected void closeTailer() {
@@ -236,10 +276,14 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         boolean timerActivity;
         while (continueLoop()) {
             timerActivity = processTimer();
-            recordActivity = processRecord();
+            if (policy.readByBatch()) {
+                recordActivity = processRecords();
+            } else {
+                recordActivity = processRecord();
+            }
             counter++;
-            if (!timerActivity && !recordActivity) {
-                // no activity take a break
+            if (!timerActivity && !recordActivity && (!policy.readByBatch() || tailer == null || backPressure)) {
+                // no activity take a break, in batch mode the read timeout already acts as a break
                 Thread.sleep(INACTIVITY_BREAK_MS);
             }
         }
@@ -317,7 +361,7 @@ public class ComputationRunner implements Runnable, RebalanceListener {
             stop = true;
             return true;
         }
-        if (tailer == null) {
+        if (tailer == null || checkBackPressure()) {
             return false;
         }
         Duration timeoutRead = getTimeoutDuration();
@@ -356,6 +400,192 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         return false;
     }
 
+    /**
+     * Reads the records already available up to the current batch size, and processes them by input stream.
+     *
+     * @since 11.1
+     */
+    protected boolean processRecords() throws InterruptedException {
+        if (context.requireTerminate()) {
+            stop = true;
+            return true;
+        }
+        if (tailer == null || checkBackPressure()) {
+            return false;
+        }
+        Map<String, List<LogRecord<Record>>> batch = readBatch();
+        if (batch.isEmpty()) {
+            return false;
+        }
+        int size = batch.values().stream().mapToInt(List::size).sum();
+        readBatchSizeHistogram.update(size);
+        long start = System.nanoTime();
+        for (Map.Entry<String, List<LogRecord<Record>>> entry : batch.entrySet()) {
+            List<LogRecord<Record>> logRecords = entry.getValue();
+            String from = metadata.reverseMap(entry.getKey());
+            if (batchProcessing) {
+                List<Record> records = logRecords.stream().map(LogRecord::message).collect(Collectors.toList());
+                context.setLastOffset(logRecords.get(logRecords.size() - 1).offset());
+                processRecordsWithRetry(from, records);
+                records.forEach(this::checkRecordFlags);
+            } else {
+                // the computation relies on the record offset exposed by the context
+                for (LogRecord<Record> logRecord : logRecords) {
+                    context.setLastOffset(logRecord.offset());
+                    processRecordWithRetry(from, logRecord.message());
+                    checkRecordFlags(logRecord.message());
+                }
+            }
+        }
+        adaptReadBatchSize(size, System.nanoTime() - start);
+        checkSourceLowWatermark();
+        setThreadName("records");
+        checkpointIfNecessary();
+        return true;
+    }
+
+    /**
+     * Returns the records grouped by input stream, preserving the order within a stream. The first read waits for
+     * records, the next ones only return the records that are already available.
+     *
+     * @since 11.1
+     */
+    protected Map<String, List<LogRecord<Record>>> readBatch() throws InterruptedException {
+        Map<String, List<LogRecord<Record>>> batch = new LinkedHashMap<>();
+        Duration timeoutRead = READ_TIMEOUT;
+        int count = 0;
+        while (count < readBatchSize) {
+            LogRecord<Record> logRecord;
+            try {
+                logRecord = tailer.read(timeoutRead);
+            } catch (RebalanceException e) {
+                // uncommitted records read before the rebalance are delivered again from the new assignment
+                inRecords -= count;
+                batch.clear();
+                break;
+            }
+            if (logRecord == null) {
+                break;
+            }
+            timeoutRead = Duration.ZERO;
+            String stream = logRecord.offset().partition().name();
+            Record record = logRecord.message();
+            Record filteredRecord = streamManager.getFilter(stream).afterRead(record, logRecord.offset());
+            if (filteredRecord == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Filtering skip record: " + record);
+                }
+                continue;
+            } else if (filteredRecord != record) {
+                logRecord = new LogRecord<>(filteredRecord, logRecord.offset());
+            }
+            lastReadTime = System.currentTimeMillis();
+            inRecords++;
+            count++;
+            lowWatermark.mark(filteredRecord.getWatermark());
+            batch.computeIfAbsent(stream, k -> new ArrayList<>()).add(logRecord);
+            if (filteredRecord.getFlags().contains(Record.Flag.POISON_PILL)) {
+                // don't read after a poison pill
+                break;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns {@code true} if the computation provides its own batch processing, otherwise the runner delivers the
+     * records of a batch one by one so that the context exposes the offset of each record.
+     *
+     * @since 11.1
+     */
+    protected static boolean overridesProcessRecords(Computation computation) {
+        try {
+            return computation.getClass()
+                              .getMethod("processRecords", ComputationContext.class, String.class, List.class)
+                              .getDeclaringClass() != Computation.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sizes the next batch so that its processing takes around the target latency of the policy, the size can at most
+     * double between two batches.
+     *
+     * @since 11.1
+     */
+    protected void adaptReadBatchSize(int size, long elapsedNanos) {
+        long targetNanos = policy.getReadBatchLatency().toNanos();
+        long perRecordNanos = Math.max(1, elapsedNanos / size);
+        long target = Math.max(1, targetNanos / perRecordNanos);
+        readBatchSize = (int) Math.min(Math.min(target, 2L * readBatchSize), policy.getReadBatchCapacity());
+    }
+
+    /**
+     * Returns {@code true} when a consumer of the output streams is lagging more than the policy allows, the lag is
+     * checked at most every {@link #BACK_PRESSURE_CHECK_INTERVAL_MS}.
+     *
+     * @since 11.1
+     */
+    protected boolean checkBackPressure() {
+        long maxLag = policy.getMaxDownstreamLag();
+        if (maxLag <= 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastBackPressureCheck < BACK_PRESSURE_CHECK_INTERVAL_MS) {
+            if (backPressure) {
+                // waiting for downstream is not starving
+                lastReadTime = now;
+            }
+            return backPressure;
+        }
+        lastBackPressureCheck = now;
+        boolean previous = backPressure;
+        backPressure = getDownstreamLag() > maxLag;
+        if (backPressure) {
+            lastReadTime = now;
+            backPressureCount.inc();
+            if (!previous) {
+                log.info(metadata.name() + ": Pause reading, downstream lag is over: " + maxLag);
+            }
+        } else if (previous) {
+            log.info(metadata.name() + ": Resume reading");
+        }
+        return backPressure;
+    }
+
+    /**
+     * Returns the maximum lag of the registered computations reading the computation output streams. Other consumer
+     * groups of these streams, like the ones of a stopped or removed processor, are ignored.
+     *
+     * @since 11.1
+     */
+    protected long getDownstreamLag() {
+        LogManager manager = streamManager.getLogManager();
+        long ret = 0;
+        for (String stream : metadata.outputStreams()) {
+            for (String group : streamManager.getConsumerGroups(stream)) {
+                LogLag lag = manager.getLag(stream, group);
+                ret = Math.max(ret, lag.lag());
+            }
+        }
+        return ret;
+    }
+
+    protected void processRecordsWithRetry(String from, List<Record> records) {
+        runningCount.inc();
+        try (Timer.Context ignored = processRecordsTimer.time()) {
+            Failsafe.with(policy.getRetryPolicy())
+                    .onRetry(failure -> computation.processRetry(context, failure))
+                    .onFailure(failure -> computation.processFailure(context, failure))
+                    .withFallback(() -> processFallback(context))
+                    .run(() -> computation.processRecords(context, from, records));
+        } finally {
+            runningCount.dec();
+        }
+    }
+
     protected void processRecordWithRetry(String from, Record record) {
         runningCount.inc();
         try (Timer.Context ignored = processRecordTimer.time()) {
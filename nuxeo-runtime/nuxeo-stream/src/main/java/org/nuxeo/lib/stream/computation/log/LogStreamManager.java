@@ -23,11 +23,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
 import org.nuxeo.lib.stream.computation.Record;
 import org.nuxeo.lib.stream.computation.RecordFilter;
 import org.nuxeo.lib.stream.computation.RecordFilterChain;
@@ -56,7 +58,7 @@ public class LogStreamManager implements StreamManager {
         this.logManager = logManager;
     }
 
-    protected final Map<String, Topology> topologies = new HashMap<>();
+    protected final Map<String, Topology> topologies = new ConcurrentHashMap<>();
 
     protected final Map<String, Settings> settings = new HashMap<>();
 
@@ -124,6 +126,20 @@ public class LogStreamManager implements StreamManager {
         return filters.get(stream);
     }
 
+    /**
+     * Returns the consumer groups of the registered computations that read the stream.
+     *
+     * @since 11.1
+     */
+    public Set<String> getConsumerGroups(String stream) {
+        return topologies.values()
+                         .stream()
+                         .flatMap(topology -> topology.metadataList().stream())
+                         .filter(meta -> meta.inputStreams().contains(stream))
+                         .map(ComputationMetadataMapping::name)
+                         .collect(Collectors.toSet());
+    }
+
     protected Codec<Record> getCodec(Collection<String> streams) {
         Codec<Record> codec = null;
         for (String stream : streams) {
@@ -0,0 +1,112 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.computation.log;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link ThreadFactory} creating named virtual threads when the JVM supports them (Java 21+), platform threads
+ * otherwise.
+ * <p>
+ * Virtual threads are cheap to park, they are suited for I/O bound tasks where a large number of concurrent tasks
+ * would require a large pool of platform threads. The virtual thread API is accessed by reflection so that the code
+ * can run on older JVMs.
+ *
+ * @since 11.1
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+    private static final Log log = LogFactory.getLog(VirtualThreadFactory.class);
+
+    protected static final Method OF_VIRTUAL;
+
+    protected static final Method BUILDER_NAME;
+
+    protected static final Method BUILDER_UNCAUGHT_EXCEPTION_HANDLER;
+
+    protected static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method handler = null;
+        Method unstarted = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class);
+            handler = builderClass.getMethod("uncaughtExceptionHandler", UncaughtExceptionHandler.class);
+            unstarted = builderClass.getMethod("unstarted", Runnable.class);
+            // preview versions of the API fail at invocation time
+            unstarted.invoke(ofVirtual.invoke(null), (Runnable) () -> {
+            });
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            log.debug("Virtual threads are not supported: " + e.getMessage());
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNCAUGHT_EXCEPTION_HANDLER = handler;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    protected final AtomicInteger count = new AtomicInteger(0);
+
+    protected final String prefix;
+
+    protected final UncaughtExceptionHandler handler;
+
+    public VirtualThreadFactory(String prefix, UncaughtExceptionHandler handler) {
+        this.prefix = prefix;
+        this.handler = handler;
+    }
+
+    /**
+     * Returns {@code true} if the JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    @SuppressWarnings("NullableProblems")
+    @Override
+    public Thread newThread(Runnable r) {
+        String name = String.format("%s-%02d", prefix, count.getAndIncrement());
+        if (!isSupported()) {
+            Thread thread = new Thread(r, name);
+            thread.setUncaughtExceptionHandler(handler);
+            return thread;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, name);
+            builder = BUILDER_UNCAUGHT_EXCEPTION_HANDLER.invoke(builder, handler);
+            return (Thread) BUILDER_UNSTARTED.invoke(builder, r);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create virtual thread: " + name, e);
+        }
+    }
+
+}
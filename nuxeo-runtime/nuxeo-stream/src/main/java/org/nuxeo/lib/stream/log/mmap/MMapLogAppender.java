@@ -0,0 +1,325 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.internals.CloseableLogAppender;
+import org.nuxeo.lib.stream.log.internals.LogOffsetImpl;
+
+/**
+ * Memory-mapped implementation of LogAppender.
+ * <p>
+ * Each partition is a directory of fixed size segment files, see {@link MMapPartition}.
+ *
+ * @since 11.1
+ */
+public class MMapLogAppender<M extends Externalizable> implements CloseableLogAppender<M> {
+    private static final Log log = LogFactory.getLog(MMapLogAppender.class);
+
+    protected static final String PARTITION_PREFIX = "P-";
+
+    protected static final String METADATA_FILE = "metadata.properties";
+
+    protected static final int POLL_INTERVAL_MS = 100;
+
+    protected static final int MAX_PARTITIONS = 100;
+
+    public static final String PARTITIONS_KEY = "partitions";
+
+    public static final String SEGMENT_SIZE_KEY = "segmentSize";
+
+    protected final List<MMapPartition> partitions;
+
+    protected final int nbPartitions;
+
+    protected final Path basePath;
+
+    protected final int segmentSize;
+
+    protected final String name;
+
+    // keep track of created tailers to make sure they are closed before the log
+    protected final ConcurrentLinkedQueue<MMapLogTailer<M>> tailers = new ConcurrentLinkedQueue<>();
+
+    protected final MMapSyncPolicy syncPolicy;
+
+    protected final int retainedSegments;
+
+    protected final Codec<M> codec;
+
+    protected final Codec<M> encodeCodec;
+
+    protected volatile boolean closed;
+
+    /**
+     * Open an existing Log
+     */
+    protected MMapLogAppender(Codec<M> codec, Path basePath, MMapSyncPolicy syncPolicy, int retainedSegments) {
+        if (!exists(basePath)) {
+            throw new IllegalArgumentException("Cannot open Log, invalid path: " + basePath);
+        }
+        Objects.requireNonNull(codec);
+        this.codec = codec;
+        this.encodeCodec = NO_CODEC.equals(codec) ? new SerializableCodec<>() : codec;
+        this.basePath = basePath;
+        this.name = basePath.getFileName().toString();
+        this.syncPolicy = syncPolicy;
+        this.retainedSegments = retainedSegments;
+        Properties metadata = readMetadata(getMetadataPath());
+        this.nbPartitions = Integer.parseInt(metadata.getProperty(PARTITIONS_KEY));
+        this.segmentSize = Integer.parseInt(metadata.getProperty(SEGMENT_SIZE_KEY));
+        this.partitions = new ArrayList<>(nbPartitions);
+        if (log.isDebugEnabled()) {
+            log.debug("Opening: " + toString());
+        }
+        initPartitions(false);
+    }
+
+    /**
+     * Create a new Log
+     */
+    protected MMapLogAppender(Codec<M> codec, Path basePath, int size, int segmentSize, MMapSyncPolicy syncPolicy,
+            int retainedSegments) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Number of partitions must be > 0");
+        }
+        if (size > MAX_PARTITIONS) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot create more than: %d partitions for log: %s, requested: %d", MAX_PARTITIONS,
+                            basePath, size));
+        }
+        if (exists(basePath)) {
+            throw new IllegalArgumentException("Cannot create Log, already exists: " + basePath);
+        }
+        try {
+            Files.createDirectories(basePath);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid path to create Log: " + basePath, e);
+        }
+        Objects.requireNonNull(codec);
+        this.nbPartitions = size;
+        this.codec = codec;
+        this.encodeCodec = NO_CODEC.equals(codec) ? new SerializableCodec<>() : codec;
+        this.name = basePath.getFileName().toString();
+        this.basePath = basePath;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.retainedSegments = retainedSegments;
+        this.partitions = new ArrayList<>(nbPartitions);
+        if (log.isDebugEnabled()) {
+            log.debug("Creating: " + toString());
+        }
+        initPartitions(true);
+        saveMetadata();
+    }
+
+    protected void initPartitions(boolean create) {
+        for (int i = 0; i < nbPartitions; i++) {
+            Path partitionPath = basePath.resolve(String.format("%s%02d", PARTITION_PREFIX, i));
+            if (create) {
+                MMapPartition.create(partitionPath, segmentSize);
+            }
+            partitions.add(new MMapPartition(partitionPath, segmentSize, syncPolicy, retainedSegments));
+        }
+    }
+
+    protected void saveMetadata() {
+        Path metadata = getMetadataPath();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("# Log created %s%n", Instant.now().toString()));
+        builder.append(String.format("%s=%d%n", PARTITIONS_KEY, nbPartitions));
+        builder.append(String.format("%s=%d%n", SEGMENT_SIZE_KEY, segmentSize));
+        try {
+            // the metadata file is written last, a log exists once it is present
+            Path tmp = metadata.resolveSibling(METADATA_FILE + ".tmp");
+            Files.write(tmp, builder.toString().getBytes(), StandardOpenOption.CREATE_NEW);
+            Files.move(tmp, metadata);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to create metadata file: " + metadata, e);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Created Log: %s%n%s", name, builder.toString()));
+        }
+    }
+
+    protected Path getMetadataPath() {
+        return basePath.resolve(METADATA_FILE);
+    }
+
+    protected static Properties readMetadata(Path file) {
+        Properties props = new Properties();
+        try (InputStream stream = Files.newInputStream(file)) {
+            props.load(stream);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot open Log metadata file: " + file, e);
+        }
+        return props;
+    }
+
+    protected static boolean exists(Path basePath) {
+        return basePath.resolve(METADATA_FILE).toFile().exists();
+    }
+
+    /**
+     * Create a new log.
+     */
+    public static <M extends Externalizable> MMapLogAppender<M> create(Codec<M> codec, Path basePath, int size,
+            int segmentSize, MMapSyncPolicy syncPolicy, int retainedSegments) {
+        return new MMapLogAppender<>(codec, basePath, size, segmentSize, syncPolicy, retainedSegments);
+    }
+
+    /**
+     * Open an existing log.
+     */
+    public static <M extends Externalizable> MMapLogAppender<M> open(Codec<M> codec, Path basePath,
+            MMapSyncPolicy syncPolicy, int retainedSegments) {
+        return new MMapLogAppender<>(codec, basePath, syncPolicy, retainedSegments);
+    }
+
+    /**
+     * Open an existing log without sync nor retention, to read it.
+     */
+    public static <M extends Externalizable> MMapLogAppender<M> open(Codec<M> codec, Path basePath) {
+        return new MMapLogAppender<>(codec, basePath, MMapSyncPolicy.NONE, 0);
+    }
+
+    public Path getBasePath() {
+        return basePath;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int size() {
+        return nbPartitions;
+    }
+
+    @Override
+    public LogOffset append(int partition, M message) {
+        MMapPartition store = partitions.get(partition);
+        long offset = store.append(encodeCodec.encode(message));
+        LogOffset ret = new LogOffsetImpl(name, partition, offset);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("append to %s, value: %s", ret, message));
+        }
+        return ret;
+    }
+
+    public LogTailer<M> createTailer(LogPartition partition, String group, Codec<M> codec) {
+        return addTailer(new MMapLogTailer<>(codec, basePath, partitions.get(partition.partition()), partition, group,
+                syncPolicy.always()));
+    }
+
+    public long endOffset(int partition) {
+        return partitions.get(partition).endOffset();
+    }
+
+    public long firstOffset(int partition) {
+        return partitions.get(partition).firstOffset();
+    }
+
+    protected LogTailer<M> addTailer(MMapLogTailer<M> tailer) {
+        tailers.removeIf(MMapLogTailer::closed);
+        tailers.add(tailer);
+        return tailer;
+    }
+
+    @Override
+    public boolean waitFor(LogOffset offset, String group, Duration timeout) throws InterruptedException {
+        boolean ret;
+        long offsetPosition = offset.offset();
+        int partition = offset.partition().partition();
+        try (MMapLogOffsetTracker offsetTracker = new MMapLogOffsetTracker(basePath, partition, group, false)) {
+            ret = isProcessed(offsetTracker, offsetPosition);
+            if (ret) {
+                return true;
+            }
+            final long timeoutMs = timeout.toMillis();
+            final long deadline = System.currentTimeMillis() + timeoutMs;
+            final long delay = Math.min(POLL_INTERVAL_MS, timeoutMs);
+            while (!ret && System.currentTimeMillis() < deadline) {
+                Thread.sleep(delay);
+                ret = isProcessed(offsetTracker, offsetPosition);
+            }
+        }
+        return ret;
+    }
+
+    protected boolean isProcessed(MMapLogOffsetTracker tracker, long offset) {
+        // the committed offset is the next record to read
+        return tracker.readLastCommittedOffset() > offset;
+    }
+
+    @Override
+    public boolean closed() {
+        return closed;
+    }
+
+    @Override
+    public Codec<M> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public void close() {
+        log.debug("Closing: " + toString());
+        tailers.stream().filter(Objects::nonNull).forEach(MMapLogTailer::close);
+        tailers.clear();
+        partitions.stream().filter(Objects::nonNull).forEach(MMapPartition::close);
+        partitions.clear();
+        closed = true;
+    }
+
+    public static int partitions(Path basePath) {
+        return Integer.parseInt(readMetadata(basePath.resolve(METADATA_FILE)).getProperty(PARTITIONS_KEY));
+    }
+
+    @Override
+    public String toString() {
+        return "MMapLogAppender{" + "nbPartitions=" + nbPartitions + ", basePath=" + basePath + ", name='" + name
+                + '\'' + ", segmentSize=" + segmentSize + ", syncPolicy=" + syncPolicy + ", retainedSegments="
+                + retainedSegments + ", closed=" + closed + ", codec=" + codec + '}';
+    }
+
+}
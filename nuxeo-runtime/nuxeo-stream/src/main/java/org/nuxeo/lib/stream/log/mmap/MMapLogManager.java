@@ -0,0 +1,260 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.log.LogLag;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.RebalanceListener;
+import org.nuxeo.lib.stream.log.internals.AbstractLogManager;
+import org.nuxeo.lib.stream.log.internals.CloseableLogAppender;
+
+/**
+ * A local LogManager storing partitions as fixed size memory-mapped segment files.
+ * <p>
+ * Layout of a Log:
+ *
+ * <pre>
+ * basePath/logName/metadata.properties
+ * basePath/logName/P-00/00000000000000000000.seg   segment starting at offset 0
+ * basePath/logName/P-00/00000000000000000000.idx   sparse offset index of the segment
+ * basePath/logName/offset-group/P-00.offset        committed offset of the consumer group
+ * </pre>
+ *
+ * Subscription is supported, consumers of a group sharing the same volume balance the partitions between them, see
+ * {@link MMapSubscribeLogTailer}.
+ *
+ * @since 11.1
+ */
+public class MMapLogManager extends AbstractLogManager {
+    private static final Log log = LogFactory.getLog(MMapLogManager.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    protected final Path basePath;
+
+    protected final int segmentSize;
+
+    protected final MMapSyncPolicy syncPolicy;
+
+    protected final int retainedSegments;
+
+    public MMapLogManager(Path basePath) {
+        this(basePath, DEFAULT_SEGMENT_SIZE, MMapSyncPolicy.NONE, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param basePath the base path.
+     * @param segmentSize the size of segment files for the Log to create, it is also the maximum size of a record.
+     * @param syncPolicy when to force the appended records to the storage device.
+     * @param retainedSegments the number of segments to keep per partition, older segments are deleted when the
+     *            appender rolls to a new segment, 0 to keep everything.
+     */
+    public MMapLogManager(Path basePath, int segmentSize, MMapSyncPolicy syncPolicy, int retainedSegments) {
+        this.basePath = basePath;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.retainedSegments = retainedSegments;
+    }
+
+    public String getBasePath() {
+        return basePath.toAbsolutePath().toString();
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return MMapLogAppender.exists(basePath.resolve(name));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void create(String name, int size) {
+        MMapLogAppender.create(NO_CODEC, basePath.resolve(name), size, segmentSize, syncPolicy, retainedSegments)
+                       .close();
+    }
+
+    @Override
+    protected int getSize(String name) {
+        return MMapLogAppender.partitions(basePath.resolve(name));
+    }
+
+    @Override
+    public boolean delete(String name) {
+        Path path = basePath.resolve(name);
+        if (!exists(name)) {
+            return false;
+        }
+        CloseableLogAppender<?> appender = appenders.remove(name);
+        if (appender != null) {
+            appender.close();
+        }
+        try {
+            log.info("Removing Log directory: " + path);
+            deleteDirectory(path.toFile());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot remove Log directory: " + path, e);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected LogLag getLagForPartition(String name, int partition, String group) {
+        Path path = basePath.resolve(name);
+        long pos;
+        if (!MMapLogOffsetTracker.exists(path, group)) {
+            pos = 0;
+        } else {
+            try (MMapLogOffsetTracker offsetTracker = new MMapLogOffsetTracker(path, partition, group, false)) {
+                pos = offsetTracker.readLastCommittedOffset();
+            }
+        }
+        MMapLogAppender<Externalizable> appender = (MMapLogAppender<Externalizable>) appenders.get(name);
+        boolean opened = appender == null;
+        if (opened) {
+            appender = MMapLogAppender.open(NO_CODEC, path);
+        }
+        try {
+            long end = appender.endOffset(partition);
+            long first = appender.firstOffset(partition);
+            pos = Math.max(pos, first);
+            return new LogLag(pos, end, end - pos, end - first);
+        } finally {
+            if (opened) {
+                appender.close();
+            }
+        }
+    }
+
+    @Override
+    public List<LogLag> getLagPerPartition(String name, String group) {
+        int size = size(name);
+        List<LogLag> ret = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ret.add(getLagForPartition(name, i, group));
+        }
+        return ret;
+    }
+
+    @Override
+    public List<String> listAll() {
+        try (Stream<Path> paths = Files.list(basePath)) {
+            return paths.filter(MMapLogAppender::exists)
+                        .map(Path::getFileName)
+                        .map(Path::toString)
+                        .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid base path: " + basePath, e);
+        }
+    }
+
+    @Override
+    public List<String> listConsumerGroups(String name) {
+        Path logRoot = basePath.resolve(name);
+        if (!logRoot.toFile().exists()) {
+            throw new IllegalArgumentException("Unknown Log: " + name);
+        }
+        try (Stream<Path> paths = Files.list(logRoot)) {
+            return paths.filter(Files::isDirectory)
+                        .map(Path::getFileName)
+                        .map(Path::toString)
+                        .filter(MMapLogOffsetTracker::isOffsetTracker)
+                        .map(MMapLogOffsetTracker::getGroupFromDirectory)
+                        .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot access Log: " + name, e);
+        }
+    }
+
+    @Override
+    public <M extends Externalizable> CloseableLogAppender<M> createAppender(String name, Codec<M> codec) {
+        return MMapLogAppender.open(codec, basePath.resolve(name), syncPolicy, retainedSegments);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <M extends Externalizable> LogTailer<M> doCreateTailer(Collection<LogPartition> partitions, String group,
+            Codec<M> codec) {
+        Collection<MMapLogTailer<M>> pTailers = new ArrayList<>(partitions.size());
+        partitions.forEach(partition -> pTailers.add(
+                (MMapLogTailer<M>) ((MMapLogAppender<M>) getAppender(partition.name(), codec)).createTailer(
+                        partition, group, codec)));
+        if (pTailers.size() == 1) {
+            return pTailers.iterator().next();
+        }
+        return new MMapCompoundLogTailer<>(pTailers, group);
+    }
+
+    /**
+     * Creates a tailer for a partition assigned to a subscription.
+     */
+    @SuppressWarnings("unchecked")
+    protected <M extends Externalizable> MMapLogTailer<M> createPartitionTailer(LogPartition partition, String group,
+            Codec<M> codec) {
+        checkInvalidCodec(partition, codec);
+        return (MMapLogTailer<M>) ((MMapLogAppender<M>) getAppender(partition.name(), codec)).createTailer(partition,
+                group, codec);
+    }
+
+    @Override
+    public boolean supportSubscribe() {
+        return true;
+    }
+
+    @Override
+    protected <M extends Externalizable> LogTailer<M> doSubscribe(String group, Collection<String> names,
+            RebalanceListener listener, Codec<M> codec) {
+        names.forEach(name -> {
+            if (!exists(name)) {
+                throw new IllegalArgumentException("Cannot subscribe to unknown Log name: " + name);
+            }
+        });
+        List<LogPartition> partitions = names.stream()
+                                             .map(name -> LogPartition.of(name, 0))
+                                             .collect(Collectors.toList());
+        Codec<M> tailerCodec = NO_CODEC.equals(codec) ? guessCodec(partitions) : codec;
+        return new MMapSubscribeLogTailer<>(this, group, Collections.unmodifiableCollection(names), listener,
+                tailerCodec);
+    }
+
+    @Override
+    public String toString() {
+        return "MMapLogManager{" + "basePath=" + basePath + ", segmentSize=" + segmentSize + ", syncPolicy="
+                + syncPolicy + ", retainedSegments=" + retainedSegments + '}';
+    }
+
+}
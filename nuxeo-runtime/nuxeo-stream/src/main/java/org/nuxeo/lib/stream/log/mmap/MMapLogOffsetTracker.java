@@ -0,0 +1,151 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+
+/**
+ * Track committed offset of a consumer group for a partition.
+ * <p>
+ * The committed offset is the offset of the next record to read, it is stored in a small file next to the partitions:
+ * {@code offset-<group>/P-<partition>.offset}.
+ *
+ * @since 11.1
+ */
+public class MMapLogOffsetTracker implements AutoCloseable {
+    private static final Log log = LogFactory.getLog(MMapLogOffsetTracker.class);
+
+    protected static final String OFFSET_DIR_PREFIX = "offset-";
+
+    protected static final String OFFSET_SUFFIX = ".offset";
+
+    protected final Path file;
+
+    protected final boolean sync;
+
+    protected FileChannel channel;
+
+    protected long lastCommittedOffset;
+
+    public MMapLogOffsetTracker(Path basePath, int partition, String group, boolean sync) {
+        this.file = getGroupPath(basePath, group).resolve(String.format("%s%02d%s", MMapLogAppender.PARTITION_PREFIX,
+                partition, OFFSET_SUFFIX));
+        this.sync = sync;
+    }
+
+    public static Path getGroupPath(Path basePath, String group) {
+        return basePath.resolve(OFFSET_DIR_PREFIX + group);
+    }
+
+    public static boolean exists(Path basePath, String group) {
+        return getGroupPath(basePath, group).toFile().isDirectory();
+    }
+
+    public static boolean isOffsetTracker(String dirName) {
+        return dirName.startsWith(OFFSET_DIR_PREFIX);
+    }
+
+    public static String getGroupFromDirectory(String dirName) {
+        if (!isOffsetTracker(dirName)) {
+            throw new IllegalArgumentException(String.format("Invalid directory %s, not an offset tracker", dirName));
+        }
+        return dirName.substring(OFFSET_DIR_PREFIX.length());
+    }
+
+    /**
+     * Use a cache to return the last committed offset, concurrent consumer is not taken in account use
+     * {@link #readLastCommittedOffset()} in concurrency.
+     */
+    public long getLastCommittedOffset() {
+        if (lastCommittedOffset > 0) {
+            return lastCommittedOffset;
+        }
+        return readLastCommittedOffset();
+    }
+
+    /**
+     * Read the last committed offset from the file, returns 0 if there is no commit.
+     */
+    public long readLastCommittedOffset() {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (reader.read(buffer, buffer.position()) < 0) {
+                    return 0;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot read committed offset: " + file, e);
+        }
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    public void commit(long offset) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(offset).flip();
+        try {
+            FileChannel writer = getChannel();
+            // a single 8 bytes write is not split by the OS
+            while (buffer.hasRemaining()) {
+                writer.write(buffer, buffer.position());
+            }
+            if (sync) {
+                writer.force(false);
+            }
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot commit offset: " + offset + " to " + file, e);
+        }
+        lastCommittedOffset = offset;
+    }
+
+    protected FileChannel getChannel() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close offset file: " + file, e);
+            }
+            channel = null;
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
+
+import java.io.Externalizable;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.internals.LogOffsetImpl;
+import org.nuxeo.lib.stream.log.internals.LogPartitionGroup;
+
+/**
+ * A tailer on a single partition of a memory-mapped Log. Reading is lock free, the tailer polls the segment for new
+ * records.
+ *
+ * @since 11.1
+ */
+public class MMapLogTailer<M extends Externalizable> implements LogTailer<M> {
+    private static final Log log = LogFactory.getLog(MMapLogTailer.class);
+
+    protected static final long POLL_INTERVAL_MS = 10L;
+
+    // keep track of all tailers on the same namespace index even from different log
+    protected static final Set<LogPartitionGroup> tailersId = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    protected final MMapPartition store;
+
+    protected final MMapLogOffsetTracker offsetTracker;
+
+    protected final LogPartitionGroup id;
+
+    protected final LogPartition partition;
+
+    protected final Codec<M> codec;
+
+    protected final Codec<M> decodeCodec;
+
+    protected MMapSegment segment;
+
+    protected int position;
+
+    // offset of the next record to read
+    protected long offset;
+
+    protected volatile boolean closed;
+
+    public MMapLogTailer(Codec<M> codec, Path basePath, MMapPartition store, LogPartition partition, String group,
+            boolean sync) {
+        Objects.requireNonNull(group);
+        this.codec = codec;
+        // default format is the Java serialization
+        this.decodeCodec = NO_CODEC.equals(codec) ? new SerializableCodec<>() : codec;
+        this.store = store;
+        this.partition = partition;
+        this.id = new LogPartitionGroup(group, partition.name(), partition.partition());
+        registerTailer();
+        this.offsetTracker = new MMapLogOffsetTracker(basePath, partition.partition(), group, sync);
+        toLastCommitted();
+    }
+
+    protected void registerTailer() {
+        if (!tailersId.add(id)) {
+            throw new IllegalArgumentException("A tailer for this queue and namespace already exists: " + id);
+        }
+    }
+
+    protected void unregisterTailer() {
+        tailersId.remove(id);
+    }
+
+    @Override
+    public LogRecord<M> read(Duration timeout) throws InterruptedException {
+        LogRecord<M> ret = read();
+        if (ret != null) {
+            return ret;
+        }
+        long timeoutMs = timeout.toMillis();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long delay = Math.min(POLL_INTERVAL_MS, timeoutMs);
+        while (ret == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(delay);
+            ret = read();
+        }
+        return ret;
+    }
+
+    protected LogRecord<M> read() {
+        if (closed) {
+            throw new IllegalStateException("The tailer has been closed.");
+        }
+        int length;
+        while ((length = segment.length(position)) == MMapSegment.END_OF_SEGMENT) {
+            if (!nextSegment()) {
+                return null;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        M value = decodeCodec.decode(segment.read(position, length));
+        LogRecord<M> ret = new LogRecord<>(value, new LogOffsetImpl(partition, offset));
+        position += MMapSegment.recordSize(length);
+        offset++;
+        return ret;
+    }
+
+    protected boolean nextSegment() {
+        MMapSegment next = store.getSegment(offset);
+        if (next == null) {
+            long first = store.firstOffset();
+            if (offset >= first) {
+                // the appender has not yet rolled
+                return false;
+            }
+            log.warn(String.format("Segment of offset %d has been deleted by the retention, move to start: %s",
+                    offset, id));
+            toStart();
+            return true;
+        }
+        segment = next;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public LogOffset commit(LogPartition partition) {
+        if (!this.partition.equals(partition)) {
+            throw new IllegalArgumentException("Cannot commit this partition: " + partition + " from " + id);
+        }
+        offsetTracker.commit(offset);
+        if (log.isTraceEnabled()) {
+            log.trace(String.format("Commit %s:+%d", id, offset));
+        }
+        return new LogOffsetImpl(partition, offset);
+    }
+
+    @Override
+    public void commit() {
+        commit(partition);
+    }
+
+    @Override
+    public void toEnd() {
+        log.debug(String.format("toEnd: %s", id));
+        segment = store.getSegment(store.lastBaseOffset());
+        MMapSegment.Tail tail = segment.tail();
+        position = tail.position;
+        offset = segment.getBaseOffset() + tail.records;
+    }
+
+    @Override
+    public void toStart() {
+        log.debug(String.format("toStart: %s", id));
+        long first = store.firstOffset();
+        segment = store.getSegment(first);
+        position = 0;
+        offset = first;
+    }
+
+    @Override
+    public void toLastCommitted() {
+        long committed = offsetTracker.getLastCommittedOffset();
+        if (committed > 0) {
+            log.debug(String.format("toLastCommitted: %s, found: %d", id, committed));
+            if (committed < store.firstOffset()) {
+                log.warn(String.format("Last committed offset %d has been deleted by the retention, move to start: %s",
+                        committed, id));
+                toStart();
+            } else if (!moveTo(committed)) {
+                throw new IllegalStateException(
+                        "Unable to move to the last committed offset, " + this + " offset: " + committed);
+            }
+        } else {
+            log.debug(String.format("toLastCommitted: %s, not found, move toStart", id));
+            toStart();
+        }
+    }
+
+    @Override
+    public void seek(LogOffset offset) {
+        if (!this.partition.equals(offset.partition())) {
+            throw new IllegalStateException(
+                    "Cannot seek, tailer " + this + " has no assignment for partition: " + offset);
+        }
+        log.debug("Seek to " + offset + " from tailer: " + this);
+        if (!moveTo(offset.offset())) {
+            throw new IllegalStateException("Unable to seek to offset, " + this + " offset: " + offset);
+        }
+    }
+
+    protected boolean moveTo(long offset) {
+        MMapSegment target = store.getSegmentFor(offset);
+        if (target == null) {
+            return false;
+        }
+        int targetPosition = target.position(offset - target.getBaseOffset());
+        if (targetPosition < 0) {
+            return false;
+        }
+        segment = target;
+        position = targetPosition;
+        this.offset = offset;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        reset(partition);
+    }
+
+    @Override
+    public void reset(LogPartition partition) {
+        if (!this.partition.equals(partition)) {
+            throw new IllegalArgumentException("Cannot reset this partition: " + partition + " from " + id);
+        }
+        log.info("Reset offset for partition: " + partition + " from tailer: " + this);
+        toStart();
+        commit(partition);
+    }
+
+    @Override
+    public LogOffset offsetForTimestamp(LogPartition partition, long timestamp) {
+        throw new UnsupportedOperationException("MMapLog does not support seek by timestamp");
+    }
+
+    @Override
+    public Collection<LogPartition> assignments() {
+        return Collections.singletonList(partition);
+    }
+
+    @Override
+    public String group() {
+        return id.group;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            log.debug("Closing: " + toString());
+            offsetTracker.close();
+            unregisterTailer();
+            closed = true;
+        }
+    }
+
+    @Override
+    public boolean closed() {
+        return closed;
+    }
+
+    @Override
+    public Codec<M> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public String toString() {
+        return "MMapLogTailer{" + "path='" + store.getPath() + '\'' + ", id=" + id + ", offset=" + offset + ", closed="
+                + closed + ", codec=" + codec + '}';
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+
+/**
+ * A partition of a memory-mapped Log, made of a sequence of segments named by their base offset. Offsets are dense,
+ * the offset of a record is the base offset of its segment plus its rank in the segment.
+ * <p>
+ * Appends are serialized using a lock file so that multiple processes sharing the same volume can append to the same
+ * partition, readers don't need any lock.
+ *
+ * @since 11.1
+ */
+public class MMapPartition {
+    private static final Log log = LogFactory.getLog(MMapPartition.class);
+
+    protected static final String LOCK_FILE = "append.lock";
+
+    // file locks are held by the JVM, serialize appenders of the same JVM before acquiring the file lock
+    protected static final Map<Path, ReentrantLock> appendLocks = new ConcurrentHashMap<>();
+
+    protected final Path path;
+
+    protected final int segmentSize;
+
+    protected final MMapSyncPolicy syncPolicy;
+
+    protected final int retainedSegments;
+
+    protected final ConcurrentSkipListMap<Long, MMapSegment> segments = new ConcurrentSkipListMap<>();
+
+    protected FileChannel lockChannel;
+
+    // append state, guarded by the append lock
+    protected MMapSegment current;
+
+    protected int position;
+
+    protected int records;
+
+    protected long unsyncedRecords;
+
+    protected long lastSyncTime = System.currentTimeMillis();
+
+    public MMapPartition(Path path, int segmentSize, MMapSyncPolicy syncPolicy, int retainedSegments) {
+        this.path = path;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.retainedSegments = retainedSegments;
+    }
+
+    /**
+     * Creates the partition directory with an empty first segment.
+     */
+    public static void create(Path path, int segmentSize) {
+        try {
+            Files.createDirectories(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot create directory: " + path.toAbsolutePath(), e);
+        }
+        MMapSegment.create(path, 0, segmentSize);
+    }
+
+    /**
+     * Appends a record and returns its offset.
+     */
+    public long append(byte[] payload) {
+        if (payload.length > MMapSegment.maxRecordLength(segmentSize)) {
+            throw new IllegalArgumentException(String.format("Record of %d bytes is too large for segment size: %d",
+                    payload.length, segmentSize));
+        }
+        ReentrantLock lock = appendLocks.computeIfAbsent(path.toAbsolutePath(), p -> new ReentrantLock());
+        lock.lock();
+        try (FileLock ignored = getLockChannel().lock()) {
+            refreshTail();
+            if (!current.fits(position, payload.length)) {
+                roll();
+            }
+            current.write(position, records, payload);
+            long ret = current.getBaseOffset() + records;
+            position += MMapSegment.recordSize(payload.length);
+            records++;
+            unsyncedRecords++;
+            long now = System.currentTimeMillis();
+            if (syncPolicy.requireSync(unsyncedRecords, lastSyncTime, now)) {
+                sync(now);
+            }
+            return ret;
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot lock partition: " + path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected FileChannel getLockChannel() throws IOException {
+        if (lockChannel == null) {
+            lockChannel = FileChannel.open(path.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        return lockChannel;
+    }
+
+    /**
+     * Moves the append position after the records written by other appenders.
+     */
+    protected void refreshTail() {
+        if (current == null) {
+            current = getSegment(lastBaseOffset());
+            MMapSegment.Tail tail = current.tail();
+            position = tail.position;
+            records = tail.records;
+        }
+        MMapSegment.Tail tail = current.tail(position, records);
+        while (tail.closed) {
+            MMapSegment next = getSegment(current.getBaseOffset() + tail.records);
+            if (next == null) {
+                // the segment is full but not yet rolled
+                break;
+            }
+            current = next;
+            tail = current.tail(0, 0);
+        }
+        position = tail.position;
+        records = tail.records;
+    }
+
+    protected void roll() {
+        long baseOffset = current.getBaseOffset() + records;
+        MMapSegment next = getSegment(baseOffset);
+        if (next == null) {
+            next = MMapSegment.create(path, baseOffset, segmentSize);
+        }
+        current.markEnd(position);
+        if (unsyncedRecords > 0 && !syncPolicy.disable()) {
+            current.force();
+            unsyncedRecords = 0;
+            lastSyncTime = System.currentTimeMillis();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Roll partition: %s to segment: %d", path, baseOffset));
+        }
+        segments.put(baseOffset, next);
+        current = next;
+        position = 0;
+        records = 0;
+        applyRetention();
+    }
+
+    protected void applyRetention() {
+        if (retainedSegments <= 0) {
+            return;
+        }
+        List<Long> baseOffsets = listBaseOffsets();
+        for (int i = 0; i < baseOffsets.size() - retainedSegments; i++) {
+            long baseOffset = baseOffsets.get(i);
+            MMapSegment segment = segments.remove(baseOffset);
+            if (segment == null) {
+                segment = MMapSegment.open(path, baseOffset);
+            }
+            if (segment != null) {
+                log.debug("Retention delete segment: " + segment);
+                segment.delete();
+            }
+        }
+    }
+
+    protected void sync(long now) {
+        current.force();
+        unsyncedRecords = 0;
+        lastSyncTime = now;
+    }
+
+    /**
+     * Forces pending records to the storage device if the sync policy requires it.
+     */
+    public void flush() {
+        ReentrantLock lock = appendLocks.computeIfAbsent(path.toAbsolutePath(), p -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (current != null && unsyncedRecords > 0 && !syncPolicy.disable()) {
+                sync(System.currentTimeMillis());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the segment starting at the given offset, or {@code null} if there is no such segment.
+     */
+    public MMapSegment getSegment(long baseOffset) {
+        MMapSegment ret = segments.get(baseOffset);
+        if (ret == null) {
+            ret = MMapSegment.open(path, baseOffset);
+            if (ret != null) {
+                MMapSegment previous = segments.putIfAbsent(baseOffset, ret);
+                if (previous != null) {
+                    ret = previous;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the segment that contains the given offset, or {@code null} if the offset is before the first segment.
+     */
+    public MMapSegment getSegmentFor(long offset) {
+        Long baseOffset = null;
+        for (long base : listBaseOffsets()) {
+            if (base > offset) {
+                break;
+            }
+            baseOffset = base;
+        }
+        return baseOffset == null ? null : getSegment(baseOffset);
+    }
+
+    public List<Long> listBaseOffsets() {
+        try (Stream<Path> paths = Files.list(path)) {
+            return paths.filter(MMapSegment::isSegmentFile)
+                        .map(MMapSegment::getBaseOffset)
+                        .sorted()
+                        .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot list segments of partition: " + path, e);
+        }
+    }
+
+    public long firstOffset() {
+        List<Long> baseOffsets = listBaseOffsets();
+        return baseOffsets.isEmpty() ? 0 : baseOffsets.get(0);
+    }
+
+    protected long lastBaseOffset() {
+        List<Long> baseOffsets = listBaseOffsets();
+        if (baseOffsets.isEmpty()) {
+            throw new IllegalStateException("No segment found for partition: " + path);
+        }
+        return baseOffsets.get(baseOffsets.size() - 1);
+    }
+
+    /**
+     * Returns the offset of the next record to be appended.
+     */
+    public long endOffset() {
+        MMapSegment segment = getSegment(lastBaseOffset());
+        return segment.getBaseOffset() + segment.tail().records;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void close() {
+        flush();
+        if (lockChannel != null) {
+            try {
+                lockChannel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close lock file of partition: " + path, e);
+            }
+            lockChannel = null;
+        }
+        segments.clear();
+        current = null;
+    }
+
+    @Override
+    public String toString() {
+        return "MMapPartition{" + "path=" + path + ", segmentSize=" + segmentSize + ", syncPolicy=" + syncPolicy
+                + ", retainedSegments=" + retainedSegments + '}';
+    }
+
+}
@@ -0,0 +1,321 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.nuxeo.lib.stream.StreamRuntimeException;
+
+/**
+ * A fixed size segment of a partition, the segment contains consecutive records starting at a base offset.
+ * <p>
+ * The segment file is memory-mapped, a record is stored as a 4 bytes length followed by the payload, records are 8
+ * bytes aligned. The length is written last with a release semantic, a reader sees either nothing (length 0) or the
+ * full record. A length of {@value #END_OF_SEGMENT} marks the end of the segment when the appender rolls to a new one.
+ * <p>
+ * The segment comes with a sparse offset index, also memory-mapped, that stores the position of every
+ * {@value #INDEX_INTERVAL} records so that seeking to an offset requires at most {@value #INDEX_INTERVAL} jumps.
+ *
+ * @since 11.1
+ */
+public class MMapSegment {
+
+    public static final String SEGMENT_SUFFIX = ".seg";
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    public static final int INDEX_INTERVAL = 32;
+
+    protected static final int HEADER_SIZE = 4;
+
+    protected static final int ALIGNMENT = 8;
+
+    protected static final int END_OF_SEGMENT = -1;
+
+    protected static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    protected final Path path;
+
+    protected final long baseOffset;
+
+    protected final int size;
+
+    protected final MappedByteBuffer data;
+
+    protected final MappedByteBuffer index;
+
+    protected MMapSegment(Path path, long baseOffset, int size) {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        this.size = size;
+        this.data = map(getSegmentPath(path, baseOffset), size);
+        this.index = map(getIndexPath(path, baseOffset), indexSize(size));
+    }
+
+    /**
+     * Creates a new segment, the files are sparse so the disk space is allocated as records are written.
+     */
+    public static MMapSegment create(Path path, long baseOffset, int size) {
+        if (size % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("Segment size must be a multiple of " + ALIGNMENT + ": " + size);
+        }
+        allocate(getIndexPath(path, baseOffset), indexSize(size));
+        // the segment file is created last, its presence means that the segment is ready
+        allocate(getSegmentPath(path, baseOffset), size);
+        return new MMapSegment(path, baseOffset, size);
+    }
+
+    /**
+     * Opens an existing segment, returns {@code null} if the segment does not exist.
+     */
+    public static MMapSegment open(Path path, long baseOffset) {
+        Path segmentPath = getSegmentPath(path, baseOffset);
+        try {
+            long size = Files.size(segmentPath);
+            return new MMapSegment(path, baseOffset, (int) size);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    protected static void allocate(Path file, int size) {
+        // readers must never see a partially allocated file
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(tmp.toFile(), "rw")) {
+                raf.setLength(size);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot create segment file: " + file, e);
+        }
+    }
+
+    protected static MappedByteBuffer map(Path file, int size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping remains valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot map segment file: " + file, e);
+        }
+    }
+
+    protected static int indexSize(int size) {
+        return (size / ALIGNMENT / INDEX_INTERVAL + 1) * Integer.BYTES;
+    }
+
+    public static Path getSegmentPath(Path path, long baseOffset) {
+        return path.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+    }
+
+    public static Path getIndexPath(Path path, long baseOffset) {
+        return path.resolve(String.format("%020d%s", baseOffset, INDEX_SUFFIX));
+    }
+
+    public static boolean isSegmentFile(Path file) {
+        return file.getFileName().toString().endsWith(SEGMENT_SUFFIX);
+    }
+
+    public static long getBaseOffset(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Returns the size taken by a record with the given payload length.
+     */
+    public static int recordSize(int length) {
+        int ret = HEADER_SIZE + length;
+        return (ret + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Returns the maximum payload length of a record in a segment of the given size.
+     */
+    public static int maxRecordLength(int size) {
+        return size - HEADER_SIZE;
+    }
+
+    public long getBaseOffset() {
+        return baseOffset;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the payload length of the record at the given position, 0 if there is no record yet, or
+     * {@link #END_OF_SEGMENT}.
+     */
+    public int length(int position) {
+        if (position + HEADER_SIZE > size) {
+            return END_OF_SEGMENT;
+        }
+        int ret = (int) INT.getAcquire(data, position);
+        if (ret < END_OF_SEGMENT || ret > maxRecordLength(size) - position) {
+            throw new IllegalStateException(String.format("Corrupted segment %s at position %d, length: %d",
+                    getSegmentPath(path, baseOffset), position, ret));
+        }
+        return ret;
+    }
+
+    public byte[] read(int position, int length) {
+        byte[] ret = new byte[length];
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(position + HEADER_SIZE);
+        buffer.get(ret);
+        return ret;
+    }
+
+    public boolean fits(int position, int length) {
+        return position + recordSize(length) <= size;
+    }
+
+    /**
+     * Writes the record number {@code record} of the segment at the given position. The caller is responsible for
+     * exclusive access.
+     */
+    public void write(int position, int record, byte[] payload) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(position + HEADER_SIZE);
+        buffer.put(payload);
+        if (record > 0 && record % INDEX_INTERVAL == 0) {
+            INT.setRelease(index, (record / INDEX_INTERVAL) * Integer.BYTES, position);
+        }
+        // publish the record
+        INT.setRelease(data, position, payload.length);
+    }
+
+    /**
+     * Marks the end of segment at the given position, there is nothing to do if the segment is full.
+     */
+    public void markEnd(int position) {
+        if (position + HEADER_SIZE <= size) {
+            INT.setRelease(data, position, END_OF_SEGMENT);
+        }
+    }
+
+    /**
+     * Returns the position of the record number {@code record}, or -1 if the segment does not contain enough records.
+     * The position of the next record to write is a valid result.
+     */
+    public int position(long record) {
+        int entry = (int) Math.min(record / INDEX_INTERVAL, lastIndexEntry());
+        int position = entry == 0 ? 0 : (int) INT.getAcquire(index, entry * Integer.BYTES);
+        for (long i = (long) entry * INDEX_INTERVAL; i < record; i++) {
+            int length = length(position);
+            if (length <= 0) {
+                return -1;
+            }
+            position += recordSize(length);
+        }
+        return position;
+    }
+
+    /**
+     * Scans the segment from the last indexed position to find where the next record will be written.
+     */
+    public Tail tail() {
+        int entry = lastIndexEntry();
+        return tail(entry == 0 ? 0 : (int) INT.getAcquire(index, entry * Integer.BYTES), entry * INDEX_INTERVAL);
+    }
+
+    /**
+     * Scans the segment from a known record position to find where the next record will be written.
+     */
+    public Tail tail(int position, int record) {
+        int length;
+        while ((length = length(position)) > 0) {
+            position += recordSize(length);
+            record++;
+        }
+        return new Tail(position, record, length == END_OF_SEGMENT);
+    }
+
+    protected int lastIndexEntry() {
+        // entries are written in sequence, search the last non empty one
+        int low = 0;
+        int high = index.capacity() / Integer.BYTES - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if ((int) INT.getAcquire(index, mid * Integer.BYTES) > 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Forces the segment and its index to the storage device.
+     */
+    public void force() {
+        data.force();
+        index.force();
+    }
+
+    /**
+     * Deletes the segment files, the mapping stays valid for readers until it is garbage collected.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(getSegmentPath(path, baseOffset));
+            Files.deleteIfExists(getIndexPath(path, baseOffset));
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot delete segment: " + this, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MMapSegment{" + "path=" + path + ", baseOffset=" + baseOffset + ", size=" + size + '}';
+    }
+
+    /**
+     * The position where the next record of a segment will be written.
+     */
+    public static class Tail {
+
+        public final int position;
+
+        public final int records;
+
+        public final boolean closed;
+
+        public Tail(int position, int records, boolean closed) {
+            this.position = position;
+            this.records = records;
+            this.closed = closed;
+        }
+    }
+
+}
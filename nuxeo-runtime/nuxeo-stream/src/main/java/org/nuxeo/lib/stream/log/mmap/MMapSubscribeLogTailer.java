@@ -0,0 +1,391 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.RebalanceException;
+import org.nuxeo.lib.stream.log.RebalanceListener;
+
+/**
+ * A tailer subscribing to Logs, the partitions are balanced between the consumers of the group sharing the same
+ * volume.
+ * <p>
+ * Each consumer registers a member file in {@code offset-<group>/members} that is touched as a heartbeat, a member
+ * without heartbeat for {@value #SESSION_TIMEOUT_MS}ms is considered gone. The partitions of a Log are distributed in
+ * round robin on the sorted list of members, the ownership of a partition is protected by a file lock so that two
+ * consumers never read the same partition, even when their view of the members differs for a short time.
+ * <p>
+ * Like with Kafka, a change of assignments raises a {@link RebalanceException} on read after notifying the
+ * {@link RebalanceListener}. The new tailers start at the last committed offsets.
+ *
+ * @since 11.1
+ */
+public class MMapSubscribeLogTailer<M extends Externalizable> implements LogTailer<M> {
+    private static final Log log = LogFactory.getLog(MMapSubscribeLogTailer.class);
+
+    protected static final String MEMBERS_DIR = "members";
+
+    protected static final String LOCK_SUFFIX = ".lock";
+
+    // interval between heartbeat and assignments check
+    protected static final long CHECK_INTERVAL_MS = 1000;
+
+    protected static final long SESSION_TIMEOUT_MS = 10_000;
+
+    // wait for other consumers starting at the same time before the first assignment
+    protected static final long JOIN_DELAY_MS = 200;
+
+    protected final MMapLogManager manager;
+
+    protected final String group;
+
+    protected final List<String> names;
+
+    protected final RebalanceListener listener;
+
+    protected final Codec<M> codec;
+
+    protected final String memberId = UUID.randomUUID().toString();
+
+    protected final long joinTime = System.currentTimeMillis();
+
+    protected final Map<LogPartition, FileLock> locks = new HashMap<>();
+
+    protected List<LogPartition> partitions = Collections.emptyList();
+
+    protected LogTailer<M> tailer = new MMapCompoundLogTailer<>(Collections.emptyList(), null);
+
+    protected boolean assigned;
+
+    protected long nextCheck;
+
+    protected volatile boolean closed;
+
+    public MMapSubscribeLogTailer(MMapLogManager manager, String group, Collection<String> names,
+            RebalanceListener listener, Codec<M> codec) {
+        this.manager = manager;
+        this.group = group;
+        this.names = names.stream().sorted().collect(Collectors.toList());
+        this.listener = listener;
+        this.codec = codec;
+        heartbeat(joinTime);
+        log.debug(String.format("Created tailer with subscription: %s:%s member: %s", group, names, memberId));
+    }
+
+    @Override
+    public LogRecord<M> read(Duration timeout) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("The tailer has been closed.");
+        }
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        checkAssignments();
+        // don't wait more than the check interval so that a rebalance is not delayed by a long timeout
+        LogRecord<M> ret = tailer.read(Duration.ofMillis(Math.min(timeout.toMillis(), CHECK_INTERVAL_MS)));
+        while (ret == null && System.currentTimeMillis() < deadline) {
+            checkAssignments();
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            ret = tailer.read(Duration.ofMillis(Math.min(remaining, CHECK_INTERVAL_MS)));
+        }
+        return ret;
+    }
+
+    protected void checkAssignments() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        if (!assigned) {
+            long delay = joinTime + JOIN_DELAY_MS - now;
+            if (delay > 0) {
+                Thread.sleep(delay);
+                now = System.currentTimeMillis();
+            }
+        } else if (now < nextCheck) {
+            return;
+        }
+        nextCheck = now + CHECK_INTERVAL_MS;
+        heartbeat(now);
+        List<LogPartition> wanted = computeAssignments(now);
+        if (assigned && wanted.equals(partitions)) {
+            return;
+        }
+        List<LogPartition> acquired = wanted.stream().filter(this::acquire).collect(Collectors.toList());
+        if (assigned && acquired.equals(partitions)) {
+            // waiting for other members to release their partitions
+            return;
+        }
+        rebalance(acquired);
+    }
+
+    protected void rebalance(List<LogPartition> newPartitions) {
+        if (assigned) {
+            log.info(String.format("Rebalance revoked: %s", partitions));
+            if (listener != null) {
+                listener.onPartitionsRevoked(partitions);
+            }
+        }
+        tailer.close();
+        new ArrayList<>(locks.keySet()).stream().filter(p -> !newPartitions.contains(p)).forEach(this::release);
+        List<MMapLogTailer<M>> tailers = new ArrayList<>(newPartitions.size());
+        for (LogPartition partition : newPartitions) {
+            try {
+                tailers.add(manager.createPartitionTailer(partition, group, codec));
+            } catch (IllegalArgumentException e) {
+                // there is already a tailer for this partition and group in this JVM
+                log.warn(String.format("Cannot assign partition: %s to %s: %s", partition, this, e.getMessage()));
+                release(partition);
+            }
+        }
+        partitions = tailers.stream().flatMap(t -> t.assignments().stream()).collect(Collectors.toList());
+        tailer = new MMapCompoundLogTailer<>(tailers, group);
+        assigned = true;
+        log.info(String.format("Rebalance assigned: %s", partitions));
+        if (listener != null) {
+            listener.onPartitionsAssigned(partitions);
+        }
+        throw new RebalanceException("Partitions has been rebalanced");
+    }
+
+    /**
+     * Distributes the partitions of each Log in round robin on the live members, the starting member depends on the
+     * Log so that small Logs are not all assigned to the same member.
+     */
+    protected List<LogPartition> computeAssignments(long now) {
+        List<LogPartition> ret = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            List<String> members = getLiveMembers(name, now);
+            int rank = members.indexOf(memberId);
+            int size = manager.size(name);
+            for (int partition = 0; partition < size; partition++) {
+                if ((partition + i) % members.size() == rank) {
+                    ret.add(LogPartition.of(name, partition));
+                }
+            }
+        }
+        return ret;
+    }
+
+    protected List<String> getLiveMembers(String name, long now) {
+        Path membersPath = getMembersPath(name);
+        List<String> ret = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(membersPath)) {
+            paths.forEach(member -> {
+                String id = member.getFileName().toString();
+                if (memberId.equals(id) || now - member.toFile().lastModified() < SESSION_TIMEOUT_MS) {
+                    ret.add(id);
+                } else {
+                    log.info(String.format("Removing member without heartbeat: %s from group: %s", id, group));
+                    deleteMember(member);
+                }
+            });
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot list members of group: " + group, e);
+        }
+        if (!ret.contains(memberId)) {
+            ret.add(memberId);
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    protected void heartbeat(long now) {
+        for (String name : names) {
+            Path member = getMembersPath(name).resolve(memberId);
+            try {
+                if (!member.toFile().exists()) {
+                    Files.createDirectories(member.getParent());
+                    Files.createFile(member);
+                }
+                Files.setLastModifiedTime(member, FileTime.fromMillis(now));
+            } catch (IOException e) {
+                throw new StreamRuntimeException("Cannot register member: " + member, e);
+            }
+        }
+    }
+
+    protected Path getGroupPath(String name) {
+        return MMapLogOffsetTracker.getGroupPath(manager.basePath.resolve(name), group);
+    }
+
+    protected Path getMembersPath(String name) {
+        return getGroupPath(name).resolve(MEMBERS_DIR);
+    }
+
+    protected boolean acquire(LogPartition partition) {
+        if (locks.containsKey(partition)) {
+            return true;
+        }
+        Path lockPath = getGroupPath(partition.name()).resolve(
+                String.format("%s%02d%s", MMapLogAppender.PARTITION_PREFIX, partition.partition(), LOCK_SUFFIX));
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                locks.put(partition, lock);
+                return true;
+            }
+        } catch (OverlappingFileLockException e) {
+            // the partition is owned by another consumer of this JVM
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot lock partition: " + lockPath, e);
+        }
+        closeQuietly(channel);
+        return false;
+    }
+
+    protected void release(LogPartition partition) {
+        FileLock lock = locks.remove(partition);
+        if (lock != null) {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                log.warn("Cannot release lock on partition: " + partition, e);
+            }
+            closeQuietly(lock.channel());
+        }
+    }
+
+    protected void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Cannot close channel", e);
+            }
+        }
+    }
+
+    protected void deleteMember(Path member) {
+        try {
+            Files.deleteIfExists(member);
+        } catch (IOException e) {
+            log.warn("Cannot remove member: " + member, e);
+        }
+    }
+
+    @Override
+    public LogOffset commit(LogPartition partition) {
+        return tailer.commit(partition);
+    }
+
+    @Override
+    public void commit() {
+        tailer.commit();
+    }
+
+    @Override
+    public void toEnd() {
+        tailer.toEnd();
+    }
+
+    @Override
+    public void toStart() {
+        tailer.toStart();
+    }
+
+    @Override
+    public void toLastCommitted() {
+        tailer.toLastCommitted();
+    }
+
+    @Override
+    public void seek(LogOffset offset) {
+        tailer.seek(offset);
+    }
+
+    @Override
+    public LogOffset offsetForTimestamp(LogPartition partition, long timestamp) {
+        throw new UnsupportedOperationException("MMapLog does not support seek by timestamp");
+    }
+
+    @Override
+    public void reset() {
+        tailer.reset();
+    }
+
+    @Override
+    public void reset(LogPartition partition) {
+        tailer.reset(partition);
+    }
+
+    @Override
+    public Collection<LogPartition> assignments() {
+        return partitions;
+    }
+
+    @Override
+    public String group() {
+        return group;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        log.debug("Closing: " + toString());
+        tailer.close();
+        new ArrayList<>(locks.keySet()).forEach(this::release);
+        names.forEach(name -> deleteMember(getMembersPath(name).resolve(memberId)));
+        closed = true;
+    }
+
+    @Override
+    public boolean closed() {
+        return closed;
+    }
+
+    @Override
+    public Codec<M> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public String toString() {
+        return "MMapSubscribeLogTailer{" + "group='" + group + '\'' + ", names=" + names + ", member=" + memberId
+                + ", partitions=" + partitions + ", closed=" + closed + '}';
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.mmap;
+
+/**
+ * Defines when the memory-mapped segments are flushed to the storage device.
+ * <p>
+ * Without explicit sync the data is written by the OS when it flushes dirty pages, which is enough to survive a process
+ * crash but not a host crash. A sync forces the dirty pages of the current segment and its index, the policy batches
+ * appends so that this cost is shared by multiple records.
+ * <p>
+ * The policy is expressed as a comma separated list of thresholds, the first reached triggers the sync:
+ * <ul>
+ * <li>{@code none}: never sync explicitly, this is the default</li>
+ * <li>{@code always}: sync after each append and commit</li>
+ * <li>{@code 1000}: sync every 1000 appended records</li>
+ * <li>{@code 100ms}, {@code 1s}: sync on append if the last sync is older than the interval</li>
+ * </ul>
+ * For instance {@code 1000,1s} syncs every 1000 records or when the last sync is older than a second.
+ *
+ * @since 11.1
+ */
+public class MMapSyncPolicy {
+
+    public static final MMapSyncPolicy NONE = new MMapSyncPolicy("none");
+
+    public static final MMapSyncPolicy ALWAYS = new MMapSyncPolicy("always");
+
+    protected static final String NONE_POLICY = "none";
+
+    protected static final String ALWAYS_POLICY = "always";
+
+    protected final String policy;
+
+    protected final long maxRecords;
+
+    protected final long maxDelayMs;
+
+    public MMapSyncPolicy(String policy) {
+        this.policy = policy == null || policy.trim().isEmpty() ? NONE_POLICY : policy.trim();
+        long records = 0;
+        long delay = 0;
+        for (String threshold : this.policy.split(",")) {
+            threshold = threshold.trim().toLowerCase();
+            if (NONE_POLICY.equals(threshold)) {
+                continue;
+            }
+            if (ALWAYS_POLICY.equals(threshold)) {
+                records = 1;
+            } else if (threshold.endsWith("ms")) {
+                delay = parse(threshold.substring(0, threshold.length() - 2));
+            } else if (threshold.endsWith("s")) {
+                delay = parse(threshold.substring(0, threshold.length() - 1)) * 1000;
+            } else {
+                records = parse(threshold);
+            }
+        }
+        this.maxRecords = records;
+        this.maxDelayMs = delay;
+    }
+
+    protected long parse(String value) {
+        try {
+            long ret = Long.parseLong(value);
+            if (ret <= 0) {
+                throw new IllegalArgumentException("Invalid sync policy: " + policy + ", expecting positive values");
+            }
+            return ret;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sync policy: " + policy, e);
+        }
+    }
+
+    public static MMapSyncPolicy of(String policy) {
+        return new MMapSyncPolicy(policy);
+    }
+
+    /**
+     * Returns {@code true} if there is no explicit sync.
+     */
+    public boolean disable() {
+        return maxRecords <= 0 && maxDelayMs <= 0;
+    }
+
+    /**
+     * Returns {@code true} if each append and commit is synced.
+     */
+    public boolean always() {
+        return maxRecords == 1;
+    }
+
+    /**
+     * Returns {@code true} if a sync is required given the number of records appended and the time of the last sync.
+     */
+    public boolean requireSync(long unsyncedRecords, long lastSyncTime, long now) {
+        if (unsyncedRecords <= 0) {
+            return false;
+        }
+        return maxRecords > 0 && unsyncedRecords >= maxRecords || maxDelayMs > 0 && now - lastSyncTime >= maxDelayMs;
+    }
+
+    public long getMaxRecords() {
+        return maxRecords;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    @Override
+    public String toString() {
+        return policy;
+    }
+
+}
@@ -35,6 +35,7 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.log.chronicle.ChronicleLogManager;
 import org.nuxeo.lib.stream.log.kafka.KafkaLogManager;
+import org.nuxeo.lib.stream.log.mmap.MMapLogManager;
 import org.nuxeo.lib.stream.tools.command.Command;
 import org.nuxeo.lib.stream.tools.command.HelpCommand;
 
@@ -52,6 +53,8 @@ public class Main {
 
     protected static final String KAFKA_OPT = "kafka";
 
+    protected static final String MMAP_OPT = "mmap";
+
     protected final Map<String, Command> commandMap = new HashMap<>();
 
     protected final Options options = new Options();
@@ -102,11 +105,13 @@ public class Main {
         }
         if (cmdLine.hasOption(CHRONICLE_OPT)) {
             createChronicleManager(cmdLine.getOptionValue(CHRONICLE_OPT));
+        } else if (cmdLine.hasOption(MMAP_OPT)) {
+            createMMapManager(cmdLine.getOptionValue(MMAP_OPT));
         } else if (cmdLine.hasOption(KAFKA_OPT) || cmdLine.hasOption("k")) {
             String contribPath = cmdLine.getOptionValue(KAFKA_OPT, NUXEO_KAFKA_FILE_CONF);
             createKafkaManager(contribPath, cmdLine.getOptionValue("kafka-config", NUXEO_KAFKA_CONF));
         } else {
-            throw new IllegalArgumentException("Missing required option: --chronicle or --kafka");
+            throw new IllegalArgumentException("Missing required option: --chronicle, --mmap or --kafka");
         }
     }
 
@@ -120,6 +125,10 @@ public class Main {
         manager = new ChronicleLogManager(Paths.get(basePath));
     }
 
+    protected void createMMapManager(String basePath) {
+        manager = new MMapLogManager(Paths.get(basePath));
+    }
+
     protected Command getCommand() {
         if (commandMap.isEmpty()) {
             new CommandRegistry().commands().forEach(cmd -> commandMap.put(cmd.name(), cmd));
@@ -139,6 +148,12 @@ public class Main {
                                 .hasArg()
                                 .argName("PATH")
                                 .build());
+        options.addOption(Option.builder()
+                                .longOpt(MMAP_OPT)
+                                .desc("Base path of the memory-mapped LogManager")
+                                .hasArg()
+                                .argName("PATH")
+                                .build());
         options.addOption(Option.builder()
                                 .longOpt(KAFKA_OPT)
                                 .desc("Nuxeo Kafka configuration contribution file: nxserver/config/kafka-config.xml")
@@ -0,0 +1,57 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.tests.computation;
+
+import static org.nuxeo.lib.stream.tests.TestLibChronicle.IS_WIN;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.mmap.MMapLogManager;
+
+/**
+ * @since 11.1
+ */
+public class TestLogStreamProcessorMMap extends TestStreamProcessor {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected File basePath;
+
+    @Before
+    public void skipWindowsThatDoNotCleanTempFolder() {
+        org.junit.Assume.assumeFalse(IS_WIN);
+    }
+
+    @Override
+    public LogManager getLogManager() throws Exception {
+        this.basePath = folder.newFolder();
+        return new MMapLogManager(basePath.toPath());
+    }
+
+    @Override
+    public LogManager getSameLogManager() {
+        return new MMapLogManager(basePath.toPath());
+    }
+
+}
@@ -28,6 +28,9 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -38,6 +41,8 @@ import org.nuxeo.lib.stream.codec.AvroJsonCodec;
 import org.nuxeo.lib.stream.codec.AvroMessageCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.computation.AbstractComputation;
+import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.ComputationPolicy;
 import org.nuxeo.lib.stream.computation.ComputationPolicyBuilder;
 import org.nuxeo.lib.stream.computation.Record;
@@ -46,15 +51,22 @@ import org.nuxeo.lib.stream.computation.StreamManager;
 import org.nuxeo.lib.stream.computation.StreamProcessor;
 import org.nuxeo.lib.stream.computation.Topology;
 import org.nuxeo.lib.stream.computation.Watermark;
+import org.nuxeo.lib.stream.computation.log.ComputationRunner;
 import org.nuxeo.lib.stream.computation.log.LogStreamManager;
 import org.nuxeo.lib.stream.log.Latency;
 import org.nuxeo.lib.stream.log.LogAppender;
 import org.nuxeo.lib.stream.log.LogLag;
 import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogRecord;
 import org.nuxeo.lib.stream.log.LogTailer;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Snapshot;
+
 import net.jodah.failsafe.RetryPolicy;
 
 /**
@@ -208,6 +220,11 @@ public abstract class TestStreamProcessor {
     }
 
     public void testComplexTopo(int nbRecords, int concurrency, int partitions) throws Exception {
+        testComplexTopo(nbRecords, concurrency, partitions, null);
+    }
+
+    public void testComplexTopo(int nbRecords, int concurrency, int partitions, ComputationPolicy policy)
+            throws Exception {
         final long targetTimestamp = System.currentTimeMillis();
         Topology topology = Topology.builder()
                                     .addComputation(
@@ -228,7 +245,7 @@ public abstract class TestStreamProcessor {
                                             Arrays.asList("i1:s5", "o1:output"))
                                     .build();
 
-        Settings settings = new Settings(concurrency, partitions, codec).setPartitions("output", 1);
+        Settings settings = new Settings(concurrency, partitions, codec, policy).setPartitions("output", 1);
         settings.setConcurrency("C4", 4).setPartitions("s3", 4).setConcurrency("COUNTER", 4).setPartitions("s5", 4);
         // uncomment to get the plantuml diagram
         // System.out.println(topology.toPlantuml(settings));
@@ -296,6 +313,126 @@ public abstract class TestStreamProcessor {
         testComplexTopo(100, 6, 8);
     }
 
+    @Test
+    public void testComplexTopoManyRecordsReadBatch() throws Exception {
+        int readBatchCapacity = 50;
+        ComputationPolicy policy = new ComputationPolicyBuilder().readBatchPolicy(readBatchCapacity,
+                Duration.ofMillis(100)).backPressure(500).build();
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(ComputationRunner.NUXEO_METRICS_REGISTRY_NAME);
+        List<String> computations = Arrays.asList("C1", "C2", "C3", "C4", "COUNTER");
+        computations.forEach(name -> registry.remove(getReadBatchSizeMetricName(name)));
+
+        testComplexTopo(1003, 2, 4, policy);
+
+        long maxBatchSize = 0;
+        for (String name : computations) {
+            Histogram histogram = registry.histogram(getReadBatchSizeMetricName(name));
+            assertTrue(name, histogram.getCount() > 0);
+            Snapshot snapshot = histogram.getSnapshot();
+            assertTrue(name + ": " + snapshot.getMax(), snapshot.getMax() <= readBatchCapacity);
+            maxBatchSize = Math.max(maxBatchSize, snapshot.getMax());
+        }
+        // records are read by batch once the first ones are quickly processed
+        assertTrue(String.valueOf(maxBatchSize), maxBatchSize > 1);
+    }
+
+    protected String getReadBatchSizeMetricName(String computation) {
+        return MetricRegistry.name("nuxeo", "stream", "computation", computation, "readBatchSize");
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        testBackPressure(new ComputationPolicyBuilder().backPressure(10).build());
+    }
+
+    @Test
+    public void testBackPressureReadBatch() throws Exception {
+        testBackPressure(new ComputationPolicyBuilder().readBatchPolicy(5, Duration.ofMillis(100))
+                                                       .backPressure(10)
+                                                       .build());
+    }
+
+    protected void testBackPressure(ComputationPolicy policy) throws Exception {
+        // 20ms per record, the lag of the downstream computation is over 10 before the second check after 1s
+        Topology topology = Topology.builder()
+                                    .addComputation(() -> new ComputationForwardSlow("C1", 1, 1, 20),
+                                            Arrays.asList("i1:input", "o1:output"))
+                                    .build();
+        // the downstream computation is registered but not yet started
+        Topology downstream = Topology.builder()
+                                      .addComputation(() -> new ComputationForward("C2", 1, 1),
+                                              Arrays.asList("i1:output", "o1:output2"))
+                                      .build();
+        int nbRecords = 200;
+        try (LogManager manager = getLogManager()) {
+            StreamManager streamManager = new LogStreamManager(manager);
+            Settings settings = new Settings(1, 1, codec, policy);
+            StreamProcessor processor = streamManager.registerAndCreateProcessor("processor", topology, settings);
+            streamManager.register("downstream", downstream, new Settings(1, 1, codec));
+            // a stale consumer group that is not a registered computation doesn't hold back the processing
+            streamManager.append(OUTPUT_STREAM, Record.of("marker", null));
+            try (LogTailer<Record> tailer = manager.createTailer("stale", LogPartition.of(OUTPUT_STREAM, 0), codec)) {
+                assertNotNull(tailer.read(Duration.ofSeconds(1)));
+                tailer.commit();
+            }
+            for (int i = 0; i < nbRecords; i++) {
+                streamManager.append("input", Record.of("key" + i, null));
+            }
+            processor.start();
+            assertTrue(processor.waitForAssignments(Duration.ofSeconds(10)));
+
+            Thread.sleep(2500);
+            long lag = manager.getLag("input", "C1").lag();
+            assertTrue(String.valueOf(lag), lag > 0);
+            // reads are stalled while the downstream lag is over the limit
+            Thread.sleep(1500);
+            assertEquals(lag, manager.getLag("input", "C1").lag());
+            assertTrue(manager.getLag(OUTPUT_STREAM, "C2").lag() > 10);
+
+            // the downstream computation catches up, reads resume
+            StreamProcessor downstreamProcessor = streamManager.createStreamProcessor("downstream");
+            downstreamProcessor.start();
+            try {
+                assertTrue(processor.drainAndStop(Duration.ofSeconds(60)));
+            } finally {
+                assertTrue(downstreamProcessor.drainAndStop(Duration.ofSeconds(60)));
+            }
+            assertEquals(0, manager.getLag("input", "C1").lag());
+            assertTrue(manager.getLag(OUTPUT_STREAM, "stale").lag() > 10);
+        }
+    }
+
+    @Test
+    public void testReadBatchLastOffsetPerRecord() throws Exception {
+        ComputationPolicy policy = new ComputationPolicyBuilder().readBatchPolicy(50, Duration.ofMillis(100)).build();
+        Set<LogOffset> offsets = ConcurrentHashMap.newKeySet();
+        // a computation processing records one by one sees the offset of each record of a batch
+        Topology topology = Topology.builder()
+                                    .addComputation(() -> new AbstractComputation("C1", 1, 0) {
+                                        @Override
+                                        public void processRecord(ComputationContext context, String inputStreamName,
+                                                Record record) {
+                                            offsets.add(context.getLastOffset());
+                                            context.askForCheckpoint();
+                                        }
+                                    }, Collections.singletonList("i1:input"))
+                                    .build();
+        int nbRecords = 100;
+        try (LogManager manager = getLogManager()) {
+            StreamManager streamManager = new LogStreamManager(manager);
+            Settings settings = new Settings(1, 1, codec, policy);
+            StreamProcessor processor = streamManager.registerAndCreateProcessor("processor", topology, settings);
+            for (int i = 0; i < nbRecords; i++) {
+                streamManager.append("input", Record.of("key" + i, null));
+            }
+            processor.start();
+            assertTrue(processor.waitForAssignments(Duration.ofSeconds(10)));
+            assertTrue(processor.drainAndStop(Duration.ofSeconds(60)));
+            assertEquals(0, manager.getLag("input", "C1").lag());
+            assertEquals(nbRecords, offsets.size());
+        }
+    }
+
     @Test
     public void testStopAndResume() throws Exception {
         final long targetTimestamp = System.currentTimeMillis();
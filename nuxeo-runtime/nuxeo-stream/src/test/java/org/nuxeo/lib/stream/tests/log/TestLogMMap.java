@@ -0,0 +1,285 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.tests.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.nuxeo.lib.stream.tests.TestLibChronicle.IS_WIN;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.lib.stream.log.LogAppender;
+import org.nuxeo.lib.stream.log.LogLag;
+import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogOffset;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.RebalanceException;
+import org.nuxeo.lib.stream.log.mmap.MMapLogManager;
+import org.nuxeo.lib.stream.log.mmap.MMapSyncPolicy;
+import org.nuxeo.lib.stream.tests.KeyValueMessage;
+
+/**
+ * @since 11.1
+ */
+public class TestLogMMap extends TestLog {
+
+    protected static final int SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected Path basePath;
+
+    @Before
+    public void skipWindowsThatDoNotCleanTempFolder() {
+        org.junit.Assume.assumeFalse(IS_WIN);
+    }
+
+    @After
+    public void resetBasePath() {
+        basePath = null;
+    }
+
+    @Override
+    public LogManager createManager() throws Exception {
+        if (basePath == null) {
+            basePath = folder.newFolder().toPath();
+        }
+        return new MMapLogManager(basePath, SEGMENT_SIZE, MMapSyncPolicy.of("100,1s"), 0);
+    }
+
+    protected long countSegments(String name, int partition) throws Exception {
+        Path partitionPath = Paths.get(((MMapLogManager) manager).getBasePath(), name, String.format("P-%02d", partition));
+        try (Stream<Path> paths = Files.list(partitionPath)) {
+            return paths.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    public void testRollSegments() throws Exception {
+        final int NB_MSG = 500;
+        final byte[] value = new byte[1024];
+        manager.createIfNotExists(logName, 1);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        List<LogOffset> offsets = new ArrayList<>(NB_MSG);
+        for (int i = 0; i < NB_MSG; i++) {
+            offsets.add(appender.append(0, KeyValueMessage.of("id" + i, value)));
+        }
+        // records are spread over multiple segments
+        assertTrue(countSegments(logName, 0) > 5);
+        assertEquals(LogLag.of(NB_MSG), manager.getLag(logName, "group"));
+
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", LogPartition.of(logName, 0))) {
+            for (int i = 0; i < NB_MSG; i++) {
+                LogRecord<KeyValueMessage> record = tailer.read(DEF_TIMEOUT);
+                assertEquals("id" + i, record.message().key());
+                assertEquals(offsets.get(i), record.offset());
+            }
+            // seek uses the offset index of the segment
+            tailer.seek(offsets.get(321));
+            assertEquals("id321", tailer.read(DEF_TIMEOUT).message().key());
+            tailer.commit();
+        }
+
+        // appending after a restart continues on the last segment
+        resetManager();
+        appender = manager.getAppender(logName);
+        LogOffset offset = appender.append(0, KeyValueMessage.of("id" + NB_MSG, value));
+        assertEquals(NB_MSG, offset.offset());
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", LogPartition.of(logName, 0))) {
+            assertEquals("id322", tailer.read(DEF_TIMEOUT).message().key());
+            tailer.toEnd();
+            assertNull(tailer.read(SMALL_TIMEOUT));
+            appender.append(0, KeyValueMessage.of("last", value));
+            assertEquals("last", tailer.read(DEF_TIMEOUT).message().key());
+        }
+    }
+
+    @Test
+    public void testSegmentRetention() throws Exception {
+        final int NB_MSG = 500;
+        final byte[] value = new byte[1024];
+        manager.close();
+        manager = new MMapLogManager(basePath, SEGMENT_SIZE, MMapSyncPolicy.NONE, 2);
+        manager.createIfNotExists(logName, 1);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        for (int i = 0; i < NB_MSG; i++) {
+            appender.append(0, KeyValueMessage.of("id" + i, value));
+        }
+        assertEquals(2, countSegments(logName, 0));
+        LogLag lag = manager.getLag(logName, "group");
+        assertTrue(lag.toString(), lag.lag() < NB_MSG);
+        // a new tailer starts at the first retained record
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer("group", LogPartition.of(logName, 0))) {
+            LogRecord<KeyValueMessage> record = tailer.read(DEF_TIMEOUT);
+            assertNotNull(record);
+            assertEquals(NB_MSG - lag.lag(), record.offset().offset());
+        }
+    }
+
+    @Test
+    public void testRecordTooLarge() {
+        manager.createIfNotExists(logName, 1);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        try {
+            appender.append(0, KeyValueMessage.of("id", new byte[SEGMENT_SIZE]));
+            fail("A record larger than a segment cannot be appended");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSyncPolicy() {
+        assertTrue(MMapSyncPolicy.of(null).disable());
+        assertTrue(MMapSyncPolicy.NONE.disable());
+        assertTrue(MMapSyncPolicy.ALWAYS.always());
+        MMapSyncPolicy policy = MMapSyncPolicy.of("1000, 100ms");
+        assertEquals(1000, policy.getMaxRecords());
+        assertEquals(100, policy.getMaxDelayMs());
+        assertFalse(policy.requireSync(0, 0, 1000));
+        assertFalse(policy.requireSync(10, 0, 50));
+        assertTrue(policy.requireSync(10, 0, 100));
+        assertTrue(policy.requireSync(1000, 0, 50));
+        assertEquals(2000, MMapSyncPolicy.of("2s").getMaxDelayMs());
+        try {
+            MMapSyncPolicy.of("-1");
+            fail("Invalid policy");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSubscribeAssignments() throws Exception {
+        final int NB_QUEUE = 4;
+        final String group = "consumer";
+        manager.createIfNotExists(logName, NB_QUEUE);
+
+        LogTailer<KeyValueMessage> tailer1 = manager.subscribe(group, Collections.singleton(logName), null);
+        LogTailer<KeyValueMessage> tailer2 = manager.subscribe(group, Collections.singleton(logName), null);
+        // until we call read there is no assignments
+        assertTrue(tailer1.assignments().isEmpty());
+        assertRebalance(tailer1);
+        assertRebalance(tailer2);
+        // partitions are balanced between the members
+        assertEquals(NB_QUEUE / 2, tailer1.assignments().size());
+        assertEquals(NB_QUEUE / 2, tailer2.assignments().size());
+        Set<LogPartition> partitions = new HashSet<>(tailer1.assignments());
+        partitions.addAll(tailer2.assignments());
+        assertEquals(NB_QUEUE, partitions.size());
+
+        // when a member leaves its partitions are assigned to the others
+        tailer2.close();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (tailer1.assignments().size() < NB_QUEUE && System.currentTimeMillis() < deadline) {
+            try {
+                tailer1.read(SMALL_TIMEOUT);
+            } catch (RebalanceException e) {
+                // expected
+            }
+        }
+        assertEquals(NB_QUEUE, tailer1.assignments().size());
+        tailer1.close();
+    }
+
+    protected void assertRebalance(LogTailer<KeyValueMessage> tailer) throws InterruptedException {
+        try {
+            tailer.read(SMALL_TIMEOUT);
+            fail("Should have raise a rebalance exception");
+        } catch (RebalanceException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSubscribe() throws Exception {
+        final int NB_QUEUE = 3;
+        final int NB_MSG = 200;
+        final int NB_CONSUMER = 6;
+        final String group = "consumer";
+
+        manager.createIfNotExists(logName, NB_QUEUE);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        KeyValueMessage msg1 = KeyValueMessage.of("id1");
+        for (int i = 0; i < NB_MSG; i++) {
+            appender.append(i % NB_QUEUE, msg1);
+        }
+
+        Callable<Integer> consumer = () -> {
+            int count = 0;
+            LogTailer<KeyValueMessage> consumerTailer = manager.subscribe(group, Collections.singleton(logName), null);
+            LogRecord<KeyValueMessage> consumerRecord;
+            while (true) {
+                try {
+                    consumerRecord = consumerTailer.read(Duration.ofSeconds(2));
+                    if (consumerRecord != null) {
+                        count++;
+                        consumerTailer.commit();
+                    } else {
+                        consumerTailer.close();
+                        return count;
+                    }
+                } catch (RebalanceException e) {
+                    // rebalance is expected on first read and when consumers leave
+                }
+            }
+        };
+        ExecutorService service = Executors.newFixedThreadPool(NB_CONSUMER);
+        List<Future<Integer>> ret = new ArrayList<>(NB_CONSUMER);
+        for (int i = 0; i < NB_CONSUMER; i++) {
+            ret.add(service.submit(consumer));
+        }
+        service.shutdown();
+        assertTrue(service.awaitTermination(60, TimeUnit.SECONDS));
+        int total = 0;
+        for (Future<Integer> future : ret) {
+            total += future.get();
+        }
+        // each record is delivered once
+        assertEquals(NB_MSG, total);
+        assertEquals(LogLag.of(0), manager.getLag(logName, group));
+    }
+
+}
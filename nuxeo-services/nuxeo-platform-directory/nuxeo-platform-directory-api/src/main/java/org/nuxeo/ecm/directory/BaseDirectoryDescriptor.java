@@ -21,13 +21,16 @@ package org.nuxeo.ecm.directory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.xmap.annotation.XNode;
 import org.nuxeo.common.xmap.annotation.XNodeList;
+import org.nuxeo.common.xmap.annotation.XNodeMap;
 import org.nuxeo.common.xmap.annotation.XObject;
 import org.nuxeo.ecm.directory.api.DirectoryDeleteConstraint;
 
@@ -63,6 +66,12 @@ public class BaseDirectoryDescriptor implements Cloneable {
 
     public static final int CACHE_MAX_SIZE_DEFAULT = 0;
 
+    /** @since 11.1 */
+    public static final int CACHE_WARM_UP_BATCH_SIZE_DEFAULT = 500;
+
+    /** @since 11.1 */
+    public static final int CACHE_REFRESH_INTERVAL_DEFAULT = 300; // 5 min
+
     public static final boolean READ_ONLY_DEFAULT = false;
 
     public static final SubstringMatchType SUBSTRING_MATCH_TYPE_DEFAULT = SubstringMatchType.subinitial;
@@ -152,6 +161,44 @@ public class BaseDirectoryDescriptor implements Cloneable {
     @XNode("negativeCaching")
     public Boolean negativeCaching;
 
+    /**
+     * Whether the entry cache is loaded with the whole directory (or the entries matching {@link #cacheWarmUpFilter})
+     * when the server starts.
+     *
+     * @since 11.1
+     */
+    @XNode("cacheWarmUp")
+    public Boolean cacheWarmUp;
+
+    /** @since 11.1 */
+    @XNode("cacheWarmUpBatchSize")
+    public Integer cacheWarmUpBatchSize;
+
+    /**
+     * Field/value restrictions selecting the entries loaded at warm-up.
+     *
+     * @since 11.1
+     */
+    @XNodeMap(value = "cacheWarmUpFilter/field", key = "@name", type = HashMap.class, componentType = String.class)
+    public Map<String, String> cacheWarmUpFilter;
+
+    /**
+     * Timestamp field of the entries, used to periodically refresh in the cache the entries modified since the last
+     * refresh (for instance a field mapped to {@code modifyTimestamp} for LDAP).
+     *
+     * @since 11.1
+     */
+    @XNode("cacheRefreshField")
+    public String cacheRefreshField;
+
+    /**
+     * Interval between cache refreshes, in seconds.
+     *
+     * @since 11.1
+     */
+    @XNode("cacheRefreshInterval")
+    public Integer cacheRefreshInterval;
+
     @XNode("substringMatchType")
     public String substringMatchType;
 
@@ -237,6 +284,21 @@ public class BaseDirectoryDescriptor implements Cloneable {
         return cacheMaxSize == null ? CACHE_MAX_SIZE_DEFAULT : cacheMaxSize.intValue();
     }
 
+    /** @since 11.1 */
+    public boolean isCacheWarmUp() {
+        return Boolean.TRUE.equals(cacheWarmUp);
+    }
+
+    /** @since 11.1 */
+    public int getCacheWarmUpBatchSize() {
+        return cacheWarmUpBatchSize == null ? CACHE_WARM_UP_BATCH_SIZE_DEFAULT : cacheWarmUpBatchSize.intValue();
+    }
+
+    /** @since 11.1 */
+    public int getCacheRefreshInterval() {
+        return cacheRefreshInterval == null ? CACHE_REFRESH_INTERVAL_DEFAULT : cacheRefreshInterval.intValue();
+    }
+
     public SubstringMatchType getSubstringMatchType() {
         if (StringUtils.isBlank(substringMatchType)) {
             return SUBSTRING_MATCH_TYPE_DEFAULT;
@@ -281,6 +343,9 @@ public class BaseDirectoryDescriptor implements Cloneable {
             clone.inverseReferences = Arrays.stream(inverseReferences).map(InverseReferenceDescriptor::clone).toArray(
                     InverseReferenceDescriptor[]::new);
         }
+        if (cacheWarmUpFilter != null) {
+            clone.cacheWarmUpFilter = new HashMap<>(cacheWarmUpFilter);
+        }
         return clone;
     }
 
@@ -329,6 +394,21 @@ public class BaseDirectoryDescriptor implements Cloneable {
         if (other.negativeCaching != null) {
             negativeCaching = other.negativeCaching;
         }
+        if (other.cacheWarmUp != null) {
+            cacheWarmUp = other.cacheWarmUp;
+        }
+        if (other.cacheWarmUpBatchSize != null) {
+            cacheWarmUpBatchSize = other.cacheWarmUpBatchSize;
+        }
+        if (other.cacheWarmUpFilter != null && !other.cacheWarmUpFilter.isEmpty()) {
+            cacheWarmUpFilter = other.cacheWarmUpFilter;
+        }
+        if (other.cacheRefreshField != null) {
+            cacheRefreshField = other.cacheRefreshField;
+        }
+        if (other.cacheRefreshInterval != null) {
+            cacheRefreshInterval = other.cacheRefreshInterval;
+        }
         if (other.substringMatchType != null) {
             substringMatchType = other.substringMatchType;
         }
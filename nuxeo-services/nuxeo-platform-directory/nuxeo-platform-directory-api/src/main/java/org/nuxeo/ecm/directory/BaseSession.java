@@ -26,9 +26,15 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -47,6 +53,7 @@ import org.nuxeo.ecm.core.api.security.SecurityConstants;
 import org.nuxeo.ecm.core.query.sql.model.DefaultQueryVisitor;
 import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
 import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExprs;
 import org.nuxeo.ecm.core.query.sql.model.Predicate;
 import org.nuxeo.ecm.core.query.sql.model.Predicates;
 import org.nuxeo.ecm.core.query.sql.model.QueryBuilder;
@@ -72,6 +79,13 @@ public abstract class BaseSession implements Session, EntrySource {
 
     protected static final String TENANT_ID_FIELD = "tenantId";
 
+    /**
+     * Number of entries fetched per query by the default {@link #queryStream} implementation.
+     *
+     * @since 11.1
+     */
+    protected static final int QUERY_STREAM_PAGE_SIZE = 1000;
+
     private final static Log log = LogFactory.getLog(BaseSession.class);
 
     protected final Directory directory;
@@ -393,7 +407,8 @@ public abstract class BaseSession implements Session, EntrySource {
             }
         }
 
-        getDirectory().invalidateCaches();
+        directory.getCache().entryCreated(sourceId);
+        getDirectory().invalidateCaches(sourceId);
         return docModel;
     }
 
@@ -429,7 +444,7 @@ public abstract class BaseSession implements Session, EntrySource {
                 }
             }
         }
-        getDirectory().invalidateCaches();
+        getDirectory().invalidateCaches(id);
     }
 
     @SuppressWarnings("unchecked")
@@ -475,7 +490,7 @@ public abstract class BaseSession implements Session, EntrySource {
             }
         }
         deleteEntryWithoutReferences(id);
-        getDirectory().invalidateCaches();
+        getDirectory().invalidateCaches(id);
     }
 
     protected boolean canDeleteMultiTenantEntry(String entryId) {
@@ -540,6 +555,76 @@ public abstract class BaseSession implements Session, EntrySource {
         }
     }
 
+    /**
+     * Applies offset and limit to a Stream.
+     *
+     * @param stream the original stream
+     * @param limit maximum number of results, ignored if less than 1
+     * @param offset number of entries skipped before starting, will be 0 if less than 0
+     * @return the stream with applied limit and offset
+     * @since 11.1
+     */
+    public <T> Stream<T> applyQueryLimits(Stream<T> stream, int limit, int offset) {
+        if (offset > 0) {
+            stream = stream.skip(offset);
+        }
+        if (limit > 0) {
+            stream = stream.limit(limit);
+        }
+        return stream;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This default implementation fetches the entries by pages of {@value #QUERY_STREAM_PAGE_SIZE} using limit and
+     * offset, ordering them by id if no ordering is requested.
+     */
+    @Override
+    public Stream<DocumentModel> queryStream(QueryBuilder queryBuilder, boolean fetchReferences) {
+        long limit = Math.max(0, queryBuilder.limit());
+        if (limit > 0 && limit <= QUERY_STREAM_PAGE_SIZE) {
+            return query(queryBuilder, fetchReferences).stream();
+        }
+        QueryBuilder pageQueryBuilder = new QueryBuilder(queryBuilder).countTotal(false);
+        if (pageQueryBuilder.orders().isEmpty()) {
+            // stable order between pages
+            pageQueryBuilder.order(OrderByExprs.asc(getIdField()));
+        }
+        long offset = Math.max(0, queryBuilder.offset());
+        Iterator<DocumentModel> iterator = new Iterator<DocumentModel>() {
+
+            protected Iterator<DocumentModel> page = Collections.emptyIterator();
+
+            protected long pageOffset = offset;
+
+            protected boolean lastPage;
+
+            @Override
+            public boolean hasNext() {
+                if (!page.hasNext() && !lastPage) {
+                    pageQueryBuilder.offset(pageOffset).limit(QUERY_STREAM_PAGE_SIZE);
+                    DocumentModelList entries = query(pageQueryBuilder, fetchReferences);
+                    page = entries.iterator();
+                    pageOffset += entries.size();
+                    lastPage = entries.size() < QUERY_STREAM_PAGE_SIZE;
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public DocumentModel next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        Stream<DocumentModel> stream = StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return applyQueryLimits(stream, (int) limit, 0);
+    }
+
     @Override
     public DocumentModelList query(Map<String, Serializable> filter) {
         return query(filter, Collections.emptySet());
@@ -172,6 +172,16 @@ public interface Directory {
      */
     void invalidateCaches();
 
+    /**
+     * Invalidates the caches after a write of the given entry: the cached entry itself, and the caches of the
+     * directories referenced by this one.
+     *
+     * @since 11.1
+     */
+    default void invalidateCaches(String entryId) {
+        invalidateCaches();
+    }
+
     /**
      * Get schema field map
      *
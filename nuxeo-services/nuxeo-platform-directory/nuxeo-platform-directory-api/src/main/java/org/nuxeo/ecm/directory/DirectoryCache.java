@@ -19,33 +19,57 @@
 
 package org.nuxeo.ecm.directory;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.cache.Cache;
 import org.nuxeo.ecm.core.cache.CacheManagement;
 import org.nuxeo.ecm.core.cache.CacheService;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExprs;
+import org.nuxeo.ecm.core.query.sql.model.Predicates;
+import org.nuxeo.ecm.core.query.sql.model.QueryBuilder;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 
 /**
  * Very simple cache system to cache directory entry lookups (not search queries) on top of nuxeo cache
  * <p>
  * Beware that this cache is not transaction aware (which is not a problem for LDAP directories anyway).
+ * <p>
+ * The cache can be warmed up with the whole directory, see {@link #warmUp}. When negative caching is enabled and the
+ * whole directory was loaded, a Bloom filter of the existing ids can answer lookups of missing ids without going to
+ * the source or storing a marker per missing id. As it doesn't know about entries created on another node or directly
+ * in the source until the next {@link #refresh}, it's only meant to be used with a periodic refresh. As ids are never
+ * removed from it, it's kept by {@link #invalidateAll}, which instead asks for a new warm-up if one is scheduled.
  */
 public class DirectoryCache {
 
     private static final Serializable CACHE_MISS = Boolean.FALSE;
 
+    /** @since 11.1 */
+    protected static final double ENTRY_IDS_FILTER_FPP = 0.01;
+
+    /** @since 11.1 */
+    protected static final int ENTRY_IDS_FILTER_MIN_SIZE = 1000;
+
     protected final String name;
 
     protected Cache entryCache;
@@ -70,6 +94,23 @@ public class DirectoryCache {
 
     protected final Counter sizeCounter;
 
+    // @since 11.1
+    protected final Counter filterHitsCounter;
+
+    /**
+     * Ids of all the entries of the directory, or {@code null} if the whole directory was not loaded.
+     *
+     * @since 11.1
+     */
+    protected volatile BloomFilter<CharSequence> entryIdsFilter;
+
+    /**
+     * Schedules a new warm-up after the whole cache was invalidated, or {@code null} if the cache is not warmed up.
+     *
+     * @since 11.1
+     */
+    protected volatile Runnable warmUpScheduler;
+
     private final static Log log = LogFactory.getLog(DirectoryCache.class);
 
     protected DirectoryCache(String name) {
@@ -80,6 +121,8 @@ public class DirectoryCache {
         invalidationsCounter = metrics.counter(
                 MetricRegistry.name("nuxeo", "directories", name, "cache", "invalidations"));
         sizeCounter = metrics.counter(MetricRegistry.name("nuxeo", "directories", name, "cache", "size"));
+        filterHitsCounter = metrics.counter(
+                MetricRegistry.name("nuxeo", "directories", name, "cache", "filterhits"));
     }
 
     protected boolean isCacheEnabled() {
@@ -117,19 +160,16 @@ public class DirectoryCache {
         }
         DocumentModel dm = (DocumentModel) entry;
         if (dm == null) {
+            BloomFilter<CharSequence> filter = entryIdsFilter;
+            if (negativeCaching && filter != null && !filter.mightContain(entryId)) {
+                // the entry is known not to exist
+                filterHitsCounter.inc();
+                return null;
+            }
             // fetch the entry from the backend and cache it for later reuse
             dm = source.getEntryFromSource(entryId, fetchReferences);
             if (dm != null) {
-                // DocumentModelImpl is not thread-safe and when we fetch and clone it when returning
-                // a value from the cache there may be concurrency.
-                // So we avoid thread-safety issues by exercising once the code paths that may do
-                // concurrent accesses to ComplexProperty (NXP-23458).
-                try {
-                    dm.clone();
-                } catch (CloneNotSupportedException e) {
-                    // ignore, no concurrency issues if not a DocumentModelImpl
-                }
-                ((CacheManagement) cache).putLocal(entryId, dm);
+                putEntry(cache, entryId, dm);
                 if (fetchReferences) {
                     sizeCounter.inc();
                 }
@@ -158,6 +198,149 @@ public class DirectoryCache {
         }
     }
 
+    protected void putEntry(Cache cache, String entryId, DocumentModel dm) {
+        // DocumentModelImpl is not thread-safe and when we fetch and clone it when returning
+        // a value from the cache there may be concurrency.
+        // So we avoid thread-safety issues by exercising once the code paths that may do
+        // concurrent accesses to ComplexProperty (NXP-23458).
+        try {
+            dm.clone();
+        } catch (CloneNotSupportedException e) {
+            // ignore, no concurrency issues if not a DocumentModelImpl
+        }
+        ((CacheManagement) cache).putLocal(entryId, dm);
+    }
+
+    /**
+     * Loads the entries of the directory (with their references) in the cache, by batches.
+     * <p>
+     * If there is no filter and {@code recordIds} is {@code true}, the ids of all the entries are also recorded for
+     * negative lookups. The caller is then responsible for calling {@link #refresh} periodically so that entries
+     * created elsewhere are recorded too. If ids were already recorded, the new ones are added to them so that entries
+     * created during the load are not lost.
+     *
+     * @param session the directory session
+     * @param filter the field/value restrictions on the entries to load, or {@code null} for the whole directory
+     * @param batchSize the number of entries to fetch per query
+     * @param recordIds whether to record the ids of the entries for negative lookups
+     * @return the number of entries loaded
+     * @since 11.1
+     */
+    public int warmUp(Session session, Map<String, String> filter, int batchSize, boolean recordIds) {
+        if (!isCacheEnabled() || getEntryCache() == null) {
+            return 0;
+        }
+        QueryBuilder queryBuilder = new QueryBuilder();
+        boolean complete = recordIds && (filter == null || filter.isEmpty());
+        if (!complete && filter != null) {
+            filter.forEach((field, value) -> queryBuilder.predicate(Predicates.eq(field, value)));
+        }
+        List<String> ids = new ArrayList<>();
+        int count = load(session, queryBuilder, batchSize, complete ? ids::add : null);
+        sizeCounter.inc(count);
+        if (complete) {
+            BloomFilter<CharSequence> bloomFilter = entryIdsFilter;
+            if (bloomFilter == null) {
+                bloomFilter = BloomFilter.create(Funnels.stringFunnel(UTF_8),
+                        Math.max(ids.size() * 2, ENTRY_IDS_FILTER_MIN_SIZE), ENTRY_IDS_FILTER_FPP);
+                ids.forEach(bloomFilter::put);
+                entryIdsFilter = bloomFilter;
+            } else {
+                ids.forEach(bloomFilter::put);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Warmed up cache of directory '%s' with %d entries", name, count));
+        }
+        return count;
+    }
+
+    /**
+     * Reloads in the cache the entries whose timestamp field is greater than the given date.
+     * <p>
+     * Deleted entries are not detected, they are invalidated by the session doing the deletion.
+     *
+     * @param session the directory session
+     * @param timestampField the timestamp field
+     * @param since the date of the previous refresh
+     * @param batchSize the number of entries to fetch per query
+     * @return the number of entries reloaded
+     * @since 11.1
+     */
+    public int refresh(Session session, String timestampField, Calendar since, int batchSize) {
+        if (!isCacheEnabled() || getEntryCache() == null) {
+            return 0;
+        }
+        QueryBuilder queryBuilder = new QueryBuilder().predicate(Predicates.gt(timestampField, since));
+        int count = load(session, queryBuilder, batchSize, id -> {
+            Cache cache = getEntryCacheWithoutReferences();
+            if (cache != null) {
+                cache.invalidate(id);
+            }
+            BloomFilter<CharSequence> filter = entryIdsFilter;
+            if (filter != null) {
+                filter.put(id);
+            }
+        });
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Refreshed cache of directory '%s' with %d entries", name, count));
+        }
+        return count;
+    }
+
+    /**
+     * Loads entries in the cache by pages ordered by id, each page starting after the last id of the previous one.
+     */
+    protected int load(Session session, QueryBuilder queryBuilder, int batchSize, Consumer<String> idConsumer) {
+        Cache cache = getEntryCache();
+        String idField = session.getIdField();
+        int count = 0;
+        String lastId = null;
+        for (;;) {
+            QueryBuilder pageQueryBuilder = new QueryBuilder(queryBuilder);
+            if (lastId != null) {
+                pageQueryBuilder.predicate(Predicates.gt(idField, lastId));
+            }
+            pageQueryBuilder.order(OrderByExprs.asc(idField)).limit(batchSize);
+            DocumentModelList entries = session.query(pageQueryBuilder, true);
+            for (DocumentModel entry : entries) {
+                String id = entry.getId();
+                putEntry(cache, id, entry);
+                if (idConsumer != null) {
+                    idConsumer.accept(id);
+                }
+                lastId = id;
+            }
+            count += entries.size();
+            if (entries.size() < batchSize) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Records the id of an entry created through this node.
+     *
+     * @since 11.1
+     */
+    public void entryCreated(String entryId) {
+        BloomFilter<CharSequence> filter = entryIdsFilter;
+        if (filter != null) {
+            filter.put(entryId);
+        }
+    }
+
+    /**
+     * Checks if the ids of all the entries of the directory are known, in which case lookups of missing entries don't
+     * go to the source.
+     *
+     * @since 11.1
+     */
+    public boolean hasEntryIdsFilter() {
+        return entryIdsFilter != null;
+    }
+
     public void invalidate(List<String> entryIds) {
         if (isCacheEnabled()) {
             synchronized (this) {
@@ -198,9 +381,22 @@ public class DirectoryCache {
                     cache.invalidateAll();
                 }
             }
+            Runnable scheduler = warmUpScheduler;
+            if (scheduler != null) {
+                scheduler.run();
+            }
         }
     }
 
+    /**
+     * Sets what to call to load the cache again after it was invalidated, or {@code null} to leave it empty.
+     *
+     * @since 11.1
+     */
+    public void setWarmUpScheduler(Runnable warmUpScheduler) {
+        this.warmUpScheduler = warmUpScheduler;
+    }
+
     public void setEntryCacheName(String entryCacheName) {
         this.entryCacheName = entryCacheName;
     }
@@ -211,6 +407,10 @@ public class DirectoryCache {
 
     public void setNegativeCaching(Boolean negativeCaching) {
         this.negativeCaching = Boolean.TRUE.equals(negativeCaching);
+        if (!this.negativeCaching) {
+            // the ids filter is only useful for negative lookups
+            entryIdsFilter = null;
+        }
     }
 
     public Cache getEntryCache() {
@@ -24,6 +24,7 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
@@ -218,6 +219,20 @@ public interface Session extends AutoCloseable {
      */
     List<String> queryIds(QueryBuilder queryBuilder);
 
+    /**
+     * Executes a query and returns the matching entries as a stream. The entries are fetched lazily from the backend
+     * when possible, so that large result sets don't have to be loaded in memory.
+     * <p>
+     * The stream must be closed to release the underlying resources, and must be consumed before the session is
+     * closed.
+     *
+     * @param queryBuilder the query to use, including limit, offset and ordering
+     * @param fetchReferences boolean stating if references have to be fetched
+     * @return the stream of entries
+     * @since 11.1
+     */
+    Stream<DocumentModel> queryStream(QueryBuilder queryBuilder, boolean fetchReferences);
+
     /**
      * Closes the session and all open result sets obtained from this session.
      * <p>
@@ -184,6 +184,28 @@ public abstract class AbstractDirectory implements Directory {
         }
     }
 
+    @Override
+    public void invalidateCaches(String entryId) {
+        // other entries of this directory only change if it references itself
+        boolean selfReference = false;
+        for (Reference ref : getReferences()) {
+            Directory targetDir = ref.getTargetDirectory();
+            if (targetDir == null) {
+                continue;
+            }
+            if (getName().equals(targetDir.getName())) {
+                selfReference = true;
+            } else {
+                targetDir.invalidateDirectoryCache();
+            }
+        }
+        if (selfReference) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(entryId);
+        }
+    }
+
     public DirectoryFieldMapper getFieldMapper() {
         if (fieldMapper == null) {
             fieldMapper = new DirectoryFieldMapper();
@@ -23,8 +23,16 @@ package org.nuxeo.ecm.directory;
 
 import static org.nuxeo.ecm.directory.localconfiguration.DirectoryConfigurationConstants.DIRECTORY_CONFIGURATION_FACET;
 
+import java.util.Calendar;
 import java.util.List;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.DocumentModel;
@@ -35,6 +43,7 @@ import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentInstance;
 import org.nuxeo.runtime.model.DefaultComponent;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
 public class DirectoryServiceImpl extends DefaultComponent implements DirectoryService {
 
@@ -44,6 +53,9 @@ public class DirectoryServiceImpl extends DefaultComponent implements DirectoryS
 
     protected DirectoryRegistry registry = new DirectoryRegistry();
 
+    // @since 11.1
+    protected volatile ScheduledExecutorService cacheExecutor;
+
     @Override
     public void activate(ComponentContext context) {
     }
@@ -83,6 +95,89 @@ public class DirectoryServiceImpl extends DefaultComponent implements DirectoryS
         directories.forEach(Directory::initialize);
         directories.forEach(Directory::initializeReferences);
         directories.forEach(Directory::initializeInverseReferences);
+        startCacheWarmUp(directories);
+    }
+
+    @Override
+    public void stop(ComponentContext context) throws InterruptedException {
+        if (cacheExecutor != null) {
+            getDirectories().forEach(directory -> directory.getCache().setWarmUpScheduler(null));
+            cacheExecutor.shutdownNow();
+            cacheExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            cacheExecutor = null;
+        }
+    }
+
+    /**
+     * Loads in the background the caches of the directories configured with {@code cacheWarmUp}, and schedules their
+     * periodic refresh if they have a {@code cacheRefreshField}. A cache is loaded again after it's fully invalidated.
+     *
+     * @since 11.1
+     */
+    protected void startCacheWarmUp(List<Directory> directories) {
+        for (Directory directory : directories) {
+            BaseDirectoryDescriptor descriptor = getDirectoryDescriptor(directory.getName());
+            if (descriptor == null || !descriptor.isCacheWarmUp()) {
+                continue;
+            }
+            if (cacheExecutor == null) {
+                cacheExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "Nuxeo-Directory-Cache-WarmUp");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            DirectoryCache cache = directory.getCache();
+            int batchSize = descriptor.getCacheWarmUpBatchSize();
+            String refreshField = descriptor.cacheRefreshField;
+            // date of the last load, entries modified after it are reloaded by the next refresh
+            Calendar[] lastLoad = new Calendar[1];
+            // invalidations while a warm-up is pending don't need another one
+            AtomicBoolean warmUpPending = new AtomicBoolean(true);
+            Runnable warmUp = () -> {
+                warmUpPending.set(false);
+                lastLoad[0] = Calendar.getInstance();
+                // missing entries are only answered by the cache if it's refreshed with the entries created elsewhere
+                runWithSession(directory, session -> cache.warmUp(session, descriptor.cacheWarmUpFilter, batchSize,
+                        StringUtils.isNotBlank(refreshField)));
+            };
+            cacheExecutor.execute(warmUp);
+            cache.setWarmUpScheduler(() -> {
+                ScheduledExecutorService executor = cacheExecutor;
+                if (executor != null && warmUpPending.compareAndSet(false, true)) {
+                    try {
+                        executor.execute(warmUp);
+                    } catch (RejectedExecutionException e) {
+                        // shutting down
+                        warmUpPending.set(false);
+                    }
+                }
+            });
+            if (StringUtils.isNotBlank(refreshField)) {
+                int interval = descriptor.getCacheRefreshInterval();
+                cacheExecutor.scheduleWithFixedDelay(() -> {
+                    Calendar since = lastLoad[0];
+                    lastLoad[0] = Calendar.getInstance();
+                    runWithSession(directory, session -> cache.refresh(session, refreshField, since, batchSize));
+                }, interval, interval, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected void runWithSession(Directory directory, Consumer<Session> consumer) {
+        try {
+            TransactionHelper.runInTransaction(() -> Framework.doPrivileged(() -> {
+                try (Session session = directory.getSession()) {
+                    consumer.accept(session);
+                }
+            }));
+        } catch (RuntimeException e) {
+            // keep the scheduled refresh going
+            log.error("Cannot load the cache of directory: " + directory.getName(), e);
+        }
     }
 
     protected DirectoryConfiguration getDirectoryConfiguration(DocumentModel documentContext) {
@@ -39,8 +39,8 @@ import java.util.Set;
 import javax.naming.Context;
 import javax.naming.NamingException;
 import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.SearchControls;
+import javax.naming.ldap.InitialLdapContext;
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
@@ -313,7 +313,8 @@ public class LDAPDirectory extends AbstractDirectory {
                 String ldapUrls = serverConfig.getLdapUrls();
                 contextProperties.put(Context.PROVIDER_URL, ldapUrls);
             }
-            return new InitialDirContext(contextProperties);
+            // LDAP context to allow request controls such as paged results
+            return new InitialLdapContext(contextProperties, null);
         } catch (NamingException e) {
             throw new DirectoryException("Cannot connect to LDAP directory '" + getName() + "': " + e.getMessage(), e);
         }
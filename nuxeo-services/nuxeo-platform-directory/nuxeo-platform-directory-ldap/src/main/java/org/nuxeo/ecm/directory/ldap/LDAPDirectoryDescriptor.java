@@ -58,6 +58,9 @@ public class LDAPDirectoryDescriptor extends BaseDirectoryDescriptor {
 
     public static final int DEFAULT_QUERY_TIME_LIMIT = 0; // default to wait indefinitely
 
+    /** @since 11.1 */
+    public static final int DEFAULT_QUERY_PAGE_SIZE = 500;
+
     public static final boolean DEFAULT_FOLLOW_REFERRALS = true;
 
     @XNode("server")
@@ -114,6 +117,14 @@ public class LDAPDirectoryDescriptor extends BaseDirectoryDescriptor {
     @XNode("queryTimeLimit")
     private Integer queryTimeLimit;
 
+    /**
+     * Number of entries fetched per page by paged searches, 0 to disable paging.
+     *
+     * @since 11.1
+     */
+    @XNode("queryPageSize")
+    private Integer queryPageSize;
+
     // Add attribute to allow to ignore referrals resolution
     /**
      * Since 5.9.4
@@ -295,6 +306,20 @@ public class LDAPDirectoryDescriptor extends BaseDirectoryDescriptor {
         return queryTimeLimit == null ? DEFAULT_QUERY_TIME_LIMIT : queryTimeLimit.intValue();
     }
 
+    /**
+     * @since 11.1
+     */
+    public int getQueryPageSize() {
+        return queryPageSize == null ? DEFAULT_QUERY_PAGE_SIZE : queryPageSize.intValue();
+    }
+
+    /**
+     * @since 11.1
+     */
+    public void setQueryPageSize(int queryPageSize) {
+        this.queryPageSize = Integer.valueOf(queryPageSize);
+    }
+
     public EntryAdaptor getEntryAdaptor() {
         return entryAdaptor;
     }
@@ -375,6 +400,9 @@ public class LDAPDirectoryDescriptor extends BaseDirectoryDescriptor {
         if (other.queryTimeLimit != null) {
             queryTimeLimit = other.queryTimeLimit;
         }
+        if (other.queryPageSize != null) {
+            queryPageSize = other.queryPageSize;
+        }
         if (other.followReferrals != null) {
             followReferrals = other.followReferrals;
         }
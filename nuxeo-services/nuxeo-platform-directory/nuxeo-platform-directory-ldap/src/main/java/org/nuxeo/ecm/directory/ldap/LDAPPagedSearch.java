@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.directory.ldap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.naming.LimitExceededException;
+import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.SortControl;
+import javax.naming.ldap.SortKey;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.directory.DirectoryException;
+import org.nuxeo.ecm.directory.SizeLimitExceededException;
+
+/**
+ * Iterator over the results of an LDAP search, fetched lazily by pages using the paged results control (RFC 2696).
+ * <p>
+ * The search is done on a dedicated context so that the paging controls don't leak to the other operations of the
+ * session. If the context doesn't support request controls or if the page size is 0, a single search is done and its
+ * results are still iterated lazily.
+ * <p>
+ * When sort keys are given, the server sorts the results using the server side sort control (RFC 2891). The control is
+ * critical, so a server not supporting it fails the search with an {@link OperationNotSupportedException} instead of
+ * returning unsorted results.
+ * <p>
+ * Must be closed to release the underlying search.
+ *
+ * @since 11.1
+ */
+public class LDAPPagedSearch implements Iterator<SearchResult>, AutoCloseable {
+
+    private static final Log log = LogFactory.getLog(LDAPPagedSearch.class);
+
+    protected final DirContext context;
+
+    protected final LdapContext pagedContext;
+
+    protected final Name name;
+
+    protected final String filter;
+
+    protected final Object[] filterArgs;
+
+    protected final SearchControls searchControls;
+
+    protected final int pageSize;
+
+    protected final SortKey[] sortKeys;
+
+    protected NamingEnumeration<SearchResult> results;
+
+    protected SearchResult next;
+
+    protected boolean lastPage;
+
+    protected int pages;
+
+    public LDAPPagedSearch(DirContext context, Name name, String filter, Object[] filterArgs,
+            SearchControls searchControls, int pageSize) throws NamingException {
+        this(context, name, filter, filterArgs, searchControls, pageSize, null);
+    }
+
+    /**
+     * @param sortKeys the keys to sort the results on, or {@code null} for no sort
+     */
+    public LDAPPagedSearch(DirContext context, Name name, String filter, Object[] filterArgs,
+            SearchControls searchControls, int pageSize, SortKey[] sortKeys) throws NamingException {
+        this.context = context;
+        this.name = name;
+        this.filter = filter;
+        this.filterArgs = filterArgs;
+        this.searchControls = searchControls;
+        this.pageSize = pageSize;
+        this.sortKeys = sortKeys;
+        boolean sorted = sortKeys != null && sortKeys.length > 0;
+        if (sorted && !(context instanceof LdapContext)) {
+            throw new OperationNotSupportedException("Sorted search requires an LDAP context");
+        }
+        if ((pageSize > 0 || sorted) && context instanceof LdapContext) {
+            pagedContext = ((LdapContext) context).newInstance(getRequestControls(null));
+        } else {
+            pagedContext = null;
+        }
+        results = search();
+    }
+
+    /**
+     * Gets the paging and sort controls of a search request.
+     *
+     * @param cookie the cookie of the previous page, or {@code null} for the first page
+     */
+    protected Control[] getRequestControls(byte[] cookie) {
+        List<Control> controls = new ArrayList<>(2);
+        try {
+            if (pageSize > 0) {
+                // the paging control must be critical when sending back the cookie
+                controls.add(cookie == null ? new PagedResultsControl(pageSize, Control.NONCRITICAL)
+                        : new PagedResultsControl(pageSize, cookie, Control.CRITICAL));
+            }
+            if (sortKeys != null && sortKeys.length > 0) {
+                // the sort control must be sent with every page
+                controls.add(new SortControl(sortKeys, Control.CRITICAL));
+            }
+        } catch (IOException e) {
+            throw new DirectoryException("Cannot create search request controls", e);
+        }
+        return controls.toArray(new Control[0]);
+    }
+
+    protected NamingEnumeration<SearchResult> search() throws NamingException {
+        DirContext ctx = pagedContext == null ? context : pagedContext;
+        pages++;
+        if (filterArgs == null) {
+            return ctx.search(name, filter, searchControls);
+        } else {
+            return ctx.search(name, filter, filterArgs, searchControls);
+        }
+    }
+
+    /**
+     * Requests the next page using the cookie sent back by the server with the previous one.
+     *
+     * @return {@code false} if there are no more pages
+     */
+    protected boolean nextPage() throws NamingException {
+        if (pagedContext == null || pageSize <= 0 || lastPage) {
+            return false;
+        }
+        byte[] cookie = null;
+        Control[] controls = pagedContext.getResponseControls();
+        if (controls != null) {
+            for (Control control : controls) {
+                if (control instanceof PagedResultsResponseControl) {
+                    cookie = ((PagedResultsResponseControl) control).getCookie();
+                }
+            }
+        }
+        if (cookie == null || cookie.length == 0) {
+            // server sent everything, or doesn't support paging
+            lastPage = true;
+            return false;
+        }
+        pagedContext.setRequestControls(getRequestControls(cookie));
+        results.close();
+        results = search();
+        if (log.isTraceEnabled()) {
+            log.trace(String.format("Fetching page %d of search base='%s' filter='%s'", pages, name, filter));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null) {
+                if (results.hasMore()) {
+                    next = results.next();
+                } else if (!nextPage()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (LimitExceededException e) {
+            throw new SizeLimitExceededException(e);
+        } catch (NamingException e) {
+            throw new DirectoryException("Paged search failed", e);
+        }
+    }
+
+    @Override
+    public SearchResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SearchResult result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        try {
+            results.close();
+            if (pagedContext != null) {
+                pagedContext.close();
+            }
+        } catch (NamingException e) {
+            throw new DirectoryException("Cannot close paged search", e);
+        }
+    }
+
+}
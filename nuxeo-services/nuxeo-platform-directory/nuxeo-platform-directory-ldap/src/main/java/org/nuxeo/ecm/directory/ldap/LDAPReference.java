@@ -499,11 +499,8 @@ public class LDAPReference extends AbstractReference implements Cloneable {
                             targetId, searchBaseDn, filterExpr, StringUtils.join(filterArgs, ", "),
                             sctls.getSearchScope(), this));
                 }
-                NamingEnumeration<SearchResult> results = sourceSession.getContext().search(searchBaseDn, filterExpr,
-                        filterArgs, sctls);
-
-                try {
-                    while (results.hasMore()) {
+                try (LDAPPagedSearch results = sourceSession.search(searchBaseDn, filterExpr, filterArgs, sctls)) {
+                    while (results.hasNext()) {
                         Attributes attributes = results.next().getAttributes();
                         // NXP-2461: check that id field is filled
                         Attribute attr = attributes.get(sourceSession.idAttribute);
@@ -514,8 +511,6 @@ public class LDAPReference extends AbstractReference implements Cloneable {
                             }
                         }
                     }
-                } finally {
-                    results.close();
                 }
             } catch (NamingException e) {
                 throw new DirectoryException("error during reference search for " + filterArgs[0], e);
@@ -565,10 +560,8 @@ public class LDAPReference extends AbstractReference implements Cloneable {
                                     + " filter='%s' scope='%s' [%s]",
                             targetId, searchBaseDn, filterExpr, sctls.getSearchScope(), this));
                 }
-                NamingEnumeration<SearchResult> results = sourceSession.getContext().search(searchBaseDn, filterExpr,
-                        sctls);
-                try {
-                    while (results.hasMore()) {
+                try (LDAPPagedSearch results = sourceSession.search(searchBaseDn, filterExpr, null, sctls)) {
+                    while (results.hasNext()) {
                         // step #2.3: for each sourceId and each ldapUrl test
                         // whether the current target entry matches the
                         // collected
@@ -610,8 +603,6 @@ public class LDAPReference extends AbstractReference implements Cloneable {
                             ldapUrls.close();
                         }
                     }
-                } finally {
-                    results.close();
                 }
             } catch (NamingException | LdapURLEncodingException e) {
                 throw new DirectoryException("error during reference search for " + targetId, e);
@@ -952,9 +943,8 @@ public class LDAPReference extends AbstractReference implements Cloneable {
             }
 
             Name name = new CompositeName().add(dn);
-            NamingEnumeration<SearchResult> results = targetSession.getContext().search(name, filter, scts);
-            try {
-                while (results.hasMore()) {
+            try (LDAPPagedSearch results = targetSession.search(name, filter, null, scts)) {
+                while (results.hasNext()) {
                     // NXP-2461: check that id field is filled
                     Attribute attr = results.next().getAttributes().get(targetSession.idAttribute);
                     if (attr != null) {
@@ -965,8 +955,6 @@ public class LDAPReference extends AbstractReference implements Cloneable {
                     }
 
                 }
-            } finally {
-                results.close();
             }
         }
 
@@ -34,15 +34,24 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SimpleTimeZone;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.naming.CompositeName;
 import javax.naming.Context;
 import javax.naming.LimitExceededException;
+import javax.naming.Name;
 import javax.naming.NameNotFoundException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
 import javax.naming.SizeLimitExceededException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
@@ -52,6 +61,7 @@ import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.SortKey;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -64,6 +74,7 @@ import org.nuxeo.ecm.core.api.PropertyException;
 import org.nuxeo.ecm.core.api.RecoverableClientException;
 import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
 import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
 import org.nuxeo.ecm.core.query.sql.model.OrderByList;
 import org.nuxeo.ecm.core.query.sql.model.QueryBuilder;
 import org.nuxeo.ecm.core.schema.types.Field;
@@ -142,6 +153,60 @@ public class LDAPSession extends BaseSession {
         return dirContext;
     }
 
+    /**
+     * Searches the LDAP server, fetching the results by pages of the configured {@code queryPageSize}.
+     *
+     * @since 11.1
+     */
+    public LDAPPagedSearch search(String name, String filter, Object[] filterArgs, SearchControls scts)
+            throws NamingException {
+        return search(new CompositeName(name), filter, filterArgs, scts);
+    }
+
+    /**
+     * Searches the LDAP server, fetching the results by pages of the configured {@code queryPageSize}.
+     *
+     * @since 11.1
+     */
+    public LDAPPagedSearch search(Name name, String filter, Object[] filterArgs, SearchControls scts)
+            throws NamingException {
+        return search(name, filter, filterArgs, scts, null);
+    }
+
+    /**
+     * Searches the LDAP server, fetching the results by pages of the configured {@code queryPageSize}, sorted by the
+     * server.
+     *
+     * @param sortKeys the keys to sort the results on, or {@code null} for no sort
+     * @throws javax.naming.OperationNotSupportedException if the server doesn't support sorting
+     * @since 11.1
+     */
+    public LDAPPagedSearch search(Name name, String filter, Object[] filterArgs, SearchControls scts,
+            SortKey[] sortKeys) throws NamingException {
+        int pageSize = getDirectory().getDescriptor().getQueryPageSize();
+        return new LDAPPagedSearch(getContext(), name, filter, filterArgs, scts, pageSize, sortKeys);
+    }
+
+    /**
+     * Gets the server side sort keys for the given orders, or {@code null} if an order is on a field that isn't an LDAP
+     * attribute, like a reference.
+     *
+     * @since 11.1
+     */
+    protected SortKey[] getSortKeys(OrderByList orders) {
+        SortKey[] sortKeys = new SortKey[orders.size()];
+        for (int i = 0; i < sortKeys.length; i++) {
+            OrderByExpr order = orders.get(i);
+            String fieldName = order.reference.name;
+            if (getDirectory().isReference(fieldName) || !getDirectory().getSchemaFieldMap().containsKey(fieldName)) {
+                return null;
+            }
+            String backendField = getDirectory().getFieldMapper().getBackendField(fieldName);
+            sortKeys[i] = new SortKey(backendField, !order.isDescending, null);
+        }
+        return sortKeys;
+    }
+
     @Override
     protected DocumentModel createEntryWithoutReferences(Map<String, Object> fieldMap) {
         // Make a copy of fieldMap to avoid modifying it
@@ -544,6 +609,15 @@ public class LDAPSession extends BaseSession {
         if (!hasPermission(SecurityConstants.READ)) {
             return new DocumentModelListImpl();
         }
+        if (queryBuilder.orders().isEmpty() && queryBuilder.limit() > 0 && !queryBuilder.countTotal()) {
+            // only fetch the pages needed for the requested range
+            try (Stream<DocumentModel> stream = queryStream(queryBuilder, fetchReferences)) {
+                DocumentModelListImpl entries = stream.collect(Collectors.toCollection(DocumentModelListImpl::new));
+                // compat with other directories
+                entries.setTotalSize(-2);
+                return entries;
+            }
+        }
         if (FieldDetector.hasField(queryBuilder.predicate(), getPasswordField())) {
             throw new DirectoryException("Cannot filter on password");
         }
@@ -577,7 +651,7 @@ public class LDAPSession extends BaseSession {
             if (!orderBy.isEmpty()) {
                 getDirectory().orderEntries(entries, orderBy);
             }
-            // TODO paging using PagedResultsControl
+            // paging is only used when there is no ordering nor total count, see above
             entries = applyQueryLimits(entries, limit, offset);
             if ((limit != 0 || offset != 0) && !countTotal) {
                 // compat with other directories
@@ -598,6 +672,70 @@ public class LDAPSession extends BaseSession {
         }
     }
 
+    @Override
+    public Stream<DocumentModel> queryStream(QueryBuilder queryBuilder, boolean fetchReferences) {
+        if (!hasPermission(SecurityConstants.READ)) {
+            return Stream.empty();
+        }
+        SortKey[] sortKeys = null;
+        if (!queryBuilder.orders().isEmpty()) {
+            sortKeys = getSortKeys(queryBuilder.orders());
+            if (sortKeys == null) {
+                // order on a computed field, entries are ordered in memory
+                return query(queryBuilder, fetchReferences).stream();
+            }
+        }
+        if (FieldDetector.hasField(queryBuilder.predicate(), getPasswordField())) {
+            throw new DirectoryException("Cannot filter on password");
+        }
+        QueryBuilder initialQueryBuilder = queryBuilder;
+        queryBuilder = addTenantId(queryBuilder);
+
+        // build filter from query
+        LDAPFilterBuilder builder = new LDAPFilterBuilder(getDirectory());
+        builder.walk(queryBuilder.predicate());
+        String filter = builder.filter.toString();
+        List<Serializable> filterParams = builder.params;
+        // add static filters
+        filter = getDirectory().addBaseFilter(filter);
+
+        int limit = Math.max(0, (int) queryBuilder.limit());
+        int offset = Math.max(0, (int) queryBuilder.offset());
+        SearchControls scts = getDirectory().getSearchControls(true);
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format(
+                    "LDAPSession.queryStream(...): LDAP search base='%s' filter='%s' args='%s' scope='%s' [%s]",
+                    searchBaseDn, filter, filterParams, scts.getSearchScope(), this));
+        }
+        LDAPPagedSearch search;
+        try {
+            search = search(new CompositeName(searchBaseDn), filter, filterParams.toArray(), scts, sortKeys);
+        } catch (OperationNotSupportedException e) {
+            if (sortKeys == null) {
+                throw new DirectoryException("executeQuery failed", e);
+            }
+            // the server doesn't support sorting, entries are ordered in memory
+            log.debug("LDAP server doesn't support the sort control, ordering entries in memory: " + e.getMessage());
+            return query(initialQueryBuilder, fetchReferences).stream();
+        } catch (NameNotFoundException nnfe) {
+            // see query(QueryBuilder, boolean)
+            log.error("Unexpected response from server while performing query: " + nnfe.getMessage(), nnfe);
+            return Stream.empty();
+        } catch (LimitExceededException e) {
+            throw new org.nuxeo.ecm.directory.SizeLimitExceededException(e);
+        } catch (NamingException e) {
+            throw new DirectoryException("executeQuery failed", e);
+        }
+        Spliterator<SearchResult> spliterator = Spliterators.spliteratorUnknownSize(search,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        Stream<DocumentModel> stream = StreamSupport.stream(spliterator, false)
+                                                    .map(result -> ldapResultToDocumentModel(result, fetchReferences))
+                                                    .filter(Objects::nonNull)
+                                                    .onClose(search::close);
+        return applyQueryLimits(stream, limit, offset);
+    }
+
     @Override
     public List<String> queryIds(QueryBuilder queryBuilder) {
         if (!hasPermission(SecurityConstants.READ)) {
@@ -846,6 +984,17 @@ public class LDAPSession extends BaseSession {
         return list;
     }
 
+    /**
+     * @since 11.1
+     */
+    protected DocumentModel ldapResultToDocumentModel(SearchResult result, boolean fetchReferences) {
+        try {
+            return ldapResultToDocumentModel(result, null, fetchReferences);
+        } catch (NamingException e) {
+            throw new DirectoryException("Could not read entry " + result.getNameInNamespace(), e);
+        }
+    }
+
     protected DocumentModel ldapResultToDocumentModel(SearchResult result, String entryId, boolean fetchReferences)
             throws NamingException {
         Attributes attributes = result.getAttributes();
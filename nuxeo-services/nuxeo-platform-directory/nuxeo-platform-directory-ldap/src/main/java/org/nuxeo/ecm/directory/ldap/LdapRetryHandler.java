@@ -26,6 +26,7 @@ import java.lang.reflect.Proxy;
 
 import javax.naming.ServiceUnavailableException;
 import javax.naming.directory.DirContext;
+import javax.naming.ldap.LdapContext;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -70,7 +71,10 @@ public class LdapRetryHandler implements InvocationHandler {
 
     public static DirContext wrap(DirContext dirContext, int retries) {
         LdapRetryHandler handler = new LdapRetryHandler(dirContext, retries);
-        return (DirContext) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
-                new Class<?>[] { DirContext.class }, handler);
+        // keep the LDAP extended operations and controls available when the wrapped context has them
+        Class<?>[] interfaces = dirContext instanceof LdapContext ? new Class<?>[] { LdapContext.class }
+                : new Class<?>[] { DirContext.class };
+        return (DirContext) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), interfaces,
+                handler);
     }
 }
@@ -39,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -47,6 +48,7 @@ import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
 import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
 import org.nuxeo.ecm.core.query.QueryParseException;
 import org.nuxeo.ecm.core.query.sql.model.OrderByExprs;
@@ -969,6 +971,10 @@ public class TestLDAPSession extends LDAPDirectoryTestCase {
             queryBuilder = new QueryBuilder().predicate(Predicates.like("username", "user%"));
             checkQueryResult(session, queryBuilder, "user1", "user2", "user3");
 
+            // paging without ordering
+            queryBuilder = new QueryBuilder().limit(10);
+            checkQueryResult(session, queryBuilder, "Administrator", "user1", "user2", "user3");
+
             // order/paging/totalSize
 
             // no count total
@@ -1026,6 +1032,9 @@ public class TestLDAPSession extends LDAPDirectoryTestCase {
         DocumentModelList list = session.query(queryBuilder, false);
         List<String> ids = session.queryIds(queryBuilder);
         assertIds(list, ids, expected);
+        try (Stream<DocumentModel> stream = session.queryStream(queryBuilder, false)) {
+            assertIds(stream.collect(Collectors.toCollection(DocumentModelListImpl::new)), ids, expected);
+        }
         if (queryBuilder.countTotal()) {
             assertEquals(expectedTotalSize, list.totalSize());
         }
@@ -29,7 +29,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -805,6 +807,46 @@ public class MultiDirectorySession extends BaseSession {
         return results;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sources are evaluated one after the other when the stream reaches them, and the entries are only built when
+     * consumed. If an ordering is requested, all the entries are fetched and ordered in memory.
+     */
+    @Override
+    public Stream<DocumentModel> queryStream(QueryBuilder queryBuilder, boolean fetchReferences) {
+        if (!hasPermission(SecurityConstants.READ)) {
+            return Stream.empty();
+        }
+        if (!queryBuilder.orders().isEmpty()) {
+            return query(queryBuilder, fetchReferences).stream();
+        }
+        if (FieldDetector.hasField(queryBuilder.predicate(), getPasswordField())) {
+            throw new DirectoryException("Cannot filter on password");
+        }
+        init();
+
+        Map<String, String> sources = new HashMap<>(); // map of id to source
+        Stream<DocumentModel> stream = sourceInfos.stream().flatMap(sourceInfo -> {
+            // find all ids by evaluating the expression with this source of subdirectories
+            MultiDirectoryExpressionEvaluator evaluator = new MultiDirectoryExpressionEvaluator(sourceInfo,
+                    schemaIdField, getName());
+            Set<String> ids = evaluator.eval(queryBuilder.predicate());
+            return ids.stream().filter(id -> {
+                String otherSource = sources.putIfAbsent(id, sourceInfo.source.name);
+                if (otherSource != null) {
+                    log.warn(String.format("Entry '%s' is present in source '%s' but also in source '%s'. "
+                            + "The second one will be ignored.", id, otherSource, sourceInfo.source.name));
+                    return false;
+                }
+                return true;
+            });
+        }).map(id -> getEntry(id, fetchReferences)).filter(Objects::nonNull);
+        int limit = Math.max(0, (int) queryBuilder.limit());
+        int offset = Math.max(0, (int) queryBuilder.offset());
+        return applyQueryLimits(stream, limit, offset);
+    }
+
     @Override
     public List<String> queryIds(QueryBuilder queryBuilder) {
         if (!hasPermission(SecurityConstants.READ)) {
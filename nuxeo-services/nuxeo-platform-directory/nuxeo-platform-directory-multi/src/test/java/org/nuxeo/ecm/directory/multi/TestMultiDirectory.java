@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
@@ -46,6 +47,7 @@ import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelComparator;
 import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
 import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
 import org.nuxeo.ecm.core.query.QueryParseException;
 import org.nuxeo.ecm.core.query.sql.model.OrderByExprs;
@@ -625,6 +627,9 @@ public class TestMultiDirectory {
         DocumentModelList list = session.query(queryBuilder, false);
         List<String> ids = session.queryIds(queryBuilder);
         assertIds(list, ids, expected);
+        try (Stream<DocumentModel> stream = session.queryStream(queryBuilder, false)) {
+            assertIds(stream.collect(Collectors.toCollection(DocumentModelListImpl::new)), ids, expected);
+        }
         if (queryBuilder.countTotal()) {
             assertEquals(expectedTotalSize, list.totalSize());
         }
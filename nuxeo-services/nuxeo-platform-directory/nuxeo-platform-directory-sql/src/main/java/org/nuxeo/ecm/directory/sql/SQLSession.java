@@ -34,8 +34,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -79,6 +84,9 @@ public class SQLSession extends BaseSession {
     // set to false for debugging
     private static final boolean HIDE_PASSWORD_IN_LOGS = true;
 
+    /** @since 11.1 */
+    protected static final int QUERY_STREAM_FETCH_SIZE = 500;
+
     final Table table;
 
     protected SQLStaticFilter[] staticFilters;
@@ -701,22 +709,7 @@ public class SQLSession extends BaseSession {
             select.setFrom(table.getQuotedName());
             select.setWhere(whereClause);
 
-            StringBuilder orderBy = new StringBuilder();
-            OrderByList orders = queryBuilder.orders();
-            if (!orders.isEmpty()) {
-                for (OrderByExpr ob : orders) {
-                    if (orderBy.length() != 0) {
-                        orderBy.append(", ");
-                    }
-                    orderBy.append(dialect.openQuote());
-                    orderBy.append(ob.reference.name);
-                    orderBy.append(dialect.closeQuote());
-                    if (ob.isDescending) {
-                        orderBy.append(" DESC");
-                    }
-                }
-                select.setOrderBy(orderBy.toString());
-            }
+            addOrderBy(select, queryBuilder.orders());
             String query = select.getStatement();
             if (limit != 0 || offset != 0) {
                 if (!dialect.supportsPaging()) {
@@ -741,28 +734,7 @@ public class SQLSession extends BaseSession {
                 }
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        // fetch values for stored fields
-                        Map<String, Object> map = new HashMap<>();
-                        for (Column column : getReadColumns()) {
-                            Object o = getFieldValue(rs, column);
-                            map.put(column.getKey(), o);
-                        }
-                        DocumentModel docModel = fieldMapToDocumentModel(map);
-                        // fetch the reference fields
-                        if (fetchReferences) {
-                            Map<String, List<String>> targetIdsMap = new HashMap<>();
-                            for (org.nuxeo.ecm.directory.Reference reference : directory.getReferences()) {
-                                List<String> targetIds = reference.getTargetIdsForSource(docModel.getId());
-                                String fieldName = reference.getFieldName();
-                                targetIdsMap.computeIfAbsent(fieldName, key -> new ArrayList<>()).addAll(targetIds);
-                            }
-                            for (Entry<String, List<String>> en : targetIdsMap.entrySet()) {
-                                String fieldName = en.getKey();
-                                List<String> targetIds = en.getValue();
-                                docModel.setProperty(schemaName, fieldName, targetIds);
-                            }
-                        }
-                        list.add(docModel);
+                        list.add(resultSetToDocumentModel(rs, fetchReferences));
                     }
                 }
             }
@@ -811,6 +783,185 @@ public class SQLSession extends BaseSession {
         }
     }
 
+    /**
+     * Fetches the entry at the current row of the result set.
+     *
+     * @since 11.1
+     */
+    protected DocumentModel resultSetToDocumentModel(ResultSet rs, boolean fetchReferences) throws SQLException {
+        // fetch values for stored fields
+        Map<String, Object> map = new HashMap<>();
+        for (Column column : getReadColumns()) {
+            Object o = getFieldValue(rs, column);
+            map.put(column.getKey(), o);
+        }
+        DocumentModel docModel = fieldMapToDocumentModel(map);
+        // fetch the reference fields
+        if (fetchReferences) {
+            Map<String, List<String>> targetIdsMap = new HashMap<>();
+            for (org.nuxeo.ecm.directory.Reference reference : directory.getReferences()) {
+                List<String> targetIds = reference.getTargetIdsForSource(docModel.getId());
+                String fieldName = reference.getFieldName();
+                targetIdsMap.computeIfAbsent(fieldName, key -> new ArrayList<>()).addAll(targetIds);
+            }
+            for (Entry<String, List<String>> en : targetIdsMap.entrySet()) {
+                String fieldName = en.getKey();
+                List<String> targetIds = en.getValue();
+                docModel.setProperty(schemaName, fieldName, targetIds);
+            }
+        }
+        return docModel;
+    }
+
+    /**
+     * @since 11.1
+     */
+    protected void addOrderBy(Select select, OrderByList orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        StringBuilder orderBy = new StringBuilder();
+        for (OrderByExpr ob : orders) {
+            if (orderBy.length() != 0) {
+                orderBy.append(", ");
+            }
+            orderBy.append(dialect.openQuote());
+            orderBy.append(ob.reference.name);
+            orderBy.append(dialect.closeQuote());
+            if (ob.isDescending) {
+                orderBy.append(" DESC");
+            }
+        }
+        select.setOrderBy(orderBy.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The entries are read from a single cursor, fetching {@value #QUERY_STREAM_FETCH_SIZE} rows at a time.
+     */
+    @Override
+    public Stream<DocumentModel> queryStream(QueryBuilder queryBuilder, boolean fetchReferences) {
+        if (!hasPermission(SecurityConstants.READ)) {
+            return Stream.empty();
+        }
+        if (FieldDetector.hasField(queryBuilder.predicate(), getPasswordField())) {
+            throw new DirectoryException("Cannot filter on password");
+        }
+        queryBuilder = addTenantId(queryBuilder);
+
+        // build where clause from query
+        SQLQueryBuilder builder = new SQLQueryBuilder(getDirectory());
+        builder.visitMultiExpression(queryBuilder.predicate());
+        // add static filters
+        addFilterWhereClause(builder.clause, builder.params);
+        // get resulting clause
+        String whereClause = builder.clause.toString();
+
+        int limit = Math.max(0, (int) queryBuilder.limit());
+        int offset = Math.max(0, (int) queryBuilder.offset());
+
+        acquireConnection();
+        Select select = new Select(table);
+        select.setWhat(getReadColumnsSQL());
+        select.setFrom(table.getQuotedName());
+        select.setWhere(whereClause);
+        addOrderBy(select, queryBuilder.orders());
+        String query = select.getStatement();
+        if ((limit != 0 || offset != 0) && dialect.supportsPaging()) {
+            query = dialect.addPagingClause(query, limit, offset);
+            limit = 0;
+            offset = 0;
+        }
+
+        if (logger.isLogEnabled()) {
+            List<Serializable> values = builder.params.stream()
+                                                      .map(ColumnAndValue::getValue)
+                                                      .collect(Collectors.toList());
+            logger.logSQL(query, values);
+        }
+
+        PreparedStatement ps = null;
+        try {
+            ps = sqlConnection.prepareStatement(query);
+            ps.setFetchSize(QUERY_STREAM_FETCH_SIZE);
+            int i = 1;
+            for (ColumnAndValue columnAndValue : builder.params) {
+                setFieldValue(ps, i++, columnAndValue.column, columnAndValue.value);
+            }
+            ResultSet rs = ps.executeQuery();
+            Iterator<DocumentModel> iterator = new ResultSetIterator(rs, fetchReferences);
+            PreparedStatement statement = ps;
+            Runnable closer = () -> {
+                try {
+                    statement.close(); // also closes the result set
+                } catch (SQLException e) {
+                    log.error(e, e);
+                }
+            };
+            Stream<DocumentModel> stream = StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+            return applyQueryLimits(stream.onClose(closer), limit, offset);
+        } catch (SQLException e) {
+            try {
+                if (ps != null) {
+                    ps.close();
+                }
+                sqlConnection.close();
+            } catch (SQLException ee) {
+                log.error(ee, ee);
+            }
+            throw new DirectoryException("query failed", e);
+        }
+    }
+
+    /**
+     * Iterator over the entries of a result set.
+     *
+     * @since 11.1
+     */
+    protected class ResultSetIterator implements Iterator<DocumentModel> {
+
+        protected final ResultSet rs;
+
+        protected final boolean fetchReferences;
+
+        protected DocumentModel next;
+
+        protected boolean done;
+
+        protected ResultSetIterator(ResultSet rs, boolean fetchReferences) {
+            this.rs = rs;
+            this.fetchReferences = fetchReferences;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    if (rs.next()) {
+                        next = resultSetToDocumentModel(rs, fetchReferences);
+                    } else {
+                        done = true;
+                    }
+                } catch (SQLException e) {
+                    throw new DirectoryException("query failed", e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public DocumentModel next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DocumentModel docModel = next;
+            next = null;
+            return docModel;
+        }
+    }
+
     @Override
     public List<String> queryIds(QueryBuilder queryBuilder) {
         if (!hasPermission(SecurityConstants.READ)) {
@@ -841,22 +992,7 @@ public class SQLSession extends BaseSession {
             select.setFrom(table.getQuotedName());
             select.setWhere(whereClause);
 
-            StringBuilder orderBy = new StringBuilder();
-            OrderByList orders = queryBuilder.orders();
-            if (!orders.isEmpty()) {
-                for (OrderByExpr ob : orders) {
-                    if (orderBy.length() != 0) {
-                        orderBy.append(", ");
-                    }
-                    orderBy.append(dialect.openQuote());
-                    orderBy.append(ob.reference.name);
-                    orderBy.append(dialect.closeQuote());
-                    if (ob.isDescending) {
-                        orderBy.append(" DESC");
-                    }
-                }
-                select.setOrderBy(orderBy.toString());
-            }
+            addOrderBy(select, queryBuilder.orders());
             String query = select.getStatement();
             if (limit != 0 || offset != 0) {
                 if (!dialect.supportsPaging()) {
@@ -27,12 +27,18 @@ import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExprs;
+import org.nuxeo.ecm.core.query.sql.model.Predicates;
+import org.nuxeo.ecm.core.query.sql.model.QueryBuilder;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
 import org.nuxeo.ecm.directory.Session;
@@ -103,4 +109,41 @@ public class TestPagingComplexFilterDirectory {
             assertEquals(1, entries.size());
         }
     }
+
+    @Test
+    public void testQueryStream() {
+        try (Session session = directoryService.open(DIR)) {
+            // all the entries, in order
+            QueryBuilder queryBuilder = new QueryBuilder().order(OrderByExprs.desc("id"));
+            assertEquals(ids(12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1), queryStreamIds(session, queryBuilder));
+
+            // same entries as a query
+            queryBuilder = new QueryBuilder().predicate(Predicates.eq("type", "nuxeo")).order(OrderByExprs.asc("id"));
+            List<String> expected = session.query(queryBuilder, false)
+                                           .stream()
+                                           .map(DocumentModel::getId)
+                                           .collect(Collectors.toList());
+            assertEquals(expected, queryStreamIds(session, queryBuilder));
+
+            // paging
+            queryBuilder = new QueryBuilder().order(OrderByExprs.asc("id")).limit(5).offset(1);
+            assertEquals(ids(2, 3, 4, 5, 6), queryStreamIds(session, queryBuilder));
+            queryBuilder = new QueryBuilder().order(OrderByExprs.asc("id")).limit(5).offset(11);
+            assertEquals(ids(12), queryStreamIds(session, queryBuilder));
+
+            // the session is still usable once the stream is closed
+            assertEquals(12, session.query(new HashMap<>()).size());
+        }
+    }
+
+    protected static List<String> queryStreamIds(Session session, QueryBuilder queryBuilder) {
+        try (Stream<DocumentModel> stream = session.queryStream(queryBuilder, false)) {
+            return stream.map(DocumentModel::getId).collect(Collectors.toList());
+        }
+    }
+
+    protected static List<String> ids(int... ids) {
+        return IntStream.of(ids).mapToObj(String::valueOf).collect(Collectors.toList());
+    }
+
 }
@@ -21,8 +21,14 @@
 package org.nuxeo.directory.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -163,4 +169,151 @@ public class TestCachedDirectory extends AbstractDirectoryTest {
             assertEquals(baseMissesCount + 1, missesCounter.getCount());
         }
     }
+
+    /**
+     * @since 11.1
+     */
+    @Test
+    public void testWarmUp() throws Exception {
+        DirectoryCache cache = getDirectory().getCache();
+        cache.setNegativeCaching(Boolean.TRUE);
+        try (Session session = getDirectory().getSession()) {
+            MetricRegistry metrics = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+            Counter hitsCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "hits"));
+            Counter filterHitsCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "filterhits"));
+            Counter missesCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "misses"));
+
+            // ids are only recorded when asked to
+            int count = cache.warmUp(session, null, 2, false);
+            assertEquals(session.query(Collections.emptyMap()).size(), count);
+            assertFalse(cache.hasEntryIdsFilter());
+
+            // load the whole directory with small batches
+            count = cache.warmUp(session, null, 2, true);
+            assertEquals(session.query(Collections.emptyMap()).size(), count);
+            assertTrue(cache.hasEntryIdsFilter());
+            long baseHitsCount = hitsCounter.getCount();
+            long baseFilterHitsCount = filterHitsCounter.getCount();
+            long baseMissesCount = missesCounter.getCount();
+
+            // entry is already in the cache
+            DocumentModel entry = session.getEntry("user_1");
+            assertNotNull(entry);
+            assertEquals(baseHitsCount + 1, hitsCounter.getCount());
+            assertEquals(baseMissesCount, missesCounter.getCount());
+
+            // missing entry is answered by the filter without going to the source
+            entry = session.getEntry("NO_SUCH_USER");
+            assertNull(entry);
+            assertEquals(baseFilterHitsCount + 1, filterHitsCounter.getCount());
+            assertEquals(baseMissesCount, missesCounter.getCount());
+
+            // the recorded ids are kept with the cache, as existing entries keep their id
+            cache.invalidateAll();
+            assertTrue(cache.hasEntryIdsFilter());
+            entry = session.getEntry("NO_SUCH_USER");
+            assertNull(entry);
+            assertEquals(baseFilterHitsCount + 2, filterHitsCounter.getCount());
+            assertEquals(baseMissesCount, missesCounter.getCount());
+
+            // the filter is only dropped without negative caching
+            cache.setNegativeCaching(Boolean.FALSE);
+            assertFalse(cache.hasEntryIdsFilter());
+        } finally {
+            cache.setNegativeCaching(null);
+        }
+    }
+
+    /**
+     * @since 11.1
+     */
+    @Test
+    public void testWriteAfterWarmUp() throws Exception {
+        DirectoryCache cache = getDirectory().getCache();
+        cache.setNegativeCaching(Boolean.TRUE);
+        try (Session session = getDirectory().getSession()) {
+            MetricRegistry metrics = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+            Counter hitsCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "hits"));
+            Counter filterHitsCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "filterhits"));
+            Counter missesCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "misses"));
+
+            cache.warmUp(session, null, 2, true);
+            long baseHitsCount = hitsCounter.getCount();
+            long baseFilterHitsCount = filterHitsCounter.getCount();
+            long baseMissesCount = missesCounter.getCount();
+
+            // a created entry is recorded in the filter
+            Map<String, Object> map = new HashMap<>();
+            map.put("username", "user_0");
+            map.put("password", "pass_0");
+            session.createEntry(map);
+            assertTrue(cache.hasEntryIdsFilter());
+            DocumentModel entry = session.getEntry("user_0");
+            assertNotNull(entry);
+            assertEquals(baseFilterHitsCount, filterHitsCounter.getCount());
+            assertEquals(baseMissesCount + 1, missesCounter.getCount());
+
+            // an update only invalidates the updated entry
+            entry = session.getEntry("user_1");
+            assertEquals(baseHitsCount + 1, hitsCounter.getCount());
+            entry.setProperty(SCHEMA, "company", "mycompany");
+            session.updateEntry(entry);
+            entry = session.getEntry("user_3");
+            assertNotNull(entry);
+            assertEquals(baseHitsCount + 2, hitsCounter.getCount());
+            entry = session.getEntry("user_1");
+            assertEquals("mycompany", entry.getProperty(SCHEMA, "company"));
+            assertEquals(baseMissesCount + 2, missesCounter.getCount());
+
+            // a deleted entry is looked up in the source, other missing entries are still answered by the filter
+            session.deleteEntry("user_0");
+            assertNull(session.getEntry("user_0"));
+            assertEquals(baseMissesCount + 3, missesCounter.getCount());
+            assertNull(session.getEntry("NO_SUCH_USER"));
+            assertEquals(baseFilterHitsCount + 1, filterHitsCounter.getCount());
+            assertEquals(baseMissesCount + 3, missesCounter.getCount());
+        } finally {
+            cache.setNegativeCaching(null);
+        }
+    }
+
+    /**
+     * @since 11.1
+     */
+    @Test
+    public void testRefresh() throws Exception {
+        DirectoryCache cache = getDirectory().getCache();
+        try (Session session = getDirectory().getSession()) {
+            MetricRegistry metrics = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+            Counter hitsCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "hits"));
+            Counter missesCounter = metrics.counter(
+                    MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "misses"));
+
+            cache.warmUp(session, null, 2, false);
+            cache.invalidate("user_1", "user_3");
+
+            // only user_3 was modified after this date
+            int count = cache.refresh(session, "dateField", getCalendar(2008, 1, 1, 0, 0, 0, 0), 2);
+            assertEquals(1, count);
+            long baseHitsCount = hitsCounter.getCount();
+            long baseMissesCount = missesCounter.getCount();
+
+            // the refreshed entry is in the cache again
+            assertNotNull(session.getEntry("user_3"));
+            assertEquals(baseHitsCount + 1, hitsCounter.getCount());
+            assertEquals(baseMissesCount, missesCounter.getCount());
+
+            // the other one is not
+            assertNotNull(session.getEntry("user_1"));
+            assertEquals(baseHitsCount + 1, hitsCounter.getCount());
+            assertEquals(baseMissesCount + 1, missesCounter.getCount());
+        }
+    }
 }
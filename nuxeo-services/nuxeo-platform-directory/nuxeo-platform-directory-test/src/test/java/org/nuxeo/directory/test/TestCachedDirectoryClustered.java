@@ -160,16 +160,16 @@ public class TestCachedDirectoryClustered {
             session.updateEntry(entry);
 
             // check invalidations sent for update
-            // currently, to simplify the logic, we invalidate everything
+            // only the updated entry is invalidated, but the referenced directory is invalidated entirely
             assertEquals(4, RECEIVED_INVALIDATIONS.size());
             Set<String> invals = new HashSet<>();
             for (CacheInvalidation inval : RECEIVED_INVALIDATIONS) {
                 invals.add(inval.cacheName + ":" + inval.key);
             }
             Set<String> expected = new HashSet<>(Arrays.asList( //
-                    "cache-userDirectory:__ALL__", //
+                    "cache-userDirectory:user_1", //
                     "cache-groupDirectory:__ALL__", //
-                    "cacheWithoutReference-userDirectory:__ALL__", //
+                    "cacheWithoutReference-userDirectory:user_1", //
                     "cacheWithoutReference-groupDirectory:__ALL__" //
             ));
             assertEquals(expected, invals);
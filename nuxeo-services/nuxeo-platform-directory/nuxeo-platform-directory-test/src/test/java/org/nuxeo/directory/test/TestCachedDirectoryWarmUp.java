@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.directory.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.function.BooleanSupplier;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.directory.Directory;
+import org.nuxeo.ecm.directory.DirectoryCache;
+import org.nuxeo.ecm.directory.Session;
+import org.nuxeo.ecm.directory.api.DirectoryService;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Test of the background warm-up and refresh of a DirectoryCache configured on the directory.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(DirectoryFeature.class)
+@Deploy("org.nuxeo.ecm.core.cache")
+@Deploy("org.nuxeo.ecm.directory.tests:test-directories-schema-override.xml")
+@Deploy("org.nuxeo.ecm.directory.tests:test-directories-bundle.xml")
+@Deploy("org.nuxeo.ecm.directory.tests:test-directories-cache-warmup.xml")
+public class TestCachedDirectoryWarmUp {
+
+    protected static final String USER_DIR = "userDirectory";
+
+    protected static final String SCHEMA = "user";
+
+    protected static final long TIMEOUT_MS = 10_000;
+
+    @Inject
+    protected DirectoryService directoryService;
+
+    protected static void await(String message, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(message, System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    protected static String getCachedCompany(DirectoryCache cache, String id) {
+        Serializable entry = cache.getEntryCache().get(id);
+        if (!(entry instanceof DocumentModel)) {
+            return null;
+        }
+        return (String) ((DocumentModel) entry).getProperty(SCHEMA, "company");
+    }
+
+    @Test
+    public void testScheduledWarmUp() throws Exception {
+        Directory directory = directoryService.getDirectory(USER_DIR);
+        DirectoryCache cache = directory.getCache();
+
+        // loaded at startup, with the ids of the entries as the cache has a refresh field
+        await("warm-up not done", cache::hasEntryIdsFilter);
+        await("entry not loaded", () -> cache.getEntryCache().get("user_1") instanceof DocumentModel);
+
+        // a full invalidation schedules a new warm-up
+        cache.invalidateAll();
+        assertTrue(cache.hasEntryIdsFilter());
+        await("entry not loaded again", () -> cache.getEntryCache().get("user_1") instanceof DocumentModel);
+
+        // an entry updated with a new timestamp is loaded again by the periodic refresh
+        // (in the future so that it's still seen as modified after the commit)
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.HOUR_OF_DAY, 1);
+        try (Session session = directory.getSession()) {
+            DocumentModel entry = session.getEntry("user_1");
+            entry.setProperty(SCHEMA, "company", "mycompany");
+            entry.setProperty(SCHEMA, "dateField", date);
+            session.updateEntry(entry);
+        }
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        await("entry not refreshed", () -> "mycompany".equals(getCachedCompany(cache, "user_1")));
+        assertTrue(cache.hasEntryIdsFilter());
+    }
+
+}
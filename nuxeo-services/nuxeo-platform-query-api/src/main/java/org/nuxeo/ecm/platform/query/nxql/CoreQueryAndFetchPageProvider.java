@@ -20,6 +20,7 @@ package org.nuxeo.ecm.platform.query.nxql;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +55,9 @@ import org.nuxeo.ecm.platform.query.api.WhereClauseDefinition;
  * <p>
  * Also since 6.0, the page provider property named {@link #USE_UNRESTRICTED_SESSION_PROPERTY} allows specifying whether
  * the query should be run as unrestricted.
+ * <p>
+ * Since 11.1, the page provider property named {@link #KEYSET_PAGINATION_PROPERTY} enables keyset pagination for NXQL
+ * queries whose projection contains the sort columns: see {@link NXQLKeysetPagination}.
  *
  * @author Anahide Tchertchian
  * @since 5.4
@@ -76,6 +80,14 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
      */
     public static final String LANGUAGE_PROPERTY = "language";
 
+    /**
+     * Boolean property stating that pages following an already fetched page should be retrieved using a seek predicate
+     * on the sort values of its last row instead of an offset, without counting the results.
+     *
+     * @since 11.1
+     */
+    public static final String KEYSET_PAGINATION_PROPERTY = "keysetPagination";
+
     private static final long serialVersionUID = 1L;
 
     private static final Log log = LogFactory.getLog(CoreQueryDocumentPageProvider.class);
@@ -84,6 +96,16 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
 
     protected List<Map<String, Serializable>> currentItems;
 
+    /** @since 11.1 */
+    protected List<SortInfo> keysetSortInfos;
+
+    /**
+     * Keyset cursors by page offset.
+     *
+     * @since 11.1
+     */
+    protected Map<Long, String> pageCursors = new HashMap<>();
+
     protected CoreSession getCoreSession() {
         CoreSession coreSession;
         Map<String, Serializable> props = getProperties();
@@ -127,18 +149,28 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
 
                 final String language = getQueryLanguage();
                 final boolean useUnrestricted = useUnrestrictedSession();
+                final String cursor = getPageCursor(offset);
+                // seek after the last row of the previous page if possible
+                final String actualQuery = cursor == null ? query
+                        : NXQLKeysetPagination.addSeekClause(query, keysetSortInfos, cursor);
                 if (useUnrestricted) {
                     CoreQueryAndFetchUnrestrictedSessionRunner r = new CoreQueryAndFetchUnrestrictedSessionRunner(
-                            coreSession, query, language);
+                            coreSession, actualQuery, language);
                     r.runUnrestricted();
                     result = r.getResult();
                 } else {
-                    result = coreSession.queryAndFetch(query, language);
+                    result = coreSession.queryAndFetch(actualQuery, language);
                 }
-                long resultsCount = result.size();
-                setResultsCount(resultsCount);
-                if (offset < resultsCount) {
-                    result.skipTo(offset);
+                long resultsCount;
+                if (cursor == null) {
+                    resultsCount = result.size();
+                    setResultsCount(resultsCount);
+                    if (offset < resultsCount) {
+                        result.skipTo(offset);
+                    }
+                } else {
+                    // don't count the results
+                    resultsCount = UNKNOWN_SIZE_AFTER_QUERY;
                 }
 
                 Iterator<Map<String, Serializable>> it = result.iterator();
@@ -149,6 +181,22 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
                     currentItems.add(item);
                 }
 
+                if (cursor != null) {
+                    resultsCount = estimateResultsCount(offset, currentItems.size());
+                    setResultsCount(resultsCount);
+                    if (resultsCount < 0 && currentItems.size() >= getPageSize()) {
+                        // additional info to handle next page when results count is unknown
+                        int currentFilledPage = (int) getCurrentPageIndex();
+                        if (currentFilledPage > getCurrentHigherNonEmptyPageIndex()) {
+                            setCurrentHigherNonEmptyPageIndex(currentFilledPage);
+                        }
+                    }
+                }
+                if (isKeysetPagination() && !currentItems.isEmpty() && currentItems.size() >= minMaxPageSize) {
+                    pageCursors.put(Long.valueOf(offset + currentItems.size()), NXQLKeysetPagination.getCursor(
+                            currentItems.get(currentItems.size() - 1), keysetSortInfos));
+                }
+
                 if (log.isDebugEnabled()) {
                     log.debug(String.format("Performed query for provider '%s': got %s hits", getName(),
                             Long.valueOf(resultsCount)));
@@ -195,6 +243,10 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
             sort = sortInfos;
         }
 
+        if (isKeysetPagination()) {
+            sort = keysetSortInfos = NXQLKeysetPagination.withTiebreaker(sort);
+        }
+
         SortInfo[] sortArray = null;
         if (sort != null) {
             sortArray = sort.toArray(new SortInfo[] {});
@@ -293,6 +345,70 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
         return NXQL.NXQL;
     }
 
+    /**
+     * Returns true if keyset pagination is enabled, see {@link #KEYSET_PAGINATION_PROPERTY}. Only NXQL queries are
+     * supported.
+     *
+     * @since 11.1
+     */
+    protected boolean isKeysetPagination() {
+        return getBooleanProperty(KEYSET_PAGINATION_PROPERTY, false) && NXQL.NXQL.equals(getQueryLanguage());
+    }
+
+    /**
+     * Returns the keyset cursor to use for the page at the given offset, or {@code null} to use offset pagination.
+     *
+     * @since 11.1
+     */
+    protected String getPageCursor(long offset) {
+        if (offset == 0 || !isKeysetPagination() || keysetSortInfos == null) {
+            return null;
+        }
+        return pageCursors.get(Long.valueOf(offset));
+    }
+
+    /**
+     * Estimates the results count of a page fetched with a keyset cursor: exact when the page is not full, unknown
+     * otherwise.
+     *
+     * @since 11.1
+     */
+    protected long estimateResultsCount(long offset, long size) {
+        long pageSize = getMinMaxPageSize();
+        if (pageSize == 0 || size < pageSize) {
+            return offset + size;
+        }
+        return UNKNOWN_SIZE_AFTER_QUERY;
+    }
+
+    /**
+     * Returns the keyset cursor of the page following the current one, or {@code null} if it is unknown.
+     *
+     * @since 11.1
+     */
+    public String getNextPageCursor() {
+        if (currentItems == null) {
+            return null;
+        }
+        return pageCursors.get(Long.valueOf(getCurrentPageOffset() + currentItems.size()));
+    }
+
+    /**
+     * Sets the keyset cursor to use for the current page, as previously returned by {@link #getNextPageCursor()}.
+     *
+     * @since 11.1
+     */
+    public void setCurrentPageCursor(String cursor) {
+        if (cursor == null) {
+            pageCursors.remove(Long.valueOf(getCurrentPageOffset()));
+        } else {
+            // validate early
+            NXQLKeysetPagination.decodeCursor(cursor);
+            pageCursors.put(Long.valueOf(getCurrentPageOffset()), cursor);
+        }
+        currentItems = null;
+    }
+
     public String getCurrentQuery() {
         return query;
     }
@@ -307,6 +423,7 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
     public void refresh() {
         query = null;
         currentItems = null;
+        pageCursors.clear();
         super.refresh();
     }
 
@@ -21,6 +21,7 @@ package org.nuxeo.ecm.platform.query.nxql;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +54,9 @@ import org.nuxeo.runtime.services.config.ConfigurationService;
  * Since 6.0, the page provider property named {@link #USE_UNRESTRICTED_SESSION_PROPERTY} allows specifying whether the
  * query should be run as unrestricted. When such a property is set to "true", the additional property
  * {@link #DETACH_DOCUMENTS_PROPERTY} is used to detach documents (defaults to true when session is unrestricted).
+ * <p>
+ * Since 11.1, the page provider property named {@link #KEYSET_PAGINATION_PROPERTY} enables keyset pagination: see
+ * {@link NXQLKeysetPagination}.
  *
  * @author Anahide Tchertchian
  * @since 5.4
@@ -92,6 +96,14 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
      */
     public static final String DETACH_DOCUMENTS_PROPERTY = "detachDocuments";
 
+    /**
+     * Boolean property stating that pages following an already fetched page should be retrieved using a seek predicate
+     * on the sort values of its last document instead of an offset, without counting the results.
+     *
+     * @since 11.1
+     */
+    public static final String KEYSET_PAGINATION_PROPERTY = "keysetPagination";
+
     private static final Log log = LogFactory.getLog(CoreQueryDocumentPageProvider.class);
 
     private static final long serialVersionUID = 1L;
@@ -102,6 +114,16 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
 
     protected Long maxResults;
 
+    /** @since 11.1 */
+    protected List<SortInfo> keysetSortInfos;
+
+    /**
+     * Keyset cursors by page offset.
+     *
+     * @since 11.1
+     */
+    protected Map<Long, String> pageCursors = new HashMap<>();
+
     @Override
     public List<DocumentModel> getCurrentPage() {
 
@@ -138,7 +160,19 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
                 final boolean useUnrestricted = useUnrestrictedSession();
 
                 final boolean detachDocs = detachDocuments();
-                if (maxResults > 0) {
+                final String cursor = getPageCursor(offset);
+                if (cursor != null) {
+                    // seek after the last document of the previous page, no offset and no count
+                    String seekQuery = NXQLKeysetPagination.addSeekClause(query, keysetSortInfos, cursor);
+                    if (useUnrestricted) {
+                        CoreQueryUnrestrictedSessionRunner r = new CoreQueryUnrestrictedSessionRunner(coreSession,
+                                seekQuery, filter, minMaxPageSize, 0, false, 0, detachDocs);
+                        r.runUnrestricted();
+                        docs = r.getDocs();
+                    } else {
+                        docs = coreSession.query(seekQuery, filter, minMaxPageSize, 0, 0);
+                    }
+                } else if (maxResults > 0) {
                     if (useUnrestricted) {
                         CoreQueryUnrestrictedSessionRunner r = new CoreQueryUnrestrictedSessionRunner(coreSession,
                                 query, filter, minMaxPageSize, offset, false, maxResults, detachDocs);
@@ -160,7 +194,7 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
                     }
                 }
 
-                long resultsCount = docs.totalSize();
+                long resultsCount = cursor == null ? docs.totalSize() : estimateResultsCount(offset, docs.size());
                 if (resultsCount < 0) {
                     // results count is truncated
                     setResultsCount(UNKNOWN_SIZE_AFTER_QUERY);
@@ -168,6 +202,10 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
                     setResultsCount(resultsCount);
                 }
                 currentPageDocuments = docs;
+                if (isKeysetPagination() && !docs.isEmpty() && docs.size() >= minMaxPageSize) {
+                    pageCursors.put(Long.valueOf(offset + docs.size()),
+                            NXQLKeysetPagination.getCursor(docs.get(docs.size() - 1), keysetSortInfos));
+                }
 
                 if (log.isDebugEnabled()) {
                     log.debug(String.format("Performed query for provider '%s': got %s hits (limit %s)", getName(),
@@ -220,6 +258,10 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
             sort = sortInfos;
         }
 
+        if (isKeysetPagination()) {
+            sort = keysetSortInfos = NXQLKeysetPagination.withTiebreaker(sort);
+        }
+
         SortInfo[] sortArray = null;
         if (sort != null) {
             sortArray = sort.toArray(new SortInfo[] {});
@@ -272,6 +314,69 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
         return getBooleanProperty(DETACH_DOCUMENTS_PROPERTY, true);
     }
 
+    /**
+     * Returns true if keyset pagination is enabled, see {@link #KEYSET_PAGINATION_PROPERTY}.
+     *
+     * @since 11.1
+     */
+    protected boolean isKeysetPagination() {
+        return getBooleanProperty(KEYSET_PAGINATION_PROPERTY, false);
+    }
+
+    /**
+     * Returns the keyset cursor to use for the page at the given offset, or {@code null} to use offset pagination.
+     *
+     * @since 11.1
+     */
+    protected String getPageCursor(long offset) {
+        if (offset == 0 || !isKeysetPagination() || keysetSortInfos == null) {
+            return null;
+        }
+        return pageCursors.get(Long.valueOf(offset));
+    }
+
+    /**
+     * Estimates the results count of a page fetched with a keyset cursor: exact when the page is not full, unknown
+     * otherwise.
+     *
+     * @since 11.1
+     */
+    protected long estimateResultsCount(long offset, long size) {
+        long pageSize = getMinMaxPageSize();
+        if (pageSize == 0 || size < pageSize) {
+            return offset + size;
+        }
+        return UNKNOWN_SIZE_AFTER_QUERY;
+    }
+
+    /**
+     * Returns the keyset cursor of the page following the current one, or {@code null} if it is unknown.
+     *
+     * @since 11.1
+     */
+    public String getNextPageCursor() {
+        if (currentPageDocuments == null) {
+            return null;
+        }
+        return pageCursors.get(Long.valueOf(getCurrentPageOffset() + currentPageDocuments.size()));
+    }
+
+    /**
+     * Sets the keyset cursor to use for the current page, as previously returned by {@link #getNextPageCursor()}.
+     *
+     * @since 11.1
+     */
+    public void setCurrentPageCursor(String cursor) {
+        if (cursor == null) {
+            pageCursors.remove(Long.valueOf(getCurrentPageOffset()));
+        } else {
+            // validate early
+            NXQLKeysetPagination.decodeCursor(cursor);
+            pageCursors.put(Long.valueOf(getCurrentPageOffset()), cursor);
+        }
+        currentPageDocuments = null;
+    }
+
     protected CoreSession getCoreSession() {
         Map<String, Serializable> props = getProperties();
         CoreSession coreSession = (CoreSession) props.get(CORE_SESSION_PROPERTY);
@@ -407,6 +512,7 @@ public class CoreQueryDocumentPageProvider extends AbstractPageProvider<Document
     public void refresh() {
         query = null;
         currentPageDocuments = null;
+        pageCursors.clear();
         super.refresh();
     }
 
@@ -0,0 +1,605 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.query.nxql;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.nuxeo.common.utils.DateUtils;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.api.PropertyException;
+import org.nuxeo.ecm.core.api.SortInfo;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.DefaultQueryVisitor;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.FromClause;
+import org.nuxeo.ecm.core.query.sql.model.Function;
+import org.nuxeo.ecm.core.query.sql.model.GroupByClause;
+import org.nuxeo.ecm.core.query.sql.model.HavingClause;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.OperandList;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
+import org.nuxeo.ecm.core.query.sql.model.OrderByList;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Predicates;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.SelectClause;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.query.sql.model.WhereClause;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Helpers for keyset (seek) pagination of NXQL queries.
+ * <p>
+ * Instead of skipping the {@code offset} first results, the next page is fetched by adding to the query a predicate
+ * selecting the results located after the last one of the previous page in the sort order:
+ *
+ * <pre>
+ * (s1 &gt; v1 OR (s1 = v1 AND s2 &gt; v2) OR ...)
+ * </pre>
+ *
+ * The sort values of the last result are carried between requests as an opaque cursor. For the order to be total, the
+ * sort is always completed by {@code ecm:uuid}.
+ * <p>
+ * Backends don't agree on the position of {@code NULL} values in ascending order, but all sort them last in descending
+ * order. So a descending sort column may be {@code null} and its seek predicate also selects the {@code NULL} values,
+ * while an ascending sort column must be one that is never {@code null}, see {@link #isSupportedSort}.
+ * <p>
+ * Only string, numeric and date sort values are supported; when the sort is not supported or a sort value is of another
+ * type no cursor is available and callers fall back to offset pagination.
+ *
+ * @since 11.1
+ */
+public class NXQLKeysetPagination {
+
+    protected static final char TYPE_STRING = 's';
+
+    protected static final char TYPE_LONG = 'l';
+
+    protected static final char TYPE_DOUBLE = 'd';
+
+    protected static final char TYPE_DATE = 't';
+
+    protected static final char TYPE_NULL = 'n';
+
+    protected static final String SEPARATOR = ".";
+
+    /** Sort columns never {@code null}, which can be sorted in ascending order. */
+    protected static final Set<String> NOT_NULL_COLUMNS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(NXQL.ECM_UUID, NXQL.ECM_NAME, NXQL.ECM_PRIMARYTYPE)));
+
+    /** Property disabling {@code NULLS LAST} on descending sorts for the VCS dialects where it's not the default. */
+    protected static final String NULLS_LAST_ON_DESC_PROP = "nuxeo.vcs.use-nulls-last-on-desc";
+
+    private NXQLKeysetPagination() {
+        // utility class
+    }
+
+    /**
+     * Returns the given sort completed with {@code ecm:uuid} so that the order is total.
+     */
+    public static List<SortInfo> withTiebreaker(List<SortInfo> sortInfos) {
+        List<SortInfo> sorts = sortInfos == null ? new ArrayList<>() : new ArrayList<>(sortInfos);
+        if (sorts.stream().noneMatch(sortInfo -> NXQL.ECM_UUID.equals(sortInfo.getSortColumn()))) {
+            sorts.add(new SortInfo(NXQL.ECM_UUID, true));
+        }
+        return sorts;
+    }
+
+    /**
+     * Checks if keyset pagination can be used with the given sort whatever the {@code NULL} ordering of the backend:
+     * columns sorted in ascending order must never be {@code null}. Other system columns are not supported.
+     */
+    public static boolean isSupportedSort(List<SortInfo> sortInfos) {
+        boolean nullsLastOnDesc = Boolean.parseBoolean(Framework.getProperty(NULLS_LAST_ON_DESC_PROP, "true"));
+        return isSupportedSort(sortInfos, nullsLastOnDesc);
+    }
+
+    /**
+     * Checks if keyset pagination can be used with the given sort, knowing if the backend sorts {@code NULL} values
+     * last in descending order.
+     */
+    public static boolean isSupportedSort(List<SortInfo> sortInfos, boolean nullsLastOnDesc) {
+        for (SortInfo sortInfo : sortInfos) {
+            String column = sortInfo.getSortColumn();
+            if (NOT_NULL_COLUMNS.contains(column)) {
+                continue;
+            }
+            if (column.startsWith(NXQL.ECM_PREFIX) || sortInfo.getSortAscending() || !nullsLastOnDesc) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the value of a sort column for a document, or {@code null} if it cannot be used in a cursor.
+     */
+    public static Serializable getSortValue(DocumentModel doc, String column) {
+        switch (column) {
+        case NXQL.ECM_UUID:
+            return doc.getId();
+        case NXQL.ECM_NAME:
+            return doc.getName();
+        case NXQL.ECM_PRIMARYTYPE:
+            return doc.getType();
+        default:
+            if (column.startsWith(NXQL.ECM_PREFIX)) {
+                return null;
+            }
+            try {
+                return doc.getPropertyValue(column);
+            } catch (PropertyException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Builds the cursor pointing after the given document, or {@code null} if not possible.
+     */
+    public static String getCursor(DocumentModel doc, List<SortInfo> sortInfos) {
+        if (!isSupportedSort(sortInfos)) {
+            return null;
+        }
+        List<Serializable> values = new ArrayList<>(sortInfos.size());
+        for (SortInfo sortInfo : sortInfos) {
+            values.add(getSortValue(doc, sortInfo.getSortColumn()));
+        }
+        return getCursor(values, sortInfos);
+    }
+
+    /**
+     * Builds the cursor pointing after the given queryAndFetch row, or {@code null} if not possible.
+     */
+    public static String getCursor(Map<String, Serializable> row, List<SortInfo> sortInfos) {
+        if (!isSupportedSort(sortInfos)) {
+            return null;
+        }
+        List<Serializable> values = new ArrayList<>(sortInfos.size());
+        for (SortInfo sortInfo : sortInfos) {
+            values.add(row.get(sortInfo.getSortColumn()));
+        }
+        return getCursor(values, sortInfos);
+    }
+
+    protected static String getCursor(List<Serializable> values, List<SortInfo> sortInfos) {
+        for (int i = 0; i < sortInfos.size(); i++) {
+            if (values.get(i) == null && sortInfos.get(i).getSortAscending()) {
+                // not expected to be null, its position is unknown
+                return null;
+            }
+        }
+        return encodeCursor(values);
+    }
+
+    /**
+     * Encodes sort values into an opaque cursor, or returns {@code null} if one of them is not supported.
+     */
+    public static String encodeCursor(List<Serializable> values) {
+        List<String> tokens = new ArrayList<>(values.size());
+        for (Serializable value : values) {
+            char type;
+            String string;
+            if (value == null) {
+                type = TYPE_NULL;
+                string = "";
+            } else if (value instanceof String) {
+                type = TYPE_STRING;
+                string = (String) value;
+            } else if (value instanceof Long || value instanceof Integer) {
+                type = TYPE_LONG;
+                string = value.toString();
+            } else if (value instanceof Double || value instanceof Float) {
+                type = TYPE_DOUBLE;
+                string = value.toString();
+            } else if (value instanceof Calendar) {
+                type = TYPE_DATE;
+                string = DateUtils.formatISODateTime((Calendar) value);
+            } else if (value instanceof Date) {
+                type = TYPE_DATE;
+                string = DateUtils.formatISODateTime((Date) value);
+            } else {
+                // unsupported
+                return null;
+            }
+            tokens.add(type + Base64.getUrlEncoder().withoutPadding().encodeToString(string.getBytes(UTF_8)));
+        }
+        return String.join(SEPARATOR, tokens);
+    }
+
+    /**
+     * Decodes the sort values of a cursor.
+     *
+     * @throws NuxeoException if the cursor is invalid
+     */
+    public static List<Serializable> decodeCursor(String cursor) {
+        List<Serializable> values = new ArrayList<>();
+        try {
+            for (String token : StringUtils.split(cursor, SEPARATOR)) {
+                String string = new String(Base64.getUrlDecoder().decode(token.substring(1)), UTF_8);
+                switch (token.charAt(0)) {
+                case TYPE_STRING:
+                    values.add(string);
+                    break;
+                case TYPE_LONG:
+                    values.add(Long.valueOf(string));
+                    break;
+                case TYPE_DOUBLE:
+                    values.add(Double.valueOf(string));
+                    break;
+                case TYPE_DATE:
+                    values.add(GregorianCalendar.from(DateUtils.parseISODateTime(string)));
+                    break;
+                case TYPE_NULL:
+                    values.add(null);
+                    break;
+                default:
+                    throw new NuxeoException("Invalid cursor: " + cursor);
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new NuxeoException("Invalid cursor: " + cursor, e);
+        }
+        return values;
+    }
+
+    /**
+     * Builds the predicate selecting the results located after the cursor in the given sort order.
+     * <p>
+     * {@code NULL} values are last in descending order: they are after any other value, and nothing is after them.
+     */
+    public static Predicate getSeekPredicate(List<SortInfo> sortInfos, String cursor) {
+        List<Serializable> values = decodeCursor(cursor);
+        if (values.size() != sortInfos.size()) {
+            throw new NuxeoException("Cursor does not match the sort of the query: " + cursor);
+        }
+        Predicate seek = null;
+        for (int i = 0; i < sortInfos.size(); i++) {
+            SortInfo sortInfo = sortInfos.get(i);
+            String column = sortInfo.getSortColumn();
+            Serializable value = values.get(i);
+            Predicate after;
+            if (value == null) {
+                if (sortInfo.getSortAscending()) {
+                    throw new NuxeoException("Cursor does not match the sort of the query: " + cursor);
+                }
+                continue;
+            } else if (sortInfo.getSortAscending()) {
+                after = Predicates.gt(column, value);
+            } else {
+                after = Predicates.or(Predicates.lt(column, value), Predicates.isnull(column));
+            }
+            Predicate predicate = null;
+            for (int j = 0; j < i; j++) {
+                String previousColumn = sortInfos.get(j).getSortColumn();
+                Serializable previousValue = values.get(j);
+                predicate = and(predicate, previousValue == null ? Predicates.isnull(previousColumn)
+                        : Predicates.eq(previousColumn, previousValue));
+            }
+            predicate = and(predicate, after);
+            seek = seek == null ? predicate : Predicates.or(seek, predicate);
+        }
+        if (seek == null) {
+            // the tiebreaker is never null
+            throw new NuxeoException("Cursor does not match the sort of the query: " + cursor);
+        }
+        return seek;
+    }
+
+    /**
+     * Builds the NXQL predicate selecting the results located after the cursor in the given sort order.
+     */
+    public static String getSeekClause(List<SortInfo> sortInfos, String cursor) {
+        NXQLWriter writer = new NXQLWriter();
+        getSeekPredicate(sortInfos, cursor).accept(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Adds the seek predicate for the cursor to a query, and orders it by the given sort.
+     * <p>
+     * The query is parsed and rewritten, so that its predicate is kept whole whatever its form.
+     */
+    public static String addSeekClause(String query, List<SortInfo> sortInfos, String cursor) {
+        SQLQuery sqlQuery = SQLQueryParser.parse(query);
+        Predicate seek = getSeekPredicate(sortInfos, cursor);
+        Predicate predicate = sqlQuery.where == null ? seek : Predicates.and(sqlQuery.where.predicate, seek);
+        OrderByList orderByList = new OrderByList();
+        for (SortInfo sortInfo : sortInfos) {
+            orderByList.add(new OrderByExpr(new Reference(sortInfo.getSortColumn()), !sortInfo.getSortAscending()));
+        }
+        sqlQuery = new SQLQuery(sqlQuery.select, sqlQuery.from, new WhereClause(predicate), sqlQuery.groupBy,
+                sqlQuery.having, new OrderByClause(orderByList), sqlQuery.limit, sqlQuery.offset);
+        NXQLWriter writer = new NXQLWriter();
+        writer.visitQuery(sqlQuery);
+        return writer.toString();
+    }
+
+    protected static Predicate and(Predicate left, Predicate right) {
+        return left == null ? right : Predicates.and(left, right);
+    }
+
+    /**
+     * Writes a parsed query back to NXQL, escaping string literals and parenthesizing logical expressions.
+     */
+    protected static class NXQLWriter extends DefaultQueryVisitor {
+
+        protected final StringBuilder sb = new StringBuilder();
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+
+        @Override
+        public void visitQuery(SQLQuery node) {
+            node.select.accept(this);
+            node.from.accept(this);
+            if (node.where != null) {
+                node.where.accept(this);
+            }
+            if (node.groupBy != null) {
+                node.groupBy.accept(this);
+            }
+            if (node.having != null) {
+                node.having.accept(this);
+            }
+            if (node.orderBy != null) {
+                node.orderBy.accept(this);
+            }
+            if (node.limit != 0) {
+                sb.append(" LIMIT ").append(node.limit);
+            }
+            if (node.offset != 0) {
+                sb.append(" OFFSET ").append(node.offset);
+            }
+        }
+
+        @Override
+        public void visitSelectClause(SelectClause node) {
+            sb.append("SELECT ");
+            if (node.distinct) {
+                sb.append("DISTINCT ");
+            }
+            if (node.elements.isEmpty()) {
+                sb.append('*');
+                return;
+            }
+            boolean first = true;
+            for (Entry<String, Operand> entry : node.elements.entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                Operand operand = entry.getValue();
+                operand.accept(this);
+                if (!entry.getKey().equals(operand.toString())) {
+                    sb.append(" AS ").append(entry.getKey());
+                }
+            }
+        }
+
+        @Override
+        public void visitFromClause(FromClause node) {
+            sb.append(" FROM ").append(String.join(", ", node.elements.values()));
+        }
+
+        @Override
+        public void visitWhereClause(WhereClause node) {
+            sb.append(" WHERE ");
+            super.visitWhereClause(node);
+        }
+
+        @Override
+        public void visitGroupByClause(GroupByClause node) {
+            if (node.elements.length > 0) {
+                sb.append(" GROUP BY ").append(String.join(", ", node.elements));
+            }
+        }
+
+        @Override
+        public void visitHavingClause(HavingClause node) {
+            if (node.predicate != null) {
+                sb.append(" HAVING ");
+                super.visitHavingClause(node);
+            }
+        }
+
+        @Override
+        public void visitOrderByClause(OrderByClause node) {
+            if (!node.elements.isEmpty()) {
+                sb.append(" ORDER BY ");
+                super.visitOrderByClause(node);
+            }
+        }
+
+        @Override
+        public void visitOrderByList(OrderByList node) {
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                node.get(i).accept(this);
+            }
+        }
+
+        @Override
+        public void visitOrderByExpr(OrderByExpr node) {
+            super.visitOrderByExpr(node);
+            if (node.isDescending) {
+                sb.append(" DESC");
+            }
+        }
+
+        @Override
+        public void visitExpression(Expression node) {
+            Operator operator = node.operator;
+            if (node.rvalue == null) {
+                if (node.isSuffix()) {
+                    // IS NULL, IS NOT NULL
+                    node.lvalue.accept(this);
+                    sb.append(' ').append(operator);
+                } else {
+                    // NOT
+                    sb.append(operator).append(' ');
+                    visitParenthesized(node.lvalue);
+                }
+            } else if (operator == Operator.AND || operator == Operator.OR) {
+                sb.append('(');
+                visitLogicalOperand(node.lvalue, operator);
+                sb.append(' ').append(operator).append(' ');
+                visitLogicalOperand(node.rvalue, operator);
+                sb.append(')');
+            } else if (operator == Operator.BETWEEN || operator == Operator.NOTBETWEEN) {
+                LiteralList bounds = (LiteralList) node.rvalue;
+                node.lvalue.accept(this);
+                sb.append(' ').append(operator).append(' ');
+                bounds.get(0).accept(this);
+                sb.append(" AND ");
+                bounds.get(1).accept(this);
+            } else if (operator == Operator.SUM || operator == Operator.SUB || operator == Operator.MUL
+                    || operator == Operator.DIV) {
+                sb.append('(');
+                node.lvalue.accept(this);
+                sb.append(' ').append(operator).append(' ');
+                node.rvalue.accept(this);
+                sb.append(')');
+            } else {
+                node.lvalue.accept(this);
+                sb.append(' ').append(operator).append(' ');
+                node.rvalue.accept(this);
+            }
+        }
+
+        /**
+         * Writes an operand of a logical operator, operands using the same operator don't need parentheses.
+         */
+        protected void visitLogicalOperand(Operand operand, Operator operator) {
+            if (isLogical(operand) && ((Expression) operand).operator == operator) {
+                Expression expression = (Expression) operand;
+                visitLogicalOperand(expression.lvalue, operator);
+                sb.append(' ').append(operator).append(' ');
+                visitLogicalOperand(expression.rvalue, operator);
+            } else {
+                operand.accept(this);
+            }
+        }
+
+        protected void visitParenthesized(Operand operand) {
+            if (isLogical(operand) || operand instanceof MultiExpression) {
+                // already parenthesized
+                operand.accept(this);
+            } else {
+                sb.append('(');
+                operand.accept(this);
+                sb.append(')');
+            }
+        }
+
+        protected boolean isLogical(Operand operand) {
+            if (!(operand instanceof Expression) || operand instanceof MultiExpression) {
+                return false;
+            }
+            Operator operator = ((Expression) operand).operator;
+            return operator == Operator.AND || operator == Operator.OR;
+        }
+
+        @Override
+        public void visitMultiExpression(MultiExpression node) {
+            sb.append('(');
+            for (int i = 0; i < node.predicates.size(); i++) {
+                if (i > 0) {
+                    sb.append(' ').append(node.operator).append(' ');
+                }
+                node.predicates.get(i).accept(this);
+            }
+            sb.append(')');
+        }
+
+        @Override
+        public void visitReference(Reference node) {
+            sb.append(node);
+        }
+
+        @Override
+        public void visitLiteral(Literal node) {
+            sb.append(node);
+        }
+
+        @Override
+        public void visitStringLiteral(StringLiteral node) {
+            sb.append(NXQL.escapeString(node.value));
+        }
+
+        @Override
+        public void visitLiteralList(LiteralList node) {
+            sb.append('(');
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                node.get(i).accept(this);
+            }
+            sb.append(')');
+        }
+
+        @Override
+        public void visitFunction(Function node) {
+            sb.append(node.name).append('(');
+            if (node.args != null) {
+                visitOperandList(node.args);
+            }
+            sb.append(')');
+        }
+
+        @Override
+        public void visitOperandList(OperandList node) {
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                node.get(i).accept(this);
+            }
+        }
+    }
+
+}
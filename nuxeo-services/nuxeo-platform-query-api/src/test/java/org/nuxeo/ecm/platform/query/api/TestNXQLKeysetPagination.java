@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2020 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.query.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.api.SortInfo;
+import org.nuxeo.ecm.platform.query.nxql.NXQLKeysetPagination;
+
+/**
+ * @since 11.1
+ */
+public class TestNXQLKeysetPagination {
+
+    protected static final List<SortInfo> SORT = Arrays.asList(new SortInfo("dc:title", true),
+            new SortInfo("ecm:uuid", true));
+
+    @Test
+    public void testTiebreaker() {
+        List<SortInfo> sort = Collections.singletonList(new SortInfo("dc:title", true));
+        assertEquals(SORT, NXQLKeysetPagination.withTiebreaker(sort));
+        assertEquals(SORT, NXQLKeysetPagination.withTiebreaker(SORT));
+        assertEquals(Collections.singletonList(new SortInfo("ecm:uuid", true)),
+                NXQLKeysetPagination.withTiebreaker(null));
+    }
+
+    @Test
+    public void testCursor() {
+        GregorianCalendar date = new GregorianCalendar(2020, 0, 1);
+        List<Serializable> values = Arrays.asList("it's.", Long.valueOf(3), Double.valueOf(1.5), date);
+        String cursor = NXQLKeysetPagination.encodeCursor(values);
+        List<Serializable> decoded = NXQLKeysetPagination.decodeCursor(cursor);
+        assertEquals(4, decoded.size());
+        assertEquals("it's.", decoded.get(0));
+        assertEquals(Long.valueOf(3), decoded.get(1));
+        assertEquals(Double.valueOf(1.5), decoded.get(2));
+        assertEquals(date.getTimeInMillis(), ((GregorianCalendar) decoded.get(3)).getTimeInMillis());
+
+        // null values
+        decoded = NXQLKeysetPagination.decodeCursor(NXQLKeysetPagination.encodeCursor(Arrays.asList(null, "foo")));
+        assertEquals(Arrays.asList(null, "foo"), decoded);
+
+        // unsupported values
+        assertNull(NXQLKeysetPagination.encodeCursor(Arrays.asList("foo", Boolean.TRUE)));
+    }
+
+    @Test
+    public void testSupportedSort() {
+        // NULL values may be first or last in ascending order depending on the backend
+        assertFalse(NXQLKeysetPagination.isSupportedSort(SORT, true));
+        List<SortInfo> sort = Arrays.asList(new SortInfo("dc:title", false), new SortInfo("ecm:uuid", true));
+        assertTrue(NXQLKeysetPagination.isSupportedSort(sort, true));
+        assertFalse(NXQLKeysetPagination.isSupportedSort(sort, false));
+        sort = Arrays.asList(new SortInfo("ecm:name", true), new SortInfo("ecm:uuid", false));
+        assertTrue(NXQLKeysetPagination.isSupportedSort(sort, true));
+        assertTrue(NXQLKeysetPagination.isSupportedSort(sort, false));
+    }
+
+    @Test(expected = NuxeoException.class)
+    public void testInvalidCursor() {
+        NXQLKeysetPagination.decodeCursor("xfoo");
+    }
+
+    @Test
+    public void testSeekClause() {
+        String cursor = NXQLKeysetPagination.encodeCursor(Arrays.asList("bar", "1234"));
+        assertEquals("(dc:title > 'bar' OR (dc:title = 'bar' AND ecm:uuid > '1234'))",
+                NXQLKeysetPagination.getSeekClause(SORT, cursor));
+
+        // NULL values are last in descending order
+        List<SortInfo> sort = Arrays.asList(new SortInfo("dc:title", false), new SortInfo("ecm:uuid", true));
+        assertEquals("(dc:title < 'bar' OR dc:title IS NULL OR (dc:title = 'bar' AND ecm:uuid > '1234'))",
+                NXQLKeysetPagination.getSeekClause(sort, cursor));
+        String nullCursor = NXQLKeysetPagination.encodeCursor(Arrays.asList(null, "1234"));
+        assertEquals("(dc:title IS NULL AND ecm:uuid > '1234')", NXQLKeysetPagination.getSeekClause(sort, nullCursor));
+
+        sort = Arrays.asList(new SortInfo("dc:title", true), new SortInfo("dc:created", false),
+                new SortInfo("ecm:uuid", true));
+        String cursor3 = NXQLKeysetPagination.encodeCursor(Arrays.asList("bar", Long.valueOf(3), "1234"));
+        assertEquals(
+                "(dc:title > 'bar' OR (dc:title = 'bar' AND (dc:created < 3 OR dc:created IS NULL)) OR (dc:title = 'bar' AND dc:created = 3 AND ecm:uuid > '1234'))",
+                NXQLKeysetPagination.getSeekClause(sort, cursor3));
+
+        // values are escaped
+        cursor = NXQLKeysetPagination.encodeCursor(Arrays.asList("it's", "1234"));
+        assertEquals("(dc:title > 'it\\'s' OR (dc:title = 'it\\'s' AND ecm:uuid > '1234'))",
+                NXQLKeysetPagination.getSeekClause(SORT, cursor));
+    }
+
+    @Test
+    public void testAddSeekClause() {
+        String cursor = NXQLKeysetPagination.encodeCursor(Arrays.asList("bar", "1234"));
+        // the original predicate is kept whole
+        assertEquals(
+                "SELECT * FROM Document WHERE ((ecm:isTrashed = 0 OR dc:title = 'a') AND (dc:title > 'bar' OR (dc:title = 'bar' AND ecm:uuid > '1234'))) ORDER BY dc:title, ecm:uuid",
+                NXQLKeysetPagination.addSeekClause(
+                        "SELECT * FROM Document WHERE ecm:isTrashed = 0 OR dc:title = 'a' ORDER BY dc:title , ecm:uuid",
+                        SORT, cursor));
+        assertEquals(
+                "SELECT * FROM Document WHERE (dc:title > 'bar' OR (dc:title = 'bar' AND ecm:uuid > '1234')) ORDER BY dc:title, ecm:uuid",
+                NXQLKeysetPagination.addSeekClause("SELECT * FROM Document ORDER BY dc:title , ecm:uuid", SORT,
+                        cursor));
+        // string literals of the original query stay escaped, the order is the keyset one
+        assertEquals(
+                "SELECT ecm:uuid, dc:title FROM File, Note WHERE (dc:description = 'it\\'s ORDER BY' AND (dc:title > 'bar' OR (dc:title = 'bar' AND ecm:uuid > '1234'))) ORDER BY dc:title, ecm:uuid",
+                NXQLKeysetPagination.addSeekClause(
+                        "SELECT ecm:uuid, dc:title FROM File, Note WHERE dc:description = 'it\\'s ORDER BY' ORDER BY dc:created DESC",
+                        SORT, cursor));
+        // NOT, IN, BETWEEN and IS NULL
+        assertEquals(
+                "SELECT * FROM Document WHERE (NOT (dc:title IN ('a', 'b')) AND dc:created BETWEEN DATE '2020-01-01' AND DATE '2020-02-01' AND dc:source IS NULL AND (dc:title > 'bar' OR (dc:title = 'bar' AND ecm:uuid > '1234'))) ORDER BY dc:title, ecm:uuid",
+                NXQLKeysetPagination.addSeekClause(
+                        "SELECT * FROM Document WHERE NOT dc:title IN ('a', 'b') AND dc:created BETWEEN DATE '2020-01-01' AND DATE '2020-02-01' AND dc:source IS NULL",
+                        SORT, cursor));
+    }
+
+    @Test(expected = NuxeoException.class)
+    public void testSeekClauseMismatch() {
+        NXQLKeysetPagination.getSeekClause(SORT, NXQLKeysetPagination.encodeCursor(Arrays.asList("bar")));
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * (C) Copyright 2017 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Gabriel Barata
+ */
+package org.nuxeo.ecm.platform.query.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.ecm.platform.query.api.PageProviderService;
+import org.nuxeo.ecm.platform.query.nxql.CoreQueryAndFetchPageProvider;
+import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+/**
+ * Tests keyset pagination of core query page providers against a repository.
+ *
+ * @since 11.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+@Deploy("org.nuxeo.ecm.platform.query.api")
+@Deploy("org.nuxeo.ecm.platform.query.api.test:test-pageprovider-keyset-contrib.xml")
+public class TestPageProviderKeysetPagination {
+
+    // titles with quotes, to check the escaping of the cursor values, in the descending order of the providers
+    protected static final List<String> TITLES = Arrays.asList("it's 6", "it's 5", "it's 4", "it's 3", "it's 2",
+            "it's 1", "it's 0");
+
+    @Inject
+    protected PageProviderService pps;
+
+    @Inject
+    protected CoreSession session;
+
+    @Before
+    public void createTestDocuments() {
+        // created in reverse order so that the sort is not the creation order
+        List<String> titles = new ArrayList<>(TITLES);
+        Collections.reverse(titles);
+        for (String title : titles) {
+            DocumentModel doc = session.createDocumentModel("/", title.replace(' ', '_'), "File");
+            doc.setPropertyValue("dc:title", title);
+            session.createDocument(doc);
+        }
+        session.save();
+    }
+
+    protected Map<String, Serializable> getProperties() {
+        return Collections.singletonMap(CoreQueryDocumentPageProvider.CORE_SESSION_PROPERTY,
+                (Serializable) session);
+    }
+
+    @Test
+    public void testDocumentPageProvider() {
+        CoreQueryDocumentPageProvider pp = (CoreQueryDocumentPageProvider) pps.getPageProvider("KEYSET_DOCUMENTS",
+                null, null, null, getProperties());
+        List<String> titles = new ArrayList<>();
+        for (DocumentModel doc : pp.getCurrentPage()) {
+            titles.add((String) doc.getPropertyValue("dc:title"));
+        }
+        assertEquals(TITLES.subList(0, 3), titles);
+        assertEquals(7, pp.getResultsCount());
+        assertNotNull(pp.getNextPageCursor());
+
+        // the following pages are fetched after the last document of the previous page
+        pp.nextPage();
+        titles.clear();
+        for (DocumentModel doc : pp.getCurrentPage()) {
+            titles.add((String) doc.getPropertyValue("dc:title"));
+        }
+        assertEquals(TITLES.subList(3, 6), titles);
+        assertNotNull(pp.getNextPageCursor());
+
+        pp.nextPage();
+        titles.clear();
+        for (DocumentModel doc : pp.getCurrentPage()) {
+            titles.add((String) doc.getPropertyValue("dc:title"));
+        }
+        assertEquals(TITLES.subList(6, 7), titles);
+        // count is exact on the last page
+        assertEquals(7, pp.getResultsCount());
+        assertNull(pp.getNextPageCursor());
+    }
+
+    @Test
+    public void testQueryAndFetchPageProvider() {
+        CoreQueryAndFetchPageProvider pp = (CoreQueryAndFetchPageProvider) pps.getPageProvider(
+                "KEYSET_DOCUMENTS_FETCH", null, null, null, getProperties());
+        List<String> titles = new ArrayList<>();
+        for (Map<String, Serializable> row : pp.getCurrentPage()) {
+            titles.add((String) row.get("dc:title"));
+        }
+        assertEquals(TITLES.subList(0, 3), titles);
+        assertNotNull(pp.getNextPageCursor());
+
+        pp.nextPage();
+        titles.clear();
+        for (Map<String, Serializable> row : pp.getCurrentPage()) {
+            titles.add((String) row.get("dc:title"));
+        }
+        assertEquals(TITLES.subList(3, 6), titles);
+
+        pp.nextPage();
+        titles.clear();
+        for (Map<String, Serializable> row : pp.getCurrentPage()) {
+            titles.add((String) row.get("dc:title"));
+        }
+        assertEquals(TITLES.subList(6, 7), titles);
+        assertEquals(7, pp.getResultsCount());
+    }
+
+    protected void createUntitledDocuments(int count) {
+        for (int i = 0; i < count; i++) {
+            session.createDocument(session.createDocumentModel("/", "untitled" + i, "File"));
+        }
+        session.save();
+    }
+
+    @Test
+    public void testDocumentPageProviderWithNullTitles() {
+        createUntitledDocuments(4);
+        CoreQueryDocumentPageProvider pp = (CoreQueryDocumentPageProvider) pps.getPageProvider("KEYSET_DOCUMENTS",
+                null, null, null, getProperties());
+        List<String> titles = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (;;) {
+            List<DocumentModel> docs = pp.getCurrentPage();
+            for (DocumentModel doc : docs) {
+                titles.add((String) doc.getPropertyValue("dc:title"));
+                ids.add(doc.getId());
+            }
+            if (docs.size() < 3) {
+                break;
+            }
+            // the cursor also points after a document without title
+            assertNotNull(pp.getNextPageCursor());
+            pp.nextPage();
+        }
+        // documents without title are last in descending order, none is skipped or repeated
+        List<String> expected = new ArrayList<>(TITLES);
+        expected.addAll(Collections.nCopies(4, null));
+        assertEquals(expected, titles);
+        assertEquals(11, ids.size());
+        assertEquals(11, pp.getResultsCount());
+    }
+
+    @Test
+    public void testAscendingSortWithNullTitles() {
+        createUntitledDocuments(2);
+        CoreQueryDocumentPageProvider pp = (CoreQueryDocumentPageProvider) pps.getPageProvider(
+                "KEYSET_DOCUMENTS_ASC", null, null, null, getProperties());
+        Set<String> ids = new HashSet<>();
+        for (;;) {
+            List<DocumentModel> docs = pp.getCurrentPage();
+            docs.forEach(doc -> ids.add(doc.getId()));
+            // documents without title may be first or last depending on the backend, no cursor is used
+            assertNull(pp.getNextPageCursor());
+            if (docs.size() < 3) {
+                break;
+            }
+            pp.nextPage();
+        }
+        assertEquals(9, ids.size());
+        assertEquals(9, pp.getResultsCount());
+    }
+
+}